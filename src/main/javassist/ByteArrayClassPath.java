@@ -23,6 +23,8 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * A <code>ByteArrayClassPath</code> contains bytes that is served as
@@ -81,6 +83,14 @@ public class ByteArrayClassPath implements ClassPath {
         return null;
     }
 
+    /**
+     * Returns the name of the class contained in this class path.
+     */
+    @Override
+    public Collection<String> getClassNames() {
+        return Collections.singletonList(classname);
+    }
+
     /**
      * Obtains the URL.
      */
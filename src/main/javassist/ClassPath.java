@@ -18,6 +18,7 @@ package javassist;
 
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Collection;
 
 /**
  * <code>ClassPath</code> is an interface implemented by objects
@@ -58,4 +59,19 @@ public interface ClassPath {
      * @return null if the specified class file could not be found.
      */
     URL find(String classname);
+
+    /**
+     * Returns the names of the classes available through this class path.
+     * This method is used by <code>ClassPool.scan()</code>.
+     * If this class path cannot list its classes, it returns null.
+     *
+     * <p>The default implementation returns null.
+     *
+     * @return fully-qualified class names or null.
+     * @see ClassPool#scan(java.util.function.Consumer,java.util.concurrent.Executor)
+     * @since 3.31
+     */
+    default Collection<String> getClassNames() {
+        return null;
+    }
 }
@@ -21,15 +21,33 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
-
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javassist.bytecode.AnnotationIndex;
 import javassist.bytecode.ClassFile;
 import javassist.bytecode.Descriptor;
+import javassist.bytecode.LazyClassFile;
+import javassist.compiler.SnippetCache;
 import javassist.util.proxy.DefinePackageHelper;
 
 /**
@@ -82,6 +100,48 @@ public class ClassPool {
      */
     public boolean childFirstLookup = false;
 
+    /**
+     * The cache of the bytecode compiled from source text.
+     * If it is not null, the bytecode compiled from the source text
+     * given to <code>insertBefore()</code> in <code>CtBehavior</code>,
+     * <code>replace()</code> in <code>javassist.expr.MethodCall</code>,
+     * and so on is reused when the same source text is compiled again
+     * in the same context.
+     *
+     * <p>The default value is null.
+     *
+     * @see SnippetCache
+     * @since 3.31
+     */
+    public SnippetCache snippetCache = null;
+
+    /**
+     * The index of the annotations.
+     * If it is not null, the types of the annotations in the class files
+     * read by this class pool are recorded.
+     *
+     * <p>The default value is null.
+     *
+     * @see AnnotationIndex
+     * @since 3.31
+     */
+    public AnnotationIndex annotationIndex = null;
+
+    /**
+     * The policy for evicting classes from the cache of this pool.
+     * If it is not null, unmodified and not frozen classes are removed
+     * from the cache when the policy selects them.  They are read again
+     * when they are requested later unless the <code>CtClass</code>
+     * objects are still reachable.
+     *
+     * <p>The default value is null.  Then no class is evicted.
+     *
+     * @see EvictionPolicy
+     * @see LruEvictionPolicy
+     * @since 3.31
+     */
+    public EvictionPolicy evictionPolicy = null;
+
     /**
      * Turning the automatic pruning on/off.
      *
@@ -114,17 +174,23 @@ public class ClassPool {
     public static boolean releaseUnmodifiedClassFile = true;
 
     /**
-     * If true, the contents of a jar file are cached after the jar
-     * file is opened.
+     * If true, a jar file is kept open after a class file is read from it
+     * until the class path is removed by <code>removeClassPath()</code>.
      *
      * <p>The initial value is true.
      */
-    public static boolean cacheOpenedJarFile = true;    // see ClassPoolTail.JarClassPath#openClassfile(String)
+    public static boolean cacheOpenedJarFile = true;    // see JarClassPath#readEntry(Entry)
 
     protected ClassPoolTail source;
     protected ClassPool parent;
     protected Hashtable classes;        // should be synchronous
 
+    /* These are used instead of classes if the pool was created
+       in the concurrent lookup mode.  classes is null then.
+     */
+    private ConcurrentHashMap<String,CtClass> concurrentClasses;
+    private ConcurrentHashMap<String,FutureTask<CtClass>> loadingClasses;
+
     /**
      * Table of registered cflow variables.
      */
@@ -134,6 +200,35 @@ public class ClassPool {
 
     private ArrayList importedPackages;
 
+    /* incremented when the super types of a class in this pool
+       might be changed.  See hierarchyVersion().
+     */
+    private final AtomicInteger hierarchyVersion = new AtomicInteger();
+
+    /* incremented when the members of a class in this pool
+       might be changed.  See membersVersion().
+     */
+    private final AtomicInteger membersVersion = new AtomicInteger();
+    private volatile SubtypeIndex subtypeIndex = null;
+
+    /* The classes removed by the eviction policy.  They are put back
+       into the cache if they are requested while they are reachable.
+       The updates are synchronized on evictedClasses.
+     */
+    private final Map<String,EvictedClass> evictedClasses
+        = new ConcurrentHashMap<String,EvictedClass>();
+    private final ReferenceQueue<CtClass> evictedQueue
+        = new ReferenceQueue<CtClass>();
+
+    private static class EvictedClass extends WeakReference<CtClass> {
+        final String name;
+
+        EvictedClass(String name, CtClass clazz, ReferenceQueue<CtClass> queue) {
+            super(clazz, queue);
+            this.name = name;
+        }
+    }
+
     /**
      * Creates a root class pool.  No parent class pool is specified.
      */
@@ -164,13 +259,49 @@ public class ClassPool {
      * @see javassist.ClassPool#getDefault()
      */
     public ClassPool(ClassPool parent) {
-        this.classes = new Hashtable(INIT_HASH_SIZE);
+        this(parent, false);
+    }
+
+    /**
+     * Creates a class pool.  If <code>concurrent</code> is true,
+     * the created pool is in the concurrent lookup mode.
+     *
+     * <p>In the concurrent lookup mode, <code>get()</code> does not
+     * lock the whole class pool.  Cached <code>CtClass</code> objects
+     * are obtained without locking, and when several threads request
+     * the same class that has not been cached yet, only one of them
+     * searches the class path and creates a <code>CtClass</code> object;
+     * the others wait for and share that object.  The search order
+     * between this pool and its parent is the same as in the normal mode.
+     *
+     * <p>Since the <code>classes</code> field is not used in this mode,
+     * a subclass must access the cache through <code>getCached()</code>,
+     * <code>cacheCtClass()</code>, and <code>removeCached()</code>.
+     *
+     * @param parent        the parent of this class pool.  If this is a root
+     *                      class pool, this parameter must be <code>null</code>.
+     * @param concurrent    true if the pool is in the concurrent lookup mode.
+     * @see #isConcurrent()
+     * @since 3.31
+     */
+    public ClassPool(ClassPool parent, boolean concurrent) {
+        if (concurrent) {
+            this.classes = null;
+            this.concurrentClasses = new ConcurrentHashMap<String,CtClass>(INIT_HASH_SIZE);
+            this.loadingClasses = new ConcurrentHashMap<String,FutureTask<CtClass>>();
+        }
+        else {
+            this.classes = new Hashtable(INIT_HASH_SIZE);
+            this.concurrentClasses = null;
+            this.loadingClasses = null;
+        }
+
         this.source = new ClassPoolTail();
         this.parent = parent;
         if (parent == null) {
             CtClass[] pt = CtClass.primitiveTypes;
             for (int i = 0; i < pt.length; ++i)
-                classes.put(pt[i].getName(), pt[i]);
+                cacheCtClass(pt[i].getName(), pt[i], false);
         }
 
         this.cflow = null;
@@ -214,6 +345,16 @@ public class ClassPool {
 
     private static ClassPool defaultPool = null;
 
+    /**
+     * Returns true if this class pool is in the concurrent lookup mode.
+     *
+     * @see #ClassPool(ClassPool,boolean)
+     * @since 3.31
+     */
+    public boolean isConcurrent() {
+        return concurrentClasses != null;
+    }
+
     /**
      * Provide a hook so that subclasses can do their own
      * caching of classes.
@@ -222,6 +363,9 @@ public class ClassPool {
      * @see #removeCached(String)
      */
     protected CtClass getCached(String classname) {
+        if (concurrentClasses != null)
+            return concurrentClasses.get(classname);
+
         return (CtClass)classes.get(classname);
     }
 
@@ -233,7 +377,10 @@ public class ClassPool {
      * @see #removeCached(String)
      */
     protected void cacheCtClass(String classname, CtClass c, boolean dynamic) {
-        classes.put(classname, c);
+        if (concurrentClasses != null)
+            concurrentClasses.put(classname, c);
+        else
+            classes.put(classname, c);
     }
 
     /**
@@ -244,9 +391,113 @@ public class ClassPool {
      * @see #cacheCtClass(String,CtClass,boolean)
      */
     protected CtClass removeCached(String classname) {
+        if (concurrentClasses != null)
+            return concurrentClasses.remove(classname);
+
         return (CtClass)classes.remove(classname);
     }
 
+    /* Returns the classes cached in this pool.
+     */
+    CtClass[] getCachedClasses() {
+        if (concurrentClasses != null)
+            return concurrentClasses.values().toArray(new CtClass[0]);
+
+        synchronized (classes) {
+            return (CtClass[])classes.values().toArray(new CtClass[classes.size()]);
+        }
+    }
+
+    int numOfCachedClasses() {
+        if (concurrentClasses != null)
+            return concurrentClasses.size();
+
+        return classes.size();
+    }
+
+    /* This method is invoked when the super class or the interfaces
+     * of a class in this pool might be changed.
+     */
+    void hierarchyChanged() {
+        hierarchyVersion.incrementAndGet();
+    }
+
+    /* Returns a number that changes when the super types of a class
+     * in this pool or its parents might be changed.  The changes made
+     * directly through getClassFile() are also counted.  See watch().
+     */
+    int hierarchyVersion() {
+        int version = 0;
+        for (ClassPool cp = this; cp != null; cp = cp.parent)
+            version += cp.hierarchyVersion.get();
+
+        return version;
+    }
+
+    /**
+     * Undocumented method.  Do not use; internal-use only.
+     * It is invoked when the methods or the fields of a class in this pool
+     * might be changed.
+     */
+    public void membersChanged() {
+        membersVersion.incrementAndGet();
+    }
+
+    /**
+     * Undocumented method.  Do not use; internal-use only.
+     * It returns a number that changes when the members or the super types
+     * of a class in this pool or its parents might be changed.
+     */
+    public int membersVersion() {
+        int version = hierarchyVersion();
+        for (ClassPool cp = this; cp != null; cp = cp.parent)
+            version += cp.membersVersion.get();
+
+        return version;
+    }
+
+    /* Makes the given class file of a class in this pool change
+     * the versions of this pool when it is directly modified.
+     */
+    void watch(ClassFile cf) {
+        cf.setHierarchyCounter(hierarchyVersion);
+        cf.setMembersCounter(membersVersion);
+    }
+
+    /**
+     * Returns the subtypes of the given type among the classes
+     * and interfaces that this pool or its parents have already read
+     * or created.  Class files that have not been read are not
+     * searched; call <code>get()</code> or <code>scan()</code> in advance
+     * to make them known.
+     * The given type itself is not included in the result.
+     *
+     * <p>The index from a type to its subtypes is built when this
+     * method is called first and it is reused until a class is read or
+     * the super class or the interfaces of a class are changed.
+     *
+     * @param clazz     the super type.
+     * @see CtClass#subtypeOf(CtClass)
+     * @since 3.31
+     */
+    public CtClass[] getSubtypes(CtClass clazz) {
+        String cname = clazz.getName();
+        Set<String> found = new HashSet<String>();
+        List<CtClass> list = new ArrayList<CtClass>();
+        for (ClassPool cp = this; cp != null; cp = cp.parent) {
+            SubtypeIndex index = cp.subtypeIndex;
+            int version = cp.hierarchyVersion();
+            if (index == null || !index.isValid(cp, version)) {
+                index = new SubtypeIndex(cp, version);
+                cp.subtypeIndex = index;
+            }
+
+            index.collect(clazz, cname, found, list);
+        }
+
+        return list.toArray(new CtClass[list.size()]);
+    }
+
     /**
      * Returns the class search path.
      */
@@ -261,9 +512,14 @@ public class ClassPool {
     void compress() {
         if (compressCount++ > COMPRESS_THRESHOLD) {
             compressCount = 0;
-            Enumeration e = classes.elements();
-            while (e.hasMoreElements())
-                ((CtClass)e.nextElement()).compress();
+            if (concurrentClasses != null)
+                for (CtClass c: concurrentClasses.values())
+                    c.compress();
+            else {
+                Enumeration e = classes.elements();
+                while (e.hasMoreElements())
+                    ((CtClass)e.nextElement()).compress();
+            }
         }
     }
 
@@ -499,14 +755,30 @@ public class ClassPool {
      * @param useCache      false if the cached CtClass must be ignored.
      * @return null     if the class could not be found.
      */
-    protected synchronized CtClass get0(String classname, boolean useCache)
+    protected CtClass get0(String classname, boolean useCache)
+        throws NotFoundException
+    {
+        if (concurrentClasses == null)
+            synchronized (this) {
+                return get1(classname, useCache);
+            }
+        else
+            return get1(classname, useCache);
+    }
+
+    private CtClass get1(String classname, boolean useCache)
         throws NotFoundException
     {
         CtClass clazz = null;
         if (useCache) {
             clazz = getCached(classname);
-            if (clazz != null)
+            if (clazz == null)
+                clazz = getEvicted(classname);
+
+            if (clazz != null) {
+                classAccessed(clazz);
                 return clazz;
+            }
         }
 
         if (!childFirstLookup && parent != null) {
@@ -515,14 +787,19 @@ public class ClassPool {
                 return clazz;
         }
 
-        clazz = createCtClass(classname, useCache);
-        if (clazz != null) {
+        if (useCache && concurrentClasses != null)
+            clazz = createAndCacheOnce(classname);
+        else {
+            clazz = createCtClass(classname, useCache);
             // clazz.getName() != classname if classname is "[L<name>;".
-            if (useCache)
+            if (clazz != null && useCache) {
                 cacheCtClass(clazz.getName(), clazz, false);
+                classAccessed(clazz);
+            }
+        }
 
+        if (clazz != null)
             return clazz;
-        }
 
         if (childFirstLookup && parent != null)
             clazz = parent.get0(classname, useCache);
@@ -530,6 +807,172 @@ public class ClassPool {
         return clazz;
     }
 
+    /* Used in the concurrent lookup mode.  If several threads request
+     * the same class at the same time, only one of them calls
+     * createCtClass() and the others wait for the result.
+     */
+    private CtClass createAndCacheOnce(final String classname)
+        throws NotFoundException
+    {
+        FutureTask<CtClass> task = loadingClasses.get(classname);
+        if (task == null) {
+            FutureTask<CtClass> newTask = new FutureTask<CtClass>(() -> {
+                CtClass c = getCached(classname);
+                if (c == null)
+                    c = getEvicted(classname);
+
+                if (c == null) {
+                    c = createCtClass(classname, true);
+                    if (c != null)
+                        cacheCtClass(c.getName(), c, false);
+                }
+
+                if (c != null)
+                    classAccessed(c);
+
+                return c;
+            });
+
+            task = loadingClasses.putIfAbsent(classname, newTask);
+            if (task == null) {
+                task = newTask;
+                try {
+                    task.run();
+                }
+                finally {
+                    loadingClasses.remove(classname, task);
+                }
+            }
+        }
+
+        return getResult(task, classname);
+    }
+
+    /* Reports the use of a class to the eviction policy and
+     * evicts classes if the policy requests.
+     * This is also called when the class file is read.
+     */
+    void classAccessed(CtClass clazz) {
+        EvictionPolicy policy = evictionPolicy;
+        if (policy == null || !(clazz instanceof CtClassType))
+            return;
+
+        if (!isEvictable(clazz)) {
+            policy.removed(clazz);
+            return;
+        }
+
+        policy.accessed(clazz, ((CtClassType)clazz).getClassfileSize());
+        CtClass victim;
+        while ((victim = policy.nextVictim()) != null) {
+            policy.removed(victim);
+            if (isEvictable(victim))
+                evict(victim);
+        }
+    }
+
+    /* Modified or frozen classes are never evicted.
+     */
+    private static boolean isEvictable(CtClass clazz) {
+        return !clazz.isModified() && !clazz.isFrozen() && !(clazz instanceof CtNewClass);
+    }
+
+    private void evict(CtClass clazz) {
+        String name = clazz.getName();
+        synchronized (evictedClasses) {
+            purgeEvicted();
+            if (getCached(name) == clazz) {
+                evictedClasses.put(name, new EvictedClass(name, clazz, evictedQueue));
+                removeCached(name);
+                subtypeIndex = null;
+            }
+        }
+    }
+
+    /* Puts an evicted class back into the cache if it is still reachable.
+     */
+    private CtClass getEvicted(String classname) {
+        if (evictedClasses.get(classname) == null)
+            return null;
+
+        synchronized (evictedClasses) {
+            purgeEvicted();
+            EvictedClass ref = evictedClasses.remove(classname);
+            CtClass clazz = ref == null ? null : ref.get();
+            if (clazz != null)
+                cacheCtClass(classname, clazz, false);
+
+            return clazz;
+        }
+    }
+
+    private void purgeEvicted() {
+        Reference<? extends CtClass> ref;
+        while ((ref = evictedQueue.poll()) != null) {
+            String name = ((EvictedClass)ref).name;
+            if (evictedClasses.get(name) == ref)
+                evictedClasses.remove(name);
+        }
+    }
+
+    /* Waits for the task to finish and returns its result.
+     * An exception thrown by the task is rethrown.
+     */
+    private static <T> T getResult(FutureTask<T> task, String classname)
+        throws NotFoundException
+    {
+        boolean interrupted = false;
+        try {
+            for (;;)
+                try {
+                    return task.get();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+        }
+        catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof NotFoundException)
+                throw (NotFoundException)t;
+            else if (t instanceof RuntimeException)
+                throw (RuntimeException)t;
+            else if (t instanceof Error)
+                throw (Error)t;
+            else
+                throw new NotFoundException(classname, (Exception)t);
+        }
+        finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /* Waits for all the tasks to finish.  If some of them fail,
+     * the exception thrown by the first one of them is rethrown
+     * after all the tasks finish.
+     */
+    private static void joinAll(List<? extends FutureTask<?>> tasks, String[] names)
+        throws NotFoundException
+    {
+        Throwable error = null;
+        for (int i = 0; i < tasks.size(); i++)
+            try {
+                getResult(tasks.get(i), names[i]);
+            }
+            catch (NotFoundException | RuntimeException | Error e) {
+                if (error == null)
+                    error = e;
+            }
+
+        if (error instanceof NotFoundException)
+            throw (NotFoundException)error;
+        else if (error instanceof RuntimeException)
+            throw (RuntimeException)error;
+        else if (error != null)
+            throw (Error)error;
+    }
+
     /**
      * Creates a CtClass object representing the specified class.
      * It first examines whether or not the corresponding class
@@ -650,6 +1093,169 @@ public class ClassPool {
         return result;
     }
 
+    /**
+     * Reads class files from the source in parallel and returns an array
+     * of <code>CtClass</code> objects representing those class files.
+     * The elements of the returned array are in the same order as
+     * the class names.
+     *
+     * <p>The class files are read and parsed by the tasks run by
+     * <code>ForkJoinPool.commonPool()</code>.
+     *
+     * @param classnames        fully-qualified class names.
+     * @throws NotFoundException    if any of the classes is not found.
+     * @see #getAll(Collection,Executor)
+     * @since 3.31
+     */
+    public CtClass[] getAll(Collection<String> classnames)
+        throws NotFoundException
+    {
+        return getAll(classnames, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads class files from the source in parallel and returns an array
+     * of <code>CtClass</code> objects representing those class files.
+     * The elements of the returned array are in the same order as
+     * the class names.
+     *
+     * <p>For each class name, a task is given to the executor.
+     * It obtains a <code>CtClass</code> object by <code>get()</code>
+     * and, if the class file has not been parsed yet, it reads and parses
+     * the class file.  Hence the returned <code>CtClass</code> objects do
+     * not have to read their class files again when they are used.
+     * The parsed class files are published to the
+     * <code>CtClass</code> objects in a thread-safe manner.
+     * The tasks share the lock of this class pool while they are searching
+     * the class path unless this pool is in the concurrent lookup mode.
+     * The class files are always parsed without the lock.
+     *
+     * <p>If a class name ends with "[]", then the returned
+     * <code>CtClass</code> object represents that array type.
+     *
+     * @param classnames        fully-qualified class names.
+     * @param executor          the executor running the tasks.
+     *                          For example, an executor that creates a
+     *                          virtual thread for each task can be given.
+     * @throws NotFoundException    if any of the classes is not found.
+     *                              It is thrown after all the tasks finish.
+     *                              A <code>RuntimeException</code> or
+     *                              an <code>Error</code> thrown by a task
+     *                              is also rethrown after all the tasks finish.
+     * @see #ClassPool(ClassPool,boolean)
+     * @since 3.31
+     */
+    public CtClass[] getAll(Collection<String> classnames, Executor executor)
+        throws NotFoundException
+    {
+        int num = classnames.size();
+        String[] names = classnames.toArray(new String[num]);
+        List<FutureTask<CtClass>> tasks = new ArrayList<FutureTask<CtClass>>(num);
+        for (final String name: names) {
+            FutureTask<CtClass> task = new FutureTask<CtClass>(() -> {
+                CtClass c = get(name);
+                if (c instanceof CtClassType)
+                    ((CtClassType)c).getClassFile3(false);
+
+                return c;
+            });
+            tasks.add(task);
+            executor.execute(task);
+        }
+
+        joinAll(tasks, names);
+        CtClass[] result = new CtClass[num];
+        for (int i = 0; i < num; i++)
+            result[i] = getResult(tasks.get(i), names[i]);
+
+        return result;
+    }
+
+    /**
+     * Reads all the class files available through the class paths of
+     * this class pool.  The class files are read in parallel by the tasks
+     * run by <code>ForkJoinPool.commonPool()</code>.
+     *
+     * @param visitor       the function called for each class file.
+     * @see #scan(Consumer,Executor)
+     * @since 3.31
+     */
+    public void scan(Consumer<LazyClassFile> visitor) throws NotFoundException {
+        scan(visitor, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads all the class files available through the class paths of
+     * this class pool.  For each class file, the given visitor is called
+     * with a <code>LazyClassFile</code>, which gives the class name,
+     * the access flags, the super class, the interfaces, the annotations,
+     * and so on without parsing the whole class file.
+     * No <code>CtClass</code> object is created.
+     *
+     * <p>A task is given to the executor for each class path.
+     * For a class path given as <code>"dir/*"</code>, a task is given
+     * for each jar file in the directory.  Hence the visitor may be called
+     * by several threads at the same time.  If more than one class path
+     * contains a class file with the same name, only the class file found
+     * first in the search order is visited.
+     *
+     * <p>Only the class paths that can list their classes, such as the class
+     * paths given to <code>appendClassPath(String)</code>, are scanned.
+     * <code>ClassClassPath</code>, <code>LoaderClassPath</code>, and
+     * the class paths of the parent class pool are not scanned.
+     * If <code>annotationIndex</code> is not null, the annotations of
+     * the visited class files are recorded in it.
+     *
+     * @param visitor       the function called for each class file.
+     * @param executor      the executor running the tasks.
+     * @throws NotFoundException    if a class file cannot be read.
+     *                              It is thrown after all the tasks finish.
+     *                              A <code>RuntimeException</code> or
+     *                              an <code>Error</code> thrown by the visitor
+     *                              is also rethrown after all the tasks finish.
+     * @see ClassPath#getClassNames()
+     * @since 3.31
+     */
+    public void scan(Consumer<LazyClassFile> visitor, Executor executor)
+        throws NotFoundException
+    {
+        Set<String> found = new HashSet<String>();
+        List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>();
+        List<ClassPath> paths = new ArrayList<ClassPath>();
+        for (ClassPath path: source.getClassPaths()) {
+            Collection<String> names = path.getClassNames();
+            if (names == null)
+                continue;
+
+            final List<String> visible = new ArrayList<String>(names.size());
+            for (String name: names)
+                if (found.add(name))
+                    visible.add(name);
+
+            FutureTask<Void> task = new FutureTask<Void>(() -> {
+                AnnotationIndex index = annotationIndex;
+                for (String name: visible) {
+                    LazyClassFile cf = new LazyClassFile(ClassPoolTail.readClassfile(path, name));
+                    if (index != null)
+                        index.add(cf);
+
+                    visitor.accept(cf);
+                }
+
+                return null;
+            });
+            tasks.add(task);
+            paths.add(path);
+            executor.execute(task);
+        }
+
+        String[] names = new String[paths.size()];
+        for (int i = 0; i < names.length; i++)
+            names[i] = paths.get(i).toString();
+
+        joinAll(tasks, names);
+    }
+
     /**
      * Reads a class file and obtains a compile-time method.
      *
@@ -711,6 +1317,7 @@ public class ClassPool {
             checkNotFrozen(classname);
 
         cacheCtClass(classname, clazz, true);
+        hierarchyChanged();
         return clazz;
     }
 
@@ -759,6 +1366,7 @@ public class ClassPool {
             checkNotFrozen(classname);
 
         cacheCtClass(classname, clazz, true);
+        hierarchyChanged();
         return clazz;
     }
 
@@ -790,6 +1398,7 @@ public class ClassPool {
             return found;
         else {
             cacheCtClass(classname, clazz, true);
+            hierarchyChanged();
             return clazz;
         }
     }
@@ -837,6 +1446,7 @@ public class ClassPool {
         checkNotFrozen(classname);
         CtClass clazz = new CtNewClass(classname, this, false, superclass);
         cacheCtClass(classname, clazz, true);
+        hierarchyChanged();
         return clazz;
     }
 
@@ -851,6 +1461,7 @@ public class ClassPool {
         checkNotFrozen(classname);
         CtClass clazz = new CtNewClass(classname, this, false, null);
         cacheCtClass(classname, clazz, true);
+        hierarchyChanged();
         return clazz;
     }
 
@@ -881,6 +1492,7 @@ public class ClassPool {
         checkNotFrozen(name);
         CtClass clazz = new CtNewClass(name, this, true, superclass);
         cacheCtClass(name, clazz, true);
+        hierarchyChanged();
         return clazz;
     }
 
@@ -985,7 +1597,9 @@ public class ClassPool {
     /**
      * Detatches the <code>ClassPath</code> object from the search path.
      * The detached <code>ClassPath</code> object cannot be added
-     * to the path again.
+     * to the path again.  If it is a jar file appended by
+     * <code>appendClassPath(String)</code> or
+     * <code>insertClassPath(String)</code>, the jar file is closed.
      */
     public void removeClassPath(ClassPath cp) {
         source.removeClassPath(cp);
@@ -1189,6 +1803,36 @@ public class ClassPool {
         }
     }
 
+    /**
+     * Converts the class to a hidden class.
+     * Once this method is called, further modifications are not allowed
+     * any more.
+     *
+     * <p>This method is available in Java 15 or later.
+     * It defines the class by {@code defineHiddenClass} on the given
+     * {@code java.lang.invoke.MethodHandles.Lookup}.  The class must
+     * belong to the package of the lookup class.  The hidden class
+     * cannot be obtained by its name.
+     * </p>
+     *
+     * @param ct            the class converted into {@code java.lang.Class}.
+     * @param lookup        the lookup with the full privilege access.
+     * @see javassist.util.proxy.DefineClassHelper#toHiddenClass(java.lang.invoke.MethodHandles.Lookup,byte[])
+     * @since 3.31
+     */
+    public Class<?> toHiddenClass(CtClass ct,
+                                  java.lang.invoke.MethodHandles.Lookup lookup)
+        throws CannotCompileException
+    {
+        try {
+            return javassist.util.proxy.DefineClassHelper.toHiddenClass(lookup,
+                                                            ct.toBytecode());
+        }
+        catch (IOException e) {
+            throw new CannotCompileException(e);
+        }
+    }
+
     /**
      * Converts the class to a <code>java.lang.Class</code> object.
      * Once this method is called, further modifications are not allowed
@@ -16,6 +16,7 @@
 
 package javassist;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -23,13 +24,21 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 final class ClassPathList {
     ClassPathList next;
@@ -77,6 +86,27 @@ final class DirClassPath implements ClassPath {
         return null;
     }
 
+    @Override
+    public Collection<String> getClassNames() {
+        List<String> names = new ArrayList<String>();
+        listClassNames(new File(directory), "", names);
+        return names;
+    }
+
+    private static void listClassNames(File dir, String pkg, List<String> names) {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+
+        for (File f: files) {
+            String name = f.getName();
+            if (f.isDirectory())
+                listClassNames(f, pkg + name + '.', names);
+            else if (name.endsWith(".class") && !name.equals("module-info.class"))
+                names.add(pkg + name.substring(0, name.length() - 6));
+        }
+    }
+
     @Override
     public String toString() {
         return directory;
@@ -125,20 +155,88 @@ final class JarDirClassPath implements ClassPath {
 
         return null;    // not found
     }
+
+    @Override
+    public Collection<String> getClassNames() {
+        List<String> names = new ArrayList<String>();
+        if (jars != null)
+            for (int i = 0; i < jars.length; i++)
+                names.addAll(jars[i].getClassNames());
+
+        return names;
+    }
+
+    void close() {
+        if (jars != null)
+            for (int i = 0; i < jars.length; i++)
+                jars[i].close();
+    }
 }
 
+/*
+ * JarClassPath reads the central directory of a jar file only once
+ * and keeps an index of the class files.  A class file is read directly
+ * from the jar file by using that index.  If ClassPool.cacheOpenedJarFile
+ * is true, the jar file is opened when a class file is read for the first
+ * time and it is kept open until close() is called.  Otherwise, the jar
+ * file is opened and closed whenever a class file is read.  The jar file
+ * is read by RandomAccessFile, which an interrupt does not close.
+ */
 final class JarClassPath implements ClassPath {
-    Set<String> jarfileEntries;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int ZIP64_END_HEADER_SIZE = 56;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int MAX_KEPT_BUFFER_SIZE = 64 * 1024;
+    private static final int LOC_EXTRA_SIZE = 64;  // expected length of a file name and extra field
+
+    /* A buffer for reading an entry.  It is reused by every JarClassPath.
+     */
+    private static final ThreadLocal<byte[]> inputBuffer = new ThreadLocal<byte[]>();
+
+    static final class Entry {
+        final long offset;      // the position of the local file header
+        final int compressedSize;
+        final int size;
+        final int method;
+
+        Entry(long offset, int compressedSize, int size, int method) {
+            this.offset = offset;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.method = method;
+        }
+    }
+
+    Map<String,Entry> jarfileEntries;
+    String jarfilePath;
     String jarfileURL;
 
+    /* The jar file kept open if ClassPool.cacheOpenedJarFile is true.
+     * It is not a FileChannel since an interrupt to a reading thread
+     * would close the channel.  It is guarded by this.
+     */
+    private RandomAccessFile jarfile;
+
+    /* Inflaters that are not being used.  They are reused by the threads
+     * reading this jar file and ended by close().
+     */
+    private final ArrayDeque<Inflater> inflaters = new ArrayDeque<Inflater>();
+
     JarClassPath(String pathname) throws NotFoundException {
-        JarFile jarfile = null;
+        RandomAccessFile jarfile = null;
         try {
-            jarfile = new JarFile(pathname);
-            jarfileEntries = new HashSet<String>();
-            for (JarEntry je: Collections.list(jarfile.entries()))
-                if (je.getName().endsWith(".class"))
-                    jarfileEntries.add(je.getName());
+            jarfile = new RandomAccessFile(pathname, "r");
+            jarfileEntries = readCentralDirectory(jarfile);
+            jarfilePath = pathname;
             jarfileURL = new File(pathname).getCanonicalFile()
                     .toURI().toURL().toString();
             return;
@@ -152,34 +250,318 @@ final class JarClassPath implements ClassPath {
         throw new NotFoundException(pathname);
     }
 
+    private static Map<String,Entry> readCentralDirectory(RandomAccessFile file)
+        throws IOException
+    {
+        long fileSize = file.length();
+        int tailSize = (int)Math.min(fileSize, END_HEADER_SIZE + 0xffff);
+        ByteBuffer tail = read(file, fileSize - tailSize, tailSize);
+        int end = tailSize - END_HEADER_SIZE;
+        while (end >= 0 && tail.getInt(end) != END_SIGNATURE)
+            end--;
+
+        if (end < 0)
+            throw new IOException("no end of central directory");
+
+        long endPos = fileSize - tailSize + end;
+        long count = tail.getShort(end + 10) & 0xffff;
+        long cenSize = tail.getInt(end + 12) & 0xffffffffL;
+        long cenOffset = tail.getInt(end + 16) & 0xffffffffL;
+        if ((count == 0xffff || cenSize == 0xffffffffL || cenOffset == 0xffffffffL)
+            && end >= ZIP64_LOCATOR_SIZE
+            && tail.getInt(end - ZIP64_LOCATOR_SIZE) == ZIP64_LOCATOR_SIGNATURE) {
+            long zip64EndPos = tail.getLong(end - ZIP64_LOCATOR_SIZE + 8);
+            ByteBuffer zip64End = read(file, zip64EndPos, ZIP64_END_HEADER_SIZE);
+            if (zip64End.getInt(0) != ZIP64_END_SIGNATURE)
+                throw new IOException("broken zip64 end of central directory");
+
+            count = zip64End.getLong(32);
+            cenSize = zip64End.getLong(40);
+            cenOffset = zip64End.getLong(48);
+            endPos = zip64EndPos;
+        }
+
+        if (cenSize > Integer.MAX_VALUE || cenSize > endPos)
+            throw new IOException("broken central directory");
+
+        // if some data is prepended to the archive, the offsets are relative.
+        long cenPos = endPos - cenSize;
+        long base = cenPos - cenOffset;
+        ByteBuffer cen = read(file, cenPos, (int)cenSize);
+        byte[] bytes = cen.array();
+        Map<String,Entry> entries
+            = new HashMap<String,Entry>((int)Math.min(count, 0x10000) * 4 / 3 + 1);
+        int limit = (int)cenSize - CEN_HEADER_SIZE;
+        int pos = 0;
+        while (pos <= limit && cen.getInt(pos) == CEN_SIGNATURE) {
+            int method = cen.getShort(pos + 10) & 0xffff;
+            long csize = cen.getInt(pos + 20) & 0xffffffffL;
+            long size = cen.getInt(pos + 24) & 0xffffffffL;
+            int nameLen = cen.getShort(pos + 28) & 0xffff;
+            int extraLen = cen.getShort(pos + 30) & 0xffff;
+            int commentLen = cen.getShort(pos + 32) & 0xffff;
+            long offset = cen.getInt(pos + 42) & 0xffffffffL;
+            int name = pos + CEN_HEADER_SIZE;
+            if (name + nameLen + extraLen > bytes.length)
+                throw new IOException("broken central directory");
+
+            if (isClassFileName(bytes, name, nameLen)) {
+                if (csize == 0xffffffffL || size == 0xffffffffL
+                    || offset == 0xffffffffL) {
+                    long[] values = { size, csize, offset };
+                    readZip64Extra(cen, name + nameLen, extraLen, values);
+                    size = values[0];
+                    csize = values[1];
+                    offset = values[2];
+                }
+
+                if (csize > Integer.MAX_VALUE || size > Integer.MAX_VALUE)
+                    throw new IOException("too large class file");
+
+                entries.put(new String(bytes, name, nameLen, StandardCharsets.UTF_8),
+                            new Entry(base + offset, (int)csize, (int)size, method));
+            }
+
+            pos = name + nameLen + extraLen + commentLen;
+        }
+
+        return entries;
+    }
+
+    private static boolean isClassFileName(byte[] bytes, int name, int len) {
+        int end = name + len;
+        return len > 6 && bytes[end - 6] == '.' && bytes[end - 5] == 'c'
+               && bytes[end - 4] == 'l' && bytes[end - 3] == 'a'
+               && bytes[end - 2] == 's' && bytes[end - 1] == 's';
+    }
+
+    /* values are the uncompressed size, the compressed size, and
+     * the offset.  The zip64 extra field contains only the values
+     * that are 0xffffffff in the central directory header.
+     */
+    private static void readZip64Extra(ByteBuffer cen, int pos, int len,
+                                       long[] values)
+    {
+        int end = pos + len;
+        while (pos + 4 <= end) {
+            int id = cen.getShort(pos) & 0xffff;
+            int size = cen.getShort(pos + 2) & 0xffff;
+            pos += 4;
+            if (id == 0x0001) {
+                int p = pos;
+                for (int i = 0; i < values.length; i++)
+                    if (values[i] == 0xffffffffL && p + 8 <= pos + size) {
+                        values[i] = cen.getLong(p);
+                        p += 8;
+                    }
+
+                return;
+            }
+
+            pos += size;
+        }
+    }
+
+    private static ByteBuffer read(RandomAccessFile file, long pos, int size)
+        throws IOException
+    {
+        return read(file, pos, size, new byte[size]);
+    }
+
     @Override
     public InputStream openClassfile(String classname)
             throws NotFoundException
     {
-        URL jarURL = find(classname);
-        if (null != jarURL)
+        byte[] bytes = readClassfile(classname);
+        return bytes == null ? null : new ByteArrayInputStream(bytes);
+    }
+
+    /* Returns the contents of the class file or null if it is not found.
+     */
+    byte[] readClassfile(String classname) throws NotFoundException {
+        Entry entry = jarfileEntries.get(classname.replace('.', '/') + ".class");
+        if (entry == null)
+            return null;
+
+        try {
+            return readEntry(entry);
+        }
+        catch (IOException e) {}
+        catch (DataFormatException e) {}
+
+        throw new NotFoundException("broken jar file?: " + classname);
+    }
+
+    /* The class files in META-INF/versions/ of a multi-release jar file
+     * are not listed.
+     */
+    @Override
+    public Collection<String> getClassNames() {
+        List<String> names = new ArrayList<String>(jarfileEntries.size());
+        for (String name: jarfileEntries.keySet())
+            if (!name.startsWith("META-INF/") && !name.equals("module-info.class"))
+                names.add(name.substring(0, name.length() - 6).replace('/', '.'));
+
+        return names;
+    }
+
+    private byte[] readEntry(Entry entry)
+        throws IOException, DataFormatException
+    {
+        if (entry.method != STORED && entry.method != DEFLATED)
+            throw new IOException("unsupported compression method");
+
+        ByteBuffer buf;
+        if (!ClassPool.cacheOpenedJarFile) {
+            RandomAccessFile file = new RandomAccessFile(jarfilePath, "r");
             try {
-                if (ClassPool.cacheOpenedJarFile)
-                    return jarURL.openConnection().getInputStream();
-                else {
-                    java.net.URLConnection con = jarURL.openConnection();
-                    con.setUseCaches(false);
-                    return con.getInputStream();
-                }
+                buf = readData(entry, file);
             }
-            catch (IOException e) {
-                throw new NotFoundException("broken jar file?: "
-                        + classname);
+            finally {
+                file.close();
             }
-        return null;
+        }
+        else
+            synchronized (this) {
+                if (jarfile == null)
+                    jarfile = new RandomAccessFile(jarfilePath, "r");
+
+                buf = readData(entry, jarfile);
+            }
+
+        return readEntry(entry, buf);
+    }
+
+    /* Reads the local file header and the contents of the entry.
+     * They are read at once unless the header has a long extra field.
+     * The remaining bytes of the returned buffer are the contents.
+     */
+    private static ByteBuffer readData(Entry entry, RandomAccessFile file)
+        throws IOException
+    {
+        long fileSize = file.length();
+        if (entry.offset + LOC_HEADER_SIZE > fileSize)
+            throw new IOException("broken local file header");
+
+        int len = (int)Math.min(fileSize - entry.offset,
+                                (long)LOC_HEADER_SIZE + LOC_EXTRA_SIZE + entry.compressedSize);
+        ByteBuffer buf = read(file, entry.offset, len, getInputBuffer(len));
+        int pos = dataOffset(buf, 0);
+        if (pos + entry.compressedSize > len)
+            return read(file, entry.offset + pos, entry.compressedSize,
+                        getInputBuffer(entry.compressedSize));
+
+        // the casts to Buffer are for running on Java 8
+        ((Buffer)buf).limit(pos + entry.compressedSize);
+        ((Buffer)buf).position(pos);
+        return buf;
+    }
+
+    private static byte[] getInputBuffer(int len) {
+        byte[] input = inputBuffer.get();
+        if (input == null || input.length < len) {
+            input = new byte[len];
+            if (len <= MAX_KEPT_BUFFER_SIZE)
+                inputBuffer.set(input);
+        }
+
+        return input;
+    }
+
+    private static ByteBuffer read(RandomAccessFile file, long pos, int size, byte[] array)
+        throws IOException
+    {
+        file.seek(pos);
+        file.readFully(array, 0, size);
+        return ByteBuffer.wrap(array, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int dataOffset(ByteBuffer buf, int header) throws IOException {
+        if (buf.getInt(header) != LOC_SIGNATURE)
+            throw new IOException("broken local file header");
+
+        return LOC_HEADER_SIZE + (buf.getShort(header + 26) & 0xffff)
+               + (buf.getShort(header + 28) & 0xffff);
+    }
+
+    /* Reads the contents of the entry.  The remaining bytes of the given
+     * buffer are the (compressed) contents.  The buffer is backed by
+     * an array.
+     */
+    private byte[] readEntry(Entry entry, ByteBuffer buf)
+        throws IOException, DataFormatException
+    {
+        byte[] data = new byte[entry.size];
+        if (entry.method == STORED) {
+            buf.get(data);
+            return data;
+        }
+
+        Inflater inflater = getInflater();
+        try {
+            inflater.setInput(buf.array(), buf.arrayOffset() + buf.position(),
+                              entry.compressedSize);
+            int size = 0;
+            while (size < data.length) {
+                int n = inflater.inflate(data, size, data.length - size);
+                if (n == 0 && (inflater.finished() || inflater.needsInput()
+                               || inflater.needsDictionary()))
+                    throw new IOException("broken compressed data");
+
+                size += n;
+            }
+
+            return data;
+        }
+        finally {
+            releaseInflater(inflater);
+        }
+    }
+
+    private Inflater getInflater() {
+        synchronized (inflaters) {
+            Inflater inflater = inflaters.poll();
+            if (inflater != null)
+                return inflater;
+        }
+
+        return new Inflater(true);
+    }
+
+    private void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        synchronized (inflaters) {
+            inflaters.push(inflater);
+        }
+    }
+
+    /* Closes the jar file if it is open and releases the inflaters.
+     * The jar file is opened again if a class file is read later.
+     */
+    void close() {
+        synchronized (this) {
+            RandomAccessFile file = jarfile;
+            jarfile = null;
+            if (file != null)
+                try {
+                    file.close();
+                }
+                catch (IOException e) {}
+        }
+
+        synchronized (inflaters) {
+            Inflater inflater;
+            while ((inflater = inflaters.poll()) != null)
+                inflater.end();
+        }
     }
 
     @Override
     public URL find(String classname) {
         String jarname = classname.replace('.', '/') + ".class";
-        if (jarfileEntries.contains(jarname))
+        if (jarfileEntries.containsKey(jarname))
             try {
-                return new URL(String.format("jar:%s!/%s", jarfileURL, jarname));
+                return new URL("jar:" + jarfileURL + "!/" + jarname);
             }
             catch (MalformedURLException e) {}
         return null;            // not found
@@ -245,6 +627,29 @@ final class ClassPoolTail {
                     else
                         list = list.next;
             }
+
+        if (cp instanceof JarClassPath)
+            ((JarClassPath)cp).close();
+        else if (cp instanceof JarDirClassPath)
+            ((JarDirClassPath)cp).close();
+    }
+
+    /* Returns the class paths in the search order.  The jar files
+     * in a JarDirClassPath are returned as separate class paths.
+     */
+    synchronized List<ClassPath> getClassPaths() {
+        List<ClassPath> paths = new ArrayList<ClassPath>();
+        for (ClassPathList list = pathList; list != null; list = list.next)
+            if (list.path instanceof JarDirClassPath) {
+                JarClassPath[] jars = ((JarDirClassPath)list.path).jars;
+                if (jars != null)
+                    for (JarClassPath jar: jars)
+                        paths.add(jar);
+            }
+            else
+                paths.add(list.path);
+
+        return paths;
     }
 
     public ClassPath appendSystemPath() {
@@ -377,6 +782,32 @@ final class ClassPoolTail {
         return null;
     }
 
+    /**
+     * Reads a class file through the given class path.
+     * A class file in a jar file is read without an input stream.
+     */
+    static byte[] readClassfile(ClassPath path, String classname)
+        throws NotFoundException, IOException
+    {
+        if (path instanceof JarClassPath) {
+            byte[] bytes = ((JarClassPath)path).readClassfile(classname);
+            if (bytes != null)
+                return bytes;
+        }
+        else {
+            InputStream in = path.openClassfile(classname);
+            if (in != null)
+                try {
+                    return readStream(in);
+                }
+                finally {
+                    in.close();
+                }
+        }
+
+        throw new NotFoundException(classname);
+    }
+
     /**
      * Reads from an input stream until it reaches the end.
      *
@@ -199,6 +199,27 @@ public abstract class CtBehavior extends CtMember {
                                             ainfo, ainfo2);
     }
 
+    /**
+     * Returns true if the specified parameter has the specified
+     * annotation type.  Only the types of the annotations are read.
+     *
+     * @param index         the parameter index.  The index of the first
+     *                      parameter is 0.
+     * @param typeName      the name of annotation type.
+     * @return <code>true</code> if the annotation is found,
+     *         otherwise <code>false</code>.
+     * @since 3.31
+     */
+    public boolean hasParameterAnnotation(int index, String typeName) {
+       MethodInfo mi = getMethodInfo2();
+       ParameterAnnotationsAttribute ainfo = (ParameterAnnotationsAttribute)
+                   mi.getAttribute(ParameterAnnotationsAttribute.invisibleTag);
+       ParameterAnnotationsAttribute ainfo2 = (ParameterAnnotationsAttribute)
+                   mi.getAttribute(ParameterAnnotationsAttribute.visibleTag);
+       return (ainfo != null && ainfo.hasAnnotation(index, typeName))
+              || (ainfo2 != null && ainfo2.hasAnnotation(index, typeName));
+    }
+
     /**
      * Returns the annotation if the class has the specified annotation class.
      * For example, if an annotation <code>@Author</code> is associated
@@ -458,8 +479,8 @@ public abstract class CtBehavior extends CtMember {
     {
         CtClass cc = declaringClass;
         cc.checkModify();
+        Javac jv = Javac.obtain(cc);
         try {
-            Javac jv = new Javac(cc);
             if (delegateMethod != null)
                 jv.recordProceed(delegateObj, delegateMethod);
 
@@ -475,6 +496,9 @@ public abstract class CtBehavior extends CtMember {
         } catch (BadBytecode e) {
             throw new CannotCompileException(e);
         }
+        finally {
+            jv.release();
+        }
     }
 
     static void setBody0(CtClass srcClass, MethodInfo srcInfo,
@@ -648,6 +672,7 @@ public abstract class CtBehavior extends CtMember {
         }
 
         methodInfo.setDescriptor(desc2);
+        declaringClass.membersChanged();
     }
 
     /**
@@ -668,6 +693,7 @@ public abstract class CtBehavior extends CtMember {
         }
 
         methodInfo.setDescriptor(desc2);
+        declaringClass.membersChanged();
     }
 
     private void addParameter2(int where, CtClass type, String desc)
@@ -776,7 +802,7 @@ public abstract class CtBehavior extends CtMember {
             throw new CannotCompileException("no method body");
 
         CodeIterator iterator = ca.iterator();
-        Javac jv = new Javac(cc);
+        Javac jv = Javac.obtain(cc);
         try {
             int nvars = jv.recordParams(getParameterTypes(),
                                         Modifier.isStatic(getModifiers()));
@@ -808,6 +834,9 @@ public abstract class CtBehavior extends CtMember {
         catch (BadBytecode e) {
             throw new CannotCompileException(e);
         }
+        finally {
+            jv.release();
+        }
     }
 
     /**
@@ -879,7 +908,8 @@ public abstract class CtBehavior extends CtMember {
         int retAddr = ca.getMaxLocals();
         Bytecode b = new Bytecode(pool, 0, retAddr + 1);
         b.setStackDepth(ca.getMaxStack() + 1);
-        Javac jv = new Javac(b, cc);
+        Javac jv = Javac.obtain(b, cc);
+        Javac jv2 = null;       // reused for the second and later returns.
         try {
             int nvars = jv.recordParams(getParameterTypes(),
                                         Modifier.isStatic(getModifiers()));
@@ -921,7 +951,12 @@ public abstract class CtBehavior extends CtMember {
                         else {
                             bcode = new Bytecode(pool, 0, retAddr + 1);
                             bcode.setStackDepth(ca.getMaxStack() + 1);
-                            jvc = new Javac(bcode, cc);
+                            if (jv2 == null)
+                                jv2 = Javac.obtain(bcode, cc);
+                            else
+                                jv2.reset(bcode, cc);
+
+                            jvc = jv2;
                             int nvars2 = jvc.recordParams(getParameterTypes(),
                                                           Modifier.isStatic(getModifiers()));
                             jvc.recordParamNames(ca, nvars2);
@@ -972,6 +1007,11 @@ public abstract class CtBehavior extends CtMember {
         catch (BadBytecode e) {
             throw new CannotCompileException(e);
         }
+        finally {
+            jv.release();
+            if (jv2 != null)
+                jv2.release();
+        }
     }
 
     private int insertAfterAdvice(Bytecode code, Javac jv, String src,
@@ -1170,7 +1210,7 @@ public abstract class CtBehavior extends CtMember {
         CodeIterator iterator = ca.iterator();
         Bytecode b = new Bytecode(cp, ca.getMaxStack(), ca.getMaxLocals());
         b.setStackDepth(1);
-        Javac jv = new Javac(b, cc);
+        Javac jv = Javac.obtain(b, cc);
         try {
             jv.recordParams(getParameterTypes(),
                             Modifier.isStatic(getModifiers()));
@@ -1202,6 +1242,9 @@ public abstract class CtBehavior extends CtMember {
         } catch (BadBytecode e) {
             throw new CannotCompileException(e);
         }
+        finally {
+            jv.release();
+        }
     }
 
     /* CtConstructor overrides this method.
@@ -1276,7 +1319,7 @@ public abstract class CtBehavior extends CtMember {
         CtClass cc = declaringClass;
         cc.checkModify();
         CodeIterator iterator = ca.iterator();
-        Javac jv = new Javac(cc);
+        Javac jv = Javac.obtain(cc);
         try {
             jv.recordLocalVariables(ca, index);
             jv.recordParams(getParameterTypes(),
@@ -1308,5 +1351,8 @@ public abstract class CtBehavior extends CtMember {
         catch (BadBytecode e) {
             throw new CannotCompileException(e);
         }
+        finally {
+            jv.release();
+        }
     }
 }
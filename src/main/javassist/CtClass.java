@@ -17,7 +17,6 @@
 package javassist;
 
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -28,7 +27,9 @@ import java.security.ProtectionDomain;
 import java.util.Collection;
 
 import javassist.bytecode.ClassFile;
+import javassist.bytecode.ClassFileOutput;
 import javassist.bytecode.Descriptor;
+import javassist.compiler.MemberResolver;
 import javassist.bytecode.Opcode;
 import javassist.expr.ExprEditor;
 
@@ -301,6 +302,13 @@ public abstract class CtClass {
         // isModified() must return true after this method is invoked.
     }
 
+    /* Discards the methods and the fields that the compiler has found
+     * in the class pool since they might be changed.
+     */
+    void membersChanged() {
+        MemberResolver.clearLookupCache(getClassPool());
+    }
+
     /**
      * Defrosts the class so that the class can be modified again.
      *
@@ -354,6 +362,8 @@ public abstract class CtClass {
      * Returns <code>true</code> if this class extends or implements
      * <code>clazz</code>.  It also returns <code>true</code> if
      * this class is the same as <code>clazz</code>.
+     *
+     * @see ClassPool#getSubtypes(CtClass)
      */
     public boolean subtypeOf(CtClass clazz) throws NotFoundException {
         return this == clazz || getName().equals(clazz.getName());
@@ -1353,6 +1363,28 @@ public abstract class CtClass {
         return getClassPool().toClass(this, lookup);
     }
 
+    /**
+     * Converts this class to a hidden class.
+     * Once this method is called, further modifications are not
+     * allowed any more.
+     *
+     * <p>This method is available in Java 15 or later.
+     * The class must belong to the package of the lookup class.
+     *
+     * <p>Note: this method calls <code>toHiddenClass()</code>
+     * in <code>ClassPool</code>.
+     *
+     * @param lookup    used when defining the class.  It has to have
+     *                  the full privilege access.
+     * @see ClassPool#toHiddenClass(CtClass,java.lang.invoke.MethodHandles.Lookup)
+     * @since 3.31
+     */
+    public Class<?> toHiddenClass(java.lang.invoke.MethodHandles.Lookup lookup)
+        throws CannotCompileException
+    {
+        return getClassPool().toHiddenClass(this, lookup);
+    }
+
     /**
      * Converts this class to a <code>java.lang.Class</code> object.
      * Once this method is called, further modifications are not allowed
@@ -1427,6 +1459,14 @@ public abstract class CtClass {
         CtClass obj = cp.removeCached(getName());
         if (obj != null && obj != this)
             cp.cacheCtClass(getName(), obj, false);
+        else {
+            EvictionPolicy policy = cp.evictionPolicy;
+            if (policy != null)
+                policy.removed(this);
+
+            cp.hierarchyChanged();
+            membersChanged();
+        }
     }
 
     /**
@@ -1487,6 +1527,32 @@ public abstract class CtClass {
      */
     public void prune() {}
 
+    /**
+     * Releases the <code>ClassFile</code> object of the class if the class
+     * is frozen or it has not been modified.  Only the bytes of the class
+     * file are kept.  The name, the modifiers, the super class, the
+     * interfaces, and the annotation types of the class are obtained
+     * from those bytes without reconstructing the <code>ClassFile</code>
+     * object.  Looking up a field or a method by a name that the class
+     * does not declare does not reconstruct it, either.
+     * Other operations such as <code>getDeclaredMethods()</code>
+     * reconstruct the <code>ClassFile</code> object.
+     *
+     * <p>If the class is frozen, the <code>CtField</code>,
+     * <code>CtMethod</code>, and <code>CtConstructor</code> objects
+     * obtained before calling this method are no longer connected to
+     * the class.  They must not be modified even after
+     * <code>defrost()</code> is called.
+     * If the class is not frozen, this method does nothing while those
+     * objects are in use.
+     * This method does nothing if the class has been pruned.
+     *
+     * @see #freeze()
+     * @see #prune()
+     * @since 3.31
+     */
+    public void compact() {}
+
     /* Called by get() in ClassPool.
      * CtClassType overrides this method.
      */
@@ -1515,8 +1581,7 @@ public abstract class CtClass {
      * @return the contents of the class file.
      */
     public byte[] toBytecode() throws IOException, CannotCompileException {
-        ByteArrayOutputStream barray = new ByteArrayOutputStream();
-        DataOutputStream out = new DataOutputStream(barray);
+        ClassFileOutput out = new ClassFileOutput();
         try {
             toBytecode(out);
         }
@@ -1524,7 +1589,7 @@ public abstract class CtClass {
             out.close();
         }
 
-        return barray.toByteArray();
+        return out.toByteArray();
     }
 
     /**
@@ -16,9 +16,6 @@
 
 package javassist;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -28,12 +25,14 @@ import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javassist.bytecode.AccessFlag;
+import javassist.bytecode.AnnotationIndex;
 import javassist.bytecode.AnnotationsAttribute;
 import javassist.bytecode.AttributeInfo;
 import javassist.bytecode.BadBytecode;
@@ -47,6 +46,7 @@ import javassist.bytecode.Descriptor;
 import javassist.bytecode.EnclosingMethodAttribute;
 import javassist.bytecode.FieldInfo;
 import javassist.bytecode.InnerClassesAttribute;
+import javassist.bytecode.LazyClassFile;
 import javassist.bytecode.MethodInfo;
 import javassist.bytecode.ParameterAnnotationsAttribute;
 import javassist.bytecode.SignatureAttribute;
@@ -68,9 +68,21 @@ class CtClassType extends CtClass {
     ClassFile classfile;
     byte[] rawClassfile;    // backup storage
 
+    /* A read-only view of the class file.  It is used only while
+       classfile is null.  getClassFile2() constructs classfile from it.
+     */
+    private LazyClassFile lazyClassfile;
+    private int classfileSize;      // the length of the class file read last
+
     private Reference<CtMember.Cache> memberCache;
     private AccessorMaker accessors;
 
+    /* The names of all the super types.  It is valid only while
+       the hierarchy version of the class pool is not changed.
+       See subtypeOf().
+     */
+    private Supertypes supertypes;
+
     private FieldInitLink fieldInitializers;
     private Map<CtMethod,String> hiddenMethods;    // must be synchronous
     private int uniqueNumberSeed;
@@ -85,6 +97,7 @@ class CtClassType extends CtClass {
         wasChanged = wasFrozen = wasPruned = gcConstPool = false;
         classfile = null;
         rawClassfile = null;
+        lazyClassfile = null;
         memberCache = null;
         accessors = null;
         fieldInitializers = null;
@@ -96,12 +109,14 @@ class CtClassType extends CtClass {
     CtClassType(InputStream ins, ClassPool cp) throws IOException {
         this((String)null, cp);
         classfile = new ClassFile(new DataInputStream(ins));
+        cp.watch(classfile);
         qualifiedName = classfile.getName();
     }
 
     CtClassType(ClassFile cf, ClassPool cp) {
         this((String)null, cp);
         classfile = cf;
+        cp.watch(cf);
         qualifiedName = classfile.getName();
     }
 
@@ -195,12 +210,14 @@ class CtClassType extends CtClass {
                 return cfile;
 
             rcfile = rawClassfile;
+            if (rcfile == null && lazyClassfile != null)
+                rcfile = lazyClassfile.getBytes();
         }
 
         if (rcfile != null) {
             final ClassFile cf;
             try {
-                cf = new ClassFile(new DataInputStream(new ByteArrayInputStream(rcfile)));
+                cf = new ClassFile(rcfile);
             }
             catch (IOException e) {
                 throw new RuntimeException(e.toString(), e);
@@ -212,27 +229,83 @@ class CtClassType extends CtClass {
             }
         }
 
+        try {
+            byte[] bytes = readClassfile();
+            AnnotationIndex index = classPool.annotationIndex;
+            if (index != null)
+                index.add(new LazyClassFile(bytes));
+
+            ClassFile cf = new ClassFile(bytes);
+            checkClassName(cf.getName());
+            return setClassFile(cf);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the class file if the class file
+     * has not been parsed yet.  Otherwise, this method returns null
+     * and the caller should use {@code getClassFile2()}.
+     */
+    private LazyClassFile getLazyClassFile() {
+        if (classfile != null)
+            return null;
+
+        byte[] rcfile;
+        synchronized (this) {
+            if (classfile != null)
+                return null;
+
+            if (lazyClassfile != null)
+                return lazyClassfile;
+
+            rcfile = rawClassfile;
+        }
+
+        LazyClassFile lcf;
+        try {
+            if (rcfile != null)
+                lcf = new LazyClassFile(rcfile);
+            else {
+                lcf = new LazyClassFile(readClassfile());
+                checkClassName(lcf.getName());
+                AnnotationIndex index = classPool.annotationIndex;
+                if (index != null)
+                    index.add(lcf);
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+
+        synchronized (this) {
+            if (classfile != null)
+                return null;
+
+            if (lazyClassfile == null)
+                lazyClassfile = lcf;
+
+            return lazyClassfile;
+        }
+    }
+
+    private byte[] readClassfile() throws IOException {
         InputStream fin = null;
         try {
             fin = classPool.openClassfile(getName());
             if (fin == null)
                 throw new NotFoundException(getName());
 
-            fin = new BufferedInputStream(fin);
-            ClassFile cf = new ClassFile(new DataInputStream(fin));
-            if (!cf.getName().equals(qualifiedName))
-                throw new RuntimeException("cannot find " + qualifiedName + ": " 
-                        + cf.getName() + " found in "
-                        + qualifiedName.replace('.', '/') + ".class");
-
-            return setClassFile(cf);
+            byte[] bytes = ClassPoolTail.readStream(fin);
+            classfileSize = bytes.length;
+            classPool.classAccessed(this);
+            return bytes;
         }
         catch (NotFoundException e) {
             throw new RuntimeException(e.toString(), e);
         }
-        catch (IOException e) {
-            throw new RuntimeException(e.toString(), e);
-        }
         finally {
             if (fin != null)
                 try {
@@ -242,6 +315,18 @@ class CtClassType extends CtClass {
         }
     }
 
+    /* Returns the length of the class file or 0 if it has not been read.
+     * See ClassPool#classAccessed().
+     */
+    int getClassfileSize() { return classfileSize; }
+
+    private void checkClassName(String name) {
+        if (!name.equals(qualifiedName))
+            throw new RuntimeException("cannot find " + qualifiedName + ": " 
+                    + name + " found in "
+                    + qualifiedName.replace('.', '/') + ".class");
+    }
+
    /* Inherited from CtClass.  Called by get() in ClassPool.
     *
     * @see javassist.CtClass#incGetCounter()
@@ -276,29 +361,91 @@ class CtClassType extends CtClass {
         if (classfile == null || hasMemberCache() != null)
             return;
 
-        ByteArrayOutputStream barray = new ByteArrayOutputStream();
-        DataOutputStream out = new DataOutputStream(barray);
         try {
-            classfile.write(out);
-            barray.close();
-            rawClassfile = barray.toByteArray();
+            rawClassfile = classfile.toBytecode();
             classfile = null;
         }
         catch (IOException e) {}
     }
 
+    @Override
+    public synchronized void compact() {
+        if (wasPruned || (isModified() && !isFrozen())
+            || (!isFrozen() && hasMemberCache() != null))
+            return;
+
+        byte[] bytes;
+        if (classfile != null)
+            try {
+                bytes = classfile.toBytecode();
+            }
+            catch (IOException e) {
+                return;
+            }
+        else if (rawClassfile != null)
+            bytes = rawClassfile;
+        else
+            return;     // already compact or not read yet.
+
+        try {
+            lazyClassfile = new LazyClassFile(bytes);
+        }
+        catch (IOException e) {
+            return;
+        }
+
+        classfile = null;
+        rawClassfile = null;
+        memberCache = null;
+    }
+
+    /* Returns false if the class file has not been parsed and
+     * the class does not declare a field with the given name.
+     */
+    private boolean mayDeclareField(String name) {
+        LazyClassFile lcf = getLazyClassFile();
+        if (lcf == null)
+            return true;
+
+        for (int i = lcf.getFieldCount() - 1; i >= 0; i--)
+            if (name.equals(lcf.getFieldName(i)))
+                return true;
+
+        return false;
+    }
+
+    /* Returns false if the class file has not been parsed and
+     * the class does not declare a method with the given name.
+     */
+    private boolean mayDeclareMethod(String name) {
+        LazyClassFile lcf = getLazyClassFile();
+        if (lcf == null)
+            return true;
+
+        for (int i = lcf.getMethodCount() - 1; i >= 0; i--)
+            if (name.equals(lcf.getMethodName(i)))
+                return true;
+
+        return false;
+    }
+
     private synchronized void removeClassFile() {
         if (classfile != null && !isModified() && hasMemberCache() == null)
             classfile = null;
+
+        lazyClassfile = null;
     }
 
     /**
      * Updates {@code classfile} if it is null.
      */
     private synchronized ClassFile setClassFile(ClassFile cf) {
-        if (classfile == null)
+        if (classfile == null) {
             classfile = cf;
+            classPool.watch(cf);
+        }
 
+        lazyClassfile = null;
         return classfile;
     }
 
@@ -350,12 +497,16 @@ class CtClassType extends CtClass {
         if (this == clazz || getName().equals(cname))
             return true;
 
-        ClassFile file = getClassFile2();
-        String supername = file.getSuperclass();
+        Set<String> names = getSupertypeNames();
+        if (names != null)
+            return names.contains(cname);
+
+        // some super type is not found.
+        String supername = getSuperclassName();
         if (supername != null && supername.equals(cname))
             return true;
 
-        String[] ifs = file.getInterfaces();
+        String[] ifs = getInterfaceNames();
         int num = ifs.length;
         for (i = 0; i < num; ++i)
             if (ifs[i].equals(cname))
@@ -371,6 +522,61 @@ class CtClassType extends CtClass {
         return false;
     }
 
+    static class Supertypes {
+        final int version;
+        final Set<String> names;    // null if some super type is not found
+
+        Supertypes(int version, Set<String> names) {
+            this.version = version;
+            this.names = names;
+        }
+    }
+
+    /* Returns the names of this class and all its super classes and
+     * interfaces, or null if some of them are not found.
+     * The result is recorded until the hierarchy of the classes
+     * in the class pool (or its parents) is changed.
+     */
+    Set<String> getSupertypeNames() {
+        int version = classPool.hierarchyVersion();
+        Supertypes s = supertypes;
+        if (s != null && s.version == version)
+            return s.names;
+
+        Set<String> names = new HashSet<String>();
+        names.add(getName());
+        boolean found = true;
+        String supername = getSuperclassName();
+        if (supername != null)
+            found = addSupertypeNames(names, supername);
+
+        String[] ifs = getInterfaceNames();
+        for (int i = 0; found && i < ifs.length; ++i)
+            found = addSupertypeNames(names, ifs[i]);
+
+        if (!found)
+            names = null;
+
+        supertypes = new Supertypes(version, names);
+        return names;
+    }
+
+    private boolean addSupertypeNames(Set<String> names, String classname) {
+        if (names.contains(classname))
+            return true;
+
+        CtClass c = classPool.getOrNull(classname);
+        if (!(c instanceof CtClassType))
+            return false;
+
+        Set<String> supers = ((CtClassType)c).getSupertypeNames();
+        if (supers == null)
+            return false;
+
+        names.addAll(supers);
+        return true;
+    }
+
     @Override
     public void setName(String name) throws RuntimeException {
         String oldname = getName();
@@ -455,10 +661,19 @@ class CtClassType extends CtClass {
 
     @Override
     public int getModifiers() {
-        ClassFile cf = getClassFile2();
-        int acc = cf.getAccessFlags();
+        int acc, inner;
+        LazyClassFile lcf = getLazyClassFile();
+        if (lcf == null) {
+            ClassFile cf = getClassFile2();
+            acc = cf.getAccessFlags();
+            inner = cf.getInnerAccessFlags();
+        }
+        else {
+            acc = lcf.getAccessFlags();
+            inner = lcf.getInnerAccessFlags();
+        }
+
         acc = AccessFlag.clear(acc, AccessFlag.SUPER);
-        int inner = cf.getInnerAccessFlags();
         if (inner != -1) {
             if ((inner & AccessFlag.STATIC) != 0)
                 acc |= AccessFlag.STATIC;
@@ -505,6 +720,7 @@ class CtClassType extends CtClass {
         updateInnerEntry(mod, getName(), this, true);
         ClassFile cf = getClassFile2();
         cf.setAccessFlags(AccessFlag.of(mod & ~Modifier.STATIC));
+        membersChanged();
     }
 
     private static void updateInnerEntry(int newMod, String name, CtClass clazz, boolean outer) {
@@ -545,6 +761,10 @@ class CtClassType extends CtClass {
 
     @Override
     public boolean hasAnnotation(String annotationName) {
+        LazyClassFile lcf = getLazyClassFile();
+        if (lcf != null)
+            return lcf.hasAnnotation(annotationName);
+
         ClassFile cf = getClassFile2();
         AnnotationsAttribute ainfo = (AnnotationsAttribute)
                 cf.getAttribute(AnnotationsAttribute.invisibleTag);
@@ -568,29 +788,8 @@ class CtClassType extends CtClass {
                                      AnnotationsAttribute a1,
                                      AnnotationsAttribute a2)
     {
-        Annotation[] anno1, anno2;
-
-        if (a1 == null)
-            anno1 = null;
-        else
-            anno1 = a1.getAnnotations();
-
-        if (a2 == null)
-            anno2 = null;
-        else
-            anno2 = a2.getAnnotations();
-
-        if (anno1 != null)
-            for (int i = 0; i < anno1.length; i++)
-                if (anno1[i].getTypeName().equals(annotationTypeName))
-                    return true;
-
-        if (anno2 != null)
-            for (int i = 0; i < anno2.length; i++)
-                if (anno2[i].getTypeName().equals(annotationTypeName))
-                    return true;
-
-        return false;
+        return (a1 != null && a1.hasAnnotation(annotationTypeName))
+               || (a2 != null && a2.hasAnnotation(annotationTypeName));
     }
 
     @Override
@@ -823,12 +1022,31 @@ class CtClassType extends CtClass {
 
     @Override
     public CtClass getSuperclass() throws NotFoundException {
-        String supername = getClassFile2().getSuperclass();
+        String supername = getSuperclassName();
         if (supername == null)
             return null;
         return classPool.get(supername);
     }
 
+    /* getSuperclassName() and getInterfaceNames() do not parse
+     * the whole class file if it has not been parsed yet.
+     */
+    private String getSuperclassName() {
+        LazyClassFile lcf = getLazyClassFile();
+        if (lcf == null)
+            return getClassFile2().getSuperclass();
+        else
+            return lcf.getSuperclass();
+    }
+
+    private String[] getInterfaceNames() {
+        LazyClassFile lcf = getLazyClassFile();
+        if (lcf == null)
+            return getClassFile2().getInterfaces();
+        else
+            return lcf.getInterfaces();
+    }
+
     @Override
     public void setSuperclass(CtClass clazz) throws CannotCompileException {
         checkModify();
@@ -836,11 +1054,14 @@ class CtClassType extends CtClass {
             addInterface(clazz);
         else
             getClassFile2().setSuperclass(clazz.getName());
+
+        classPool.hierarchyChanged();
+        membersChanged();
     }
 
     @Override
     public CtClass[] getInterfaces() throws NotFoundException {
-        String[] ifs = getClassFile2().getInterfaces();
+        String[] ifs = getInterfaceNames();
         int num = ifs.length;
         CtClass[] ifc = new CtClass[num];
         for (int i = 0; i < num; ++i)
@@ -863,13 +1084,18 @@ class CtClassType extends CtClass {
         }
 
         getClassFile2().setInterfaces(ifs);
+        classPool.hierarchyChanged();
+        membersChanged();
     }
 
     @Override
     public void addInterface(CtClass anInterface) {
         checkModify();
-        if (anInterface != null)
+        if (anInterface != null) {
             getClassFile2().addInterface(anInterface.getName());
+            classPool.hierarchyChanged();
+            membersChanged();
+        }
     }
 
     @Override
@@ -949,6 +1175,10 @@ class CtClassType extends CtClass {
     /* flush cached names.
      */
     private void nameReplaced() {
+        // the cached bytecode is not reused since the hierarchy version changes.
+        classPool.hierarchyChanged();
+        membersChanged();
+
         CtMember.Cache cache = hasMemberCache();
         if (cache != null) {
             CtMember mth = cache.methodHead();
@@ -1099,6 +1329,9 @@ class CtClassType extends CtClass {
     }
 
     private CtField getDeclaredField2(String name, String desc) {
+        if (!mayDeclareField(name))
+            return null;
+
         CtMember.Cache memCache = getMembers();
         CtMember field = memCache.fieldHead();
         CtMember tail = memCache.lastField();
@@ -1280,7 +1513,8 @@ class CtClassType extends CtClass {
 
     private static CtMethod getMethod0(CtClass cc,
                                        String name, String desc) {
-        if (cc instanceof CtClassType) {
+        if (cc instanceof CtClassType
+            && ((CtClassType)cc).mayDeclareMethod(name)) {
             CtMember.Cache memCache = ((CtClassType)cc).getMembers();
             CtMember mth = memCache.methodHead();
             CtMember mthTail = memCache.lastMethod();
@@ -1331,6 +1565,9 @@ class CtClassType extends CtClass {
 
     @Override
     public CtMethod[] getDeclaredMethods(String name) throws NotFoundException {
+        if (!mayDeclareMethod(name))
+            return new CtMethod[0];
+
         CtMember.Cache memCache = getMembers();
         CtMember mth = memCache.methodHead();
         CtMember mthTail = memCache.lastMethod();
@@ -1346,6 +1583,10 @@ class CtClassType extends CtClass {
 
     @Override
     public CtMethod getDeclaredMethod(String name) throws NotFoundException {
+        if (!mayDeclareMethod(name))
+            throw new NotFoundException(name + "(..) is not found in "
+                                        + getName());
+
         CtMember.Cache memCache = getMembers();
         CtMember mth = memCache.methodHead();
         CtMember mthTail = memCache.lastMethod();
@@ -1363,6 +1604,10 @@ class CtClassType extends CtClass {
     public CtMethod getDeclaredMethod(String name, CtClass[] params)
         throws NotFoundException
     {
+        if (!mayDeclareMethod(name))
+            throw new NotFoundException(name + "(..) is not found in "
+                                        + getName());
+
         String desc = Descriptor.ofParameters(params);
         CtMember.Cache memCache = getMembers();
         CtMember mth = memCache.methodHead();
@@ -1414,6 +1659,7 @@ class CtClassType extends CtClass {
 
         getMembers().addField(f);
         getClassFile2().addField(f.getFieldInfo2());
+        membersChanged();
 
         if (init != null) {
             FieldInitLink fil = new FieldInitLink(f, init);
@@ -1437,6 +1683,7 @@ class CtClassType extends CtClass {
         if (cf.getFields().remove(fi)) {
             getMembers().remove(f);
             gcConstPool = true;
+            membersChanged();
         }
         else
             throw new NotFoundException(f.toString());
@@ -1467,6 +1714,7 @@ class CtClassType extends CtClass {
 
         getMembers().addConstructor(c);
         getClassFile2().addMethod(c.getMethodInfo2());
+        membersChanged();
     }
 
     @Override
@@ -1477,6 +1725,7 @@ class CtClassType extends CtClass {
         if (cf.getMethods().remove(mi)) {
             getMembers().remove(m);
             gcConstPool = true;
+            membersChanged();
         }
         else
             throw new NotFoundException(m.toString());
@@ -1499,6 +1748,7 @@ class CtClassType extends CtClass {
 
         getMembers().addMethod(m);
         getClassFile2().addMethod(m.getMethodInfo2());
+        membersChanged();
         if ((mod & Modifier.ABSTRACT) != 0)
             setModifiers(getModifiers() | Modifier.ABSTRACT);
     }
@@ -1512,6 +1762,7 @@ class CtClassType extends CtClass {
         if (cf.getMethods().remove(mi)) {
             getMembers().remove(m);
             gcConstPool = true;
+            membersChanged();
         }
         else
             throw new NotFoundException(m.toString());
@@ -163,7 +163,7 @@ public class CtField extends CtMember {
     public static CtField make(String src, CtClass declaring)
         throws CannotCompileException
     {
-        Javac compiler = new Javac(declaring);
+        Javac compiler = Javac.obtain(declaring);
         try {
             CtMember obj = compiler.compile(src);
             if (obj instanceof CtField)
@@ -172,6 +172,9 @@ public class CtField extends CtMember {
         catch (CompileError e) {
             throw new CannotCompileException(e);
         }
+        finally {
+            compiler.release();
+        }
 
         throw new CannotCompileException("not a field");
     }
@@ -228,6 +231,7 @@ public class CtField extends CtMember {
     public void setName(String newName) {
         declaringClass.checkModify();
         fieldInfo.setName(newName);
+        declaringClass.membersChanged();
     }
 
     /**
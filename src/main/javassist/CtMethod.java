@@ -223,6 +223,7 @@ public final class CtMethod extends CtBehavior {
     public void setName(String newname) {
         declaringClass.checkModify();
         methodInfo.setName(newname);
+        declaringClass.membersChanged();
     }
 
     /**
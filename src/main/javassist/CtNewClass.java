@@ -37,6 +37,7 @@ class CtNewClass extends CtClassType {
             superName = superclass.getName();
 
         classfile = new ClassFile(isInterface, name, superName);
+        cp.watch(classfile);
         if (isInterface && superclass != null)
             classfile.setInterfaces(new String[] { superclass.getName() });
 
@@ -66,7 +66,7 @@ public class CtNewConstructor {
     public static CtConstructor make(String src, CtClass declaring)
         throws CannotCompileException
     {
-        Javac compiler = new Javac(declaring);
+        Javac compiler = Javac.obtain(declaring);
         try {
             CtMember obj = compiler.compile(src);
             declaring.addLines(src.split("\n").length);
@@ -78,6 +78,9 @@ public class CtNewConstructor {
         catch (CompileError e) {
             throw new CannotCompileException(e);
         }
+        finally {
+            compiler.release();
+        }
 
         throw new CannotCompileException("not a constructor");
     }
@@ -71,7 +71,7 @@ public class CtNewMethod {
                                 String delegateObj, String delegateMethod)
         throws CannotCompileException
     {
-        Javac compiler = new Javac(declaring);
+        Javac compiler = Javac.obtain(declaring);
         try {
             if (delegateMethod != null)
                 compiler.recordProceed(delegateObj, delegateMethod);
@@ -84,6 +84,9 @@ public class CtNewMethod {
         catch (CompileError e) {
             throw new CannotCompileException(e);
         }
+        finally {
+            compiler.release();
+        }
 
         throw new CannotCompileException("not a method");
     }
@@ -0,0 +1,72 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist;
+
+/**
+ * <code>EvictionPolicy</code> is an interface implemented by objects
+ * deciding which <code>CtClass</code> objects are removed from the cache
+ * of a <code>ClassPool</code>.
+ *
+ * <p>A <code>ClassPool</code> with a policy reports to the policy
+ * every <code>CtClass</code> object it returns from <code>get()</code>
+ * and every class file it reads.  Then it asks the policy for classes
+ * to evict.  Only the classes that are neither modified nor frozen are
+ * evicted.  When <code>get()</code> is called later on an evicted class,
+ * the <code>ClassPool</code> returns the same <code>CtClass</code> object
+ * if the object is still reachable.  Otherwise, it reads the class file
+ * again.
+ *
+ * <p>The methods of this interface may be called by multiple threads
+ * if the <code>ClassPool</code> is in the concurrent lookup mode.
+ *
+ * @see ClassPool#evictionPolicy
+ * @see LruEvictionPolicy
+ * @since 3.31
+ */
+public interface EvictionPolicy {
+    /**
+     * Records that the given class has been used.
+     * This method is called when the class is obtained from the cache
+     * and when its class file is read.
+     *
+     * @param clazz     the class.
+     * @param size      the estimated size of the class in bytes.
+     *                  It is the length of the class file or zero
+     *                  if the class file has not been read.
+     */
+    void accessed(CtClass clazz, int size);
+
+    /**
+     * Records that the given class is no longer a candidate for eviction.
+     * This method is called after the class is evicted or when the class
+     * cannot be evicted because it has been modified or frozen.
+     * It will be reported again by <code>accessed()</code> if it is used
+     * later.
+     *
+     * @param clazz     the class.
+     */
+    void removed(CtClass clazz);
+
+    /**
+     * Returns the class that should be evicted next.
+     * The <code>ClassPool</code> calls this method repeatedly,
+     * each time followed by <code>removed()</code>, until it returns null.
+     *
+     * @return null     if no more classes should be evicted.
+     */
+    CtClass nextVictim();
+}
@@ -0,0 +1,91 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * An eviction policy that keeps the total size of the class files
+ * of the cached classes under a given limit.
+ * When the limit is exceeded, the least recently used classes are evicted.
+ *
+ * <pre>
+ * ClassPool pool = ClassPool.getDefault();
+ * pool.evictionPolicy = new LruEvictionPolicy(64 * 1024 * 1024);</pre>
+ *
+ * <p>The size of a class is the length of its class file.  The memory
+ * actually used by a <code>CtClass</code> object is larger, in particular
+ * after the class file is parsed.  Modified or frozen classes are not
+ * counted since they are never evicted.
+ *
+ * @see ClassPool#evictionPolicy
+ * @since 3.31
+ */
+public class LruEvictionPolicy implements EvictionPolicy {
+    private final long maxSize;
+    private long size;
+
+    // in access order.  The values are the sizes.
+    private final LinkedHashMap<CtClass,Integer> entries;
+
+    /**
+     * Constructs a policy.
+     *
+     * @param maxSize       the maximum total size of the class files
+     *                      in bytes.
+     */
+    public LruEvictionPolicy(long maxSize) {
+        this.maxSize = maxSize;
+        this.size = 0;
+        this.entries = new LinkedHashMap<CtClass,Integer>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the total size of the class files of the classes
+     * that are candidates for eviction.
+     */
+    public synchronized long getSize() { return size; }
+
+    @Override
+    public synchronized void accessed(CtClass clazz, int size) {
+        Integer old = entries.put(clazz, size);
+        if (old == null)
+            this.size += size;
+        else
+            this.size += size - old.intValue();
+    }
+
+    @Override
+    public synchronized void removed(CtClass clazz) {
+        Integer old = entries.remove(clazz);
+        if (old != null)
+            size -= old.intValue();
+    }
+
+    @Override
+    public synchronized CtClass nextVictim() {
+        if (size <= maxSize)
+            return null;
+
+        Iterator<CtClass> it = entries.keySet().iterator();
+        if (it.hasNext())
+            return it.next();
+        else
+            return null;
+    }
+}
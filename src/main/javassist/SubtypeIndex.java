@@ -0,0 +1,112 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index from a type to its subtypes among the classes cached
+ * in a <code>ClassPool</code>.
+ *
+ * @see ClassPool#getSubtypes(CtClass)
+ */
+final class SubtypeIndex {
+    private final int version;
+    private final int size;
+
+    // the keys are the names of super types.
+    private final Map<String,List<CtClass>> subtypes;
+
+    // the classes whose super types are not found.
+    private final List<CtClass> unresolved;
+
+    SubtypeIndex(ClassPool cp, int version) {
+        this.version = version;
+        subtypes = new HashMap<String,List<CtClass>>();
+        unresolved = new ArrayList<CtClass>();
+
+        /* getSupertypeNames() may read the class files of
+         * the super types into the pool.  So repeat until
+         * no more classes are found.
+         */
+        Map<CtClass,CtClass> done = new IdentityHashMap<CtClass,CtClass>();
+        CtClass[] classes;
+        boolean added;
+        do {
+            added = false;
+            classes = cp.getCachedClasses();
+            for (CtClass c: classes)
+                if (done.put(c, c) == null) {
+                    added = true;
+                    add(c);
+                }
+        } while (added);
+
+        size = classes.length;
+    }
+
+    private void add(CtClass c) {
+        if (!(c instanceof CtClassType))
+            return;     // an array type etc.
+
+        Set<String> names = ((CtClassType)c).getSupertypeNames();
+        if (names == null) {
+            unresolved.add(c);
+            return;
+        }
+
+        String cname = c.getName();
+        for (String n: names)
+            if (!n.equals(cname)) {
+                List<CtClass> list = subtypes.get(n);
+                if (list == null) {
+                    list = new ArrayList<CtClass>();
+                    subtypes.put(n, list);
+                }
+
+                list.add(c);
+            }
+    }
+
+    boolean isValid(ClassPool cp, int version) {
+        return this.version == version && size == cp.numOfCachedClasses();
+    }
+
+    /* Appends the subtypes of the given type to the list unless
+     * the list contains a class with the same name.
+     */
+    void collect(CtClass clazz, String cname, Set<String> found, List<CtClass> result) {
+        List<CtClass> list = subtypes.get(cname);
+        if (list != null)
+            for (CtClass c: list)
+                if (found.add(c.getName()))
+                    result.add(c);
+
+        for (CtClass c: unresolved)
+            try {
+                if (c != clazz && !c.getName().equals(cname)
+                    && c.subtypeOf(clazz) && found.add(c.getName()))
+                    result.add(c);
+            }
+            catch (NotFoundException e) {}
+    }
+}
@@ -17,7 +17,6 @@
 package javassist.bytecode;
 
 import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.Map;
 
@@ -95,10 +94,8 @@ public class AnnotationDefaultAttribute extends AttributeInfo {
     /**
      * @param n     the attribute name.
      */
-    AnnotationDefaultAttribute(ConstPool cp, int n, DataInputStream in)
-        throws IOException
-    {
-        super(cp, n, in);
+    AnnotationDefaultAttribute(ConstPool cp, int n, byte[] attrinfo) {
+        super(cp, n, attrinfo);
     }
 
     /**
@@ -0,0 +1,122 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist.bytecode;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index from annotation types to the classes annotated with them.
+ *
+ * <p>If a <code>ClassPool</code> has an index, the annotations of every
+ * class file that the <code>ClassPool</code> reads are recorded in the
+ * index.  Only the types of the annotations are read; the member values
+ * are not parsed.  The index answers which classes, among the classes
+ * read so far, carry a given annotation on the class itself or on
+ * its fields, methods, or method parameters.
+ * Both visible and invisible annotations are recorded.
+ *
+ * <p>The index is not updated when a class is modified.
+ *
+ * <pre>
+ * ClassPool pool = ClassPool.getDefault();
+ * pool.annotationIndex = new AnnotationIndex();
+ * for (String name: classNames)
+ *     pool.get(name).hasAnnotation("javax.inject.Singleton");
+ * Set&lt;String&gt; beans = pool.annotationIndex.getAnnotatedClasses("javax.inject.Singleton");</pre>
+ *
+ * @see javassist.ClassPool#annotationIndex
+ * @since 3.31
+ */
+public class AnnotationIndex {
+    // the keys are annotation types in the L<class name>; form.
+    private Map<String,Set<String>> classes;
+    private Map<String,Set<String>> members;
+
+    /**
+     * Constructs an empty index.
+     */
+    public AnnotationIndex() {
+        classes = new HashMap<String,Set<String>>();
+        members = new HashMap<String,Set<String>>();
+    }
+
+    /**
+     * Records the annotations of the given class file.
+     */
+    public void add(LazyClassFile cf) {
+        Set<String> classTypes = new HashSet<String>();
+        Set<String> memberTypes = new HashSet<String>();
+        cf.collectAnnotationTypes(classTypes, memberTypes);
+        if (classTypes.isEmpty() && memberTypes.isEmpty())
+            return;
+
+        String name = cf.getName();
+        synchronized (this) {
+            add(classes, classTypes, name);
+            add(members, memberTypes, name);
+        }
+    }
+
+    private static void add(Map<String,Set<String>> map, Set<String> types, String name) {
+        for (String t: types) {
+            Set<String> names = map.get(t);
+            if (names == null) {
+                names = new HashSet<String>();
+                map.put(t, names);
+            }
+
+            names.add(name);
+        }
+    }
+
+    /**
+     * Returns the names of the classes annotated with the given type.
+     * The annotations of the members are not considered.
+     *
+     * @param type      the annotation type.
+     * @return          a copy of the set of the class names.
+     */
+    public synchronized Set<String> getAnnotatedClasses(String type) {
+        return copy(classes.get(Descriptor.of(type)));
+    }
+
+    /**
+     * Returns the names of the classes declaring a field, a method,
+     * a constructor, or a method parameter annotated with the given type.
+     *
+     * @param type      the annotation type.
+     * @return          a copy of the set of the class names.
+     */
+    public synchronized Set<String> getClassesWithAnnotatedMembers(String type) {
+        return copy(members.get(Descriptor.of(type)));
+    }
+
+    private static Set<String> copy(Set<String> names) {
+        return names == null ? new HashSet<String>() : new HashSet<String>(names);
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public synchronized void clear() {
+        classes.clear();
+        members.clear();
+    }
+}
@@ -17,8 +17,8 @@
 package javassist.bytecode;
 
 import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -160,10 +160,8 @@ public class AnnotationsAttribute extends AttributeInfo {
     /**
      * @param n     the attribute name.
      */
-    AnnotationsAttribute(ConstPool cp, int n, DataInputStream in)
-        throws IOException
-    {
-        super(cp, n, in);
+    AnnotationsAttribute(ConstPool cp, int n, byte[] attrinfo) {
+        super(cp, n, attrinfo);
     }
 
     /**
@@ -207,6 +205,19 @@ public class AnnotationsAttribute extends AttributeInfo {
         return null;
     }
 
+    /**
+     * Returns true if the annotations include the specified annotation
+     * type.  Unlike <code>getAnnotation()</code>, this method reads only
+     * the types of the annotations; the member values are skipped without
+     * being parsed.
+     *
+     * @param type      the annotation type.
+     * @since 3.31
+     */
+    public boolean hasAnnotation(String type) {
+        return new TypeScanner(info, constPool).find(0, Descriptor.of(type));
+    }
+
     /**
      * Adds an annotation.  If there is an annotation with the same type,
      * it is removed before the new annotation is added.
@@ -477,6 +488,85 @@ public class AnnotationsAttribute extends AttributeInfo {
         }
     }
 
+    /* Reads only the types of the annotations in annotation arrays.
+     * The member values are skipped without being parsed.
+     * The type names are either taken from the ConstPool or
+     * the LazyClassFile.
+     */
+    static class TypeScanner extends Walker {
+        private ConstPool pool;
+        private LazyClassFile lazyFile;
+
+        TypeScanner(byte[] info, ConstPool cp) {
+            super(info);
+            pool = cp;
+            lazyFile = null;
+        }
+
+        TypeScanner(byte[] classfile, LazyClassFile cf) {
+            super(classfile);
+            pool = null;
+            lazyFile = cf;
+        }
+
+        private String typeAt(int pos) {
+            int index = ByteArray.readU16bit(info, pos);
+            return pool != null ? pool.getUtf8Info(index) : lazyFile.getUtf8Info(index);
+        }
+
+        /* Returns true if the annotation array at pos includes
+         * the annotation type given in the L<class name>; form.
+         */
+        final boolean find(int pos, String descriptor) {
+            try {
+                int num = ByteArray.readU16bit(info, pos);
+                pos += 2;
+                for (int i = 0; i < num; ++i) {
+                    if (descriptor.equals(typeAt(pos)))
+                        return true;
+
+                    pos = annotation(pos);
+                }
+
+                return false;
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e.toString(), e);
+            }
+        }
+
+        /* Adds the annotation types in the annotation array at pos
+         * to the given collection.  The types are in the L<class name>; form.
+         * It returns the position following the annotation array.
+         */
+        final int collect(int pos, Collection<String> types) {
+            try {
+                int num = ByteArray.readU16bit(info, pos);
+                pos += 2;
+                for (int i = 0; i < num; ++i) {
+                    types.add(typeAt(pos));
+                    pos = annotation(pos);
+                }
+
+                return pos;
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e.toString(), e);
+            }
+        }
+
+        /* Returns the position following the annotation array at pos.
+         */
+        final int skip(int pos) {
+            try {
+                return annotationArray(pos);
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e.toString(), e);
+            }
+        }
+    }
+
     static class Renamer extends Walker {
         ConstPool cpool;
         Map<String,String> classnames;
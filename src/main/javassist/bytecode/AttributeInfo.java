@@ -74,17 +74,31 @@ public class AttributeInfo {
 
     static AttributeInfo read(ConstPool cp, DataInputStream in)
         throws IOException
+    {
+        return read(cp, ClassFileInput.of(in));
+    }
+
+    static AttributeInfo read(ConstPool cp, ClassFileInput in)
+        throws IOException
     {
         int name = in.readUnsignedShort();
         String nameStr = cp.getUtf8Info(name);
+        if (nameStr.equals(CodeAttribute.tag))
+            return new CodeAttribute(cp, name, in);
+
+        int len = in.readInt();
+        return make(cp, name, nameStr, in.readBytes(len));
+    }
+
+    private static AttributeInfo make(ConstPool cp, int name, String nameStr, byte[] in)
+        throws IOException
+    {
         char first = nameStr.charAt(0);
         if (first < 'E')
             if (nameStr.equals(AnnotationDefaultAttribute.tag))
                 return new AnnotationDefaultAttribute(cp, name, in);
             else if (nameStr.equals(BootstrapMethodsAttribute.tag))
                 return new BootstrapMethodsAttribute(cp, name, in);
-            else if (nameStr.equals(CodeAttribute.tag))
-                return new CodeAttribute(cp, name, in);
             else if (nameStr.equals(ConstantAttribute.tag))
                 return new ConstantAttribute(cp, name, in);
             else if (nameStr.equals(DeprecatedAttribute.tag))
@@ -1,7 +1,5 @@
 package javassist.bytecode;
 
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.util.Arrays;
 import java.util.Map;
 
@@ -58,10 +56,8 @@ public class BootstrapMethodsAttribute extends AttributeInfo {
         }
     }
 
-    BootstrapMethodsAttribute(ConstPool cp, int n, DataInputStream in)
-        throws IOException
-    {
-        super(cp, n, in);
+    BootstrapMethodsAttribute(ConstPool cp, int n, byte[] attrinfo) {
+        super(cp, n, attrinfo);
     }
 
     /**
@@ -19,11 +19,14 @@ package javassist.bytecode;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javassist.CannotCompileException;
 
@@ -70,6 +73,18 @@ public final class ClassFile {
     String[] cachedInterfaces;
     String cachedSuperclass;
 
+    /* the counter incremented when the super class, the interfaces,
+       or the name is changed.  It is null unless the class pool
+       containing this class file sets it.  See setHierarchyCounter().
+     */
+    private AtomicInteger hierarchyCounter;
+
+    /* the counter incremented when a method or a field is added.
+       It is null unless the class pool containing this class file
+       sets it.  See setMembersCounter().
+     */
+    private AtomicInteger membersCounter;
+
     /**
      * The major version number of class files
      * for JDK 1.1.
@@ -178,11 +193,93 @@ public final class ClassFile {
         MAJOR_VERSION = ver;
     }
 
+    /**
+     * Internal-use only.
+     * The class pool containing this class file calls this method
+     * so that the given counter is incremented whenever the super class,
+     * the interfaces, or the name of the class file is changed.
+     *
+     * @since 3.31
+     */
+    public void setHierarchyCounter(AtomicInteger counter) {
+        hierarchyCounter = counter;
+    }
+
+    private void hierarchyChanged() {
+        AtomicInteger counter = hierarchyCounter;
+        if (counter != null)
+            counter.incrementAndGet();
+    }
+
+    /**
+     * Internal-use only.
+     * The class pool containing this class file calls this method
+     * so that the given counter is incremented whenever a method or
+     * a field is added by <code>addMethod()</code> or <code>addField()</code>.
+     * It is not incremented while the class file is being read.
+     *
+     * @since 3.31
+     */
+    public void setMembersCounter(AtomicInteger counter) {
+        membersCounter = counter;
+    }
+
+    private void membersChanged() {
+        AtomicInteger counter = membersCounter;
+        if (counter != null)
+            counter.incrementAndGet();
+    }
+
     /**
      * Constructs a class file from a byte stream.
      */
     public ClassFile(DataInputStream in) throws IOException {
-        read(in);
+        read(ClassFileInput.of(in));
+    }
+
+    /**
+     * Constructs a class file from a byte array.
+     * The bytes are decoded directly without a <code>DataInputStream</code>.
+     * The array is not referred to after this constructor returns.
+     *
+     * @param bytes     the contents of a class file.
+     * @since 3.31
+     */
+    public ClassFile(byte[] bytes) throws IOException {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Constructs a class file from a part of a byte array.
+     *
+     * @param bytes     the array containing a class file.
+     * @param offset    the start of the class file.
+     * @param length    the length of the class file.
+     * @since 3.31
+     */
+    public ClassFile(byte[] bytes, int offset, int length) throws IOException {
+        read(ClassFileInput.of(bytes, offset, length));
+    }
+
+    /**
+     * Constructs a class file from the bytes between the position
+     * and the limit of the given buffer.  The position of the buffer
+     * is not changed.  If the buffer is not backed by an array, for example,
+     * if it is a direct or memory-mapped buffer, the bytes are copied
+     * into an array in bulk before they are decoded.
+     *
+     * @param buf       the buffer containing a class file.
+     * @since 3.31
+     */
+    public ClassFile(ByteBuffer buf) throws IOException {
+        if (buf.hasArray())
+            read(ClassFileInput.of(buf.array(), buf.arrayOffset() + buf.position(),
+                                  buf.remaining()));
+        else {
+            byte[] bytes = new byte[buf.remaining()];
+            buf.duplicate().get(bytes);
+            read(ClassFileInput.of(bytes, 0, bytes.length));
+        }
     }
 
     /**
@@ -429,6 +526,7 @@ public final class ClassFile {
             throw new CannotCompileException(e);
         }
         cachedSuperclass = superclass;
+        hierarchyChanged();
     }
 
     /**
@@ -449,6 +547,7 @@ public final class ClassFile {
         if (oldname.equals(newname))
             return;
 
+        hierarchyChanged();
         if (oldname.equals(thisclassname))
             thisclassname = newname;
 
@@ -485,6 +584,7 @@ public final class ClassFile {
         if (jvmNewThisName != null)
             thisclassname = Descriptor.toJavaName(jvmNewThisName);
 
+        hierarchyChanged();
         constPool.renameClass(classnames);
 
         AttributeInfo.renameClass(attributes, classnames);
@@ -553,6 +653,7 @@ public final class ClassFile {
      */
     public void setInterfaces(String[] nameList) {
         cachedInterfaces = null;
+        hierarchyChanged();
         if (nameList != null) {
             interfaces = new int[nameList.length];
             for (int i = 0; i < nameList.length; ++i)
@@ -565,6 +666,7 @@ public final class ClassFile {
      */
     public void addInterface(String name) {
         cachedInterfaces = null;
+        hierarchyChanged();
         int info = constPool.addClassInfo(name);
         if (interfaces == null) {
             interfaces = new int[1];
@@ -597,6 +699,7 @@ public final class ClassFile {
     public void addField(FieldInfo finfo) throws DuplicateMemberException {
         testExistingField(finfo.getName(), finfo.getDescriptor());
         fields.add(finfo);
+        membersChanged();
     }
 
     /**
@@ -609,6 +712,7 @@ public final class ClassFile {
      */
     public final void addField2(FieldInfo finfo) {
         fields.add(finfo);
+        membersChanged();
     }
 
     private void testExistingField(String name, String descriptor)
@@ -659,6 +763,7 @@ public final class ClassFile {
     public void addMethod(MethodInfo minfo) throws DuplicateMemberException {
         testExistingMethod(minfo);
         methods.add(minfo);
+        membersChanged();
     }
 
     /**
@@ -671,6 +776,7 @@ public final class ClassFile {
      */
     public final void addMethod2(MethodInfo minfo) {
         methods.add(minfo);
+        membersChanged();
     }
 
     private void testExistingMethod(MethodInfo newMinfo)
@@ -783,7 +889,7 @@ public final class ClassFile {
         return sf.getFileName();
     }
 
-    private void read(DataInputStream in) throws IOException {
+    private void read(ClassFileInput in) throws IOException {
         int i, n;
         int magic = in.readInt();
         if (magic != 0xCAFEBABE)
@@ -830,6 +936,9 @@ public final class ClassFile {
     public void write(DataOutputStream out) throws IOException {
         int i, n;
 
+        if (out instanceof ClassFileOutput)
+            ((ClassFileOutput)out).reserve(length());
+
         out.writeInt(0xCAFEBABE); // magic
         out.writeShort(minor); // minor version
         out.writeShort(major); // major version
@@ -862,6 +971,60 @@ public final class ClassFile {
         AttributeInfo.writeAll(attributes, out);
     }
 
+    /**
+     * Writes a class file represented by this object into a buffer.
+     * The bytes are written at the current position of the buffer,
+     * which must have at least <code>length()</code> bytes remaining.
+     *
+     * @param buf       the buffer.
+     * @throws java.nio.BufferOverflowException     if there is
+     *                  insufficient space in the buffer.
+     * @see #length()
+     * @since 3.31
+     */
+    public void write(ByteBuffer buf) throws IOException {
+        if (buf.remaining() < length())
+            throw new BufferOverflowException();
+
+        write(new DataOutputStream(new ClassFileOutput.BufferOutput(buf)));
+    }
+
+    /**
+     * Returns a byte array containing the class file represented by
+     * this object.  The array is allocated with the exact length
+     * of the class file and the bytes are written into it directly.
+     *
+     * @see #length()
+     * @since 3.31
+     */
+    public byte[] toBytecode() throws IOException {
+        ClassFileOutput out = new ClassFileOutput();
+        write(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the length of the class file represented by this object,
+     * that is, the number of bytes written by <code>write()</code>.
+     *
+     * @since 3.31
+     */
+    public int length() {
+        int len = 8 + constPool.length() + 8;
+        if (interfaces != null)
+            len += interfaces.length * 2;
+
+        len += 2;
+        for (FieldInfo finfo: fields)
+            len += finfo.length();
+
+        len += 2;
+        for (MethodInfo minfo: methods)
+            len += minfo.length();
+
+        return len + 2 + AttributeInfo.getLength(attributes);
+    }
+
     /**
      * Get the Major version.
      * 
@@ -0,0 +1,158 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist.bytecode;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * A source of the bytes of a class file.  The class file is decoded through
+ * this class whether it is given as a byte array or as a byte stream.
+ * An array is read by index arithmetic instead of a
+ * <code>DataInputStream</code> when the whole class file is available
+ * in memory.
+ *
+ * @see ClassFile#ClassFile(byte[])
+ * @see ClassFile#ClassFile(DataInputStream)
+ */
+abstract class ClassFileInput {
+    static ClassFileInput of(byte[] buf, int offset, int length) {
+        return new ArrayInput(buf, offset, length);
+    }
+
+    static ClassFileInput of(DataInputStream in) {
+        return new StreamInput(in);
+    }
+
+    abstract int readUnsignedByte() throws IOException;
+
+    abstract int readUnsignedShort() throws IOException;
+
+    abstract int readInt() throws IOException;
+
+    abstract byte[] readBytes(int len) throws IOException;
+
+    /* Reads a string in the modified UTF-8 encoding
+     * like DataInputStream#readUTF().
+     */
+    abstract String readUTF() throws IOException;
+
+    static final class ArrayInput extends ClassFileInput {
+        private final byte[] buf;
+        private int pos;
+        private final int end;
+
+        ArrayInput(byte[] buf, int offset, int length) {
+            if (offset < 0 || length < 0 || offset + length > buf.length)
+                throw new IndexOutOfBoundsException();
+
+            this.buf = buf;
+            this.pos = offset;
+            this.end = offset + length;
+        }
+
+        private int advance(int n) throws EOFException {
+            int p = pos;
+            if (n > end - p)
+                throw new EOFException();
+
+            pos = p + n;
+            return p;
+        }
+
+        @Override
+        int readUnsignedByte() throws EOFException {
+            return buf[advance(1)] & 0xff;
+        }
+
+        @Override
+        int readUnsignedShort() throws EOFException {
+            return ByteArray.readU16bit(buf, advance(2));
+        }
+
+        @Override
+        int readInt() throws EOFException {
+            return ByteArray.read32bit(buf, advance(4));
+        }
+
+        @Override
+        byte[] readBytes(int len) throws EOFException {
+            if (len < 0)
+                throw new EOFException();
+
+            byte[] b = new byte[len];
+            System.arraycopy(buf, advance(len), b, 0, len);
+            return b;
+        }
+
+        @Override
+        String readUTF() throws IOException {
+            int len = readUnsignedShort();
+            int start = advance(len);
+            char[] chars = new char[len];
+            for (int i = 0; i < len; i++) {
+                int c = buf[start + i];
+                if (c <= 0)     // not ASCII or '\0' encoded in two bytes
+                    return new DataInputStream(new ByteArrayInputStream(buf, start - 2, len + 2)).readUTF();
+
+                chars[i] = (char)c;
+            }
+
+            return new String(chars);
+        }
+    }
+
+    static final class StreamInput extends ClassFileInput {
+        private final DataInputStream in;
+
+        StreamInput(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        int readUnsignedByte() throws IOException {
+            return in.readUnsignedByte();
+        }
+
+        @Override
+        int readUnsignedShort() throws IOException {
+            return in.readUnsignedShort();
+        }
+
+        @Override
+        int readInt() throws IOException {
+            return in.readInt();
+        }
+
+        @Override
+        byte[] readBytes(int len) throws IOException {
+            if (len < 0)
+                throw new EOFException();
+
+            byte[] b = new byte[len];
+            in.readFully(b);
+            return b;
+        }
+
+        @Override
+        String readUTF() throws IOException {
+            return in.readUTF();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist.bytecode;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A <code>DataOutputStream</code> writing into a byte array.
+ *
+ * <p>When a <code>ClassFile</code> is written into this stream,
+ * the array is allocated with the exact length of the class file,
+ * so that <code>toByteArray()</code> returns that array without
+ * copying it.  Unlike <code>ByteArrayOutputStream</code>, this stream
+ * is not synchronized.
+ *
+ * <pre>
+ * ClassFileOutput out = new ClassFileOutput();
+ * classfile.write(out);
+ * byte[] bytes = out.toByteArray();</pre>
+ *
+ * @see ClassFile#write(DataOutputStream)
+ * @since 3.31
+ */
+public class ClassFileOutput extends DataOutputStream {
+    /**
+     * Constructs an empty stream.
+     */
+    public ClassFileOutput() {
+        super(new Buffer());
+    }
+
+    /* Makes room for the given number of bytes.
+     */
+    void reserve(int len) {
+        ((Buffer)out).reserve(len);
+    }
+
+    /**
+     * Returns the written bytes.  If the array allocated for the bytes
+     * is full, the array itself is returned.  It is never modified by
+     * this stream later.
+     */
+    public byte[] toByteArray() {
+        return ((Buffer)out).toByteArray();
+    }
+
+    static final class Buffer extends OutputStream {
+        private static final byte[] EMPTY = new byte[0];
+        private byte[] buf = EMPTY;
+        private int count = 0;
+
+        void reserve(int len) {
+            if (buf.length - count < len)
+                if (count == 0)
+                    buf = new byte[len];
+                else
+                    buf = Arrays.copyOf(buf, count + len);
+        }
+
+        private void grow(int len) {
+            if (buf.length - count < len)
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + Math.max(len, 256)));
+        }
+
+        @Override
+        public void write(int b) {
+            grow(1);
+            buf[count++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            grow(len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        byte[] toByteArray() {
+            if (count == buf.length)
+                return buf;
+            else
+                return Arrays.copyOf(buf, count);
+        }
+    }
+
+    /* An output stream writing into a ByteBuffer.
+     */
+    static final class BufferOutput extends OutputStream {
+        private final ByteBuffer buf;
+
+        BufferOutput(ByteBuffer buf) { this.buf = buf; }
+
+        @Override
+        public void write(int b) {
+            buf.put((byte)b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buf.put(b, off, len);
+        }
+    }
+}
@@ -563,7 +563,7 @@ public class ClassFileWriter {
          */
         public int addClassInfo(String jvmname) {
             int utf8 = addUtf8Info(jvmname);
-            output.write(ClassInfo.tag);
+            output.write(ConstPool.CONST_Class);
             output.writeShort(utf8);
             return num++;
         }
@@ -575,7 +575,7 @@ public class ClassFileWriter {
          * @return          the index of the added entry.
          */
         public int addClassInfo(int name) {
-            output.write(ClassInfo.tag);
+            output.write(ConstPool.CONST_Class);
             output.writeShort(name);
             return num++;
         }
@@ -599,7 +599,7 @@ public class ClassFileWriter {
          * @return          the index of the added entry.
          */
         public int addNameAndTypeInfo(int name, int type) {
-            output.write(NameAndTypeInfo.tag);
+            output.write(ConstPool.CONST_NameAndType);
             output.writeShort(name);
             output.writeShort(type);
             return num++;
@@ -613,7 +613,7 @@ public class ClassFileWriter {
          * @return          the index of the added entry.
          */
         public int addFieldrefInfo(int classInfo, int nameAndTypeInfo) {
-            output.write(FieldrefInfo.tag);
+            output.write(ConstPool.CONST_Fieldref);
             output.writeShort(classInfo);
             output.writeShort(nameAndTypeInfo);
             return num++;
@@ -627,7 +627,7 @@ public class ClassFileWriter {
          * @return          the index of the added entry.
          */
         public int addMethodrefInfo(int classInfo, int nameAndTypeInfo) {
-            output.write(MethodrefInfo.tag);
+            output.write(ConstPool.CONST_Methodref);
             output.writeShort(classInfo);
             output.writeShort(nameAndTypeInfo);
             return num++;
@@ -643,7 +643,7 @@ public class ClassFileWriter {
          */
         public int addInterfaceMethodrefInfo(int classInfo,
                                              int nameAndTypeInfo) {
-            output.write(InterfaceMethodrefInfo.tag);
+            output.write(ConstPool.CONST_InterfaceMethodref);
             output.writeShort(classInfo);
             output.writeShort(nameAndTypeInfo);
             return num++;
@@ -661,7 +661,7 @@ public class ClassFileWriter {
          * @since 3.17.1
          */
         public int addMethodHandleInfo(int kind, int index) {
-            output.write(MethodHandleInfo.tag);
+            output.write(ConstPool.CONST_MethodHandle);
             output.write(kind);
             output.writeShort(index);
             return num++;
@@ -677,7 +677,7 @@ public class ClassFileWriter {
          * @since 3.17.1
          */
         public int addMethodTypeInfo(int desc) {
-            output.write(MethodTypeInfo.tag);
+            output.write(ConstPool.CONST_MethodType);
             output.writeShort(desc);
             return num++;
         }
@@ -694,7 +694,7 @@ public class ClassFileWriter {
          */
         public int addInvokeDynamicInfo(int bootstrap,
                                         int nameAndTypeInfo) {
-            output.write(InvokeDynamicInfo.tag);
+            output.write(ConstPool.CONST_InvokeDynamic);
             output.writeShort(bootstrap);
             output.writeShort(nameAndTypeInfo);
             return num++;
@@ -712,7 +712,7 @@ public class ClassFileWriter {
          */
         public int addDynamicInfo(int bootstrap,
                                   int nameAndTypeInfo) {
-            output.write(DynamicInfo.tag);
+            output.write(ConstPool.CONST_Dynamic);
             output.writeShort(bootstrap);
             output.writeShort(nameAndTypeInfo);
             return num++;
@@ -729,7 +729,7 @@ public class ClassFileWriter {
          */
         public int addStringInfo(String str) {
             int utf8 = addUtf8Info(str);
-            output.write(StringInfo.tag);
+            output.write(ConstPool.CONST_String);
             output.writeShort(utf8);
             return num++;
         }
@@ -741,7 +741,7 @@ public class ClassFileWriter {
          * @return          the index of the added entry.
          */
         public int addIntegerInfo(int i) {
-            output.write(IntegerInfo.tag);
+            output.write(ConstPool.CONST_Integer);
             output.writeInt(i);
             return num++;
         }
@@ -753,7 +753,7 @@ public class ClassFileWriter {
          * @return          the index of the added entry.
          */
         public int addFloatInfo(float f) {
-            output.write(FloatInfo.tag);
+            output.write(ConstPool.CONST_Float);
             output.writeFloat(f);
             return num++;
         }
@@ -765,7 +765,7 @@ public class ClassFileWriter {
          * @return          the index of the added entry.
          */
         public int addLongInfo(long l) {
-            output.write(LongInfo.tag);
+            output.write(ConstPool.CONST_Long);
             output.writeLong(l);
             int n = num;
             num += 2;
@@ -779,7 +779,7 @@ public class ClassFileWriter {
          * @return          the index of the added entry.
          */
         public int addDoubleInfo(double d) {
-            output.write(DoubleInfo.tag);
+            output.write(ConstPool.CONST_Double);
             output.writeDouble(d);
             int n = num;
             num += 2;
@@ -793,7 +793,7 @@ public class ClassFileWriter {
          * @return          the index of the added entry.
          */
         public int addUtf8Info(String utf8) {
-            output.write(Utf8Info.tag);
+            output.write(ConstPool.CONST_Utf8);
             output.writeUTF(utf8);
             return num++;
         }
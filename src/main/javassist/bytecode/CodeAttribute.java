@@ -18,10 +18,10 @@ package javassist.bytecode;
 
 import javassist.*;
 
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +48,14 @@ public class CodeAttribute extends AttributeInfo implements Opcode {
     private ExceptionTable exceptions;
     private List<AttributeInfo> attributes;
 
+    /* the ranges of code[] modified by a CodeIterator since the stack
+     * map table was set.  modified[2 * i] and modified[2 * i + 1] are
+     * the start (inclusive) and the end (exclusive) of the i-th range.
+     * numModified is -1 if the whole code[] must be regarded as modified.
+     */
+    private int[] modified;
+    private int numModified;
+
     /**
      * Constructs a <code>Code_attribute</code>.
      *
@@ -95,7 +103,7 @@ public class CodeAttribute extends AttributeInfo implements Opcode {
         info = src.copyCode(cp, classnames, exceptions, this);
     }
 
-    CodeAttribute(ConstPool cp, int name_id, DataInputStream in)
+    CodeAttribute(ConstPool cp, int name_id, ClassFileInput in)
         throws IOException
     {
         super(cp, name_id, (byte[])null);
@@ -106,8 +114,7 @@ public class CodeAttribute extends AttributeInfo implements Opcode {
         maxLocals = in.readUnsignedShort();
 
         int code_len = in.readInt();
-        info = new byte[code_len];
-        in.readFully(info);
+        info = in.readBytes(code_len);
 
         exceptions = new ExceptionTable(cp, in);
 
@@ -290,6 +297,82 @@ public class CodeAttribute extends AttributeInfo implements Opcode {
      */
     void setCode(byte[] newinfo) { super.set(newinfo); }
 
+    /**
+     * Returns true if <code>code[]</code> between <code>pos</code>
+     * (inclusive) and <code>pos + length</code> (exclusive) may have
+     * been modified since the stack map table was set by
+     * <code>setAttribute(StackMapTable)</code> or read from a class file.
+     * Only the modifications made through a <code>CodeIterator</code>
+     * are recorded.  Writes into the array returned by
+     * <code>getCode()</code> are not.
+     *
+     * @see javassist.bytecode.stackmap.MapMaker#makeIncrementally(ClassPool, MethodInfo)
+     * @since 3.31
+     */
+    public boolean isModified(int pos, int length) {
+        if (numModified < 0)
+            return true;
+
+        int end = pos + length;
+        for (int i = 0; i < numModified; i += 2)
+            if (modified[i] < end && pos < modified[i + 1])
+                return true;
+
+        return false;
+    }
+
+    /* Records that code[pos] .. code[pos + length - 1] have been modified.
+     */
+    void modified(int pos, int length) {
+        if (numModified < 0 || length <= 0)
+            return;
+
+        if (numModified > 0 && modified[numModified - 1] == pos)
+            modified[numModified - 1] = pos + length;
+        else {
+            if (modified == null)
+                modified = new int[8];
+            else if (numModified == modified.length)
+                modified = Arrays.copyOf(modified, numModified * 2);
+
+            modified[numModified++] = pos;
+            modified[numModified++] = pos + length;
+        }
+    }
+
+    /* Records that any part of code[] might have been modified.
+     */
+    void modifiedAll() {
+        modified = null;
+        numModified = -1;
+    }
+
+    /* Updates the recorded ranges when a gap is inserted at where.
+     * The gap itself is recorded as a modified range.
+     */
+    void shiftModified(int where, int gapLength) {
+        for (int i = 0; i < numModified; i++)
+            if (modified[i] > where || ((i & 1) == 0 && modified[i] == where))
+                modified[i] += gapLength;
+
+        modified(where, gapLength);
+    }
+
+    /* Updates the recorded ranges when the gaps are inserted
+     * by CodeIterator.Batch#commit().
+     */
+    void shiftModified(CodeIterator.Gaps gaps) {
+        for (int i = 0; i < numModified; i += 2) {
+            modified[i] = gaps.instruction(modified[i]);
+            modified[i + 1] = gaps.gap(modified[i + 1]);
+        }
+
+        for (int k = 0; k < gaps.size; k++) {
+            int pos = gaps.gap(gaps.positions[k]);
+            modified(pos, gaps.before[k + 1] - gaps.before[k]);
+        }
+    }
+
     /**
      * Makes a new iterator for reading this code attribute.
      */
@@ -332,6 +415,8 @@ public class CodeAttribute extends AttributeInfo implements Opcode {
      *                  Only the old stack map is removed.
      */
     public void setAttribute(StackMapTable smt) {
+        modified = null;
+        numModified = 0;
         AttributeInfo.remove(attributes, StackMapTable.tag);
         if (smt != null)
             attributes.add(smt);
@@ -528,18 +613,16 @@ public class CodeAttribute extends AttributeInfo implements Opcode {
                                                BootstrapMethodsAttribute.BootstrapMethod srcBm, CtClass destCc,
                                                Map<String, String> classnameMap) throws CannotCompileException {
         for (int argument : srcBm.arguments) {
-            ConstInfo constInfo = srcCp.getItem(argument);
-
-            if (!(constInfo instanceof MethodHandleInfo)) continue;
+            if (srcCp.getTag(argument) != ConstPool.CONST_MethodHandle) continue;
 
-            MethodHandleInfo methodHandleInfo = (MethodHandleInfo) constInfo;
-            if (ConstPool.REF_invokeStatic != methodHandleInfo.refKind) continue;
+            if (ConstPool.REF_invokeStatic != srcCp.getMethodHandleKind(argument)) continue;
 
-            String methodRefClassName = srcCp.getMethodrefClassName(methodHandleInfo.refIndex);
+            int refIndex = srcCp.getMethodHandleIndex(argument);
+            String methodRefClassName = srcCp.getMethodrefClassName(refIndex);
             if (methodRefClassName == null || !methodRefClassName.equals(srcCc.getName())) continue;
 
-            String staticMethodName = srcCp.getMethodrefName(methodHandleInfo.refIndex);
-            String staticMethodSignature = srcCp.getMethodrefType(methodHandleInfo.refIndex);
+            String staticMethodName = srcCp.getMethodrefName(refIndex);
+            String staticMethodSignature = srcCp.getMethodrefType(refIndex);
             CtMethod srcMethod = getStaticCtMethod(srcCc, staticMethodName, staticMethodSignature);
 
             if (!checkStaticMethodExisted(destCc, staticMethodName, staticMethodSignature)) {
@@ -17,6 +17,9 @@
 package javassist.bytecode;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -54,6 +57,9 @@ public class CodeIterator implements Opcode {
     protected int currentPos;
     protected int mark, mark2;
 
+    // the positions updated by insertGapAt() for Batch.commit().  It may be null.
+    private int[] pendingPositions;
+
     protected CodeIterator(CodeAttribute ca) {
         codeAttr = ca;
         bytecode = ca.getCode();
@@ -161,6 +167,7 @@ public class CodeIterator implements Opcode {
      */
     public void writeByte(int value, int index) {
         bytecode[index] = (byte)value;
+        codeAttr.modified(index, 1);
     }
 
     /**
@@ -182,6 +189,7 @@ public class CodeIterator implements Opcode {
      */
     public void write16bit(int value, int index) {
         ByteArray.write16bit(value, bytecode, index);
+        codeAttr.modified(index, 2);
     }
 
     /**
@@ -196,6 +204,7 @@ public class CodeIterator implements Opcode {
      */
     public void write32bit(int value, int index) {
         ByteArray.write32bit(value, bytecode, index);
+        codeAttr.modified(index, 4);
     }
 
     /**
@@ -205,6 +214,7 @@ public class CodeIterator implements Opcode {
      */
     public void write(byte[] code, int index) {
         int len = code.length;
+        codeAttr.modified(index, len);
         for (int j = 0; j < len; ++j)
             bytecode[index++] = code[j];
     }
@@ -673,6 +683,11 @@ public class CodeIterator implements Opcode {
 
             if (mark2 > pos || (mark2 == pos && exclusive))
                 mark2 += length2;
+
+            if (pendingPositions != null)
+                for (int i = 0; i < pendingPositions.length; i++)
+                    if (pendingPositions[i] > pos || (pendingPositions[i] == pos && exclusive))
+                        pendingPositions[i] += length2;
         }
 
         codeAttr.setCode(c);
@@ -693,6 +708,419 @@ public class CodeIterator implements Opcode {
         // empty
     }
 
+    /**
+     * Starts a batch of edits on the bytecode.  The edits recorded
+     * in the returned object are not applied until <code>commit()</code>
+     * is called on that object.
+     *
+     * @see Batch
+     * @since 3.31
+     */
+    public Batch batch() {
+        return new Batch(this);
+    }
+
+    /**
+     * A batch of edits on the bytecode.  It records insertions and
+     * overwrites by the indexes in the bytecode before the edits.
+     * <code>commit()</code> applies all of them at once.
+     *
+     * <p>Every call to <code>insert()</code> or <code>insertGap()</code>
+     * on a <code>CodeIterator</code> copies the whole bytecode and updates
+     * all the branch offsets, the exception table, and the attributes
+     * such as <code>StackMapTable</code>.  <code>commit()</code> does
+     * that only once for all the recorded insertions.
+     *
+     * <p>The byte sequences inserted at the same index are placed in
+     * the recorded order.  The sequences inserted by <code>insertEx()</code>
+     * are placed before the ones inserted by <code>insert()</code>.
+     * Since the gaps may be extended for alignment, they might be
+     * followed by <code>NOP</code>.  After <code>commit()</code>,
+     * the iterator that made this batch points to the same instruction
+     * as before.
+     *
+     * <pre>
+     * CodeIterator.Batch batch = ci.batch();
+     * for (int pos: blockHeads)
+     *     batch.insert(pos, probe);
+     *
+     * batch.commit();</pre>
+     *
+     * @see CodeIterator#batch()
+     * @since 3.31
+     */
+    public static class Batch {
+        private CodeIterator iterator;
+        private List<Edit> inserts;
+        private List<Edit> writes;
+
+        static class Edit {
+            int pos;
+            byte[] code;
+            boolean exclusive;
+
+            Edit(int pos, byte[] code, boolean exclusive) {
+                this.pos = pos;
+                this.code = code;
+                this.exclusive = exclusive;
+            }
+        }
+
+        Batch(CodeIterator ci) {
+            iterator = ci;
+            inserts = new ArrayList<Edit>();
+            writes = new ArrayList<Edit>();
+        }
+
+        /**
+         * Records that the given bytecode sequence is inserted in front
+         * of the instruction at the given index.  If that instruction is
+         * at the beginning of a block statement, the inserted sequence
+         * is included within that block, as
+         * {@link CodeIterator#insert(int, byte[])} does.
+         *
+         * @param pos       the index of an instruction before the edits.
+         * @param code      the inserted bytecode sequence.
+         */
+        public void insert(int pos, byte[] code) {
+            if (code.length > 0)
+                inserts.add(new Edit(pos, code, false));
+        }
+
+        /**
+         * Records that the given bytecode sequence is inserted in front
+         * of the instruction at the given index.  If that instruction is
+         * at the beginning of a block statement, the inserted sequence
+         * is excluded from that block, as
+         * {@link CodeIterator#insertEx(int, byte[])} does.
+         *
+         * @param pos       the index of an instruction before the edits.
+         * @param code      the inserted bytecode sequence.
+         */
+        public void insertEx(int pos, byte[] code) {
+            if (code.length > 0)
+                inserts.add(new Edit(pos, code, true));
+        }
+
+        /**
+         * Records that the bytes at the given index are overwritten
+         * with the given byte array.  Branch offsets written by this
+         * method must be relative to the bytecode before the edits.
+         *
+         * @param code      the bytes written.
+         * @param index     the index before the edits.
+         */
+        public void write(byte[] code, int index) {
+            writes.add(new Edit(index, code, false));
+        }
+
+        /**
+         * Applies the recorded edits to the bytecode.
+         * After this method returns, this batch is empty and
+         * it can be used for recording the next edits, which must
+         * be specified by the indexes in the edited bytecode.
+         *
+         * @throws BadBytecode  if an index does not indicate an instruction.
+         */
+        public void commit() throws BadBytecode {
+            try {
+                CodeIterator ci = iterator;
+                for (Edit e: writes)
+                    if (e.pos < 0 || e.pos + e.code.length > ci.bytecode.length)
+                        throw new BadBytecode("out of the bytecode: " + e.pos);
+                    else
+                        ci.write(e.code, e.pos);
+
+                if (inserts.isEmpty())
+                    return;
+
+                Collections.sort(inserts, new Comparator<Edit>() {
+                    @Override
+                    public int compare(Edit e1, Edit e2) {
+                        return Integer.compare(e1.pos, e2.pos);
+                    }
+                });
+
+                Gaps gaps = new Gaps(inserts, hasSwitch(ci.bytecode));
+                if (ci.bytecode.length + gaps.total > Short.MAX_VALUE)
+                    ci.insertOneByOne(gaps);
+                else
+                    ci.insertGaps(gaps);
+            }
+            finally {
+                inserts.clear();
+                writes.clear();
+            }
+        }
+
+        private static boolean hasSwitch(byte[] code) throws BadBytecode {
+            for (int i = 0; i < code.length; i = nextOpcode(code, i)) {
+                int inst = code[i] & 0xff;
+                if (inst == TABLESWITCH || inst == LOOKUPSWITCH)
+                    return true;
+            }
+
+            return false;
+        }
+    }
+
+    /*
+     * The gaps inserted by Batch.commit().  The byte sequences inserted
+     * at the same index are grouped into a single gap.  It maps an index
+     * before the insertion into the index after the insertion.
+     */
+    static class Gaps {
+        int size, total;
+        int[] positions;
+        int[] exLengths;    // the length of the exclusive part of each gap.
+        int[] before;       // the total length of the gaps before each gap.
+        byte[][] exCode, inCode;
+
+        /*
+         * @param edits         sorted by the position.
+         * @param align         if true, every gap length is a multiple of 4.
+         */
+        Gaps(List<Batch.Edit> edits, boolean align) {
+            int n = edits.size();
+            positions = new int[n];
+            exLengths = new int[n];
+            before = new int[n + 1];
+            exCode = new byte[n][];
+            inCode = new byte[n][];
+            int k = -1;
+            for (int i = 0; i < n; i++) {
+                Batch.Edit e = edits.get(i);
+                if (k < 0 || positions[k] != e.pos) {
+                    positions[++k] = e.pos;
+                    exCode[k] = inCode[k] = new byte[0];
+                }
+
+                if (e.exclusive)
+                    exCode[k] = concat(exCode[k], e.code);
+                else
+                    inCode[k] = concat(inCode[k], e.code);
+            }
+
+            size = k + 1;
+            total = 0;
+            for (int i = 0; i < size; i++) {
+                before[i] = total;
+                int len = exCode[i].length + inCode[i].length;
+                int pad = align ? -len & 3 : 0;
+                exLengths[i] = inCode[i].length == 0 ? len + pad : exCode[i].length;
+                total += len + pad;
+            }
+
+            before[size] = total;
+        }
+
+        private static byte[] concat(byte[] a, byte[] b) {
+            if (a.length == 0)
+                return b;
+
+            byte[] c = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, c, a.length, b.length);
+            return c;
+        }
+
+        /*
+         * Returns the index of the first gap at pc or after pc.
+         */
+        private int find(int pc) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (positions[mid] < pc)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+
+            return low;
+        }
+
+        /*
+         * Returns the new index of pc when pc is the start or the end of
+         * a code range such as a block or a branch target.  The inclusive
+         * part of the gap at pc is included in the range starting at pc.
+         */
+        int target(int pc) {
+            int k = find(pc);
+            if (k < size && positions[k] == pc)
+                return pc + before[k] + exLengths[k];
+            else
+                return pc + before[k];
+        }
+
+        /*
+         * Returns the new index of the instruction at pc.
+         */
+        int instruction(int pc) {
+            return pc + before[find(pc + 1)];
+        }
+
+        /*
+         * Returns the new index of the first byte of the gap at pc
+         * or the new index of pc if no gap is inserted at pc.
+         */
+        int gap(int pc) {
+            return pc + before[find(pc)];
+        }
+    }
+
+    /*
+     * Inserts the gaps by a single pass.  The new code length must not
+     * exceed Short.MAX_VALUE so that all branch offsets fit in 16 bits.
+     */
+    private void insertGaps(Gaps gaps) throws BadBytecode {
+        byte[] code = bytecode;
+        int len = code.length;
+        byte[] newcode = new byte[len + gaps.total];
+        int k = 0, j = 0;
+        int nextPos;
+        for (int i = 0; i < len; i = nextPos) {
+            if (k < gaps.size && gaps.positions[k] == i) {
+                System.arraycopy(gaps.exCode[k], 0, newcode, j, gaps.exCode[k].length);
+                System.arraycopy(gaps.inCode[k], 0, newcode, j + gaps.exCode[k].length,
+                                 gaps.inCode[k].length);
+                j += gaps.before[k + 1] - gaps.before[k];     // the rest is NOP.
+                k++;
+            }
+
+            nextPos = nextOpcode(code, i);
+            int inst = code[i] & 0xff;
+            // if<cond>, if_icmp<cond>, if_acmp<cond>, goto, jsr
+            if ((153 <= inst && inst <= 168)
+                || inst == IFNULL || inst == IFNONNULL) {
+                int offset = (code[i + 1] << 8) | (code[i + 2] & 0xff);
+                newcode[j] = code[i];
+                ByteArray.write16bit(newOffset(gaps, i, j, offset), newcode, j + 1);
+                j += 3;
+            }
+            else if (inst == GOTO_W || inst == JSR_W) {
+                int offset = ByteArray.read32bit(code, i + 1);
+                newcode[j] = code[i];
+                ByteArray.write32bit(newOffset(gaps, i, j, offset), newcode, j + 1);
+                j += 5;
+            }
+            else if (inst == TABLESWITCH || inst == LOOKUPSWITCH) {
+                // the padding does not change since the gap lengths are multiples of 4.
+                int i2 = (i & ~3) + 4;
+                j = copyGapBytes(newcode, j, code, i, i2);
+                int j0 = j - (i2 - i);
+                int defaultbyte = ByteArray.read32bit(code, i2);
+                ByteArray.write32bit(newOffset(gaps, i, j0, defaultbyte), newcode, j);
+                if (inst == TABLESWITCH) {
+                    int lowbyte = ByteArray.read32bit(code, i2 + 4);
+                    int highbyte = ByteArray.read32bit(code, i2 + 8);
+                    ByteArray.write32bit(lowbyte, newcode, j + 4);
+                    ByteArray.write32bit(highbyte, newcode, j + 8);
+                    j += 12;
+                    for (int i0 = i2 + 12; i0 < nextPos; i0 += 4) {
+                        int offset = ByteArray.read32bit(code, i0);
+                        ByteArray.write32bit(newOffset(gaps, i, j0, offset), newcode, j);
+                        j += 4;
+                    }
+                }
+                else {
+                    int npairs = ByteArray.read32bit(code, i2 + 4);
+                    ByteArray.write32bit(npairs, newcode, j + 4);
+                    j += 8;
+                    for (int i0 = i2 + 8; i0 < nextPos; i0 += 8) {
+                        ByteArray.copy32bit(code, i0, newcode, j);
+                        int offset = ByteArray.read32bit(code, i0 + 4);
+                        ByteArray.write32bit(newOffset(gaps, i, j0, offset), newcode, j + 4);
+                        j += 8;
+                    }
+                }
+            }
+            else
+                while (i < nextPos)
+                    newcode[j++] = code[i++];
+        }
+
+        if (k < gaps.size)
+            throw new BadBytecode("no instruction at " + gaps.positions[k]);
+
+        CodeAttribute ca = codeAttr;
+        ca.getExceptionTable().shiftPc(gaps);
+        LineNumberAttribute na
+            = (LineNumberAttribute)ca.getAttribute(LineNumberAttribute.tag);
+        if (na != null)
+            na.shiftPc(gaps);
+
+        LocalVariableAttribute va = (LocalVariableAttribute)ca.getAttribute(
+                                                LocalVariableAttribute.tag);
+        if (va != null)
+            va.shiftPc(gaps);
+
+        LocalVariableAttribute vta
+            = (LocalVariableAttribute)ca.getAttribute(
+                                              LocalVariableAttribute.typeTag);
+        if (vta != null)
+            vta.shiftPc(gaps);
+
+        StackMapTable smt = (StackMapTable)ca.getAttribute(StackMapTable.tag);
+        if (smt != null)
+            smt.shiftPc(gaps);
+
+        StackMap sm = (StackMap)ca.getAttribute(StackMap.tag);
+        if (sm != null)
+            sm.shiftPc(gaps);
+
+        ca.shiftModified(gaps);
+        ca.setCode(newcode);
+        bytecode = newcode;
+        endPos = getCodeLength();
+        currentPos = gaps.instruction(currentPos);
+        mark = gaps.target(mark);
+        mark2 = gaps.target(mark2);
+        for (int i = gaps.size - 1; i >= 0; i--)
+            updateCursors(gaps.positions[i], gaps.before[i + 1] - gaps.before[i]);
+    }
+
+    /*
+     * Returns a new branch offset.  A branch to the branch instruction itself
+     * is not redirected to the gap in front of it.  See JASSIST-124.
+     */
+    private static int newOffset(Gaps gaps, int i, int j, int offset) {
+        int target = i + offset;
+        if (target == i)
+            return 0;
+        else
+            return gaps.target(target) - j;
+    }
+
+    /*
+     * Inserts the gaps one by one.  It is used when some branch
+     * instructions must be changed into wide ones.  The gaps are inserted
+     * from the last one since the insertion does not change the indexes
+     * in front of the gap unless branch instructions are widened.
+     * The widened instructions shift the remaining positions.
+     */
+    private void insertOneByOne(Gaps gaps) throws BadBytecode {
+        int[] positions = Arrays.copyOf(gaps.positions, gaps.size);
+        pendingPositions = positions;
+        try {
+            for (int k = gaps.size - 1; k >= 0; k--) {
+                int pos = positions[k];
+                if (gaps.exCode[k].length > 0) {
+                    Gap gap = insertGapAt(pos, gaps.exCode[k].length, true);
+                    write(gaps.exCode[k], gap.position);
+                    pos = gap.position + gap.length;
+                }
+
+                if (gaps.inCode[k].length > 0) {
+                    Gap gap = insertGapAt(pos, gaps.inCode[k].length, false);
+                    write(gaps.inCode[k], gap.position);
+                }
+            }
+        }
+        finally {
+            pendingPositions = null;
+        }
+    }
+
     /**
      * Copies and inserts the entries in the given exception table
      * at the beginning of the exception table in the code attribute
@@ -743,6 +1171,7 @@ public class CodeIterator implements Opcode {
             newcode[i] = NOP;
 
         codeAttr.setCode(newcode);
+        codeAttr.modified(codeLength, gapLength);
         bytecode = newcode;
         endPos = getCodeLength();
     }
@@ -894,6 +1323,7 @@ public class CodeIterator implements Opcode {
         if (sm != null)
             sm.shiftPc(where, gapLength, exclusive);
 
+        ca.shiftModified(where, gapLength);
         return newcode;
     }
 
@@ -1040,6 +1470,7 @@ public class CodeIterator implements Opcode {
     static class Pointers {
         int cursor;
         int mark0, mark, mark2;
+        int[] others;       // may be null
         ExceptionTable etable;
         LineNumberAttribute line;
         LocalVariableAttribute vars, types;
@@ -1072,6 +1503,11 @@ public class CodeIterator implements Opcode {
             if (where < mark0 || (where == mark0 && exclusive))
                 mark0 += gapLength;
 
+            if (others != null)
+                for (int i = 0; i < others.length; i++)
+                    if (where < others[i] || (where == others[i] && exclusive))
+                        others[i] += gapLength;
+
             etable.shiftPc(where, gapLength, exclusive);
             if (line != null)
                 line.shiftPc(where, gapLength, exclusive);
@@ -1149,7 +1585,10 @@ public class CodeIterator implements Opcode {
         if (gapLength <= 0)
             return code;
 
+        // branch instructions may be rewritten at any place.
+        ca.modifiedAll();
         Pointers pointers = new Pointers(currentPos, mark, mark2, where, etable, ca);
+        pointers.others = pendingPositions;
         List<Branch> jumps = makeJumpList(code, code.length, pointers);
         byte[] r = insertGap2w(code, where, gapLength, exclusive, jumps, pointers);
         currentPos = pointers.cursor;
@@ -16,12 +16,11 @@
 
 package javassist.bytecode;
 
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -33,98 +32,112 @@ import javassist.CtClass;
  */
 public final class ConstPool
 {
-    LongVector items;
+    /* The entries are kept in parallel arrays rather than as one object
+     * per entry.  tags[i] is the tag of the i-th entry; it is 0 for
+     * index 0 and for the padding that follows a long or a double.
+     * data1[i] and data2[i] are the index fields of the entry, or the
+     * value of an integer or a float (its raw bits).  A long or a double
+     * is split into the high and the low word.  For a Utf8 entry,
+     * data1[i] is an index into strings.
+     */
+    byte[] tags;
+    int[] data1, data2;
+    String[] strings;
+    int numOfStrings;
     int numOfItems;
     int thisClassInfo;
-    Map<ConstInfo,ConstInfo> itemsCache;
+
+    /* an open-addressing hash table from the contents of an entry
+     * to its index.  0 means an empty slot.  It is built on demand.
+     */
+    int[] itemsIndex;
 
     /**
      * <code>CONSTANT_Class</code>
      */
-    public static final int CONST_Class = ClassInfo.tag;
+    public static final int CONST_Class = 7;
 
     /**
      * <code>CONSTANT_Fieldref</code>
      */
-    public static final int CONST_Fieldref = FieldrefInfo.tag;
+    public static final int CONST_Fieldref = 9;
 
     /**
      * <code>CONSTANT_Methodref</code>
      */
-    public static final int CONST_Methodref = MethodrefInfo.tag;
+    public static final int CONST_Methodref = 10;
 
     /**
      * <code>CONSTANT_InterfaceMethodref</code>
      */
-    public static final int CONST_InterfaceMethodref
-                                        = InterfaceMethodrefInfo.tag;
+    public static final int CONST_InterfaceMethodref = 11;
 
     /**
      * <code>CONSTANT_String</code>
      */
-    public static final int CONST_String = StringInfo.tag;
+    public static final int CONST_String = 8;
 
     /**
      * <code>CONSTANT_Integer</code>
      */
-    public static final int CONST_Integer = IntegerInfo.tag;
+    public static final int CONST_Integer = 3;
 
     /**
      * <code>CONSTANT_Float</code>
      */
-    public static final int CONST_Float = FloatInfo.tag;
+    public static final int CONST_Float = 4;
 
     /**
      * <code>CONSTANT_Long</code>
      */
-    public static final int CONST_Long = LongInfo.tag;
+    public static final int CONST_Long = 5;
 
     /**
      * <code>CONSTANT_Double</code>
      */
-    public static final int CONST_Double = DoubleInfo.tag;
+    public static final int CONST_Double = 6;
 
     /**
      * <code>CONSTANT_NameAndType</code>
      */
-    public static final int CONST_NameAndType = NameAndTypeInfo.tag;
+    public static final int CONST_NameAndType = 12;
 
     /**
      * <code>CONSTANT_Utf8</code>
      */
-    public static final int CONST_Utf8 = Utf8Info.tag;
+    public static final int CONST_Utf8 = 1;
 
     /**
      * <code>CONSTANT_MethodHandle</code>
      */
-    public static final int CONST_MethodHandle = MethodHandleInfo.tag;
+    public static final int CONST_MethodHandle = 15;
 
     /**
      * <code>CONSTANT_MethodHandle</code>
      */
-    public static final int CONST_MethodType = MethodTypeInfo.tag;
+    public static final int CONST_MethodType = 16;
 
     /**
      * <code>CONSTANT_Dynamic</code>
      */
-    public static final int CONST_Dynamic = DynamicInfo.tag;
+    public static final int CONST_Dynamic = 17;
 
     /**
      * <code>CONSTANT_DynamicCallSite</code>,
      * also known as <code>CONSTANT_InvokeDynamic</code>
      */
-    public static final int CONST_DynamicCallSite = InvokeDynamicInfo.tag;
-    public static final int CONST_InvokeDynamic = InvokeDynamicInfo.tag;
+    public static final int CONST_DynamicCallSite = 18;
+    public static final int CONST_InvokeDynamic = 18;
 
     /**
      * <code>CONSTANT_Module</code>
      */
-    public static final int CONST_Module = ModuleInfo.tag;
+    public static final int CONST_Module = 19;
 
     /**
      * <code>CONSTANT_Package</code>
      */
-    public static final int CONST_Package = PackageInfo.tag;
+    public static final int CONST_Package = 20;
 
     /**
      * Represents the class using this constant pool table.
@@ -184,10 +197,8 @@ public final class ConstPool
      */
     public ConstPool(String thisclass)
     {
-        items = new LongVector();
-        itemsCache = null;
-        numOfItems = 0;
-        addItem0(null);          // index 0 is reserved by the JVM.
+        allocate(64);
+        addItem0(0, 0, 0);      // index 0 is reserved by the JVM.
         thisClassInfo = addClassInfo(thisclass);
     }
 
@@ -198,16 +209,22 @@ public final class ConstPool
      */
     public ConstPool(DataInputStream in) throws IOException
     {
-        itemsCache = null;
+        this(ClassFileInput.of(in));
+    }
+
+    ConstPool(ClassFileInput in) throws IOException
+    {
+        itemsIndex = null;
         thisClassInfo = 0;
-        /* read() initializes items and numOfItems, and do addItem(null).
+        /* read() initializes the arrays and numOfItems,
+         * and reserves index 0.
          */
         read(in);
     }
 
     void prune()
     {
-        itemsCache = null;
+        itemsIndex = null;
     }
 
     /**
@@ -240,11 +257,6 @@ public final class ConstPool
         thisClassInfo = i;
     }
 
-    ConstInfo getItem(int n)
-    {
-        return items.elementAt(n);
-    }
-
     /**
      * Returns the <code>tag</code> field of the constant pool table
      * entry at the given index.
@@ -254,7 +266,7 @@ public final class ConstPool
      */
     public int getTag(int index)
     {
-        return getItem(index).getTag();
+        return tags[index];
     }
 
     /**
@@ -270,10 +282,10 @@ public final class ConstPool
      */
     public String getClassInfo(int index)
     {
-        ClassInfo c = (ClassInfo)getItem(index);
-        if (c == null)
+        if (isEmpty(index))
             return null;
-        return Descriptor.toJavaName(getUtf8Info(c.name));
+        checkTag(index, CONST_Class);
+        return Descriptor.toJavaName(getUtf8Info(data1[index]));
     }
 
     /**
@@ -287,10 +299,10 @@ public final class ConstPool
      */
     public String getClassInfoByDescriptor(int index)
     {
-        ClassInfo c = (ClassInfo)getItem(index);
-        if (c == null)
+        if (isEmpty(index))
             return null;
-        String className = getUtf8Info(c.name);
+        checkTag(index, CONST_Class);
+        String className = getUtf8Info(data1[index]);
         if (className.charAt(0) == '[')
             return className;
         return Descriptor.of(className);
@@ -303,8 +315,8 @@ public final class ConstPool
      */
     public int getNameAndTypeName(int index)
     {
-        NameAndTypeInfo ntinfo = (NameAndTypeInfo)getItem(index);
-        return ntinfo.memberName;
+        checkTag(index, CONST_NameAndType);
+        return data1[index];
     }
 
     /**
@@ -314,8 +326,8 @@ public final class ConstPool
      */
     public int getNameAndTypeDescriptor(int index)
     {
-        NameAndTypeInfo ntinfo = (NameAndTypeInfo)getItem(index);
-        return ntinfo.typeDescriptor;
+        checkTag(index, CONST_NameAndType);
+        return data2[index];
     }
 
     /**
@@ -329,8 +341,8 @@ public final class ConstPool
      */
     public int getMemberClass(int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        return minfo.classIndex;
+        checkMemberref(index);
+        return data1[index];
     }
 
     /**
@@ -344,8 +356,8 @@ public final class ConstPool
      */
     public int getMemberNameAndType(int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        return minfo.nameAndTypeIndex;
+        checkMemberref(index);
+        return data2[index];
     }
 
     /**
@@ -355,8 +367,8 @@ public final class ConstPool
      */
     public int getFieldrefClass(int index)
     {
-        FieldrefInfo finfo = (FieldrefInfo)getItem(index);
-        return finfo.classIndex;
+        checkTag(index, CONST_Fieldref);
+        return data1[index];
     }
 
     /**
@@ -368,10 +380,10 @@ public final class ConstPool
      */
     public String getFieldrefClassName(int index)
     {
-        FieldrefInfo f = (FieldrefInfo)getItem(index);
-        if (f == null)
+        if (isEmpty(index))
             return null;
-        return getClassInfo(f.classIndex);
+        checkTag(index, CONST_Fieldref);
+        return getClassInfo(data1[index]);
     }
 
     /**
@@ -381,8 +393,8 @@ public final class ConstPool
      */
     public int getFieldrefNameAndType(int index)
     {
-        FieldrefInfo finfo = (FieldrefInfo)getItem(index);
-        return finfo.nameAndTypeIndex;
+        checkTag(index, CONST_Fieldref);
+        return data2[index];
     }
 
     /**
@@ -395,13 +407,10 @@ public final class ConstPool
      */
     public String getFieldrefName(int index)
     {
-        FieldrefInfo f = (FieldrefInfo)getItem(index);
-        if (f == null)
-            return null;
-        NameAndTypeInfo n = (NameAndTypeInfo)getItem(f.nameAndTypeIndex);
-        if(n == null)
+        if (isEmpty(index))
             return null;
-        return getUtf8Info(n.memberName);
+        checkTag(index, CONST_Fieldref);
+        return getMemberName(data2[index]);
     }
 
     /**
@@ -414,13 +423,10 @@ public final class ConstPool
      */
     public String getFieldrefType(int index)
     {
-        FieldrefInfo f = (FieldrefInfo)getItem(index);
-        if (f == null)
+        if (isEmpty(index))
             return null;
-        NameAndTypeInfo n = (NameAndTypeInfo)getItem(f.nameAndTypeIndex);
-        if(n == null)
-            return null;
-        return getUtf8Info(n.typeDescriptor);
+        checkTag(index, CONST_Fieldref);
+        return getMemberType(data2[index]);
     }
 
     /**
@@ -430,8 +436,8 @@ public final class ConstPool
      */
     public int getMethodrefClass(int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        return minfo.classIndex;
+        checkMemberref(index);
+        return data1[index];
     }
 
     /**
@@ -443,10 +449,10 @@ public final class ConstPool
      */
     public String getMethodrefClassName(int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        if (minfo == null)
+        if (isEmpty(index))
             return null;
-        return getClassInfo(minfo.classIndex);
+        checkMemberref(index);
+        return getClassInfo(data1[index]);
     }
 
     /**
@@ -456,8 +462,8 @@ public final class ConstPool
      */
     public int getMethodrefNameAndType(int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        return minfo.nameAndTypeIndex;
+        checkMemberref(index);
+        return data2[index];
     }
 
     /**
@@ -470,14 +476,10 @@ public final class ConstPool
      */
     public String getMethodrefName(int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        if (minfo == null)
-            return null;
-        NameAndTypeInfo n
-            = (NameAndTypeInfo)getItem(minfo.nameAndTypeIndex);
-        if(n == null)
+        if (isEmpty(index))
             return null;
-        return getUtf8Info(n.memberName);
+        checkMemberref(index);
+        return getMemberName(data2[index]);
     }
 
     /**
@@ -490,14 +492,10 @@ public final class ConstPool
      */
     public String getMethodrefType(int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        if (minfo == null)
+        if (isEmpty(index))
             return null;
-        NameAndTypeInfo n
-            = (NameAndTypeInfo)getItem(minfo.nameAndTypeIndex);
-        if(n == null)
-            return null;
-        return getUtf8Info(n.typeDescriptor);
+        checkMemberref(index);
+        return getMemberType(data2[index]);
     }
 
     /**
@@ -507,8 +505,8 @@ public final class ConstPool
      */
     public int getInterfaceMethodrefClass(int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        return minfo.classIndex;
+        checkMemberref(index);
+        return data1[index];
     }
 
     /**
@@ -520,8 +518,8 @@ public final class ConstPool
      */
     public String getInterfaceMethodrefClassName(int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        return getClassInfo(minfo.classIndex);
+        checkMemberref(index);
+        return getClassInfo(data1[index]);
     }
 
     /**
@@ -531,8 +529,8 @@ public final class ConstPool
      */
     public int getInterfaceMethodrefNameAndType(int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        return minfo.nameAndTypeIndex;
+        checkMemberref(index);
+        return data2[index];
     }
 
     /**
@@ -546,14 +544,10 @@ public final class ConstPool
      */
     public String getInterfaceMethodrefName(int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        if (minfo == null)
-            return null;
-        NameAndTypeInfo n
-            = (NameAndTypeInfo)getItem(minfo.nameAndTypeIndex);
-        if(n == null)
+        if (isEmpty(index))
             return null;
-        return getUtf8Info(n.memberName);
+        checkMemberref(index);
+        return getMemberName(data2[index]);
     }
 
     /**
@@ -567,14 +561,10 @@ public final class ConstPool
      */
     public String getInterfaceMethodrefType(int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        if (minfo == null)
+        if (isEmpty(index))
             return null;
-        NameAndTypeInfo n
-            = (NameAndTypeInfo)getItem(minfo.nameAndTypeIndex);
-        if(n == null)
-            return null;
-        return getUtf8Info(n.typeDescriptor);
+        checkMemberref(index);
+        return getMemberType(data2[index]);
     }
     /**
      * Reads <code>CONSTANT_Integer_info</code>, <code>_Float_info</code>,
@@ -587,20 +577,23 @@ public final class ConstPool
      */
     public Object getLdcValue(int index)
     {
-        ConstInfo constInfo = this.getItem(index);
-        Object value = null;
-        if (constInfo instanceof StringInfo)
-            value = this.getStringInfo(index);
-        else if (constInfo instanceof FloatInfo)
-            value = Float.valueOf(getFloatInfo(index));
-        else if (constInfo instanceof IntegerInfo)
-            value = Integer.valueOf(getIntegerInfo(index));
-        else if (constInfo instanceof LongInfo)
-            value = Long.valueOf(getLongInfo(index));
-        else if (constInfo instanceof DoubleInfo)
-            value = Double.valueOf(getDoubleInfo(index));
+        if (isEmpty(index))
+            return null;
 
-        return value;
+        switch (tags[index]) {
+        case CONST_String :
+            return getStringInfo(index);
+        case CONST_Float :
+            return Float.valueOf(getFloatInfo(index));
+        case CONST_Integer :
+            return Integer.valueOf(getIntegerInfo(index));
+        case CONST_Long :
+            return Long.valueOf(getLongInfo(index));
+        case CONST_Double :
+            return Double.valueOf(getDoubleInfo(index));
+        default :
+            return null;
+        }
     }
 
     /**
@@ -611,8 +604,8 @@ public final class ConstPool
      */
     public int getIntegerInfo(int index)
     {
-        IntegerInfo i = (IntegerInfo)getItem(index);
-        return i.value;
+        checkTag(index, CONST_Integer);
+        return data1[index];
     }
 
     /**
@@ -623,8 +616,8 @@ public final class ConstPool
      */
     public float getFloatInfo(int index)
     {
-        FloatInfo i = (FloatInfo)getItem(index);
-        return i.value;
+        checkTag(index, CONST_Float);
+        return Float.intBitsToFloat(data1[index]);
     }
 
     /**
@@ -635,8 +628,8 @@ public final class ConstPool
      */
     public long getLongInfo(int index)
     {
-        LongInfo i = (LongInfo)getItem(index);
-        return i.value;
+        checkTag(index, CONST_Long);
+        return toLong(index);
     }
 
     /**
@@ -647,8 +640,8 @@ public final class ConstPool
      */
     public double getDoubleInfo(int index)
     {
-        DoubleInfo i = (DoubleInfo)getItem(index);
-        return i.value;
+        checkTag(index, CONST_Double);
+        return Double.longBitsToDouble(toLong(index));
     }
 
     /**
@@ -659,8 +652,8 @@ public final class ConstPool
      */
     public String getStringInfo(int index)
     {
-        StringInfo si = (StringInfo)getItem(index);
-        return getUtf8Info(si.string);
+        checkTag(index, CONST_String);
+        return getUtf8Info(data1[index]);
     }
 
     /**
@@ -671,8 +664,8 @@ public final class ConstPool
      */
     public String getUtf8Info(int index)
     {
-        Utf8Info utf = (Utf8Info)getItem(index);
-        return utf.string;
+        checkTag(index, CONST_Utf8);
+        return strings[data1[index]];
     }
 
     /**
@@ -693,8 +686,8 @@ public final class ConstPool
      */
     public int getMethodHandleKind(int index)
     {
-        MethodHandleInfo mhinfo = (MethodHandleInfo)getItem(index);
-        return mhinfo.refKind;
+        checkTag(index, CONST_MethodHandle);
+        return data1[index];
     }
 
     /**
@@ -706,8 +699,8 @@ public final class ConstPool
      */
     public int getMethodHandleIndex(int index)
     {
-        MethodHandleInfo mhinfo = (MethodHandleInfo)getItem(index);
-        return mhinfo.refIndex;
+        checkTag(index, CONST_MethodHandle);
+        return data2[index];
     }
 
     /**
@@ -719,8 +712,8 @@ public final class ConstPool
      */
     public int getMethodTypeInfo(int index)
     {
-        MethodTypeInfo mtinfo = (MethodTypeInfo)getItem(index);
-        return mtinfo.descriptor;
+        checkTag(index, CONST_MethodType);
+        return data1[index];
     }
 
     /**
@@ -732,8 +725,8 @@ public final class ConstPool
      */
     public int getInvokeDynamicBootstrap(int index)
     {
-        InvokeDynamicInfo iv = (InvokeDynamicInfo)getItem(index);
-        return iv.bootstrap;
+        checkTag(index, CONST_InvokeDynamic);
+        return data1[index];
     }
 
     /**
@@ -745,8 +738,8 @@ public final class ConstPool
      */
     public int getInvokeDynamicNameAndType(int index)
     {
-        InvokeDynamicInfo iv = (InvokeDynamicInfo)getItem(index);
-        return iv.nameAndType;
+        checkTag(index, CONST_InvokeDynamic);
+        return data2[index];
     }
 
     /**
@@ -760,13 +753,10 @@ public final class ConstPool
      */
     public String getInvokeDynamicType(int index)
     {
-        InvokeDynamicInfo iv = (InvokeDynamicInfo)getItem(index);
-        if (iv == null)
-            return null;
-        NameAndTypeInfo n = (NameAndTypeInfo)getItem(iv.nameAndType);
-        if(n == null)
+        if (isEmpty(index))
             return null;
-        return getUtf8Info(n.typeDescriptor);
+        checkTag(index, CONST_InvokeDynamic);
+        return getMemberType(data2[index]);
     }
 
     /**
@@ -778,8 +768,8 @@ public final class ConstPool
      */
     public int getDynamicBootstrap(int index)
     {
-        DynamicInfo iv = (DynamicInfo)getItem(index);
-        return iv.bootstrap;
+        checkTag(index, CONST_Dynamic);
+        return data1[index];
     }
 
     /**
@@ -791,8 +781,8 @@ public final class ConstPool
      */
     public int getDynamicNameAndType(int index)
     {
-        DynamicInfo iv = (DynamicInfo)getItem(index);
-        return iv.nameAndType;
+        checkTag(index, CONST_Dynamic);
+        return data2[index];
     }
 
     /**
@@ -806,13 +796,10 @@ public final class ConstPool
      */
     public String getDynamicType(int index)
     {
-        DynamicInfo iv = (DynamicInfo)getItem(index);
-        if (iv == null)
+        if (isEmpty(index))
             return null;
-        NameAndTypeInfo n = (NameAndTypeInfo)getItem(iv.nameAndType);
-        if(n == null)
-            return null;
-        return getUtf8Info(n.typeDescriptor);
+        checkTag(index, CONST_Dynamic);
+        return getMemberType(data2[index]);
     }
 
     /**
@@ -824,8 +811,8 @@ public final class ConstPool
      */
     public String getModuleInfo(int index)
     {
-        ModuleInfo mi = (ModuleInfo)getItem(index);
-        return getUtf8Info(mi.name);
+        checkTag(index, CONST_Module);
+        return getUtf8Info(data1[index]);
     }
 
     /**
@@ -838,8 +825,8 @@ public final class ConstPool
      */
     public String getPackageInfo(int index)
     {
-        PackageInfo mi = (PackageInfo)getItem(index);
-        return getUtf8Info(mi.name);
+        checkTag(index, CONST_Package);
+        return getUtf8Info(data1[index]);
     }
 
     /**
@@ -875,12 +862,12 @@ public final class ConstPool
      */
     public int isMember(String classname, String membername, int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        if (getClassInfo(minfo.classIndex).equals(classname)) {
-            NameAndTypeInfo ntinfo
-                = (NameAndTypeInfo)getItem(minfo.nameAndTypeIndex);
-            if (getUtf8Info(ntinfo.memberName).equals(membername))
-                return ntinfo.typeDescriptor;
+        checkMemberref(index);
+        if (getClassInfo(data1[index]).equals(classname)) {
+            int nt = data2[index];
+            checkTag(nt, CONST_NameAndType);
+            if (getUtf8Info(data1[nt]).equals(membername))
+                return data2[nt];
         }
 
         return 0;       // false
@@ -905,34 +892,192 @@ public final class ConstPool
      */
     public String eqMember(String membername, String desc, int index)
     {
-        MemberrefInfo minfo = (MemberrefInfo)getItem(index);
-        NameAndTypeInfo ntinfo
-                = (NameAndTypeInfo)getItem(minfo.nameAndTypeIndex);
-        if (getUtf8Info(ntinfo.memberName).equals(membername)
-            && getUtf8Info(ntinfo.typeDescriptor).equals(desc))
-            return getClassInfo(minfo.classIndex);
+        checkMemberref(index);
+        int nt = data2[index];
+        checkTag(nt, CONST_NameAndType);
+        if (getUtf8Info(data1[nt]).equals(membername)
+            && getUtf8Info(data2[nt]).equals(desc))
+            return getClassInfo(data1[index]);
         return null;       // false
     }
 
-    private int addItem0(ConstInfo info)
+    private boolean isEmpty(int index)
     {
-        items.addElement(info);
-        return numOfItems++;
+        return index <= 0 || numOfItems <= index;
+    }
+
+    /* A wrong tag is reported by ClassCastException as it was
+     * when every entry was represented by its own object.
+     */
+    private void checkTag(int index, int tag)
+    {
+        if (tags[index] != tag)
+            throw new ClassCastException(tagMismatch(index));
+    }
+
+    private void checkMemberref(int index)
+    {
+        int tag = tags[index];
+        if (tag != CONST_Fieldref && tag != CONST_Methodref
+            && tag != CONST_InterfaceMethodref)
+            throw new ClassCastException(tagMismatch(index));
+    }
+
+    private String tagMismatch(int index)
+    {
+        return "unexpected constant pool entry at " + index
+               + ": tag " + tags[index];
     }
 
-    private int addItem(ConstInfo info)
+    private String getMemberName(int nameAndType)
     {
-        if (itemsCache == null)
-            itemsCache = makeItemsCache(items);
+        if (isEmpty(nameAndType))
+            return null;
+
+        checkTag(nameAndType, CONST_NameAndType);
+        return getUtf8Info(data1[nameAndType]);
+    }
+
+    private String getMemberType(int nameAndType)
+    {
+        if (isEmpty(nameAndType))
+            return null;
+
+        checkTag(nameAndType, CONST_NameAndType);
+        return getUtf8Info(data2[nameAndType]);
+    }
+
+    private long toLong(int index)
+    {
+        return ((long)data1[index] << 32) | (data2[index] & 0xffffffffL);
+    }
+
+    private void allocate(int capacity)
+    {
+        tags = new byte[capacity];
+        data1 = new int[capacity];
+        data2 = new int[capacity];
+        strings = new String[capacity / 2 + 1];
+        numOfStrings = 0;
+        numOfItems = 0;
+    }
+
+    private int addString(String str)
+    {
+        if (numOfStrings == strings.length)
+            strings = Arrays.copyOf(strings, numOfStrings * 2);
+
+        strings[numOfStrings] = str;
+        return numOfStrings++;
+    }
+
+    private int addItem0(int tag, int value1, int value2)
+    {
+        if (numOfItems == tags.length) {
+            int capacity = Math.max(numOfItems * 2, 8);
+            tags = Arrays.copyOf(tags, capacity);
+            data1 = Arrays.copyOf(data1, capacity);
+            data2 = Arrays.copyOf(data2, capacity);
+        }
 
-        ConstInfo found = itemsCache.get(info);
-        if (found != null)
-            return found.index;
-        items.addElement(info);
-        itemsCache.put(info, info);
+        tags[numOfItems] = (byte)tag;
+        data1[numOfItems] = value1;
+        data2[numOfItems] = value2;
         return numOfItems++;
     }
 
+    private int addItem(int tag, int value1, int value2)
+    {
+        if (itemsIndex == null)
+            makeItemsIndex();
+
+        int mask = itemsIndex.length - 1;
+        int h = hash(tag, value1, value2) & mask;
+        int i;
+        while ((i = itemsIndex[h]) != 0) {
+            if (tags[i] == tag && data1[i] == value1 && data2[i] == value2)
+                return i;
+
+            h = (h + 1) & mask;
+        }
+
+        return addIndexedItem(h, tag, value1, value2);
+    }
+
+    /* adds a new entry and records it in the given empty slot
+     * of itemsIndex.
+     */
+    private int addIndexedItem(int slot, int tag, int value1, int value2)
+    {
+        int index = addItem0(tag, value1, value2);
+        itemsIndex[slot] = index;
+        if (numOfItems * 2 > itemsIndex.length)
+            makeItemsIndex();
+
+        return index;
+    }
+
+    /* adds a long or a double entry.
+     */
+    private int addWideItem(int tag, int high, int low)
+    {
+        int i = addItem(tag, high, low);
+        if (i == numOfItems - 1)    // if not existing
+            addConstInfoPadding();
+
+        return i;
+    }
+
+    private void makeItemsIndex()
+    {
+        int size = 64;
+        while (size < numOfItems * 4)
+            size <<= 1;
+
+        int[] index = new int[size];
+        int mask = size - 1;
+        for (int i = 1; i < numOfItems; ++i) {
+            int tag = tags[i];
+            if (tag == 0)
+                continue;       // padding
+
+            int h;
+            if (tag == CONST_Utf8)
+                h = spread(strings[data1[i]].hashCode()) & mask;
+            else
+                h = hash(tag, data1[i], data2[i]) & mask;
+
+            int j;
+            while ((j = index[h]) != 0 && !isSameItem(i, j))
+                h = (h + 1) & mask;
+
+            index[h] = i;   // a later duplicate overrides an earlier one.
+        }
+
+        itemsIndex = index;
+    }
+
+    private boolean isSameItem(int i, int j)
+    {
+        if (tags[i] != tags[j])
+            return false;
+        else if (tags[i] == CONST_Utf8)
+            return strings[data1[i]].equals(strings[data1[j]]);
+        else
+            return data1[i] == data1[j] && data2[i] == data2[j];
+    }
+
+    private static int hash(int tag, int value1, int value2)
+    {
+        return spread((tag * 31 + value1) * 31 + value2);
+    }
+
+    private static int spread(int h)
+    {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
     /**
      * Copies the n-th item in this ConstPool object into the destination
      * ConstPool object.
@@ -949,12 +1094,68 @@ public final class ConstPool
         if (n == 0)
             return 0;
 
-        ConstInfo info = getItem(n);
-        return info.copy(this, dest, classnames);
+        switch (tags[n]) {
+        case 0 :        // padding following a long or double entry
+            return dest.addConstInfoPadding();
+        case CONST_Class : {
+            String classname = getUtf8Info(data1[n]);
+            if (classnames != null) {
+                String newname = classnames.get(classname);
+                if (newname != null)
+                    classname = newname;
+            }
+
+            return dest.addClassInfo(classname);
+        }
+        case CONST_NameAndType : {
+            String mname = getUtf8Info(data1[n]);
+            String tdesc = getUtf8Info(data2[n]);
+            tdesc = Descriptor.rename(tdesc, classnames);
+            return dest.addNameAndTypeInfo(dest.addUtf8Info(mname),
+                                           dest.addUtf8Info(tdesc));
+        }
+        case CONST_Fieldref :
+        case CONST_Methodref :
+        case CONST_InterfaceMethodref : {
+            int classIndex = copy(data1[n], dest, classnames);
+            int ntIndex = copy(data2[n], dest, classnames);
+            return dest.addItem(tags[n], classIndex, ntIndex);
+        }
+        case CONST_String :
+            return dest.addStringInfo(getUtf8Info(data1[n]));
+        case CONST_Integer :
+        case CONST_Float :
+            return dest.addItem(tags[n], data1[n], 0);
+        case CONST_Long :
+        case CONST_Double :
+            return dest.addWideItem(tags[n], data1[n], data2[n]);
+        case CONST_Utf8 :
+            return dest.addUtf8Info(strings[data1[n]]);
+        case CONST_MethodHandle :
+            return dest.addMethodHandleInfo(data1[n],
+                                            copy(data2[n], dest, classnames));
+        case CONST_MethodType : {
+            String desc = getUtf8Info(data1[n]);
+            desc = Descriptor.rename(desc, classnames);
+            return dest.addMethodTypeInfo(dest.addUtf8Info(desc));
+        }
+        case CONST_Dynamic :
+            return dest.addDynamicInfo(data1[n],
+                                       copy(data2[n], dest, classnames));
+        case CONST_InvokeDynamic :
+            return dest.addInvokeDynamicInfo(data1[n],
+                                             copy(data2[n], dest, classnames));
+        case CONST_Module :
+            return dest.addModuleInfo(dest.addUtf8Info(getUtf8Info(data1[n])));
+        case CONST_Package :
+            return dest.addPackageInfo(dest.addUtf8Info(getUtf8Info(data1[n])));
+        default :
+            throw new ClassCastException(tagMismatch(n));
+        }
     }
 
     int addConstInfoPadding() {
-        return addItem0(new ConstInfoPadding(numOfItems));
+        return addItem0(0, 0, 0);
     }
 
     /**
@@ -994,7 +1195,7 @@ public final class ConstPool
     public int addClassInfo(String qname)
     {
         int utf8 = addUtf8Info(Descriptor.toJvmName(qname));
-        return addItem(new ClassInfo(utf8, numOfItems));
+        return addItem(CONST_Class, utf8, 0);
     }
 
     /**
@@ -1020,7 +1221,7 @@ public final class ConstPool
      */
     public int addNameAndTypeInfo(int name, int type)
     {
-        return addItem(new NameAndTypeInfo(name, type, numOfItems));
+        return addItem(CONST_NameAndType, name, type);
     }
 
     /**
@@ -1049,10 +1250,9 @@ public final class ConstPool
      * @param nameAndTypeInfo   <code>name_and_type_index</code>.
      * @return          the index of the added entry.
      */
-    public int addFieldrefInfo(int classInfo, int nameAndTypeInfo) 
+    public int addFieldrefInfo(int classInfo, int nameAndTypeInfo)
     {
-        return addItem(new FieldrefInfo(classInfo, nameAndTypeInfo,
-                                        numOfItems));
+        return addItem(CONST_Fieldref, classInfo, nameAndTypeInfo);
     }
 
     /**
@@ -1083,8 +1283,7 @@ public final class ConstPool
      */
     public int addMethodrefInfo(int classInfo, int nameAndTypeInfo)
     {
-         return addItem(new MethodrefInfo(classInfo,
-                 nameAndTypeInfo, numOfItems));
+        return addItem(CONST_Methodref, classInfo, nameAndTypeInfo);
     }
 
     /**
@@ -1120,9 +1319,7 @@ public final class ConstPool
     public int addInterfaceMethodrefInfo(int classInfo,
                                          int nameAndTypeInfo)
     {
-        return addItem(new InterfaceMethodrefInfo(classInfo,
-                                                  nameAndTypeInfo,
-                                                  numOfItems));
+        return addItem(CONST_InterfaceMethodref, classInfo, nameAndTypeInfo);
     }
 
     /**
@@ -1137,7 +1334,7 @@ public final class ConstPool
     public int addStringInfo(String str)
     {
         int utf = addUtf8Info(str);
-        return addItem(new StringInfo(utf, numOfItems));
+        return addItem(CONST_String, utf, 0);
     }
 
     /**
@@ -1148,7 +1345,7 @@ public final class ConstPool
      */
     public int addIntegerInfo(int i)
     {
-        return addItem(new IntegerInfo(i, numOfItems));
+        return addItem(CONST_Integer, i, 0);
     }
 
     /**
@@ -1159,7 +1356,7 @@ public final class ConstPool
      */
     public int addFloatInfo(float f)
     {
-        return addItem(new FloatInfo(f, numOfItems));
+        return addItem(CONST_Float, Float.floatToRawIntBits(f), 0);
     }
 
     /**
@@ -1170,11 +1367,7 @@ public final class ConstPool
      */
     public int addLongInfo(long l)
     {
-        int i = addItem(new LongInfo(l, numOfItems));
-        if (i == numOfItems - 1)    // if not existing
-            addConstInfoPadding();
-
-        return i;
+        return addWideItem(CONST_Long, (int)(l >>> 32), (int)l);
     }
 
     /**
@@ -1185,11 +1378,8 @@ public final class ConstPool
      */
     public int addDoubleInfo(double d)
     {
-        int i = addItem(new DoubleInfo(d, numOfItems));
-        if (i == numOfItems - 1)    // if not existing
-            addConstInfoPadding();
-
-        return i;
+        long l = Double.doubleToRawLongBits(d);
+        return addWideItem(CONST_Double, (int)(l >>> 32), (int)l);
     }
 
     /**
@@ -1200,7 +1390,20 @@ public final class ConstPool
      */
     public int addUtf8Info(String utf8)
     {
-        return addItem(new Utf8Info(utf8, numOfItems));
+        if (itemsIndex == null)
+            makeItemsIndex();
+
+        int mask = itemsIndex.length - 1;
+        int h = spread(utf8.hashCode()) & mask;
+        int i;
+        while ((i = itemsIndex[h]) != 0) {
+            if (tags[i] == CONST_Utf8 && strings[data1[i]].equals(utf8))
+                return i;
+
+            h = (h + 1) & mask;
+        }
+
+        return addIndexedItem(h, CONST_Utf8, addString(utf8), 0);
     }
 
     /**
@@ -1216,7 +1419,7 @@ public final class ConstPool
      */
     public int addMethodHandleInfo(int kind, int index)
     {
-        return addItem(new MethodHandleInfo(kind, index, numOfItems));
+        return addItem(CONST_MethodHandle, kind, index);
     }
 
     /**
@@ -1230,7 +1433,7 @@ public final class ConstPool
      */
     public int addMethodTypeInfo(int desc)
     {
-        return addItem(new MethodTypeInfo(desc, numOfItems));
+        return addItem(CONST_MethodType, desc, 0);
     }
 
     /**
@@ -1245,7 +1448,7 @@ public final class ConstPool
      */
     public int addInvokeDynamicInfo(int bootstrap, int nameAndType)
     {
-        return addItem(new InvokeDynamicInfo(bootstrap, nameAndType, numOfItems));
+        return addItem(CONST_InvokeDynamic, bootstrap, nameAndType);
     }
 
     /**
@@ -1257,7 +1460,7 @@ public final class ConstPool
      * @since 3.26
      */
     public int addDynamicInfo(int bootstrap, int nameAndType) {
-        return addItem(new DynamicInfo(bootstrap, nameAndType, numOfItems));
+        return addItem(CONST_Dynamic, bootstrap, nameAndType);
     }
 
     /**
@@ -1268,7 +1471,7 @@ public final class ConstPool
      */
     public int addModuleInfo(int nameIndex)
     {
-        return addItem(new ModuleInfo(nameIndex, numOfItems));
+        return addItem(CONST_Module, nameIndex, 0);
     }
 
     /**
@@ -1279,7 +1482,7 @@ public final class ConstPool
      */
     public int addPackageInfo(int nameIndex)
     {
-        return addItem(new PackageInfo(nameIndex, numOfItems));
+        return addItem(CONST_Package, nameIndex, 0);
     }
 
     /**
@@ -1290,13 +1493,11 @@ public final class ConstPool
     public Set<String> getClassNames()
     {
         Set<String> result = new HashSet<String>();
-        LongVector v = items;
         int size = numOfItems;
-        for (int i = 1; i < size; ++i) {
-            String className = v.elementAt(i).getClassName(this);
-            if (className != null)
-               result.add(className);
-        }
+        for (int i = 1; i < size; ++i)
+            if (tags[i] == CONST_Class)
+                result.add(getUtf8Info(data1[i]));
+
         return result;
     }
 
@@ -1308,12 +1509,49 @@ public final class ConstPool
      */
     public void renameClass(String oldName, String newName)
     {
-        LongVector v = items;
+        boolean renamed = false;
         int size = numOfItems;
         for (int i = 1; i < size; ++i) {
-            ConstInfo ci = v.elementAt(i);
-            ci.renameClass(this, oldName, newName, itemsCache);
+            int tag = tags[i];
+            if (tag == CONST_Class) {
+                String nameStr = getUtf8Info(data1[i]);
+                String newNameStr = null;
+                if (nameStr.equals(oldName))
+                    newNameStr = newName;
+                else if (nameStr.charAt(0) == '[') {
+                    String s = Descriptor.rename(nameStr, oldName, newName);
+                    if (nameStr != s)
+                        newNameStr = s;
+                }
+
+                if (newNameStr != null) {
+                    int utf8 = addUtf8Info(newNameStr);
+                    data1[i] = utf8;
+                    renamed = true;
+                }
+            }
+            else if (tag == CONST_NameAndType) {
+                String type = getUtf8Info(data2[i]);
+                String type2 = Descriptor.rename(type, oldName, newName);
+                if (type != type2) {
+                    int utf8 = addUtf8Info(type2);
+                    data2[i] = utf8;
+                    renamed = true;
+                }
+            }
+            else if (tag == CONST_MethodType) {
+                String desc = getUtf8Info(data1[i]);
+                String desc2 = Descriptor.rename(desc, oldName, newName);
+                if (desc != desc2) {
+                    int utf8 = addUtf8Info(desc2);
+                    data1[i] = utf8;
+                    renamed = true;
+                }
+            }
         }
+
+        if (renamed)
+            itemsIndex = null;
     }
 
     /**
@@ -1324,110 +1562,167 @@ public final class ConstPool
      */
     public void renameClass(Map<String,String> classnames)
     {
-        LongVector v = items;
+        boolean renamed = false;
         int size = numOfItems;
         for (int i = 1; i < size; ++i) {
-            ConstInfo ci = v.elementAt(i);
-            ci.renameClass(this, classnames, itemsCache);
+            int tag = tags[i];
+            if (tag == CONST_Class) {
+                String oldName = getUtf8Info(data1[i]);
+                String newName = null;
+                if (oldName.charAt(0) == '[') {
+                    String s = Descriptor.rename(oldName, classnames);
+                    if (oldName != s)
+                        newName = s;
+                }
+                else {
+                    String s = classnames.get(oldName);
+                    if (s != null && !s.equals(oldName))
+                        newName = s;
+                }
+
+                if (newName != null) {
+                    int utf8 = addUtf8Info(newName);
+                    data1[i] = utf8;
+                    renamed = true;
+                }
+            }
+            else if (tag == CONST_NameAndType) {
+                String type = getUtf8Info(data2[i]);
+                String type2 = Descriptor.rename(type, classnames);
+                if (type != type2) {
+                    int utf8 = addUtf8Info(type2);
+                    data2[i] = utf8;
+                    renamed = true;
+                }
+            }
+            else if (tag == CONST_MethodType) {
+                String desc = getUtf8Info(data1[i]);
+                String desc2 = Descriptor.rename(desc, classnames);
+                if (desc != desc2) {
+                    int utf8 = addUtf8Info(desc2);
+                    data1[i] = utf8;
+                    renamed = true;
+                }
+            }
         }
+
+        if (renamed)
+            itemsIndex = null;
     }
 
-    private void read(DataInputStream in) throws IOException
+    private void read(ClassFileInput in) throws IOException
     {
         int n = in.readUnsignedShort();
 
-        items = new LongVector(n);
-        numOfItems = 0;
-        addItem0(null);          // index 0 is reserved by the JVM.
+        allocate(n);
+        addItem0(0, 0, 0);      // index 0 is reserved by the JVM.
 
         while (--n > 0) {       // index 0 is reserved by JVM
             int tag = readOne(in);
-            if ((tag == LongInfo.tag) || (tag == DoubleInfo.tag)) {
+            if ((tag == CONST_Long) || (tag == CONST_Double)) {
                 addConstInfoPadding();
                 --n;
             }
         }
     }
 
-    private static Map<ConstInfo,ConstInfo> makeItemsCache(LongVector items)
-    {
-        Map<ConstInfo,ConstInfo> cache = new HashMap<ConstInfo,ConstInfo>();
-        int i = 1;
-        while (true) {
-            ConstInfo info = items.elementAt(i++);
-            if (info == null)
-                break;
-            cache.put(info, info);
-        }
-
-        return cache;
-    }
-
-    private int readOne(DataInputStream in) throws IOException
+    private int readOne(ClassFileInput in) throws IOException
     {
-        ConstInfo info;
         int tag = in.readUnsignedByte();
         switch (tag) {
-        case Utf8Info.tag :                     // 1
-            info = new Utf8Info(in, numOfItems);
-            break;
-        case IntegerInfo.tag :                  // 3
-            info = new IntegerInfo(in, numOfItems);
-            break;
-        case FloatInfo.tag :                    // 4
-            info = new FloatInfo(in, numOfItems);
-            break;
-        case LongInfo.tag :                     // 5
-            info = new LongInfo(in, numOfItems);
-            break;
-        case DoubleInfo.tag :                   // 6
-            info = new DoubleInfo(in, numOfItems);
-            break;
-        case ClassInfo.tag :                    // 7
-            info = new ClassInfo(in, numOfItems);
+        case CONST_Utf8 :                       // 1
+            addItem0(tag, addString(in.readUTF()), 0);
             break;
-        case StringInfo.tag :                   // 8
-            info = new StringInfo(in, numOfItems);
+        case CONST_Integer :                    // 3
+        case CONST_Float :                      // 4
+            addItem0(tag, in.readInt(), 0);
             break;
-        case FieldrefInfo.tag :                 // 9
-            info = new FieldrefInfo(in, numOfItems);
+        case CONST_Long :                       // 5
+        case CONST_Double : {                   // 6
+            int high = in.readInt();
+            addItem0(tag, high, in.readInt());
             break;
-        case MethodrefInfo.tag :                // 10
-            info = new MethodrefInfo(in, numOfItems);
-            break;
-        case InterfaceMethodrefInfo.tag :       // 11
-            info = new InterfaceMethodrefInfo(in, numOfItems);
-            break;
-        case NameAndTypeInfo.tag :              // 12
-            info = new NameAndTypeInfo(in, numOfItems);
-            break;
-        case MethodHandleInfo.tag :             // 15
-            info = new MethodHandleInfo(in, numOfItems);
-            break;
-        case MethodTypeInfo.tag :               // 16
-            info = new MethodTypeInfo(in, numOfItems);
-            break;
-        case DynamicInfo.tag :                  // 17
-            info = new DynamicInfo(in, numOfItems);
-            break;
-        case InvokeDynamicInfo.tag :            // 18
-            info = new InvokeDynamicInfo(in, numOfItems);
+        }
+        case CONST_Class :                      // 7
+        case CONST_String :                     // 8
+        case CONST_MethodType :                 // 16
+        case CONST_Module :                     // 19
+        case CONST_Package :                    // 20
+            addItem0(tag, in.readUnsignedShort(), 0);
             break;
-        case ModuleInfo.tag :                   // 19
-            info = new ModuleInfo(in, numOfItems);
+        case CONST_Fieldref :                   // 9
+        case CONST_Methodref :                  // 10
+        case CONST_InterfaceMethodref :         // 11
+        case CONST_NameAndType :                // 12
+        case CONST_Dynamic :                    // 17
+        case CONST_InvokeDynamic : {            // 18
+            int first = in.readUnsignedShort();
+            addItem0(tag, first, in.readUnsignedShort());
             break;
-        case PackageInfo.tag :                  // 20
-            info = new PackageInfo(in, numOfItems);
+        }
+        case CONST_MethodHandle : {             // 15
+            int kind = in.readUnsignedByte();
+            addItem0(tag, kind, in.readUnsignedShort());
             break;
+        }
         default :
             throw new IOException("invalid constant type: " 
                                 + tag + " at " + numOfItems);
         }
 
-        addItem0(info);
         return tag;
     }
 
+    /* Returns the number of bytes written by write().
+     */
+    int length()
+    {
+        int len = 2;
+        int size = numOfItems;
+        for (int i = 1; i < size; ++i)
+            switch (tags[i]) {
+            case 0 :            // padding
+                break;
+            case CONST_Utf8 :
+                len += 3 + utf8Length(strings[data1[i]]);
+                break;
+            case CONST_Long :
+            case CONST_Double :
+                len += 9;
+                break;
+            case CONST_MethodHandle :
+                len += 4;
+                break;
+            case CONST_Class :
+            case CONST_String :
+            case CONST_MethodType :
+            case CONST_Module :
+            case CONST_Package :
+                len += 3;
+                break;
+            default :           // CONST_Integer, CONST_Fieldref, etc.
+                len += 5;
+                break;
+            }
+
+        return len;
+    }
+
+    /* Returns the length of the string in the modified UTF-8 encoding.
+     */
+    private static int utf8Length(String s)
+    {
+        int n = s.length();
+        int len = n;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80 || c == 0)
+                len += c > 0x7ff ? 2 : 1;
+        }
+
+        return len;
+    }
+
     /**
      * Writes the contents of the constant pool table.
      */
@@ -1437,10 +1732,43 @@ public final class ConstPool
             throw new IOException("too many constant pool items " + numOfItems);
 
         out.writeShort(numOfItems);
-        LongVector v = items;
         int size = numOfItems;
-        for (int i = 1; i < size; ++i)
-            v.elementAt(i).write(out);
+        for (int i = 1; i < size; ++i) {
+            int tag = tags[i];
+            if (tag == 0)
+                continue;       // padding
+
+            out.writeByte(tag);
+            switch (tag) {
+            case CONST_Utf8 :
+                out.writeUTF(strings[data1[i]]);
+                break;
+            case CONST_Integer :
+            case CONST_Float :
+                out.writeInt(data1[i]);
+                break;
+            case CONST_Long :
+            case CONST_Double :
+                out.writeInt(data1[i]);
+                out.writeInt(data2[i]);
+                break;
+            case CONST_MethodHandle :
+                out.writeByte(data1[i]);
+                out.writeShort(data2[i]);
+                break;
+            case CONST_Class :
+            case CONST_String :
+            case CONST_MethodType :
+            case CONST_Module :
+            case CONST_Package :
+                out.writeShort(data1[i]);
+                break;
+            default :
+                out.writeShort(data1[i]);
+                out.writeShort(data2[i]);
+                break;
+            }
+        }
     }
 
     /**
@@ -1460,1110 +1788,51 @@ public final class ConstPool
         for (int i = 1; i < size; ++i) {
             out.print(i);
             out.print(" ");
-            items.elementAt(i).print(out);
-        }
-    }
-}
-
-abstract class ConstInfo
-{
-    int index;
-
-    public ConstInfo(int i) { index = i; }
-
-    public abstract int getTag();
-
-    public String getClassName(ConstPool cp) { return null; }
-    public void renameClass(ConstPool cp, String oldName, String newName,
-            Map<ConstInfo,ConstInfo> cache) {}
-    public void renameClass(ConstPool cp, Map<String,String> classnames,
-            Map<ConstInfo,ConstInfo> cache) {}
-    public abstract int copy(ConstPool src, ConstPool dest,
-            Map<String, String> classnames);
-        // ** classnames is a mapping between JVM names.
-
-    public abstract void write(DataOutputStream out) throws IOException;
-    public abstract void print(PrintWriter out);
-
-    @Override
-    public String toString() {
-        ByteArrayOutputStream bout = new ByteArrayOutputStream();
-        PrintWriter out = new PrintWriter(bout);
-        print(out);
-        return bout.toString();
-    }
-}
-
-/* padding following DoubleInfo or LongInfo.
- */
-class ConstInfoPadding extends ConstInfo
-{
-    public ConstInfoPadding(int i) { super(i); }
-
-    @Override
-    public int getTag() { return 0; }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest, Map<String,String> map)
-    {
-        return dest.addConstInfoPadding();
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException {}
-
-    @Override
-    public void print(PrintWriter out)
-    {
-        out.println("padding");
-    }
-}
-
-class ClassInfo extends ConstInfo
-{
-    static final int tag = 7;
-    int name;
-
-    public ClassInfo(int className, int index)
-    {
-        super(index);
-        name = className;
-    }
-
-    public ClassInfo(DataInputStream in, int index) throws IOException
-    {
-        super(index);
-        name = in.readUnsignedShort();
-    }
-
-    @Override
-    public int hashCode() { return name; }
-
-    @Override
-    public boolean equals(Object obj)
-    {
-        return obj instanceof ClassInfo && ((ClassInfo)obj).name == name;
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public String getClassName(ConstPool cp)
-    {
-        return cp.getUtf8Info(name);
-    }
-
-    @Override
-    public void renameClass(ConstPool cp, String oldName, String newName,
-            Map<ConstInfo,ConstInfo> cache)
-    {
-        String nameStr = cp.getUtf8Info(name);
-        String newNameStr = null;
-        if (nameStr.equals(oldName))
-            newNameStr = newName;
-        else if (nameStr.charAt(0) == '[') {
-            String s = Descriptor.rename(nameStr, oldName, newName);
-            if (nameStr != s)
-                newNameStr = s;
-        }
-
-        if (newNameStr != null)
-            if (cache == null)
-                name = cp.addUtf8Info(newNameStr);
-            else {
-                cache.remove(this);
-                name = cp.addUtf8Info(newNameStr);
-                cache.put(this, this);
-            }
-    }
-
-    @Override
-    public void renameClass(ConstPool cp, Map<String,String> map,
-            Map<ConstInfo,ConstInfo> cache)
-    {
-        String oldName = cp.getUtf8Info(name);
-        String newName = null;
-        if (oldName.charAt(0) == '[') {
-            String s = Descriptor.rename(oldName, map);
-            if (oldName != s)
-                newName = s;
+            out.println(itemToString(i));
         }
-        else {
-            String s = map.get(oldName);
-            if (s != null && !s.equals(oldName))
-                newName = s;
-        }
-
-        if (newName != null) {
-            if (cache == null)
-                name = cp.addUtf8Info(newName);
-            else {
-                cache.remove(this);
-                name = cp.addUtf8Info(newName);
-                cache.put(this, this);
-            }
-        }
-    }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest, Map<String,String> map)
-    {
-        String classname = src.getUtf8Info(name);
-        if (map != null) {
-            String newname = map.get(classname);
-            if (newname != null)
-                classname = newname;
-        }
-
-        return dest.addClassInfo(classname);
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException
-    {
-        out.writeByte(tag);
-        out.writeShort(name);
-    }
-
-    @Override
-    public void print(PrintWriter out)
-    {
-        out.print("Class #");
-        out.println(name);
-    }
-}
-
-class NameAndTypeInfo extends ConstInfo
-{
-    static final int tag = 12;
-    int memberName;
-    int typeDescriptor;
-
-    public NameAndTypeInfo(int name, int type, int index)
-    {
-        super(index);
-        memberName = name;
-        typeDescriptor = type;
     }
 
-    public NameAndTypeInfo(DataInputStream in, int index) throws IOException
-    {
-        super(index);
-        memberName = in.readUnsignedShort();
-        typeDescriptor = in.readUnsignedShort();
-    }
-
-    @Override
-    public int hashCode() { return (memberName << 16) ^ typeDescriptor; }
-
-    @Override
-    public boolean equals(Object obj)
-    {
-        if (obj instanceof NameAndTypeInfo) {
-            NameAndTypeInfo nti = (NameAndTypeInfo)obj;
-            return nti.memberName == memberName
-                    && nti.typeDescriptor == typeDescriptor;
+    private String itemToString(int i)
+    {
+        switch (tags[i]) {
+        case 0 :
+            return "padding";
+        case CONST_Utf8 :
+            return "UTF8 \"" + strings[data1[i]] + "\"";
+        case CONST_Integer :
+            return "Integer " + data1[i];
+        case CONST_Float :
+            return "Float " + Float.intBitsToFloat(data1[i]);
+        case CONST_Long :
+            return "Long " + toLong(i);
+        case CONST_Double :
+            return "Double " + Double.longBitsToDouble(toLong(i));
+        case CONST_Class :
+            return "Class #" + data1[i];
+        case CONST_String :
+            return "String #" + data1[i];
+        case CONST_Fieldref :
+            return "Field #" + data1[i] + ", name&type #" + data2[i];
+        case CONST_Methodref :
+            return "Method #" + data1[i] + ", name&type #" + data2[i];
+        case CONST_InterfaceMethodref :
+            return "Interface #" + data1[i] + ", name&type #" + data2[i];
+        case CONST_NameAndType :
+            return "NameAndType #" + data1[i] + ", type #" + data2[i];
+        case CONST_MethodHandle :
+            return "MethodHandle #" + data1[i] + ", index #" + data2[i];
+        case CONST_MethodType :
+            return "MethodType #" + data1[i];
+        case CONST_Dynamic :
+            return "Dynamic #" + data1[i] + ", name&type #" + data2[i];
+        case CONST_InvokeDynamic :
+            return "InvokeDynamic #" + data1[i] + ", name&type #" + data2[i];
+        case CONST_Module :
+            return "Module #" + data1[i];
+        case CONST_Package :
+            return "Package #" + data1[i];
+        default :
+            return "unknown tag " + tags[i];
         }
-        return false;
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public void renameClass(ConstPool cp, String oldName, String newName,
-            Map<ConstInfo,ConstInfo> cache)
-    {
-        String type = cp.getUtf8Info(typeDescriptor);
-        String type2 = Descriptor.rename(type, oldName, newName);
-        if (type != type2)
-            if (cache == null)
-                typeDescriptor = cp.addUtf8Info(type2);
-            else {
-                cache.remove(this);
-                typeDescriptor = cp.addUtf8Info(type2);
-                cache.put(this, this);
-            }
-    }
-
-    @Override
-    public void renameClass(ConstPool cp, Map<String,String> map,
-            Map<ConstInfo,ConstInfo> cache)
-    {
-        String type = cp.getUtf8Info(typeDescriptor);
-        String type2 = Descriptor.rename(type, map);
-        if (type != type2)
-            if (cache == null)
-                typeDescriptor = cp.addUtf8Info(type2);
-            else {
-                cache.remove(this);
-                typeDescriptor = cp.addUtf8Info(type2);
-                cache.put(this, this);
-            }
-    }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest, Map<String,String> map)
-    {
-        String mname = src.getUtf8Info(memberName);
-        String tdesc = src.getUtf8Info(typeDescriptor);
-        tdesc = Descriptor.rename(tdesc, map);
-        return dest.addNameAndTypeInfo(dest.addUtf8Info(mname),
-                                       dest.addUtf8Info(tdesc));
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException {
-        out.writeByte(tag);
-        out.writeShort(memberName);
-        out.writeShort(typeDescriptor);
-    }
-
-    @Override
-    public void print(PrintWriter out) {
-        out.print("NameAndType #");
-        out.print(memberName);
-        out.print(", type #");
-        out.println(typeDescriptor);
-    }
-}
-
-abstract class MemberrefInfo extends ConstInfo
-{
-    int classIndex;
-    int nameAndTypeIndex;
-
-    public MemberrefInfo(int cindex, int ntindex, int thisIndex)
-    {
-        super(thisIndex);
-        classIndex = cindex;
-        nameAndTypeIndex = ntindex;
-    }
-
-    public MemberrefInfo(DataInputStream in, int thisIndex)
-            throws IOException
-    {
-        super(thisIndex);
-        classIndex = in.readUnsignedShort();
-        nameAndTypeIndex = in.readUnsignedShort();
-    }
-
-    @Override
-    public int hashCode() { return (classIndex << 16) ^ nameAndTypeIndex; }
-
-    @Override
-    public boolean equals(Object obj) {
-        if (obj instanceof MemberrefInfo) {
-            MemberrefInfo mri = (MemberrefInfo)obj;
-            return mri.classIndex == classIndex
-                    && mri.nameAndTypeIndex == nameAndTypeIndex
-                    && mri.getClass() == this.getClass();
-        }
-        return false;
-    }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest, Map<String,String> map)
-    {
-        int classIndex2 = src.getItem(classIndex).copy(src, dest, map);
-        int ntIndex2 = src.getItem(nameAndTypeIndex).copy(src, dest, map);
-        return copy2(dest, classIndex2, ntIndex2);
-    }
-
-    abstract protected int copy2(ConstPool dest, int cindex, int ntindex);
-
-    @Override
-    public void write(DataOutputStream out) throws IOException
-    {
-        out.writeByte(getTag());
-        out.writeShort(classIndex);
-        out.writeShort(nameAndTypeIndex);
-    }
-
-    @Override
-    public void print(PrintWriter out)
-    {
-        out.print(getTagName() + " #");
-        out.print(classIndex);
-        out.print(", name&type #");
-        out.println(nameAndTypeIndex);
-    }
-
-    public abstract String getTagName();
-}
-
-class FieldrefInfo extends MemberrefInfo
-{
-    static final int tag = 9;
-
-    public FieldrefInfo(int cindex, int ntindex, int thisIndex)
-    {
-        super(cindex, ntindex, thisIndex);
-    }
-
-    public FieldrefInfo(DataInputStream in, int thisIndex)
-            throws IOException
-    {
-        super(in, thisIndex);
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public String getTagName() { return "Field"; }
-
-    @Override
-    protected int copy2(ConstPool dest, int cindex, int ntindex)
-    {
-        return dest.addFieldrefInfo(cindex, ntindex);
-    }
-}
-
-class MethodrefInfo extends MemberrefInfo
-{
-    static final int tag = 10;
-
-    public MethodrefInfo(int cindex, int ntindex, int thisIndex)
-    {
-        super(cindex, ntindex, thisIndex);
-    }
-
-    public MethodrefInfo(DataInputStream in, int thisIndex)
-            throws IOException
-    {
-        super(in, thisIndex);
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public String getTagName() { return "Method"; }
-
-    @Override
-    protected int copy2(ConstPool dest, int cindex, int ntindex)
-    {
-        return dest.addMethodrefInfo(cindex, ntindex);
-    }
-}
-
-class InterfaceMethodrefInfo extends MemberrefInfo
-{
-    static final int tag = 11;
-
-    public InterfaceMethodrefInfo(int cindex, int ntindex, int thisIndex)
-    {
-        super(cindex, ntindex, thisIndex);
-    }
-
-    public InterfaceMethodrefInfo(DataInputStream in, int thisIndex)
-            throws IOException
-    {
-        super(in, thisIndex);
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public String getTagName() { return "Interface"; }
-
-    @Override
-    protected int copy2(ConstPool dest, int cindex, int ntindex)
-    {
-        return dest.addInterfaceMethodrefInfo(cindex, ntindex);
-    }
-}
-
-class StringInfo extends ConstInfo
-{
-    static final int tag = 8;
-    int string;
-
-    public StringInfo(int str, int index)
-    {
-        super(index);
-        string = str;
-    }
-
-    public StringInfo(DataInputStream in, int index) throws IOException
-    {
-        super(index);
-        string = in.readUnsignedShort();
-    }
-
-    @Override
-    public int hashCode() { return string; }
-
-    @Override
-    public boolean equals(Object obj)
-    {
-        return obj instanceof StringInfo && ((StringInfo)obj).string == string;
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest, Map<String,String> map)
-    {
-        return dest.addStringInfo(src.getUtf8Info(string));
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException
-    {
-        out.writeByte(tag);
-        out.writeShort(string);
-    }
-
-    @Override
-    public void print(PrintWriter out)
-    {
-        out.print("String #");
-        out.println(string);
-    }
-}
-
-class IntegerInfo extends ConstInfo
-{
-    static final int tag = 3;
-    int value;
-
-    public IntegerInfo(int v, int index)
-    {
-        super(index);
-        value = v;
-    }
-
-    public IntegerInfo(DataInputStream in, int index) throws IOException
-    {
-        super(index);
-        value = in.readInt();
-    }
-
-    @Override
-    public int hashCode() { return value; }
-
-    @Override
-    public boolean equals(Object obj)
-    {
-        return obj instanceof IntegerInfo && ((IntegerInfo)obj).value == value;
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest, Map<String,String> map)
-    {
-        return dest.addIntegerInfo(value);
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException
-    {
-        out.writeByte(tag);
-        out.writeInt(value);
-    }
-
-    @Override
-    public void print(PrintWriter out)
-    {
-        out.print("Integer ");
-        out.println(value);
-    }
-}
-
-class FloatInfo extends ConstInfo
-{
-    static final int tag = 4;
-    float value;
-
-    public FloatInfo(float f, int index)
-    {
-        super(index);
-        value = f;
-    }
-
-    public FloatInfo(DataInputStream in, int index) throws IOException
-    {
-        super(index);
-        value = in.readFloat();
-    }
-
-    @Override
-    public int hashCode() { return Float.floatToIntBits(value); }
-
-    @Override
-    public boolean equals(Object obj)
-    {
-        return obj instanceof FloatInfo && ((FloatInfo)obj).value == value;
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest, Map<String,String> map)
-    {
-        return dest.addFloatInfo(value);
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException
-    {
-        out.writeByte(tag);
-        out.writeFloat(value);
-    }
-
-    @Override
-    public void print(PrintWriter out)
-    {
-        out.print("Float ");
-        out.println(value);
-    }
-}
-
-class LongInfo extends ConstInfo
-{
-    static final int tag = 5;
-    long value;
-
-    public LongInfo(long l, int index)
-    {
-        super(index);
-        value = l;
-    }
-
-    public LongInfo(DataInputStream in, int index) throws IOException
-    {
-        super(index);
-        value = in.readLong();
-    }
-
-    @Override
-    public int hashCode() { return (int)(value ^ (value >>> 32)); }
-
-    @Override
-    public boolean equals(Object obj) {
-        return obj instanceof LongInfo && ((LongInfo)obj).value == value;
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest, Map<String,String> map)
-    {
-        return dest.addLongInfo(value);
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException
-    {
-        out.writeByte(tag);
-        out.writeLong(value);
-    }
-
-    @Override
-    public void print(PrintWriter out)
-    {
-        out.print("Long ");
-        out.println(value);
-    }
-}
-
-class DoubleInfo extends ConstInfo
-{
-    static final int tag = 6;
-    double value;
-
-    public DoubleInfo(double d, int index)
-    {
-        super(index);
-        value = d;
-    }
-
-    public DoubleInfo(DataInputStream in, int index) throws IOException
-    {
-        super(index);
-        value = in.readDouble();
-    }
-
-    @Override
-    public int hashCode() {
-        long v = Double.doubleToLongBits(value);
-        return (int)(v ^ (v >>> 32));
-    }
-
-    @Override
-    public boolean equals(Object obj)
-    {
-        return obj instanceof DoubleInfo
-                && ((DoubleInfo)obj).value == value;
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest, Map<String,String> map)
-    {
-        return dest.addDoubleInfo(value);
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException
-    {
-        out.writeByte(tag);
-        out.writeDouble(value);
-    }
-
-    @Override
-    public void print(PrintWriter out)
-    {
-        out.print("Double ");
-        out.println(value);
-    }
-}
-
-class Utf8Info extends ConstInfo
-{
-    static final int tag = 1;
-    String string;
-
-    public Utf8Info(String utf8, int index)
-    {
-        super(index);
-        string = utf8;
-    }
-
-    public Utf8Info(DataInputStream in, int index)
-            throws IOException
-    {
-        super(index);
-        string = in.readUTF();
-    }
-
-    @Override
-    public int hashCode() {
-        return string.hashCode();
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-        return obj instanceof Utf8Info
-                && ((Utf8Info)obj).string.equals(string);
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest,
-            Map<String,String> map)
-    {
-        return dest.addUtf8Info(string);
-    }
-
-    @Override
-    public void write(DataOutputStream out)
-            throws IOException
-    {
-        out.writeByte(tag);
-        out.writeUTF(string);
-    }
-
-    @Override
-    public void print(PrintWriter out) {
-        out.print("UTF8 \"");
-        out.print(string);
-        out.println("\"");
-    }
-}
-
-class MethodHandleInfo extends ConstInfo {
-    static final int tag = 15;
-    int refKind, refIndex;
-
-    public MethodHandleInfo(int kind, int referenceIndex, int index) {
-        super(index);
-        refKind = kind;
-        refIndex = referenceIndex;
-    }
-
-    public MethodHandleInfo(DataInputStream in, int index)
-            throws IOException
-    {
-        super(index);
-        refKind = in.readUnsignedByte();
-        refIndex = in.readUnsignedShort();
-    }
-
-    @Override
-    public int hashCode() { return (refKind << 16) ^ refIndex; }
-
-    @Override
-    public boolean equals(Object obj)
-    {
-        if (obj instanceof MethodHandleInfo) {
-            MethodHandleInfo mh = (MethodHandleInfo)obj;
-            return mh.refKind == refKind && mh.refIndex == refIndex;
-        }
-        return false;
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest,
-            Map<String,String> map)
-    {
-       return dest.addMethodHandleInfo(refKind,
-                   src.getItem(refIndex).copy(src, dest, map));
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException
-    {
-        out.writeByte(tag);
-        out.writeByte(refKind);
-        out.writeShort(refIndex);
-    }
-
-    @Override
-    public void print(PrintWriter out) {
-        out.print("MethodHandle #");
-        out.print(refKind);
-        out.print(", index #");
-        out.println(refIndex);
-    }
-}
-
-class MethodTypeInfo extends ConstInfo
-{
-    static final int tag = 16;
-    int descriptor;
-
-    public MethodTypeInfo(int desc, int index)
-    {
-        super(index);
-        descriptor = desc;
-    }
-
-    public MethodTypeInfo(DataInputStream in, int index)
-            throws IOException
-    {
-        super(index);
-        descriptor = in.readUnsignedShort();
-    }
-
-    @Override
-    public int hashCode() { return descriptor; }
-
-    @Override
-    public boolean equals(Object obj)
-    {
-        if (obj instanceof MethodTypeInfo)
-            return ((MethodTypeInfo)obj).descriptor == descriptor;
-        return false;
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public void renameClass(ConstPool cp, String oldName, String newName,
-            Map<ConstInfo,ConstInfo> cache)
-    {
-        String desc = cp.getUtf8Info(descriptor);
-        String desc2 = Descriptor.rename(desc, oldName, newName);
-        if (desc != desc2)
-            if (cache == null)
-                descriptor = cp.addUtf8Info(desc2);
-            else {
-                cache.remove(this);
-                descriptor = cp.addUtf8Info(desc2);
-                cache.put(this, this);
-            }
-    }
-
-    @Override
-    public void renameClass(ConstPool cp, Map<String,String> map,
-            Map<ConstInfo,ConstInfo> cache)
-    {
-        String desc = cp.getUtf8Info(descriptor);
-        String desc2 = Descriptor.rename(desc, map);
-        if (desc != desc2)
-            if (cache == null)
-                descriptor = cp.addUtf8Info(desc2);
-            else {
-                cache.remove(this);
-                descriptor = cp.addUtf8Info(desc2);
-                cache.put(this, this);
-            }
-    }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest, Map<String,String> map)
-    {
-        String desc = src.getUtf8Info(descriptor);
-        desc = Descriptor.rename(desc, map);
-        return dest.addMethodTypeInfo(dest.addUtf8Info(desc));
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException
-    {
-        out.writeByte(tag);
-        out.writeShort(descriptor);
-    }
-
-    @Override
-    public void print(PrintWriter out) {
-        out.print("MethodType #");
-        out.println(descriptor);
-    }
-}
-
-class InvokeDynamicInfo extends ConstInfo
-{
-    static final int tag = 18;
-    int bootstrap, nameAndType;
-
-    public InvokeDynamicInfo(int bootstrapMethod,
-            int ntIndex, int index)
-    {
-        super(index);
-        bootstrap = bootstrapMethod;
-        nameAndType = ntIndex;
-    }
-
-    public InvokeDynamicInfo(DataInputStream in, int index)
-            throws IOException
-    {
-        super(index);
-        bootstrap = in.readUnsignedShort();
-        nameAndType = in.readUnsignedShort();
-    }
-
-    @Override
-    public int hashCode() { return (bootstrap << 16) ^ nameAndType; }
-
-    @Override
-    public boolean equals(Object obj)
-    {
-        if (obj instanceof InvokeDynamicInfo) {
-            InvokeDynamicInfo iv = (InvokeDynamicInfo)obj;
-            return iv.bootstrap == bootstrap
-                    && iv.nameAndType == nameAndType;
-        }
-        return false;
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest,
-            Map<String,String> map)
-    {
-       return dest.addInvokeDynamicInfo(bootstrap,
-            src.getItem(nameAndType).copy(src, dest, map));
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException
-    {
-        out.writeByte(tag);
-        out.writeShort(bootstrap);
-        out.writeShort(nameAndType);
-    }
-
-    @Override
-    public void print(PrintWriter out) {
-        out.print("InvokeDynamic #");
-        out.print(bootstrap);
-        out.print(", name&type #");
-        out.println(nameAndType);
-    }
-}
-
-class DynamicInfo extends ConstInfo {
-
-    static final int tag = 17;
-    int bootstrap, nameAndType;
-
-    public DynamicInfo(int bootstrapMethod, int ntIndex, int index) {
-        super(index);
-        bootstrap = bootstrapMethod;
-        nameAndType = ntIndex;
-    }
-
-    public DynamicInfo(DataInputStream in, int index) throws IOException {
-        super(index);
-        bootstrap = in.readUnsignedShort();
-        nameAndType = in.readUnsignedShort();
-    }
-
-    @Override
-    public int hashCode() {
-        return (bootstrap << 16) ^ nameAndType;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-        if (obj instanceof DynamicInfo) {
-            DynamicInfo iv = (DynamicInfo)obj;
-            return iv.bootstrap == bootstrap && iv.nameAndType == nameAndType;
-        }
-        return false;
-    }
-
-    @Override
-    public int getTag() {
-        return tag;
-    }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest, Map<String, String> map) {
-        return dest.addDynamicInfo(bootstrap, src.getItem(nameAndType).copy(src, dest, map));
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException {
-        out.writeByte(tag);
-        out.writeShort(bootstrap);
-        out.writeShort(nameAndType);
-    }
-
-    @Override
-    public void print(PrintWriter out) {
-        out.print("Dynamic #");
-        out.print(bootstrap);
-        out.print(", name&type #");
-        out.println(nameAndType);
-    }
-}
-
-class ModuleInfo extends ConstInfo
-{
-    static final int tag = 19;
-    int name;
-
-    public ModuleInfo(int moduleName, int index)
-    {
-        super(index);
-        name = moduleName;
-    }
-
-    public ModuleInfo(DataInputStream in, int index)
-            throws IOException
-    {
-        super(index);
-        name = in.readUnsignedShort();
-    }
-
-    @Override
-    public int hashCode() { return name; }
-
-    @Override
-    public boolean equals(Object obj)
-    {
-        return obj instanceof ModuleInfo
-                && ((ModuleInfo)obj).name == name;
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    public String getModuleName(ConstPool cp)
-    {
-        return cp.getUtf8Info(name);
-    }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest,
-            Map<String,String> map)
-    {
-        String moduleName = src.getUtf8Info(name);
-        int newName = dest.addUtf8Info(moduleName);
-        return dest.addModuleInfo(newName);
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException
-    {
-        out.writeByte(tag);
-        out.writeShort(name);
-    }
-
-    @Override
-    public void print(PrintWriter out) {
-        out.print("Module #");
-        out.println(name);
-    }
-}
-
-class PackageInfo extends ConstInfo
-{
-    static final int tag = 20;
-    int name;
-
-    public PackageInfo(int moduleName, int index)
-    {
-        super(index);
-        name = moduleName;
-    }
-
-    public PackageInfo(DataInputStream in, int index)
-            throws IOException
-    {
-        super(index);
-        name = in.readUnsignedShort();
-    }
-
-    @Override
-    public int hashCode() { return name; }
-
-    @Override
-    public boolean equals(Object obj) {
-        return obj instanceof PackageInfo
-                && ((PackageInfo)obj).name == name;
-    }
-
-    @Override
-    public int getTag() { return tag; }
-
-    public String getPackageName(ConstPool cp)
-    {
-        return cp.getUtf8Info(name);
-    }
-
-    @Override
-    public int copy(ConstPool src, ConstPool dest,
-            Map<String,String> map)
-    {
-        String packageName = src.getUtf8Info(name);
-        int newName = dest.addUtf8Info(packageName);
-        return dest.addModuleInfo(newName);
-    }
-
-    @Override
-    public void write(DataOutputStream out) throws IOException
-    {
-        out.writeByte(tag);
-        out.writeShort(name);
-    }
-
-    @Override
-    public void print(PrintWriter out)
-    {
-        out.print("Package #");
-        out.println(name);
     }
 }
@@ -16,7 +16,6 @@
 
 package javassist.bytecode;
 
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -54,7 +53,7 @@ public class ExceptionTable implements Cloneable {
         entries = new ArrayList<ExceptionTableEntry>();
     }
 
-    ExceptionTable(ConstPool cp, DataInputStream in) throws IOException {
+    ExceptionTable(ConstPool cp, ClassFileInput in) throws IOException {
         constPool = cp;
         int length = in.readUnsignedShort();
         List<ExceptionTableEntry> list = new ArrayList<ExceptionTableEntry>(length);
@@ -248,6 +247,14 @@ public class ExceptionTable implements Cloneable {
         }
     }
 
+    void shiftPc(CodeIterator.Gaps gaps) {
+        for (ExceptionTableEntry e:entries) {
+            e.startPc = gaps.target(e.startPc);
+            e.endPc = gaps.target(e.endPc);
+            e.handlerPc = gaps.target(e.handlerPc);
+        }
+    }
+
     private static int shiftPc(int pc, int where, int gapLength,
                                boolean exclusive) {
         if (pc > where || (exclusive && pc == where))
@@ -16,8 +16,6 @@
 
 package javassist.bytecode;
 
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -29,10 +27,8 @@ public class ExceptionsAttribute extends AttributeInfo {
      */
     public static final String tag = "Exceptions";
 
-    ExceptionsAttribute(ConstPool cp, int n, DataInputStream in)
-        throws IOException
-    {
-        super(cp, n, in);
+    ExceptionsAttribute(ConstPool cp, int n, byte[] attrinfo) {
+        super(cp, n, attrinfo);
     }
 
     /**
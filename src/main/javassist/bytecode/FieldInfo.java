@@ -16,7 +16,6 @@
 
 package javassist.bytecode;
 
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -67,7 +66,7 @@ public final class FieldInfo {
         descriptor = cp.addUtf8Info(desc);
     }
 
-    FieldInfo(ConstPool cp, DataInputStream in) throws IOException {
+    FieldInfo(ConstPool cp, ClassFileInput in) throws IOException {
         this(cp);
         read(in);
     }
@@ -268,7 +267,7 @@ public final class FieldInfo {
         attribute.add(info);
     }
 
-    private void read(DataInputStream in) throws IOException {
+    private void read(ClassFileInput in) throws IOException {
         accessFlags = in.readUnsignedShort();
         name = in.readUnsignedShort();
         descriptor = in.readUnsignedShort();
@@ -278,6 +277,12 @@ public final class FieldInfo {
             attribute.add(AttributeInfo.read(constPool, in));
     }
 
+    /* Returns the number of bytes written by write().
+     */
+    int length() {
+        return attribute == null ? 8 : 8 + AttributeInfo.getLength(attribute);
+    }
+
     void write(DataOutputStream out) throws IOException {
         out.writeShort(accessFlags);
         out.writeShort(name);
@@ -16,8 +16,6 @@
 
 package javassist.bytecode;
 
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -29,10 +27,8 @@ public class InnerClassesAttribute extends AttributeInfo {
      */
     public static final String tag = "InnerClasses";
 
-    InnerClassesAttribute(ConstPool cp, int n, DataInputStream in)
-        throws IOException
-    {
-        super(cp, n, in);
+    InnerClassesAttribute(ConstPool cp, int n, byte[] attrinfo) {
+        super(cp, n, attrinfo);
     }
 
     private InnerClassesAttribute(ConstPool cp, byte[] info) {
@@ -0,0 +1,627 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist.bytecode;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A read-only view of a class file.  It keeps the contents of a
+ * class file as a byte array and decodes only the parts that are
+ * accessed.  When an object of this class is constructed, only the
+ * offsets of the constant pool entries are computed.  The constant pool
+ * entries, the fields, the methods, and the attributes are decoded
+ * on demand.
+ *
+ * <p>This is useful when only the class name, the super class, the
+ * interfaces, and so on are needed.  For modifying the class file,
+ * obtain a {@link ClassFile} object by {@link #toClassFile()}.
+ *
+ * <p>For example,</p>
+ * <blockquote><pre>
+ * LazyClassFile lcf = new LazyClassFile(bytes);
+ * if ("java.lang.Thread".equals(lcf.getSuperclass())) {
+ *     ClassFile cf = lcf.toClassFile();
+ *     ...
+ * }
+ * </pre></blockquote>
+ *
+ * @see ClassFile
+ * @since 3.31
+ */
+public final class LazyClassFile {
+    private final byte[] bytes;
+    private final int[] cpOffsets;
+    private final String[] utf8Cache;
+    private final int headerOffset;     // the position of access_flags
+    private String[] cachedInterfaces;
+
+    // computed by readMembers()
+    private int[] fieldOffsets;
+    private volatile int[] methodOffsets;
+    private int attributesOffset;
+
+    /**
+     * Constructs a view of the given class file.
+     * The array is not copied; it must not be modified later.
+     *
+     * @param classfile     the contents of a class file.
+     * @throws IOException  if the class file is broken.
+     */
+    public LazyClassFile(byte[] classfile) throws IOException {
+        bytes = classfile;
+        try {
+            int magic = ByteArray.read32bit(classfile, 0);
+            if (magic != 0xCAFEBABE)
+                throw new IOException("bad magic number: " + Integer.toHexString(magic));
+
+            int n = ByteArray.readU16bit(classfile, 8);
+            cpOffsets = new int[n];
+            utf8Cache = new String[n];
+            int pos = 10;
+            for (int i = 1; i < n; ++i) {
+                cpOffsets[i] = pos;
+                int tag = classfile[pos];
+                pos += constInfoSize(tag, classfile, pos);
+                if (tag == ConstPool.CONST_Long || tag == ConstPool.CONST_Double)
+                    ++i;
+            }
+
+            headerOffset = pos;
+            // check whether fields_count exists.
+            ByteArray.readU16bit(classfile, pos + 8 + 2 * interfacesCount());
+        }
+        catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("broken class file", e);
+        }
+    }
+
+    private static int constInfoSize(int tag, byte[] b, int pos) throws IOException {
+        switch (tag) {
+        case ConstPool.CONST_Utf8 :
+            return 3 + ByteArray.readU16bit(b, pos + 1);
+        case ConstPool.CONST_Class :
+        case ConstPool.CONST_String :
+        case ConstPool.CONST_MethodType :
+        case ConstPool.CONST_Module :
+        case ConstPool.CONST_Package :
+            return 3;
+        case ConstPool.CONST_MethodHandle :
+            return 4;
+        case ConstPool.CONST_Integer :
+        case ConstPool.CONST_Float :
+        case ConstPool.CONST_Fieldref :
+        case ConstPool.CONST_Methodref :
+        case ConstPool.CONST_InterfaceMethodref :
+        case ConstPool.CONST_NameAndType :
+        case ConstPool.CONST_Dynamic :
+        case ConstPool.CONST_InvokeDynamic :
+            return 5;
+        case ConstPool.CONST_Long :
+        case ConstPool.CONST_Double :
+            return 9;
+        default :
+            throw new IOException("invalid constant type: " + tag + " at " + pos);
+        }
+    }
+
+    /**
+     * Returns the contents of the class file.
+     * The returned array is shared with this object.
+     */
+    public byte[] getBytes() { return bytes; }
+
+    /**
+     * Constructs a <code>ClassFile</code> object representing the
+     * same class file.  Every call of this method constructs a new object.
+     */
+    public ClassFile toClassFile() {
+        try {
+            return new ClassFile(bytes);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    /**
+     * Returns the major version.
+     */
+    public int getMajorVersion() {
+        return ByteArray.readU16bit(bytes, 6);
+    }
+
+    /**
+     * Returns the minor version.
+     */
+    public int getMinorVersion() {
+        return ByteArray.readU16bit(bytes, 4);
+    }
+
+    /**
+     * Returns the size of the constant pool.  The valid indexes are
+     * from 1 to the size minus 1.
+     */
+    public int getConstPoolSize() {
+        return cpOffsets.length;
+    }
+
+    /**
+     * Returns the tag field of the constant pool entry
+     * at the given index.
+     *
+     * @return 0 if the index is 0 or the index points to the second
+     *         slot of a <code>long</code> or <code>double</code> entry.
+     * @see ConstPool#getTag(int)
+     */
+    public int getTag(int index) {
+        int pos = cpOffsets[index];
+        return pos == 0 ? 0 : bytes[pos];
+    }
+
+    /**
+     * Reads <code>CONSTANT_utf8_info</code> structure
+     * at the given index.
+     *
+     * @return the string specified by <code>string_index</code>.
+     * @see ConstPool#getUtf8Info(int)
+     */
+    public String getUtf8Info(int index) {
+        String s = utf8Cache[index];
+        if (s == null) {
+            int pos = cpOffsets[index];
+            if (bytes[pos] != ConstPool.CONST_Utf8)
+                throw new IllegalArgumentException("not CONSTANT_utf8_info: " + index);
+
+            s = readUtf8(pos + 1);
+            utf8Cache[index] = s;
+        }
+
+        return s;
+    }
+
+    private String readUtf8(int pos) {
+        int len = ByteArray.readU16bit(bytes, pos);
+        int start = pos + 2;
+        int end = start + len;
+        char[] chars = new char[len];
+        for (int i = start; i < end; i++) {
+            int c = bytes[i];
+            if (c <= 0)     // not ASCII or '\0' encoded in two bytes
+                try {
+                    return new DataInputStream(new ByteArrayInputStream(bytes, pos, len + 2)).readUTF();
+                }
+                catch (IOException e) {
+                    throw new RuntimeException(e.toString(), e);
+                }
+
+            chars[i - start] = (char)c;
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Reads <code>CONSTANT_Class_info</code> structure
+     * at the given index.
+     *
+     * @return  a fully-qualified class or interface name specified
+     *          by <code>name_index</code>.  If the type is an array
+     *          type, this method returns an encoded name like
+     *          <code>[Ljava.lang.Object;</code> (note that the separators
+     *          are not slashes but dots).
+     *          If the index is 0, null is returned.
+     * @see ConstPool#getClassInfo(int)
+     */
+    public String getClassInfo(int index) {
+        if (index == 0)
+            return null;
+
+        int pos = cpOffsets[index];
+        if (bytes[pos] != ConstPool.CONST_Class)
+            throw new IllegalArgumentException("not CONSTANT_Class_info: " + index);
+
+        return Descriptor.toJavaName(getUtf8Info(ByteArray.readU16bit(bytes, pos + 1)));
+    }
+
+    /**
+     * Returns access flags.
+     *
+     * @see AccessFlag
+     */
+    public int getAccessFlags() {
+        return ByteArray.readU16bit(bytes, headerOffset);
+    }
+
+    /**
+     * Returns true if this is an interface.
+     */
+    public boolean isInterface() {
+        return (getAccessFlags() & AccessFlag.INTERFACE) != 0;
+    }
+
+    /**
+     * Returns the class name.
+     */
+    public String getName() {
+        return getClassInfo(ByteArray.readU16bit(bytes, headerOffset + 2));
+    }
+
+    /**
+     * Returns the super class name.  It is null if this class file
+     * represents <code>java.lang.Object</code>.
+     */
+    public String getSuperclass() {
+        return getClassInfo(ByteArray.readU16bit(bytes, headerOffset + 4));
+    }
+
+    private int interfacesCount() {
+        return ByteArray.readU16bit(bytes, headerOffset + 6);
+    }
+
+    /**
+     * Returns the names of the interfaces implemented by the class.
+     * The returned array is read only.
+     */
+    public String[] getInterfaces() {
+        String[] ifs = cachedInterfaces;
+        if (ifs == null) {
+            int n = interfacesCount();
+            ifs = new String[n];
+            for (int i = 0; i < n; i++)
+                ifs[i] = getClassInfo(ByteArray.readU16bit(bytes, headerOffset + 8 + i * 2));
+
+            cachedInterfaces = ifs;
+        }
+
+        return ifs;
+    }
+
+    /**
+     * Returns access and property flags of this nested class.
+     * This method returns -1 if the class is not a nested class.
+     *
+     * @see ClassFile#getInnerAccessFlags()
+     */
+    public int getInnerAccessFlags() {
+        readMembers();
+        int pos = findAttribute(attributesOffset, InnerClassesAttribute.tag);
+        if (pos < 0)
+            return -1;
+
+        String name = getName();
+        int n = ByteArray.readU16bit(bytes, pos + 6);
+        for (int i = 0; i < n; i++) {
+            int entry = pos + 8 + i * 8;
+            int inner = ByteArray.readU16bit(bytes, entry);
+            if (inner != 0 && name.equals(getClassInfo(inner)))
+                return ByteArray.readU16bit(bytes, entry + 6);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the number of the fields declared in the class.
+     */
+    public int getFieldCount() {
+        readMembers();
+        return fieldOffsets.length;
+    }
+
+    /**
+     * Returns the access flags of the <code>i</code>-th field.
+     */
+    public int getFieldAccessFlags(int i) {
+        readMembers();
+        return ByteArray.readU16bit(bytes, fieldOffsets[i]);
+    }
+
+    /**
+     * Returns the name of the <code>i</code>-th field.
+     */
+    public String getFieldName(int i) {
+        readMembers();
+        return getUtf8Info(ByteArray.readU16bit(bytes, fieldOffsets[i] + 2));
+    }
+
+    /**
+     * Returns the descriptor of the <code>i</code>-th field.
+     */
+    public String getFieldDescriptor(int i) {
+        readMembers();
+        return getUtf8Info(ByteArray.readU16bit(bytes, fieldOffsets[i] + 4));
+    }
+
+    /**
+     * Returns the number of the methods declared in the class.
+     * It includes constructors and a static initializer.
+     */
+    public int getMethodCount() {
+        readMembers();
+        return methodOffsets.length;
+    }
+
+    /**
+     * Returns the access flags of the <code>i</code>-th method.
+     */
+    public int getMethodAccessFlags(int i) {
+        readMembers();
+        return ByteArray.readU16bit(bytes, methodOffsets[i]);
+    }
+
+    /**
+     * Returns the name of the <code>i</code>-th method.
+     */
+    public String getMethodName(int i) {
+        readMembers();
+        return getUtf8Info(ByteArray.readU16bit(bytes, methodOffsets[i] + 2));
+    }
+
+    /**
+     * Returns the descriptor of the <code>i</code>-th method.
+     */
+    public String getMethodDescriptor(int i) {
+        readMembers();
+        return getUtf8Info(ByteArray.readU16bit(bytes, methodOffsets[i] + 4));
+    }
+
+    /**
+     * Returns the contents of the attribute with the given name.
+     * The attribute is one of the attributes of the class file itself.
+     *
+     * @param name      the attribute name.
+     * @return          a copy of the <code>info</code> field of the attribute
+     *                  or null if the attribute is not found.
+     */
+    public byte[] getAttribute(String name) {
+        readMembers();
+        return copyAttribute(findAttribute(attributesOffset, name));
+    }
+
+    /**
+     * Returns the contents of the attribute with the given name.
+     * The attribute is one of the attributes of the <code>i</code>-th field.
+     *
+     * @param name      the attribute name.
+     * @return          a copy of the <code>info</code> field of the attribute
+     *                  or null if the attribute is not found.
+     */
+    public byte[] getFieldAttribute(int i, String name) {
+        readMembers();
+        return copyAttribute(findAttribute(fieldOffsets[i] + 6, name));
+    }
+
+    /**
+     * Returns the contents of the attribute with the given name.
+     * The attribute is one of the attributes of the <code>i</code>-th method.
+     *
+     * @param name      the attribute name.
+     * @return          a copy of the <code>info</code> field of the attribute
+     *                  or null if the attribute is not found.
+     */
+    public byte[] getMethodAttribute(int i, String name) {
+        readMembers();
+        return copyAttribute(findAttribute(methodOffsets[i] + 6, name));
+    }
+
+    /**
+     * Returns true if the class carries the annotation of the given type.
+     * Both visible and invisible annotations are examined.  Only the types
+     * of the annotations are read.
+     *
+     * @param type      the annotation type.
+     * @see AnnotationsAttribute#hasAnnotation(String)
+     */
+    public boolean hasAnnotation(String type) {
+        readMembers();
+        return hasAnnotation(attributesOffset, type);
+    }
+
+    /**
+     * Returns the types of the annotations of the class.
+     * Both visible and invisible annotations are included.
+     *
+     * @return      fully-qualified class names.
+     */
+    public String[] getAnnotationTypes() {
+        readMembers();
+        List<String> types = new ArrayList<String>();
+        collectAnnotationTypes(attributesOffset, types);
+        String[] names = new String[types.size()];
+        for (int i = 0; i < names.length; i++)
+            names[i] = Descriptor.toClassName(types.get(i));
+
+        return names;
+    }
+
+    /**
+     * Returns true if the <code>i</code>-th field carries the annotation
+     * of the given type.
+     *
+     * @param type      the annotation type.
+     * @see #hasAnnotation(String)
+     */
+    public boolean hasFieldAnnotation(int i, String type) {
+        readMembers();
+        return hasAnnotation(fieldOffsets[i] + 6, type);
+    }
+
+    /**
+     * Returns true if the <code>i</code>-th method carries the annotation
+     * of the given type.
+     *
+     * @param type      the annotation type.
+     * @see #hasAnnotation(String)
+     */
+    public boolean hasMethodAnnotation(int i, String type) {
+        readMembers();
+        return hasAnnotation(methodOffsets[i] + 6, type);
+    }
+
+    /**
+     * Returns true if a parameter of the <code>i</code>-th method carries
+     * the annotation of the given type.
+     *
+     * @param param     the parameter index.  The index of the first
+     *                  parameter is 0.
+     * @param type      the annotation type.
+     * @see #hasAnnotation(String)
+     */
+    public boolean hasParameterAnnotation(int i, int param, String type) {
+        readMembers();
+        String desc = Descriptor.of(type);
+        int table = methodOffsets[i] + 6;
+        return findParameterAnnotation(table, ParameterAnnotationsAttribute.visibleTag, param, desc)
+               || findParameterAnnotation(table, ParameterAnnotationsAttribute.invisibleTag, param, desc);
+    }
+
+    private boolean hasAnnotation(int table, String type) {
+        String desc = Descriptor.of(type);
+        return findAnnotation(table, AnnotationsAttribute.visibleTag, desc)
+               || findAnnotation(table, AnnotationsAttribute.invisibleTag, desc);
+    }
+
+    private boolean findAnnotation(int table, String tag, String desc) {
+        int pos = findAttribute(table, tag);
+        return pos >= 0 && new AnnotationsAttribute.TypeScanner(bytes, this).find(pos + 6, desc);
+    }
+
+    private boolean findParameterAnnotation(int table, String tag, int param, String desc) {
+        int pos = findAttribute(table, tag);
+        if (pos < 0 || param < 0 || param >= (bytes[pos + 6] & 0xff))
+            return false;
+
+        AnnotationsAttribute.TypeScanner scanner = new AnnotationsAttribute.TypeScanner(bytes, this);
+        pos += 7;
+        for (int k = 0; k < param; k++)
+            pos = scanner.skip(pos);
+
+        return scanner.find(pos, desc);
+    }
+
+    /* Adds the types of the annotations to the given collections.
+     * The types are in the L<class name>; form.
+     *
+     * @param classTypes        the annotations of the class.
+     * @param memberTypes       the annotations of the fields, the methods,
+     *                          and the method parameters.
+     */
+    void collectAnnotationTypes(Collection<String> classTypes,
+                                Collection<String> memberTypes) {
+        readMembers();
+        collectAnnotationTypes(attributesOffset, classTypes);
+        for (int i = 0; i < fieldOffsets.length; i++)
+            collectAnnotationTypes(fieldOffsets[i] + 6, memberTypes);
+
+        for (int i = 0; i < methodOffsets.length; i++)
+            collectAnnotationTypes(methodOffsets[i] + 6, memberTypes);
+    }
+
+    private void collectAnnotationTypes(int table, Collection<String> types) {
+        AnnotationsAttribute.TypeScanner scanner = null;
+        int n = ByteArray.readU16bit(bytes, table);
+        int pos = table + 2;
+        for (int i = 0; i < n; i++) {
+            String name = getUtf8Info(ByteArray.readU16bit(bytes, pos));
+            boolean params = ParameterAnnotationsAttribute.visibleTag.equals(name)
+                             || ParameterAnnotationsAttribute.invisibleTag.equals(name);
+            if (params || AnnotationsAttribute.visibleTag.equals(name)
+                || AnnotationsAttribute.invisibleTag.equals(name)) {
+                if (scanner == null)
+                    scanner = new AnnotationsAttribute.TypeScanner(bytes, this);
+
+                if (params) {
+                    int num = bytes[pos + 6] & 0xff;
+                    int p = pos + 7;
+                    for (int k = 0; k < num; k++)
+                        p = scanner.collect(p, types);
+                }
+                else
+                    scanner.collect(pos + 6, types);
+            }
+
+            pos += 6 + ByteArray.read32bit(bytes, pos + 2);
+        }
+    }
+
+    private byte[] copyAttribute(int pos) {
+        if (pos < 0)
+            return null;
+
+        int len = ByteArray.read32bit(bytes, pos + 2);
+        byte[] info = new byte[len];
+        System.arraycopy(bytes, pos + 6, info, 0, len);
+        return info;
+    }
+
+    /**
+     * Returns the position of the <code>attribute_info</code> structure
+     * with the given name or -1 if it is not found.
+     *
+     * @param table     the position of <code>attributes_count</code>.
+     */
+    int findAttribute(int table, String name) {
+        int n = ByteArray.readU16bit(bytes, table);
+        int pos = table + 2;
+        for (int i = 0; i < n; i++) {
+            if (name.equals(getUtf8Info(ByteArray.readU16bit(bytes, pos))))
+                return pos;
+
+            pos += 6 + ByteArray.read32bit(bytes, pos + 2);
+        }
+
+        return -1;
+    }
+
+    private int skipAttributes(int table) {
+        int n = ByteArray.readU16bit(bytes, table);
+        int pos = table + 2;
+        for (int i = 0; i < n; i++)
+            pos += 6 + ByteArray.read32bit(bytes, pos + 2);
+
+        return pos;
+    }
+
+    private void readMembers() {
+        if (methodOffsets != null)
+            return;
+
+        int pos = headerOffset + 8 + 2 * interfacesCount();
+        int[] fields = new int[ByteArray.readU16bit(bytes, pos)];
+        pos += 2;
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = pos;
+            pos = skipAttributes(pos + 6);
+        }
+
+        int[] methods = new int[ByteArray.readU16bit(bytes, pos)];
+        pos += 2;
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = pos;
+            pos = skipAttributes(pos + 6);
+        }
+
+        attributesOffset = pos;
+        fieldOffsets = fields;
+        methodOffsets = methods;    // must be the last
+    }
+}
@@ -16,8 +16,6 @@
 
 package javassist.bytecode;
 
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -29,10 +27,8 @@ public class LineNumberAttribute extends AttributeInfo {
      */
     public static final String tag = "LineNumberTable";
 
-    LineNumberAttribute(ConstPool cp, int n, DataInputStream in)
-        throws IOException
-    {
-        super(cp, n, in);
+    LineNumberAttribute(ConstPool cp, int n, byte[] attrinfo) {
+        super(cp, n, attrinfo);
     }
 
     LineNumberAttribute(ConstPool cp, byte[] i) {
@@ -180,4 +176,13 @@ public class LineNumberAttribute extends AttributeInfo {
                 ByteArray.write16bit(pc + gapLength, info, pos);
         }
     }
+
+    void shiftPc(CodeIterator.Gaps gaps) {
+        int n = tableLength();
+        for (int i = 0; i < n; ++i) {
+            int pos = i * 4 + 2;
+            int pc = ByteArray.readU16bit(info, pos);
+            ByteArray.write16bit(gaps.target(pc), info, pos);
+        }
+    }
 }
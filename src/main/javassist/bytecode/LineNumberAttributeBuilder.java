@@ -23,6 +23,10 @@ public class LineNumberAttributeBuilder {
         }
     }
 
+    public void clear() {
+        map.clear();
+    }
+
     public LineNumberAttribute build(ConstPool cp) {
         int size = map.size();
         try (ByteArrayOutputStream bos = new ByteArrayOutputStream(size * 4 + 2);
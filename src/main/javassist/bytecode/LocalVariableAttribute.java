@@ -16,8 +16,6 @@
 
 package javassist.bytecode;
 
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -59,10 +57,8 @@ public class LocalVariableAttribute extends AttributeInfo {
         ByteArray.write16bit(0, info, 0);
     }
 
-    LocalVariableAttribute(ConstPool cp, int n, DataInputStream in)
-        throws IOException
-    {
-        super(cp, n, in);
+    LocalVariableAttribute(ConstPool cp, int n, byte[] attrinfo) {
+        super(cp, n, attrinfo);
     }
 
     LocalVariableAttribute(ConstPool cp, String name, byte[] i) {
@@ -197,6 +193,20 @@ public class LocalVariableAttribute extends AttributeInfo {
         }
     }
 
+    void shiftPc(CodeIterator.Gaps gaps) {
+        int n = tableLength();
+        for (int i = 0; i < n; ++i) {
+            int pos = i * 10 + 2;
+            int pc = ByteArray.readU16bit(info, pos);
+            int len = ByteArray.readU16bit(info, pos + 2);
+
+            // if pc == 0, then the local variable is a method parameter.
+            int newPc = pc == 0 ? 0 : gaps.target(pc);
+            ByteArray.write16bit(newPc, info, pos);
+            ByteArray.write16bit(gaps.target(pc + len) - newPc, info, pos + 2);
+        }
+    }
+
     /**
      * Returns the value of <code>local_variable_table[i].name_index</code>.
      * This represents the name of the local variable.
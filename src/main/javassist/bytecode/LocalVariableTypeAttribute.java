@@ -16,8 +16,6 @@
 
 package javassist.bytecode;
 
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -39,10 +37,8 @@ public class LocalVariableTypeAttribute extends LocalVariableAttribute {
         ByteArray.write16bit(0, info, 0);
     }
 
-    LocalVariableTypeAttribute(ConstPool cp, int n, DataInputStream in)
-        throws IOException
-    {
-        super(cp, n, in);
+    LocalVariableTypeAttribute(ConstPool cp, int n, byte[] attrinfo) {
+        super(cp, n, attrinfo);
     }
 
     private LocalVariableTypeAttribute(ConstPool cp, byte[] dest) {
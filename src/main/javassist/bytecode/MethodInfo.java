@@ -16,7 +16,6 @@
 
 package javassist.bytecode;
 
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -68,6 +67,18 @@ public class MethodInfo {
      */
     public static boolean doPreverify = false;
 
+    /**
+     * If this value is true, <code>rebuildStackMap()</code> reuses the
+     * frames of the current stack map table for the basic blocks that
+     * have not been modified through a <code>CodeIterator</code>.
+     * Only the other blocks are analyzed again.  The initial value of
+     * this field is <code>false</code>.
+     *
+     * @see javassist.bytecode.stackmap.MapMaker#makeIncrementally(ClassPool, MethodInfo)
+     * @since 3.31
+     */
+    public static boolean incrementalStackMap = false;
+
     /**
      * The name of constructors: <code>&lt;init&gt;</code>.
      */
@@ -104,7 +115,7 @@ public class MethodInfo {
         descriptor = constPool.addUtf8Info(desc);
     }
 
-    MethodInfo(ConstPool cp, DataInputStream in) throws IOException {
+    MethodInfo(ConstPool cp, ClassFileInput in) throws IOException {
         this(cp);
         read(in);
     }
@@ -447,15 +458,23 @@ public class MethodInfo {
      * Rebuilds a stack map table.  If no stack map table is included,
      * a new one is created.  If this <code>MethodInfo</code> does not
      * include a code attribute, nothing happens.
+     * If <code>incrementalStackMap</code> is true, the frames for
+     * unmodified code are reused.
      *
      * @param pool          used for making type hierarchy.
      * @see StackMapTable
+     * @see #incrementalStackMap
      * @since 3.6
      */
     public void rebuildStackMap(ClassPool pool) throws BadBytecode {
         CodeAttribute ca = getCodeAttribute();
         if (ca != null) {
-            StackMapTable smt = MapMaker.make(pool, this);
+            StackMapTable smt;
+            if (incrementalStackMap)
+                smt = MapMaker.makeIncrementally(pool, this);
+            else
+                smt = MapMaker.make(pool, this);
+
             ca.setAttribute(smt);
         }
     }
@@ -535,6 +554,7 @@ public class MethodInfo {
             int sc = cp.addClassInfo(superclass);
             int mref2 = cp.addMethodrefInfo(sc, nt);
             ByteArray.write16bit(mref2, code, pos + 1);
+            ca.modified(pos + 1, 2);
         }
     }
 
@@ -558,7 +578,7 @@ public class MethodInfo {
             attribute.add(cattr.copy(destCp, classnames));
     }
 
-    private void read(DataInputStream in) throws IOException {
+    private void read(ClassFileInput in) throws IOException {
         accessFlags = in.readUnsignedShort();
         name = in.readUnsignedShort();
         descriptor = in.readUnsignedShort();
@@ -568,6 +588,12 @@ public class MethodInfo {
             attribute.add(AttributeInfo.read(constPool, in));
     }
 
+    /* Returns the number of bytes written by write().
+     */
+    int length() {
+        return attribute == null ? 8 : 8 + AttributeInfo.getLength(attribute);
+    }
+
     void write(DataOutputStream out) throws IOException {
         out.writeShort(accessFlags);
         out.writeShort(name);
@@ -1,7 +1,5 @@
 package javassist.bytecode;
 
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -13,10 +11,8 @@ public class MethodParametersAttribute extends AttributeInfo {
      */
     public static final String tag = "MethodParameters";
 
-    MethodParametersAttribute(ConstPool cp, int n, DataInputStream in)
-        throws IOException
-    {
-        super(cp, n, in);
+    MethodParametersAttribute(ConstPool cp, int n, byte[] attrinfo) {
+        super(cp, n, attrinfo);
     }
 
     /**
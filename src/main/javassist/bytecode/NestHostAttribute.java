@@ -16,8 +16,6 @@
 
 package javassist.bytecode;
 
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -32,8 +30,8 @@ public class NestHostAttribute extends AttributeInfo {
      */
     public static final String tag = "NestHost";
 
-    NestHostAttribute(ConstPool cp, int n, DataInputStream in) throws IOException {
-        super(cp, n, in);
+    NestHostAttribute(ConstPool cp, int n, byte[] attrinfo) {
+        super(cp, n, attrinfo);
     }
 
     private NestHostAttribute(ConstPool cp, int hostIndex) {
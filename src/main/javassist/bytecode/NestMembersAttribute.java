@@ -16,8 +16,6 @@
 
 package javassist.bytecode;
 
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -32,8 +30,8 @@ public class NestMembersAttribute extends AttributeInfo {
      */
     public static final String tag = "NestMembers";
 
-    NestMembersAttribute(ConstPool cp, int n, DataInputStream in) throws IOException {
-        super(cp, n, in);
+    NestMembersAttribute(ConstPool cp, int n, byte[] attrinfo) {
+        super(cp, n, attrinfo);
     }
 
     private NestMembersAttribute(ConstPool cp, byte[] info) {
@@ -17,7 +17,6 @@
 package javassist.bytecode;
 
 import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -25,6 +24,7 @@ import java.util.Map;
 import javassist.bytecode.AnnotationsAttribute.Copier;
 import javassist.bytecode.AnnotationsAttribute.Parser;
 import javassist.bytecode.AnnotationsAttribute.Renamer;
+import javassist.bytecode.AnnotationsAttribute.TypeScanner;
 import javassist.bytecode.annotation.Annotation;
 import javassist.bytecode.annotation.AnnotationsWriter;
 
@@ -89,10 +89,8 @@ public class ParameterAnnotationsAttribute extends AttributeInfo {
     /**
      * @param n     the attribute name.
      */
-    ParameterAnnotationsAttribute(ConstPool cp, int n, DataInputStream in)
-        throws IOException
-    {
-        super(cp, n, in);
+    ParameterAnnotationsAttribute(ConstPool cp, int n, byte[] attrinfo) {
+        super(cp, n, attrinfo);
     }
 
     /**
@@ -118,6 +116,28 @@ public class ParameterAnnotationsAttribute extends AttributeInfo {
         }
     }
 
+    /**
+     * Returns true if the annotations of the <code>index</code>-th parameter
+     * include the specified annotation type.  Only the types of the
+     * annotations are read.
+     *
+     * @param index     the parameter index.  The index of the first
+     *                  parameter is 0.
+     * @param type      the annotation type.
+     * @since 3.31
+     */
+    public boolean hasAnnotation(int index, String type) {
+        if (index < 0 || index >= numParameters())
+            return false;
+
+        TypeScanner scanner = new TypeScanner(info, constPool);
+        int pos = 1;
+        for (int i = 0; i < index; i++)
+            pos = scanner.skip(pos);
+
+        return scanner.find(pos, Descriptor.of(type));
+    }
+
     /**
      * Parses the annotations and returns a data structure representing
      * that parsed annotations.  Note that changes of the node values of the
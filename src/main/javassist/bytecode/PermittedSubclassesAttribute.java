@@ -23,6 +23,15 @@ public class PermittedSubclassesAttribute extends AttributeInfo {
 
 	protected PermittedSubclassesAttribute(ConstPool cp, int n, DataInputStream in) throws IOException {
 		super(cp, n, in);
+		readClasses();
+	}
+
+	PermittedSubclassesAttribute(ConstPool cp, int n, byte[] attrinfo) {
+		super(cp, n, attrinfo);
+		readClasses();
+	}
+
+	private void readClasses() {
 		classes = new ArrayList<>();
 		int pos = 0;
 		int number_of_classes = ByteArray.readU16bit(info, pos);
@@ -32,7 +41,6 @@ public class PermittedSubclassesAttribute extends AttributeInfo {
 			pos += 2;
 			classes.add(class_index);
 		}
-
 	}
 
 	/**
@@ -63,6 +71,11 @@ public class PermittedSubclassesAttribute extends AttributeInfo {
 		}
 	}
 
+	@Override
+	public int length() {
+		return 8 + classes.size() * 2;
+	}
+
 	@Override
 	public void write(DataOutputStream out) throws IOException {
 		out.writeShort(constPool.addUtf8Info(getName()));
@@ -28,7 +28,15 @@ public class RecordAttribute extends AttributeInfo {
      */
 	public RecordAttribute(ConstPool cp, int nameIndex, DataInputStream in) throws IOException {
 	    super(cp, nameIndex, in);
-	    this.constPool = cp;
+	    readComponents();
+	}
+
+	RecordAttribute(ConstPool cp, int nameIndex, byte[] attrinfo) throws IOException {
+	    super(cp, nameIndex, attrinfo);
+	    readComponents();
+	}
+
+	private void readComponents() throws IOException {
 	    int pos = 0;
 	    int componentsCount = ByteArray.readU16bit(info, pos);
 	    pos += 2;
@@ -221,6 +229,15 @@ public class RecordAttribute extends AttributeInfo {
 		renameClass(classnames);
 	}
 
+	@Override
+	public int length() {
+		int len = 8;
+		for (RecordComponentInfo component : components)
+			len += 6 + AttributeInfo.getLength(component.getAttributes());
+
+		return len;
+	}
+
 	@Override
 	public void write(DataOutputStream out) throws IOException {
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -17,8 +17,6 @@
 package javassist.bytecode;
 
 import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.util.Map;
 
 import javassist.CannotCompileException;
@@ -52,10 +50,8 @@ public class StackMap extends AttributeInfo {
         super(cp, tag, newInfo);
     }
 
-    StackMap(ConstPool cp, int name_id, DataInputStream in)
-        throws IOException
-    {
-        super(cp, name_id, in);
+    StackMap(ConstPool cp, int name_id, byte[] attrinfo) {
+        super(cp, name_id, attrinfo);
     }
 
     /**
@@ -415,6 +411,33 @@ public class StackMap extends AttributeInfo {
         }
     }
 
+    /**
+     * @see CodeIterator.Batch#commit()
+     */
+    void shiftPc(CodeIterator.Gaps gaps) throws BadBytecode {
+        new Relocator(this, gaps).visit();
+    }
+
+    static class Relocator extends Walker {
+        private CodeIterator.Gaps gaps;
+
+        public Relocator(StackMap smt, CodeIterator.Gaps gaps) {
+            super(smt);
+            this.gaps = gaps;
+        }
+
+        @Override
+        public int locals(int pos, int offset, int num) {
+            ByteArray.write16bit(gaps.target(offset), info, pos - 4);
+            return super.locals(pos, offset, num);
+        }
+
+        @Override
+        public void uninitialized(int pos, int offset) {
+            ByteArray.write16bit(gaps.instruction(offset), info, pos + 1);
+        }
+    }
+
     /**
      * @see CodeIterator.Switcher#adjustOffsets(int, int)
      */
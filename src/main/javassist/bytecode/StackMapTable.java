@@ -17,7 +17,6 @@
 package javassist.bytecode;
 
 import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -48,10 +47,8 @@ public class StackMapTable extends AttributeInfo {
         super(cp, tag, newInfo);
     }
 
-    StackMapTable(ConstPool cp, int name_id, DataInputStream in)
-        throws IOException
-    {
-        super(cp, name_id, in);
+    StackMapTable(ConstPool cp, int name_id, byte[] attrinfo) {
+        super(cp, name_id, attrinfo);
     }
 
     /**
@@ -829,6 +826,76 @@ public class StackMapTable extends AttributeInfo {
         new Shifter(this, where, gapSize, exclusive).doit();
     }
 
+    /**
+     * @see CodeIterator.Batch#commit()
+     */
+    void shiftPc(CodeIterator.Gaps gaps) throws BadBytecode {
+        set(new Relocator(get(), gaps).doit());
+    }
+
+    static class Relocator extends SimpleCopy {
+        private CodeIterator.Gaps gaps;
+        private int position, newPosition;
+
+        public Relocator(byte[] data, CodeIterator.Gaps gaps) {
+            super(data);
+            this.gaps = gaps;
+            position = newPosition = -1;
+        }
+
+        private int relocate(int offsetDelta) {
+            position += offsetDelta + 1;
+            int newPos = gaps.target(position);
+            int newDelta = newPos - newPosition - 1;
+            newPosition = newPos;
+            return newDelta;
+        }
+
+        @Override
+        public void sameFrame(int pos, int offsetDelta) {
+            super.sameFrame(pos, relocate(offsetDelta));
+        }
+
+        @Override
+        public void sameLocals(int pos, int offsetDelta, int stackTag, int stackData) {
+            super.sameLocals(pos, relocate(offsetDelta), stackTag, stackData);
+        }
+
+        @Override
+        public void chopFrame(int pos, int offsetDelta, int k) {
+            super.chopFrame(pos, relocate(offsetDelta), k);
+        }
+
+        @Override
+        public void appendFrame(int pos, int offsetDelta, int[] tags, int[] data) {
+            super.appendFrame(pos, relocate(offsetDelta), tags, data);
+        }
+
+        @Override
+        public void fullFrame(int pos, int offsetDelta, int[] localTags, int[] localData,
+                              int[] stackTags, int[] stackData) {
+            super.fullFrame(pos, relocate(offsetDelta), localTags, localData,
+                            stackTags, stackData);
+        }
+
+        @Override
+        protected int copyData(int tag, int data) {
+            if (tag == UNINIT)
+                return gaps.instruction(data);
+
+            return data;
+        }
+
+        @Override
+        protected int[] copyData(int[] tags, int[] data) {
+            int[] newData = new int[data.length];
+            for (int i = 0; i < data.length; i++)
+                newData[i] = copyData(tags[i], data[i]);
+
+            return newData;
+        }
+    }
+
     static class OffsetShifter extends Walker {
     	int where, gap;
 
@@ -1,7 +1,5 @@
 package javassist.bytecode;
 
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -42,10 +40,8 @@ public class TypeAnnotationsAttribute extends AttributeInfo {
     /**
      * @param n     the attribute name.
      */
-    TypeAnnotationsAttribute(ConstPool cp, int n, DataInputStream in)
-        throws IOException
-    {
-        super(cp, n, in);
+    TypeAnnotationsAttribute(ConstPool cp, int n, byte[] attrinfo) {
+        super(cp, n, attrinfo);
     }
 
     /**
@@ -17,9 +17,14 @@
 package javassist.bytecode.stackmap;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javassist.ClassPool;
+import javassist.CtClass;
 import javassist.NotFoundException;
 import javassist.bytecode.BadBytecode;
 import javassist.bytecode.ByteArray;
@@ -122,6 +127,72 @@ public class MapMaker extends Tracer {
         return mm.toStackMap(blocks);
     }
 
+    /**
+     * Computes the stack map table of the given method incrementally.
+     * The frames in the current stack map table are reused for the basic
+     * blocks that have not been modified since the table was set
+     * (see {@link CodeAttribute#isModified(int, int)}) if they are
+     * consistent with the types flowing into those blocks.
+     * The frames of the other blocks are computed as
+     * {@link #make(ClassPool, MethodInfo)} does.
+     * If the method does not have a stack map table,
+     * this method is equivalent to <code>make()</code>.
+     *
+     * <p>It returns null if the given method does not have to have a
+     * stack map table or it includes JSR.
+     *
+     * @since 3.31
+     */
+    public static StackMapTable makeIncrementally(ClassPool classes, MethodInfo minfo)
+        throws BadBytecode
+    {
+        CodeAttribute ca = minfo.getCodeAttribute();
+        if (ca == null)
+            return null;
+
+        StackMapTable smt = (StackMapTable)ca.getAttribute(StackMapTable.tag);
+        if (smt == null)
+            return make(classes, minfo);
+
+        TypedBlock[] blocks;
+        try {
+            blocks = TypedBlock.makeBlocks(minfo, ca, true);
+        }
+        catch (BasicBlock.JsrBytecode e) {
+            return null;
+        }
+
+        if (blocks == null)
+            return null;
+
+        Frames frames = Frames.read(smt, ca, blocks[0]);
+        Set<Integer> rejected = new HashSet<Integer>();
+        for (int round = 0;; round++) {
+            MapMaker mm = new MapMaker(classes, minfo, ca);
+            if (frames != null && round < MAX_ROUNDS)
+                mm.reused = frames.seed(blocks, ca, classes, rejected);
+
+            try {
+                if (mm.make(blocks, ca.getCode(), rejected))
+                    return mm.toStackMap(blocks);
+            }
+            catch (BadBytecode bb) {
+                if (mm.reused == null)
+                    throw new BadBytecode(minfo, bb);
+
+                frames = null;      // analyze the whole method again.
+            }
+
+            blocks = TypedBlock.makeBlocks(minfo, ca, true);
+        }
+    }
+
+    /*
+     * The number of times makeIncrementally() runs an analyzer
+     * with reused frames before giving up reusing them.
+     */
+    private static final int MAX_ROUNDS = 4;
+
     /**
      * Computes the stack map table for J2ME.
      * It returns null if the given method does not have to have a
@@ -155,13 +226,20 @@ public class MapMaker extends Tracer {
         return mm.toStackMap2(minfo.getConstPool(), blocks);
     }
 
+    // the frames reused by makeIncrementally().  It may be null.
+    private Reused reused;
+
     public MapMaker(ClassPool classes, MethodInfo minfo, CodeAttribute ca) {
         super(classes, minfo.getConstPool(),
               ca.getMaxStack(), ca.getMaxLocals(),
               TypedBlock.getRetType(minfo.getDescriptor()));
+        reused = null;
     }
 
-    protected MapMaker(MapMaker old) { super(old); }
+    protected MapMaker(MapMaker old) {
+        super(old);
+        reused = old.reused;
+    }
 
     /**
      * Runs an analyzer (Phase 1 and 2).
@@ -178,6 +256,39 @@ public class MapMaker extends Tracer {
         }
     }
 
+    /*
+     * Runs an analyzer with the frames given by Frames.seed().
+     * Since the blocks given those frames are not visited from their
+     * predecessors, they are traced separately.  If a reused frame
+     * turns out to be inconsistent with an incoming type, this method
+     * adds the position of that block to rejected and returns false.
+     */
+    private boolean make(TypedBlock[] blocks, byte[] code, Set<Integer> rejected)
+        throws BadBytecode
+    {
+        if (reused == null) {
+            make(blocks, code);
+            return true;
+        }
+
+        make(code, blocks[0]);
+        for (TypedBlock tb: reused.blocks)
+            new MapMaker(this).make(code, tb);
+
+        try {
+            fixTypes(code, blocks);
+            if (!reused.check(rejected))
+                return false;
+
+            findDeadCatchers(code, blocks);
+            fixTypes(code, blocks);
+        } catch (NotFoundException e) {
+            throw new BadBytecode("failed to resolve types", e);
+        }
+
+        return true;
+    }
+
     // Phase 1
 
     private void make(byte[] code, TypedBlock tb)
@@ -215,7 +326,11 @@ public class MapMaker extends Tracer {
     {
         while (handler != null) {
             TypedBlock tb = (TypedBlock)handler.body;
-            if (tb.alreadySet()) {
+            if (reused != null && reused.contains(tb)) {
+                reused.mergeMap(tb, localsTypes, 1, null);
+                reused.merge(tb, toExceptionType(handler.typeIndex), tb.stackTypes[0]);
+            }
+            else if (tb.alreadySet()) {
                 mergeMap(tb, false);
                 if (tb.stackTop < 1)
                     throw new BadBytecode("bad catch clause: " + handler.typeIndex);
@@ -234,6 +349,11 @@ public class MapMaker extends Tracer {
     }
 
     private void mergeMap(TypedBlock dest, boolean mergeStack) throws BadBytecode {
+        if (reused != null && reused.contains(dest)) {
+            reused.mergeMap(dest, localsTypes, stackTop, stackTypes);
+            return;
+        }
+
         int n = localsTypes.length;
         for (int i = 0; i < n; i++)
             dest.localsTypes[i] = merge(validateTypeData(localsTypes, n, i),
@@ -608,4 +728,361 @@ public class MapMaker extends Tracer {
                 i++;
         }
     }
+
+    // Incremental analysis
+
+    /*
+     * The blocks given frames read from the current stack map table.
+     * Since the types in those frames are fixed, the types flowing into
+     * the blocks are not merged with them but recorded.  The recorded
+     * types are checked by check() after they are fixed by fixTypes().
+     */
+    static class Reused {
+        // the offset of an initialized object or a non-Uninit type.
+        private static final int INITIALIZED = -2;
+        // the offset of an unknown Uninit type.
+        private static final int UNKNOWN = -3;
+
+        List<TypedBlock> blocks = new ArrayList<TypedBlock>();
+        private Set<TypedBlock> seeded = new HashSet<TypedBlock>();
+        private Set<TypedBlock> failed = new HashSet<TypedBlock>();
+        private List<Edge> edges = new ArrayList<Edge>();
+        private ClassPool classPool;
+        private Map<String,Boolean> assignable = new HashMap<String,Boolean>();
+
+        static class Edge {
+            TypedBlock dest;
+            TypeData source, target;
+            int uninit;         // the offset of source if it is an Uninit type.
+
+            Edge(TypedBlock dest, TypeData source, TypeData target, int uninit) {
+                this.dest = dest;
+                this.source = source;
+                this.target = target;
+                this.uninit = uninit;
+            }
+        }
+
+        Reused(ClassPool cp) { classPool = cp; }
+
+        void add(TypedBlock tb) {
+            blocks.add(tb);
+            seeded.add(tb);
+        }
+
+        boolean contains(TypedBlock tb) { return seeded.contains(tb); }
+
+        void mergeMap(TypedBlock dest, TypeData[] localsTypes, int stackTop, TypeData[] stackTypes) {
+            if (dest.stackTop != stackTop) {
+                failed.add(dest);
+                return;
+            }
+
+            int n = localsTypes.length;
+            for (int i = 0; i < n; i++)
+                merge(dest, validateTypeData(localsTypes, n, i), dest.localsTypes[i]);
+
+            if (stackTypes != null)
+                for (int i = 0; i < stackTop; i++)
+                    merge(dest, stackTypes[i], dest.stackTypes[i]);
+        }
+
+        /*
+         * Records that source flows into the reused type target.
+         * If source is not a type variable, it is immediately checked.
+         */
+        void merge(TypedBlock dest, TypeData source, TypeData target) {
+            if (source == target || target == TypeTag.TOP || failed.contains(dest))
+                return;
+
+            int uninit = uninitOffset(source);
+            if (uninit == UNKNOWN)
+                failed.add(dest);
+            else if (source instanceof TypeData.AbsTypeVar)
+                edges.add(new Edge(dest, source, target, uninit));
+            else if (!isCompatible(source, target, uninit))
+                failed.add(dest);
+        }
+
+        /*
+         * Returns false if some reused frames are not consistent with
+         * the incoming types.  The positions of those blocks are added
+         * to rejected.
+         */
+        boolean check(Set<Integer> rejected) throws NotFoundException {
+            List<TypeData> preOrder = new ArrayList<TypeData>();
+            int index = 0;
+            for (Edge e: edges)
+                if (!failed.contains(e.dest)) {
+                    index = e.source.dfs(preOrder, index, classPool);
+                    if (!isCompatible(e.source, e.target, e.uninit))
+                        failed.add(e.dest);
+                }
+
+            for (TypedBlock tb: failed)
+                rejected.add(tb.position);
+
+            return failed.isEmpty();
+        }
+
+        private static int uninitOffset(TypeData td) {
+            TypeData t = td;
+            if (t instanceof TypeData.UninitTypeVar)
+                t = ((TypeData.UninitTypeVar)t).type;
+
+            if (t instanceof TypeData.UninitData) {
+                TypeData.UninitData ud = (TypeData.UninitData)t;
+                return ud.initialized ? INITIALIZED : ud.offset;
+            }
+            else if (t.isUninit())
+                return UNKNOWN;
+            else
+                return INITIALIZED;
+        }
+
+        /*
+         * Returns true if the verifier accepts source as the type of
+         * a value stored in a variable of the type target.
+         */
+        private boolean isCompatible(TypeData source, TypeData target, int uninit) {
+            if (target == TypeTag.TOP)
+                return true;
+
+            TypeData.BasicType sourceType = source.isBasicType();
+            if (target instanceof TypeData.UninitData)
+                return uninit == ((TypeData.UninitData)target).offset
+                       && sourceType == null && source.isUninit();
+            else if (uninit != INITIALIZED)
+                return false;
+
+            TypeData.BasicType targetType = target.isBasicType();
+            if (targetType != null || sourceType != null)
+                return sourceType == targetType;
+            else if (source.isNullType())
+                return true;
+            else if (target.isNullType())
+                return false;
+            else
+                return isAssignable(source.getName(), target.getName());
+        }
+
+        private boolean isAssignable(String from, String to) {
+            if (from.equals(to) || "java.lang.Object".equals(to))
+                return true;
+
+            String key = from + ' ' + to;
+            Boolean result = assignable.get(key);
+            if (result == null) {
+                result = Boolean.valueOf(isSubtype(from, to));
+                assignable.put(key, result);
+            }
+
+            return result.booleanValue();
+        }
+
+        private boolean isSubtype(String from, String to) {
+            try {
+                CtClass target = classPool.get(to);
+                if (!target.isArray() && target.isInterface())
+                    return true;    // the verifier regards an interface as Object.
+
+                return classPool.get(from).subtypeOf(target);
+            }
+            catch (NotFoundException e) {
+                return false;
+            }
+        }
+    }
+
+    /*
+     * The frames in a stack map table.  Long and double values occupy
+     * a single element of the arrays as they do in the stack map table.
+     */
+    static class Frames extends StackMapTable.Walker {
+        private ConstPool cpool;
+        private byte[] code;
+        private int position;
+        private List<TypeData> locals;
+        private Map<Integer,TypeData[][]> frames;
+
+        /*
+         * Reads the frames in the given stack map table.  It returns null
+         * if the table is broken.
+         *
+         * @param first         the first block initialized by TypedBlock.makeBlocks().
+         */
+        static Frames read(StackMapTable smt, CodeAttribute ca, TypedBlock first) {
+            Frames f = new Frames(smt, ca, first);
+            try {
+                f.parse();
+                return f;
+            }
+            catch (BadBytecode e) {
+                return null;
+            }
+        }
+
+        private Frames(StackMapTable smt, CodeAttribute ca, TypedBlock first) {
+            super(smt);
+            cpool = ca.getConstPool();
+            code = ca.getCode();
+            position = -1;
+            locals = new ArrayList<TypeData>();
+            for (int i = 0; i < first.numLocals; i++) {
+                TypeData td = first.localsTypes[i];
+                locals.add(td);
+                if (td.is2WordType())
+                    i++;
+            }
+
+            frames = new HashMap<Integer,TypeData[][]>();
+        }
+
+        @Override
+        public void sameFrame(int pos, int offsetDelta) {
+            addFrame(offsetDelta, new TypeData[0]);
+        }
+
+        @Override
+        public void sameLocals(int pos, int offsetDelta, int stackTag, int stackData)
+            throws BadBytecode
+        {
+            addFrame(offsetDelta, new TypeData[] { toTypeData(stackTag, stackData) });
+        }
+
+        @Override
+        public void chopFrame(int pos, int offsetDelta, int k) throws BadBytecode {
+            int n = locals.size();
+            if (n < k)
+                throw new BadBytecode("bad chop_frame");
+
+            locals.subList(n - k, n).clear();
+            addFrame(offsetDelta, new TypeData[0]);
+        }
+
+        @Override
+        public void appendFrame(int pos, int offsetDelta, int[] tags, int[] data)
+            throws BadBytecode
+        {
+            for (int i = 0; i < tags.length; i++)
+                locals.add(toTypeData(tags[i], data[i]));
+
+            addFrame(offsetDelta, new TypeData[0]);
+        }
+
+        @Override
+        public void fullFrame(int pos, int offsetDelta, int[] localTags, int[] localData,
+                              int[] stackTags, int[] stackData)
+            throws BadBytecode
+        {
+            locals.clear();
+            for (int i = 0; i < localTags.length; i++)
+                locals.add(toTypeData(localTags[i], localData[i]));
+
+            TypeData[] stack = new TypeData[stackTags.length];
+            for (int i = 0; i < stackTags.length; i++)
+                stack[i] = toTypeData(stackTags[i], stackData[i]);
+
+            addFrame(offsetDelta, stack);
+        }
+
+        private void addFrame(int offsetDelta, TypeData[] stack) {
+            if (position < 0)
+                position = offsetDelta;
+            else
+                position += offsetDelta + 1;
+
+            TypeData[] l = locals.toArray(new TypeData[locals.size()]);
+            frames.put(position, new TypeData[][] { l, stack });
+        }
+
+        private TypeData toTypeData(int tag, int data) throws BadBytecode {
+            switch (tag) {
+            case StackMapTable.TOP :
+                return TypeTag.TOP;
+            case StackMapTable.INTEGER :
+                return TypeTag.INTEGER;
+            case StackMapTable.FLOAT :
+                return TypeTag.FLOAT;
+            case StackMapTable.DOUBLE :
+                return TypeTag.DOUBLE;
+            case StackMapTable.LONG :
+                return TypeTag.LONG;
+            case StackMapTable.NULL :
+                return new TypeData.NullType();
+            case StackMapTable.THIS :
+                return new TypeData.UninitThis(cpool.getClassName());
+            case StackMapTable.OBJECT : {
+                String type = cpool.getClassInfo(data);
+                if (type.charAt(0) == '[')
+                    type = type.replace('.', '/');
+
+                return new TypeData.ClassName(type); }
+            case StackMapTable.UNINIT :
+                if (data < 0 || data + 2 >= code.length
+                    || (code[data] & 0xff) != Bytecode.NEW)
+                    throw new BadBytecode("bad offset of UNINIT: " + data);
+
+                return new TypeData.UninitData(data,
+                            cpool.getClassInfo(ByteArray.readU16bit(code, data + 1)));
+            default :
+                throw new BadBytecode("bad verification type: " + tag);
+            }
+        }
+
+        /*
+         * Gives frames to the blocks that have not been modified.
+         * It returns null if no block is given a frame.
+         */
+        Reused seed(TypedBlock[] blocks, CodeAttribute ca, ClassPool cp,
+                    Set<Integer> rejected)
+            throws BadBytecode
+        {
+            Reused reused = new Reused(cp);
+            int maxStack = ca.getMaxStack();
+            int maxLocals = ca.getMaxLocals();
+            for (int i = 1; i < blocks.length; i++) {
+                TypedBlock tb = blocks[i];
+                if (tb.incoming > 0 && !rejected.contains(tb.position)
+                    && !ca.isModified(tb.position, tb.length)) {
+                    TypeData[][] frame = frames.get(tb.position);
+                    if (frame != null) {
+                        TypeData[] localsTypes = TypeData.make(maxLocals);
+                        TypeData[] stackTypes = TypeData.make(maxStack);
+                        int nl = expand(frame[0], localsTypes);
+                        int st = expand(frame[1], stackTypes);
+                        if (nl >= 0 && st >= 0) {
+                            tb.setStackMap(st, stackTypes, nl, localsTypes);
+                            reused.add(tb);
+                        }
+                    }
+                }
+            }
+
+            return reused.blocks.isEmpty() ? null : reused;
+        }
+
+        /*
+         * Copies types into a TypeData array.  Since the tracer changes
+         * the state of an UninitData object, it is copied.  This method
+         * returns the number of used elements or -1 if the array is too small.
+         */
+        private static int expand(TypeData[] types, TypeData[] dest) {
+            int j = 0;
+            for (TypeData td: types) {
+                int size = td.is2WordType() ? 2 : 1;
+                if (j + size > dest.length)
+                    return -1;
+
+                if (td instanceof TypeData.UninitData)
+                    td = ((TypeData.UninitData)td).copy();
+
+                dest[j++] = td;
+                if (size > 1)
+                    dest[j++] = TypeTag.TOP;
+            }
+
+            return j;
+        }
+    }
 }
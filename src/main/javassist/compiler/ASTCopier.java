@@ -0,0 +1,262 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist.compiler;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javassist.compiler.ast.ASTList;
+import javassist.compiler.ast.ASTree;
+import javassist.compiler.ast.ArrayInit;
+import javassist.compiler.ast.AssignExpr;
+import javassist.compiler.ast.BinExpr;
+import javassist.compiler.ast.CallExpr;
+import javassist.compiler.ast.CastExpr;
+import javassist.compiler.ast.CondExpr;
+import javassist.compiler.ast.Declarator;
+import javassist.compiler.ast.DoubleConst;
+import javassist.compiler.ast.Expr;
+import javassist.compiler.ast.FieldDecl;
+import javassist.compiler.ast.InstanceOfExpr;
+import javassist.compiler.ast.IntConst;
+import javassist.compiler.ast.Keyword;
+import javassist.compiler.ast.Member;
+import javassist.compiler.ast.MethodDecl;
+import javassist.compiler.ast.NewExpr;
+import javassist.compiler.ast.Pair;
+import javassist.compiler.ast.Stmnt;
+import javassist.compiler.ast.StringL;
+import javassist.compiler.ast.Symbol;
+import javassist.compiler.ast.Variable;
+import javassist.compiler.ast.Visitor;
+
+/**
+ * Copies statements parsed by <code>Parser</code> so that the copy
+ * can be compiled in another context.  The compiler modifies the
+ * given trees, for example, by recording the found fields and methods.
+ *
+ * <p>The variables declared outside of the statements are bound to
+ * the declarators in the given symbol table.  If the statements would be
+ * parsed differently with that symbol table, that is, if a variable
+ * is not found or a member name is declared as a variable,
+ * <code>copy()</code> returns null.
+ *
+ * @see SnippetCache
+ */
+final class ASTCopier extends Visitor implements TokenId {
+    private SymbolTable stable;
+    private Map<Declarator,Declarator> declarators;
+    private ASTree result;
+    private boolean selector;   // true if a member after '.' or '#' is copied.
+    private boolean failed;
+
+    ASTCopier(SymbolTable stable) {
+        this.stable = stable;
+        declarators = new IdentityHashMap<Declarator,Declarator>();
+    }
+
+    /**
+     * Returns a copy of the given statements or null if the copy
+     * cannot be compiled with the symbol table.
+     */
+    ASTList copy(ASTList stmnts) throws CompileError {
+        ASTList list = (ASTList)copy0(stmnts);
+        return failed ? null : list;
+    }
+
+    private ASTree copy0(ASTree t) throws CompileError {
+        if (t == null)
+            return null;
+
+        t.accept(this);
+        return result;
+    }
+
+    private ASTList copyList(ASTree t) throws CompileError {
+        return (ASTList)copy0(t);
+    }
+
+    @Override
+    public void atASTList(ASTList n) throws CompileError {
+        ASTree head = copy0(n.head());
+        result = new ASTList(head, copyList(n.tail()), n.getLineNumber());
+    }
+
+    @Override
+    public void atPair(Pair n) throws CompileError {
+        ASTree left = copy0(n.getLeft());
+        result = new Pair(left, copy0(n.getRight()));
+    }
+
+    @Override
+    public void atFieldDecl(FieldDecl n) throws CompileError {
+        failed = true;      // never found in statements.
+    }
+
+    @Override
+    public void atMethodDecl(MethodDecl n) throws CompileError {
+        failed = true;      // never found in statements.
+    }
+
+    @Override
+    public void atStmnt(Stmnt n) throws CompileError {
+        ASTree head = copy0(n.head());
+        result = new Stmnt(n.getOperator(), head, copyList(n.tail()), n.getLineNumber());
+    }
+
+    @Override
+    public void atDeclarator(Declarator n) throws CompileError {
+        Declarator d = new Declarator(n.getType(), n.getArrayDim(), n.getLineNumber());
+        d.setClassName(n.getClassName());
+        d.setLocalVar(n.getLocalVar());
+        declarators.put(n, d);
+        d.setLeft(copy0(n.getLeft()));
+        d.setRight(copy0(n.getRight()));
+        result = d;
+    }
+
+    @Override
+    public void atAssignExpr(AssignExpr n) throws CompileError {
+        AssignExpr e = AssignExpr.makeAssign(n.getOperator(), copy0(n.oprand1()), null, n.getLineNumber());
+        e.setRight(copy0(n.getRight()));
+        result = e;
+    }
+
+    @Override
+    public void atCondExpr(CondExpr n) throws CompileError {
+        CondExpr e = new CondExpr(copy0(n.condExpr()), null, null, n.getLineNumber());
+        e.setRight(copy0(n.getRight()));
+        result = e;
+    }
+
+    @Override
+    public void atBinExpr(BinExpr n) throws CompileError {
+        BinExpr e = BinExpr.makeBin(n.getOperator(), copy0(n.oprand1()), null, n.getLineNumber());
+        e.setRight(copy0(n.getRight()));
+        result = e;
+    }
+
+    @Override
+    public void atExpr(Expr n) throws CompileError {
+        int op = n.getOperator();
+        Expr e = Expr.make(op, copy0(n.oprand1()), n.getLineNumber());
+        selector = op == '.' || op == MEMBER;
+        e.setRight(copy0(n.getRight()));
+        selector = false;
+        result = e;
+    }
+
+    @Override
+    public void atCallExpr(CallExpr n) throws CompileError {
+        CallExpr e = CallExpr.makeCall(copy0(n.oprand1()), null, n.getLineNumber());
+        e.setRight(copy0(n.getRight()));
+        result = e;
+    }
+
+    @Override
+    public void atCastExpr(CastExpr n) throws CompileError {
+        CastExpr e;
+        if (n.getType() == CLASS)
+            e = new CastExpr(copyList(n.getClassName()), n.getArrayDim(), null, n.getLineNumber());
+        else
+            e = new CastExpr(n.getType(), n.getArrayDim(), null, n.getLineNumber());
+
+        e.setRight(copy0(n.getRight()));
+        result = e;
+    }
+
+    @Override
+    public void atInstanceOfExpr(InstanceOfExpr n) throws CompileError {
+        InstanceOfExpr e;
+        if (n.getType() == CLASS)
+            e = new InstanceOfExpr(copyList(n.getClassName()), n.getArrayDim(), null, n.getLineNumber());
+        else
+            e = new InstanceOfExpr(n.getType(), n.getArrayDim(), null, n.getLineNumber());
+
+        e.setRight(copy0(n.getRight()));
+        result = e;
+    }
+
+    @Override
+    public void atNewExpr(NewExpr n) throws CompileError {
+        NewExpr e;
+        if (!n.isArray())
+            e = new NewExpr(copyList(n.getClassName()), null, n.getLineNumber());
+        else if (n.getArrayType() == CLASS)
+            e = NewExpr.makeObjectArray(copyList(n.getClassName()), null, null, n.getLineNumber());
+        else
+            e = new NewExpr(n.getArrayType(), null, null, n.getLineNumber());
+
+        e.setRight(copy0(n.getRight()));
+        result = e;
+    }
+
+    @Override
+    public void atSymbol(Symbol n) throws CompileError {
+        result = new Symbol(n.get(), n.getLineNumber());
+    }
+
+    @Override
+    public void atMember(Member n) throws CompileError {
+        // the parser makes a Variable if the name is found in the symbol table.
+        if (!selector && stable.lookup(n.get()) != null)
+            failed = true;
+
+        result = new Member(n.get(), n.getLineNumber());
+    }
+
+    @Override
+    public void atVariable(Variable n) throws CompileError {
+        String name = n.get();
+        Declarator d = declarators.get(n.getDeclarator());
+        if (d == null) {
+            // declared outside of the statements.
+            d = stable.lookup(name);
+            if (d == null)
+                failed = true;
+        }
+
+        result = new Variable(name, d, n.getLineNumber());
+    }
+
+    @Override
+    public void atKeyword(Keyword n) throws CompileError {
+        result = new Keyword(n.get(), n.getLineNumber());
+    }
+
+    @Override
+    public void atStringL(StringL n) throws CompileError {
+        result = new StringL(n.get(), n.getLineNumber());
+    }
+
+    @Override
+    public void atIntConst(IntConst n) throws CompileError {
+        result = new IntConst(n.get(), n.getType(), n.getLineNumber());
+    }
+
+    @Override
+    public void atDoubleConst(DoubleConst n) throws CompileError {
+        result = new DoubleConst(n.get(), n.getType(), n.getLineNumber());
+    }
+
+    @Override
+    public void atArrayInit(ArrayInit n) throws CompileError {
+        ArrayInit e = new ArrayInit(copy0(n.head()), n.getLineNumber());
+        e.setRight(copy0(n.getRight()));
+        result = e;
+    }
+}
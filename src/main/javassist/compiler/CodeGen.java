@@ -117,6 +117,23 @@ public abstract class CodeGen extends Visitor implements Opcode, TokenId {
         returnHooks = null;
     }
 
+    /**
+     * Resets the state so that this code generator can be reused
+     * for another compilation.
+     */
+    protected void reset(Bytecode b) {
+        bytecode = b;
+        tempVar = -1;
+        hasReturned = false;
+        inStaticMethod = false;
+        breakList = null;
+        continueList = null;
+        returnHooks = null;
+        exprType = 0;
+        arrayDim = 0;
+        className = null;
+    }
+
     public void setTypeChecker(TypeChecker checker) {
         typeChecker = checker;
     }
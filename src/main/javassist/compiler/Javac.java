@@ -16,7 +16,10 @@
 
 package javassist.compiler;
 
+import java.util.Iterator;
+
 import javassist.CannotCompileException;
+import javassist.ClassPool;
 import javassist.CtBehavior;
 import javassist.CtClass;
 import javassist.CtConstructor;
@@ -29,6 +32,8 @@ import javassist.NotFoundException;
 import javassist.bytecode.BadBytecode;
 import javassist.bytecode.Bytecode;
 import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.Descriptor;
 import javassist.bytecode.LocalVariableAttribute;
 import javassist.bytecode.Opcode;
 import javassist.compiler.ast.ASTList;
@@ -47,6 +52,11 @@ public class Javac {
     SymbolTable stable;
     private Bytecode bytecode;
 
+    /* the context recorded by recordParams() etc.  It is a part of the key
+     * of SnippetCache.  It is null if the compiled code must not be cached.
+     */
+    private StringBuilder context;
+
     public static final String param0Name = "$0";
     public static final String resultVarName = "$_";
     public static final String proceedName = "$proceed";
@@ -74,6 +84,100 @@ public class Javac {
         gen = new JvstCodeGenWitlLineNumber(b, thisClass, thisClass.getClassPool());
         stable = new SymbolTable();
         bytecode = b;
+        context = new StringBuilder();
+    }
+
+    /* an idle compiler for each thread.
+     */
+    private static final ThreadLocal<Javac> idleCompiler = new ThreadLocal<Javac>();
+
+    /**
+     * Obtains a compiler confined to the current thread.
+     * It is equivalent to <code>new Javac(thisClass)</code> except that
+     * the compiler released last by the current thread is reused
+     * if it is available.  The obtained compiler should be returned
+     * by <code>release()</code> when it is no longer used.
+     *
+     * @param thisClass         the class that a compiled method/field
+     *                          belongs to.
+     * @see #release()
+     * @since 3.31
+     */
+    public static Javac obtain(CtClass thisClass) {
+        return obtain(new Bytecode(thisClass.getClassFile2().getConstPool(), 0, 0),
+                      thisClass);
+    }
+
+    /**
+     * Obtains a compiler confined to the current thread.
+     * It is equivalent to <code>new Javac(b, thisClass)</code> except that
+     * the compiler released last by the current thread is reused
+     * if it is available.  The obtained compiler should be returned
+     * by <code>release()</code> when it is no longer used.
+     *
+     * @param thisClass         the class that a compiled method/field
+     *                          belongs to.
+     * @see #release()
+     * @since 3.31
+     */
+    public static Javac obtain(Bytecode b, CtClass thisClass) {
+        Javac jv = idleCompiler.get();
+        if (jv == null)
+            return new Javac(b, thisClass);
+
+        idleCompiler.set(null);
+        jv.reset(b, thisClass);
+        return jv;
+    }
+
+    /**
+     * Returns this compiler to the current thread so that the next call
+     * to <code>obtain()</code> can reuse it.  This compiler must not be
+     * used after this method is called.  The objects returned by this
+     * compiler, such as the <code>Bytecode</code> object, are still
+     * available.
+     *
+     * @see #obtain(Bytecode,CtClass)
+     * @since 3.31
+     */
+    public void release() {
+        reset(null, null);      // not to keep the class pool alive.
+        idleCompiler.set(this);
+    }
+
+    /**
+     * Resets this compiler so that it can be reused for compiling
+     * another source text.  All the variables, the return type,
+     * and the handler of <code>$proceed()</code> recorded so far
+     * are discarded.
+     *
+     * @param b                 the <code>Bytecode</code> object storing
+     *                          the produced bytecode.
+     * @param thisClass         the class that a compiled method/field
+     *                          belongs to.
+     * @since 3.31
+     */
+    public void reset(Bytecode b, CtClass thisClass) {
+        gen.reset(b, thisClass, thisClass == null ? null : thisClass.getClassPool());
+        stable.clear();
+        bytecode = b;
+        if (context == null)
+            context = new StringBuilder();
+        else
+            context.setLength(0);
+    }
+
+    private void recordContext(char kind, Object... values) {
+        if (context != null) {
+            context.append(kind);
+            for (Object v: values)
+                if (v instanceof CtClass)
+                    context.append(Descriptor.of((CtClass)v)).append(',');
+                else if (v instanceof CtClass[])
+                    context.append(Descriptor.ofParameters((CtClass[])v)).append(',');
+                else
+                    context.append(v).append(',');
+        }
     }
 
     /**
@@ -94,6 +198,7 @@ public class Javac {
      * @see #recordProceed(String,String)
      */
     public CtMember compile(String src) throws CompileError {
+        context = null;
         int startLine = gen.thisClass.getLinesCount();
         Lex lex = new Lex(src, startLine);
         Parser p = new Parser(lex);
@@ -197,6 +302,7 @@ public class Javac {
     public Bytecode compileBody(CtBehavior method, String src)
         throws CompileError
     {
+        context = null;
         try {
             int mod = method.getModifiers();
             recordParams(method.getParameterTypes(), Modifier.isStatic(mod));
@@ -286,9 +392,11 @@ public class Javac {
         for (int i = 0; i < n; ++i) {
             int start = va.startPc(i);
             int len = va.codeLength(i);
-            if (start <= pc && pc < start + len)
+            if (start <= pc && pc < start + len) {
                 gen.recordVariable(va.descriptor(i), va.variableName(i),
                                    va.index(i), stable);
+                recordContext('V', va.descriptor(i), va.variableName(i), va.index(i));
+            }
         }
 
         return true;
@@ -315,9 +423,11 @@ public class Javac {
         int n = va.tableLength();
         for (int i = 0; i < n; ++i) {
             int index = va.index(i);
-            if (index < numOfLocalVars)
+            if (index < numOfLocalVars) {
                 gen.recordVariable(va.descriptor(i), va.variableName(i),
                                    index, stable);
+                recordContext('V', va.descriptor(i), va.variableName(i), index);
+            }
         }
 
         return true;
@@ -337,6 +447,7 @@ public class Javac {
     public int recordParams(CtClass[] params, boolean isStatic)
         throws CompileError
     {
+        recordContext('P', params, isStatic);
         return gen.recordParams(params, isStatic, "$", "$args", "$$", stable);
     }
 
@@ -365,6 +476,7 @@ public class Javac {
                              boolean use0, int varNo, boolean isStatic)
         throws CompileError
     {
+        recordContext('Q', target, params, use0, varNo, isStatic);
         return gen.recordParams(params, isStatic, "$", "$args", "$$",
                                 use0, varNo, target, stable);
     }
@@ -379,6 +491,7 @@ public class Javac {
      * <p>This method is indirectly called by <code>recordParams</code>.
      */
     public void setMaxLocals(int max) {
+        recordContext('M', max);
         gen.setMaxLocals(max);
     }
 
@@ -399,6 +512,7 @@ public class Javac {
     public int recordReturnType(CtClass type, boolean useResultVar)
         throws CompileError
     {
+        recordContext('R', type, useResultVar);
         gen.recordType(type);
         return gen.recordReturnType(type, "$r",
                         (useResultVar ? resultVarName : null), stable);
@@ -411,6 +525,7 @@ public class Javac {
      * @param t     the type represented by $type.
      */
     public void recordType(CtClass t) {
+        recordContext('T', t);
         gen.recordType(t);
     }
 
@@ -423,6 +538,7 @@ public class Javac {
     public int recordVariable(CtClass type, String name)
         throws CompileError
     {
+        recordContext('W', type, name);
         return gen.recordVariable(type, name, stable);
     }
 
@@ -438,6 +554,7 @@ public class Javac {
     public void recordProceed(String target, String method)
         throws CompileError
     {
+        recordContext('p', target, method);
         Parser p = new Parser(new Lex(target));
         final ASTree texpr = p.parseExpression(stable);
         final String m = method;
@@ -485,6 +602,7 @@ public class Javac {
     public void recordStaticProceed(String targetClass, String method)
         throws CompileError
     {
+        recordContext('s', targetClass, method);
         final String c = targetClass;
         final String m = method;
 
@@ -531,6 +649,7 @@ public class Javac {
                                      final int methodIndex)
         throws CompileError
     {
+        recordContext('x', target, classname, methodname, descriptor, methodIndex);
         Parser p = new Parser(new Lex(target));
         final ASTree texpr = p.parseExpression(stable);
 
@@ -558,6 +677,7 @@ public class Javac {
      * Prepares to use $proceed().
      */
     public void recordProceed(ProceedHandler h) {
+        context = null;     // h is unknown.
         gen.setProceedHandler(h, proceedName);
     }
 
@@ -571,6 +691,92 @@ public class Javac {
      * source text.  Fields and method parameters ($0, $1, ..) are available.
      */
     public void compileStmnt(String src) throws CompileError {
+        SnippetCache cache = gen.getThisClass().getClassPool().snippetCache;
+        if (cache == null || context == null) {
+            compileStmnt0(src);
+            return;
+        }
+
+        ConstPool cp = bytecode.getConstPool();
+        String key = makeKey(src);
+        SnippetCache.Template t = cache.get(cp, key);
+        if (t != null) {
+            t.copyTo(bytecode);
+            return;
+        }
+
+        int start = bytecode.currentPc();
+        int depth = bytecode.getStackDepth();
+        int maxStack = bytecode.getMaxStack();
+        int handlers = bytecode.getExceptionTable().size();
+        bytecode.setMaxStack(depth);
+        try {
+            compileStmnt(cache, src);
+            cache.put(cp, key, new SnippetCache.Template(bytecode, start, depth, handlers));
+        }
+        finally {
+            if (bytecode.getMaxStack() < maxStack)
+                bytecode.setMaxStack(maxStack);
+        }
+    }
+
+    private String makeKey(String src) {
+        StringBuilder key = new StringBuilder(context);
+        ClassPool pool = gen.getThisClass().getClassPool();
+        // the compiled code depends on the members and the super types of classes.
+        key.append('|').append(gen.getThisClass().getName())
+           .append('|').append(pool.membersVersion())
+           // the alignment of tableswitch and lookupswitch depends on the position.
+           .append('|').append(bytecode.currentPc() & 3)
+           .append('|').append(bytecode.getMaxLocals()).append('|');
+        Iterator<String> it = pool.getImportedPackages();
+        while (it.hasNext())
+            key.append(it.next()).append(',');
+
+        return key.append('|').append(src).toString();
+    }
+
+    /* The statements parsed from the source text are shared among
+     * classes through the cache.  A copy is compiled since the compiler
+     * modifies the statements.
+     */
+    private void compileStmnt(SnippetCache cache, String src) throws CompileError {
+        ASTList stmnts = cache.getStatements(src);
+        ASTList copy = stmnts == null ? null : new ASTCopier(stable).copy(stmnts);
+        if (copy == null) {
+            stmnts = parseStmnts(src);
+            copy = stmnts == null ? null : new ASTCopier(stable).copy(stmnts);
+            if (copy == null)
+                copy = stmnts;
+            else
+                cache.putStatements(src, stmnts);
+        }
+
+        for (ASTList list = copy; list != null; list = list.tail())
+            list.head().accept(gen);
+    }
+
+    private ASTList parseStmnts(String src) throws CompileError {
+        Parser p = new Parser(new Lex(src));
+        SymbolTable stb = new SymbolTable(stable);
+        ASTList head = null, tail = null;
+        while (p.hasMore()) {
+            Stmnt s = p.parseStatement(stb);
+            if (s != null) {
+                ASTList list = new ASTList(s, s.getLineNumber());
+                if (tail == null)
+                    head = list;
+                else
+                    tail.setTail(list);
+
+                tail = list;
+            }
+        }
+
+        return head;
+    }
+
+    private void compileStmnt0(String src) throws CompileError {
         Parser p = new Parser(new Lex(src));
         SymbolTable stb = new SymbolTable(stable);
         while (p.hasMore()) {
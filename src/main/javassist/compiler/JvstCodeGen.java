@@ -60,6 +60,24 @@ public class JvstCodeGen extends MemberCodeGen {
         setTypeChecker(new JvstTypeChecker(cc, cp, this));
     }
 
+    @Override
+    protected void reset(Bytecode b, CtClass cc, ClassPool cp) {
+        super.reset(b, cc, cp);
+        typeChecker.reset(cc, cp);
+        paramArrayName = null;
+        paramListName = null;
+        paramTypeList = null;
+        paramVarBase = 0;
+        useParam0 = false;
+        param0Type = null;
+        dollarType = null;
+        returnType = null;
+        returnCastName = null;
+        returnVarName = null;
+        proceedName = null;
+        procHandler = null;
+    }
+
     /* Index of $1.
      */
     private int indexOfParam1() {
@@ -13,6 +13,12 @@ public class JvstCodeGenWitlLineNumber extends JvstCodeGen {
         super(b, cc, cp);
     }
 
+    @Override
+    protected void reset(Bytecode b, CtClass cc, ClassPool cp) {
+        super.reset(b, cc, cp);
+        lineNumberAttributeBuilder.clear();
+    }
+
     public LineNumberAttribute toLineNumberAttribute() {
         return lineNumberAttributeBuilder.build(bytecode.getConstPool());
     }
@@ -63,6 +63,18 @@ public class MemberCodeGen extends CodeGen {
         thisMethod = null;
     }
 
+    /**
+     * Resets the state so that this code generator can be reused
+     * for another compilation.
+     */
+    protected void reset(Bytecode b, CtClass cc, ClassPool cp) {
+        reset(b);
+        resolver.reset(cp);
+        thisClass = cc;
+        thisMethod = null;
+        resultStatic = false;
+    }
+
     /**
      * Returns the major version of the class file
      * targeted by this compilation.
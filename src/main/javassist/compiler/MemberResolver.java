@@ -17,7 +17,9 @@
 package javassist.compiler;
 
 import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
@@ -50,6 +52,18 @@ public class MemberResolver implements TokenId {
 
     public ClassPool getClassPool() { return classPool; }
 
+    /**
+     * Changes the class pool so that this resolver can be reused.
+     * It may be null if this resolver is not used for a while.
+     */
+    void reset(ClassPool cp) {
+        if (classPool != cp) {
+            classPool = cp;
+            invalidNames = null;
+            lookupCache = null;
+        }
+    }
+
     private static void fatal(int lineNumber) throws CompileError {
         throw new CompileError("fatal", lineNumber);
     }
@@ -105,6 +119,27 @@ public class MemberResolver implements TokenId {
                                int[] argTypes, int[] argDims,
                                String[] argClassNames, boolean onlyExact)
         throws CompileError
+    {
+        LookupCache cache = getLookupCache();
+        String key = LookupCache.methodKey(methodName, argTypes, argDims,
+                                           argClassNames, onlyExact);
+        int version = lookupVersion();
+        Method m = cache.getMethod(clazz, key, version);
+        if (m != null)
+            return m;
+
+        m = lookupMethod0(clazz, methodName, argTypes, argDims,
+                          argClassNames, onlyExact);
+        if (m != null)
+            cache.putMethod(clazz, key, m, version);
+
+        return m;
+    }
+
+    private Method lookupMethod0(CtClass clazz, String methodName,
+                                 int[] argTypes, int[] argDims,
+                                 String[] argClassNames, boolean onlyExact)
+        throws CompileError
     {
         Method maybe = null;
         ClassFile cf = clazz.getClassFile2();
@@ -202,50 +237,33 @@ public class MemberResolver implements TokenId {
                                  int[] argDims, String[] argClassNames, int lineNumber)
         throws CompileError
     {
-        int result = YES;
-        int i = 1;
         int nArgs = argTypes.length;
         if (nArgs != Descriptor.numOfParameters(desc))
             return NO;
 
-        int len = desc.length();
-        for (int n = 0; i < len; ++n) {
-            char c = desc.charAt(i++);
-            if (c == ')')
-                return (n == nArgs ? result : NO);
-            else if (n >= nArgs)
-                return NO;
-
-            int dim = 0;
-            while (c == '[') {
-                ++dim;
-                c = desc.charAt(i++);
-            }
+        Params params = getLookupCache().params(desc);
+        if (params == null || params.kinds.length != nArgs)
+            return NO;
 
+        int result = YES;
+        for (int n = 0; n < nArgs; ++n) {
+            char c = params.kinds[n];
+            int dim = params.dims[n];
+            String cname = params.classNames[n];
             if (argTypes[n] == NULL) {
                 if (dim == 0 && c != 'L')
                     return NO;
-
-                if (c == 'L')
-                    i = desc.indexOf(';', i) + 1;
             }
             else if (argDims[n] != dim) {
-                if (!(dim == 0 && c == 'L'
-                      && desc.startsWith("java/lang/Object;", i)))
+                if (!(dim == 0 && c == 'L' && "java/lang/Object".equals(cname)))
                     return NO;
 
-                // if the thread reaches here, c must be 'L'.
-                i = desc.indexOf(';', i) + 1;
                 result++;
-                if (i <= 0)
-                    return NO;  // invalid descriptor?
             }
             else if (c == 'L') {        // not compare
-                int j = desc.indexOf(';', i);
-                if (j < 0 || argTypes[n] != CLASS)
+                if (argTypes[n] != CLASS)
                     return NO;
 
-                String cname = desc.substring(i, j);
                 if (!cname.equals(argClassNames[n])) {
                     CtClass clazz = lookupClassByJvmName(argClassNames[n], lineNumber);
                     try {
@@ -258,8 +276,6 @@ public class MemberResolver implements TokenId {
                         result++; // should be NO?
                     }
                 }
-
-                i = j + 1;
             }
             else {
                 int t = descToType(c, lineNumber);
@@ -273,7 +289,233 @@ public class MemberResolver implements TokenId {
             }
         }
 
-        return NO;
+        return result;
+    }
+
+    /* The parameter types in a method descriptor.  For each parameter,
+     * kinds[i] is the first character of the element type, such as 'I'
+     * and 'L', and classNames[i] is the JVM class name if kinds[i] is 'L'.
+     */
+    static final class Params {
+        char[] kinds;
+        int[] dims;
+        String[] classNames;
+
+        /* Returns null if the descriptor is invalid.
+         */
+        static Params parse(String desc) {
+            int n = Descriptor.numOfParameters(desc);
+            Params p = new Params();
+            p.kinds = new char[n];
+            p.dims = new int[n];
+            p.classNames = new String[n];
+            int i = 1;
+            for (int k = 0; k < n; k++) {
+                int dim = 0;
+                char c = desc.charAt(i++);
+                while (c == '[') {
+                    ++dim;
+                    c = desc.charAt(i++);
+                }
+
+                if (c == 'L') {
+                    int j = desc.indexOf(';', i);
+                    if (j < 0)
+                        return null;
+
+                    p.classNames[k] = desc.substring(i, j);
+                    i = j + 1;
+                }
+
+                p.kinds[k] = c;
+                p.dims[k] = dim;
+            }
+
+            return desc.charAt(i) == ')' ? p : null;
+        }
+    }
+
+    /* The methods found by lookupMethod(), the fields found by getField(),
+     * and the parameter types of the examined descriptors.  It is shared
+     * among the resolvers for the same ClassPool.  The keys of methods
+     * and fields are CtClass objects since a class might be replaced
+     * with another CtClass object with the same name.  They are weakly
+     * referenced so that evicted or detached classes can be collected.
+     * Misses are not recorded since a member might be added later.
+     * The recorded members are discarded when lookupVersion() changes.
+     */
+    static final class LookupCache {
+        private static final Params INVALID_PARAMS = new Params();
+
+        private int version;
+        private final Map<CtClass,Map<String,FoundMethod>> methods
+            = new WeakHashMap<CtClass,Map<String,FoundMethod>>();
+        private final Map<CtClass,Map<String,Reference<CtField>>> fields
+            = new WeakHashMap<CtClass,Map<String,Reference<CtField>>>();
+        private final Map<String,Params> params = new HashMap<String,Params>();
+
+        /* A Method object without a strong reference to the declaring
+         * class, which might be the key of the map.
+         */
+        static final class FoundMethod {
+            final Reference<CtClass> declaring;
+            final MethodInfo info;
+            final int notmatch;
+
+            FoundMethod(Method m) {
+                declaring = new WeakReference<CtClass>(m.declaring);
+                info = m.info;
+                notmatch = m.notmatch;
+            }
+        }
+
+        static String methodKey(String name, int[] argTypes, int[] argDims,
+                                String[] argClassNames, boolean onlyExact)
+        {
+            StringBuilder sbuf = new StringBuilder(name);
+            sbuf.append(onlyExact ? '!' : '?');
+            for (int i = 0; i < argTypes.length; i++) {
+                sbuf.append(argTypes[i]).append(':').append(argDims[i]);
+                if (argClassNames[i] != null)
+                    sbuf.append(':').append(argClassNames[i]);
+
+                sbuf.append(',');
+            }
+
+            return sbuf.toString();
+        }
+
+        private void checkVersion(int newVersion) {
+            if (version != newVersion) {
+                methods.clear();
+                fields.clear();
+                version = newVersion;
+            }
+        }
+
+        synchronized Method getMethod(CtClass clazz, String key, int version) {
+            checkVersion(version);
+            Map<String,FoundMethod> found = methods.get(clazz);
+            if (found != null) {
+                FoundMethod fm = found.get(key);
+                if (fm != null) {
+                    CtClass declaring = fm.declaring.get();
+                    if (declaring != null)
+                        return new Method(declaring, fm.info, fm.notmatch);
+                }
+            }
+
+            return null;
+        }
+
+        synchronized void putMethod(CtClass clazz, String key, Method m, int version) {
+            checkVersion(version);
+            Map<String,FoundMethod> found = methods.get(clazz);
+            if (found == null) {
+                found = new HashMap<String,FoundMethod>();
+                methods.put(clazz, found);
+            }
+
+            found.put(key, new FoundMethod(m));
+        }
+
+        synchronized CtField getField(CtClass clazz, String name, int version) {
+            checkVersion(version);
+            Map<String,Reference<CtField>> found = fields.get(clazz);
+            if (found != null) {
+                Reference<CtField> ref = found.get(name);
+                if (ref != null)
+                    return ref.get();
+            }
+
+            return null;
+        }
+
+        synchronized void putField(CtClass clazz, String name, CtField f, int version) {
+            checkVersion(version);
+            Map<String,Reference<CtField>> found = fields.get(clazz);
+            if (found == null) {
+                found = new HashMap<String,Reference<CtField>>();
+                fields.put(clazz, found);
+            }
+
+            found.put(name, new WeakReference<CtField>(f));
+        }
+
+        synchronized Params params(String desc) {
+            Params p = params.get(desc);
+            if (p == null) {
+                try {
+                    p = Params.parse(desc);
+                }
+                catch (StringIndexOutOfBoundsException e) {}
+
+                if (p == null)
+                    p = INVALID_PARAMS;
+
+                params.put(desc, p);
+            }
+
+            return p == INVALID_PARAMS ? null : p;
+        }
+    }
+
+    private static Map<ClassPool, Reference<LookupCache>> lookupCacheMap =
+            new WeakHashMap<ClassPool, Reference<LookupCache>>();
+    private LookupCache lookupCache = null;
+
+    private LookupCache getLookupCache() {
+        LookupCache c = lookupCache;
+        if (c == null) {
+            synchronized (MemberResolver.class) {
+                Reference<LookupCache> ref = lookupCacheMap.get(classPool);
+                if (ref != null)
+                    c = ref.get();
+
+                if (c == null) {
+                    c = new LookupCache();
+                    lookupCacheMap.put(classPool, new SoftReference<LookupCache>(c));
+                }
+            }
+
+            lookupCache = c;
+        }
+
+        return c;
+    }
+
+    /* Returns a number that changes when the members or the super types
+     * of a class in the class pool or its parents might be changed.
+     * The changes made directly through ClassFile are also counted.
+     */
+    private int lookupVersion() {
+        return classPool.membersVersion();
+    }
+
+    /**
+     * Discards the methods and the fields recorded by the resolvers.
+     * It must be called when the methods, the fields, the super class,
+     * or the interfaces of a class in the class pool are modified.
+     * The records for the children of the class pool are also discarded
+     * since they may depend on the modified class.
+     *
+     * @param cp        the class pool containing the modified class.
+     * @since 3.31
+     */
+    public static void clearLookupCache(ClassPool cp) {
+        cp.membersChanged();
+    }
+
+    private CtField getField(CtClass cc, String name) throws NotFoundException {
+        LookupCache cache = getLookupCache();
+        int version = lookupVersion();
+        CtField f = cache.getField(cc, name, version);
+        if (f == null) {
+            f = cc.getField(name);
+            cache.putField(cc, name, f, version);
+        }
+
+        return f;
     }
 
     /**
@@ -296,7 +538,7 @@ public class MemberResolver implements TokenId {
         }
 
         try {
-            return cc.getField(field);
+            return getField(cc, field);
         }
         catch (NotFoundException e) {
             // maybe an inner class.
@@ -322,7 +564,7 @@ public class MemberResolver implements TokenId {
     {
         CtClass cc = lookupClass(className, false, fieldName.getLineNumber());
         try {
-            return cc.getField(fieldName.get());
+            return getField(cc, fieldName.get());
         }
         catch (NotFoundException e) {}
         throw new CompileError("no such field: " + fieldName.get(), fieldName.getLineNumber());
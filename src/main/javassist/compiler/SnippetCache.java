@@ -0,0 +1,194 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist.compiler;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.ExceptionTable;
+import javassist.compiler.ast.ASTList;
+
+/**
+ * A cache of the bytecode compiled from source text.
+ *
+ * <p>If a <code>ClassPool</code> has a cache, the bytecode compiled
+ * from a statement by <code>insertBefore()</code>,
+ * <code>insertAfter()</code>, <code>addCatch()</code>,
+ * <code>replace()</code> in <code>javassist.expr.Expr</code>, and so on
+ * is recorded.  When the same source text is compiled again in the same
+ * context, the recorded bytecode is copied instead of compiling the source
+ * text.  The context consists of the class, the types and the names of
+ * the available variables such as <code>$1</code>, the return type,
+ * the target of <code>$proceed()</code>, and the packages imported into
+ * the <code>ClassPool</code>.
+ * The bytecode is reused only in the class where it was compiled since it
+ * refers to the constant pool of that class.  The statements parsed from
+ * the source text are also recorded and they are reused in other classes.
+ *
+ * <p>The compiled bytecode depends on the classes, fields, and methods
+ * referred to by the source text.  It is not reused after a method or
+ * a field is added or the super types of a class are changed in the
+ * <code>ClassPool</code> or its parents.  If the class files are modified
+ * in other ways, for example, if a class file is replaced by
+ * a <code>ClassPath</code>, <code>clear()</code> should be called.
+ *
+ * <pre>
+ * ClassPool pool = ClassPool.getDefault();
+ * pool.snippetCache = new SnippetCache();
+ * for (CtMethod m: cc.getDeclaredMethods())
+ *     m.insertBefore("{ Probe.enter($class, $sig); }");</pre>
+ *
+ * @see javassist.ClassPool#snippetCache
+ * @since 3.31
+ */
+public class SnippetCache {
+    private static final int DEFAULT_SIZE = 256;
+
+    static final class Template {
+        byte[] code;
+        int[] handlers;     // start, end, handler, and catch type relative to the code.
+        int maxStack;       // relative to the stack depth at the beginning.
+        int stackDepth;     // relative to the stack depth at the beginning.
+        int maxLocals;
+
+        Template(Bytecode b, int start, int depth, int numOfHandlers) {
+            code = Arrays.copyOfRange(b.get(), start, b.currentPc());
+            ExceptionTable et = b.getExceptionTable();
+            int n = et.size() - numOfHandlers;
+            handlers = new int[n * 4];
+            for (int i = 0; i < n; i++) {
+                int k = numOfHandlers + i;
+                handlers[i * 4] = et.startPc(k) - start;
+                handlers[i * 4 + 1] = et.endPc(k) - start;
+                handlers[i * 4 + 2] = et.handlerPc(k) - start;
+                handlers[i * 4 + 3] = et.catchType(k);
+            }
+
+            maxStack = b.getMaxStack() - depth;
+            stackDepth = b.getStackDepth() - depth;
+            maxLocals = b.getMaxLocals();
+        }
+
+        void copyTo(Bytecode b) {
+            int start = b.currentPc();
+            int depth = b.getStackDepth();
+            b.addGap(code.length);
+            for (int i = 0; i < code.length; i++)
+                b.write(start + i, code[i]);
+
+            for (int i = 0; i < handlers.length; i += 4)
+                b.addExceptionHandler(handlers[i] + start, handlers[i + 1] + start,
+                                      handlers[i + 2] + start, handlers[i + 3]);
+
+            if (b.getMaxStack() < depth + maxStack)
+                b.setMaxStack(depth + maxStack);
+
+            b.setStackDepth(depth + stackDepth);
+            if (b.getMaxLocals() < maxLocals)
+                b.setMaxLocals(maxLocals);
+        }
+    }
+
+    private int maxSize;
+    private WeakHashMap<ConstPool,Map<String,Template>> templates;
+
+    /* The statements parsed from the source text.  They are never compiled
+     * but their copies are compiled since the compiler modifies them.
+     */
+    private Map<String,ASTList> statements;
+
+    /**
+     * Constructs a cache.  It records at most 256 entries for each class
+     * and at most 256 parsed statements.
+     */
+    public SnippetCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Constructs a cache.
+     *
+     * @param maxSize       the maximum number of the entries
+     *                      for each class and the maximum number of
+     *                      the parsed statements.
+     *                      The least recently used entry is removed
+     *                      when the number exceeds it.
+     */
+    public SnippetCache(int maxSize) {
+        this.maxSize = maxSize;
+        templates = new WeakHashMap<ConstPool,Map<String,Template>>();
+        statements = newLruMap(maxSize);
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public synchronized void clear() {
+        templates.clear();
+        statements.clear();
+    }
+
+    /**
+     * Returns the number of the entries.
+     */
+    public synchronized int size() {
+        int n = 0;
+        for (Map<String,Template> m: templates.values())
+            n += m.size();
+
+        return n;
+    }
+
+    synchronized Template get(ConstPool cp, String key) {
+        Map<String,Template> m = templates.get(cp);
+        return m == null ? null : m.get(key);
+    }
+
+    synchronized void put(ConstPool cp, String key, Template t) {
+        Map<String,Template> m = templates.get(cp);
+        if (m == null) {
+            m = newLruMap(maxSize);
+            templates.put(cp, m);
+        }
+
+        m.put(key, t);
+    }
+
+    synchronized ASTList getStatements(String src) {
+        return statements.get(src);
+    }
+
+    synchronized void putStatements(String src, ASTList stmnts) {
+        statements.put(src, stmnts);
+    }
+
+    private static <T> Map<String,T> newLruMap(final int max) {
+        return new LinkedHashMap<String,T>(16, 0.75f, true) {
+            /** default serialVersionUID */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,T> e) {
+                return size() > max;
+            }
+        };
+    }
+}
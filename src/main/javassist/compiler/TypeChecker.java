@@ -68,6 +68,19 @@ public class TypeChecker extends Visitor implements Opcode, TokenId {
         thisMethod = null;
     }
 
+    /**
+     * Resets the state so that this type checker can be reused
+     * for another compilation.
+     */
+    protected void reset(CtClass cc, ClassPool cp) {
+        exprType = 0;
+        arrayDim = 0;
+        className = null;
+        resolver.reset(cp);
+        thisClass = cc;
+        thisMethod = null;
+    }
+
     /*
      * Converts an array of tuples of exprType, arrayDim, and className
      * into a String object.
@@ -113,7 +113,7 @@ public class Cast extends Expr {
         int pos = currentPos;
         int index = iterator.u16bitAt(pos + 1);
 
-        Javac jc = new Javac(thisClass);
+        Javac jc = Javac.obtain(thisClass);
         ClassPool cp = thisClass.getClassPool();
         CodeAttribute ca = iterator.get();
 
@@ -149,6 +149,9 @@ public class Cast extends Expr {
         catch (BadBytecode e) {
             throw new CannotCompileException("broken method");
         }
+        finally {
+            jc.release();
+        }
     }
 
     /* <type> $proceed(Object obj)
@@ -0,0 +1,147 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist.expr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javassist.CannotCompileException;
+
+/**
+ * An expression editor that applies several editors in a single scan
+ * of a method body.
+ *
+ * <p>Calling <code>instrument()</code> once for every editor scans the
+ * method body and rebuilds the stack map as many times as the editors.
+ * This editor scans the method body only once.  Whenever an expression
+ * is found, <code>edit()</code> is called on the given editors in the
+ * order they were added.  The stack map is rebuilt only once at the end.
+ *
+ * <p>If an editor replaces an expression, for example, by calling
+ * <code>replace()</code> in <code>MethodCall</code>, the editors
+ * following it are not called for that expression since the expression
+ * does not exist any more.  A catch clause (<code>Handler</code>) is
+ * passed to all the editors since <code>insertBefore()</code> on it
+ * can be called more than once.
+ *
+ * <pre>
+ * CtMethod cm = ...;
+ * cm.instrument(new CompositeExprEditor(callLogger, fieldTracer, allocCounter));
+ * </pre>
+ *
+ * @see javassist.CtClass#instrument(ExprEditor)
+ * @see javassist.CtBehavior#instrument(ExprEditor)
+ * @since 3.31
+ */
+public class CompositeExprEditor extends ExprEditor {
+    private List<ExprEditor> editors;
+
+    /**
+     * Constructs an editor.
+     *
+     * @param editors       the editors applied in this order.
+     */
+    public CompositeExprEditor(ExprEditor... editors) {
+        this.editors = new ArrayList<ExprEditor>(Arrays.asList(editors));
+    }
+
+    /**
+     * Appends an editor.  It is applied after the editors
+     * already added.
+     */
+    public void add(ExprEditor editor) {
+        editors.add(editor);
+    }
+
+    /**
+     * Returns the editors in the order they are applied.
+     * The returned list can be modified.
+     */
+    public List<ExprEditor> getEditors() {
+        return editors;
+    }
+
+    @Override
+    public void edit(NewExpr e) throws CannotCompileException {
+        for (ExprEditor editor: editors)
+            if (e.edited())
+                break;
+            else
+                editor.edit(e);
+    }
+
+    @Override
+    public void edit(NewArray a) throws CannotCompileException {
+        for (ExprEditor editor: editors)
+            if (a.edited())
+                break;
+            else
+                editor.edit(a);
+    }
+
+    @Override
+    public void edit(MethodCall m) throws CannotCompileException {
+        for (ExprEditor editor: editors)
+            if (m.edited())
+                break;
+            else
+                editor.edit(m);
+    }
+
+    @Override
+    public void edit(ConstructorCall c) throws CannotCompileException {
+        for (ExprEditor editor: editors)
+            if (c.edited())
+                break;
+            else
+                editor.edit(c);
+    }
+
+    @Override
+    public void edit(FieldAccess f) throws CannotCompileException {
+        for (ExprEditor editor: editors)
+            if (f.edited())
+                break;
+            else
+                editor.edit(f);
+    }
+
+    @Override
+    public void edit(Instanceof i) throws CannotCompileException {
+        for (ExprEditor editor: editors)
+            if (i.edited())
+                break;
+            else
+                editor.edit(i);
+    }
+
+    @Override
+    public void edit(Cast c) throws CannotCompileException {
+        for (ExprEditor editor: editors)
+            if (c.edited())
+                break;
+            else
+                editor.edit(c);
+    }
+
+    @Override
+    public void edit(Handler h) throws CannotCompileException {
+        for (ExprEditor editor: editors)
+            editor.edit(h);
+    }
+}
@@ -177,7 +177,7 @@ public class FieldAccess extends Expr {
         int pos = currentPos;
         int index = iterator.u16bitAt(pos + 1);
 
-        Javac jc = new Javac(thisClass);
+        Javac jc = Javac.obtain(thisClass);
         CodeAttribute ca = iterator.get();
         try {
             CtClass[] params;
@@ -242,6 +242,9 @@ public class FieldAccess extends Expr {
         catch (BadBytecode e) {
             throw new CannotCompileException("broken method");
         }
+        finally {
+            jc.release();
+        }
     }
 
     /* <field type> $proceed()
@@ -125,7 +125,7 @@ public class Handler extends Expr {
         @SuppressWarnings("unused")
         ConstPool cp = getConstPool();
         CodeAttribute ca = iterator.get();
-        Javac jv = new Javac(thisClass);
+        Javac jv = Javac.obtain(thisClass);
         Bytecode b = jv.getBytecode();
         b.setStackDepth(1);
         b.setMaxLocals(ca.getMaxLocals());
@@ -156,5 +156,8 @@ public class Handler extends Expr {
         catch (CompileError e) {
             throw new CannotCompileException(e);
         }
+        finally {
+            jv.release();
+        }
     }
 }
@@ -116,7 +116,7 @@ public class Instanceof extends Expr {
         int pos = currentPos;
         int index = iterator.u16bitAt(pos + 1);
 
-        Javac jc = new Javac(thisClass);
+        Javac jc = Javac.obtain(thisClass);
         ClassPool cp = thisClass.getClassPool();
         CodeAttribute ca = iterator.get();
 
@@ -155,6 +155,9 @@ public class Instanceof extends Expr {
         catch (BadBytecode e) {
             throw new CannotCompileException("broken method");
         }
+        finally {
+            jc.release();
+        }
     }
 
     /* boolean $proceed(Object obj)
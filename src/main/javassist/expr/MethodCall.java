@@ -217,7 +217,7 @@ public class MethodCall extends Expr {
         else
             throw new CannotCompileException("not method invocation");
 
-        Javac jc = new Javac(thisClass);
+        Javac jc = Javac.obtain(thisClass);
         ClassPool cp = thisClass.getClassPool();
         CodeAttribute ca = iterator.get();
         try {
@@ -259,5 +259,8 @@ public class MethodCall extends Expr {
         catch (BadBytecode e) {
             throw new CannotCompileException("broken method");
         }
+        finally {
+            jc.release();
+        }
     }
 }
@@ -225,34 +225,39 @@ public class NewArray extends Expr {
 
         retType = Descriptor.toCtClass(desc, thisClass.getClassPool());
 
-        Javac jc = new Javac(thisClass);
-        CodeAttribute ca = iterator.get();
+        Javac jc = Javac.obtain(thisClass);
+        try {
+            CodeAttribute ca = iterator.get();
 
-        CtClass[] params = new CtClass[dim];
-        for (int i = 0; i < dim; ++i)
-            params[i] = CtClass.intType;
+            CtClass[] params = new CtClass[dim];
+            for (int i = 0; i < dim; ++i)
+                params[i] = CtClass.intType;
 
-        int paramVar = ca.getMaxLocals();
-        jc.recordParams(javaLangObject, params,
-                        true, paramVar, withinStatic());
+            int paramVar = ca.getMaxLocals();
+            jc.recordParams(javaLangObject, params,
+                            true, paramVar, withinStatic());
 
-        /* Is $_ included in the source code?
-         */
-        checkResultValue(retType, statement);
-        int retVar = jc.recordReturnType(retType, true);
-        jc.recordProceed(new ProceedForArray(retType, opcode, index, dim));
+            /* Is $_ included in the source code?
+             */
+            checkResultValue(retType, statement);
+            int retVar = jc.recordReturnType(retType, true);
+            jc.recordProceed(new ProceedForArray(retType, opcode, index, dim));
 
-        Bytecode bytecode = jc.getBytecode();
-        storeStack(params, true, paramVar, bytecode);
-        jc.recordLocalVariables(ca, pos);
+            Bytecode bytecode = jc.getBytecode();
+            storeStack(params, true, paramVar, bytecode);
+            jc.recordLocalVariables(ca, pos);
 
-        bytecode.addOpcode(ACONST_NULL);        // initialize $_
-        bytecode.addAstore(retVar);
+            bytecode.addOpcode(ACONST_NULL);        // initialize $_
+            bytecode.addAstore(retVar);
 
-        jc.compileStmnt(statement);
-        bytecode.addAload(retVar);
+            jc.compileStmnt(statement);
+            bytecode.addAload(retVar);
 
-        replace0(pos, bytecode, codeLength);
+            replace0(pos, bytecode, codeLength);
+        }
+        finally {
+            jc.release();
+        }
     }
 
     /* <array type> $proceed(<dim> ..)
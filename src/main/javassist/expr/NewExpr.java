@@ -210,7 +210,7 @@ public class NewExpr extends Expr {
 
         String signature = constPool.getMethodrefType(methodIndex);
 
-        Javac jc = new Javac(thisClass);
+        Javac jc = Javac.obtain(thisClass);
         ClassPool cp = thisClass.getClassPool();
         CodeAttribute ca = iterator.get();
         try {
@@ -250,6 +250,9 @@ public class NewExpr extends Expr {
         catch (BadBytecode e) {
             throw new CannotCompileException("broken method");
         }
+        finally {
+            jc.release();
+        }
     }
 
     static class ProceedForNew implements ProceedHandler {
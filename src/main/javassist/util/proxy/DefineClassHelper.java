@@ -19,6 +19,8 @@ package javassist.util.proxy;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.security.ProtectionDomain;
 import java.util.List;
@@ -61,7 +63,10 @@ public class DefineClassHelper {
 
             ReferencedUnsafe(SecurityActions.TheUnsafe usf, MethodHandle meth) {
                 this.sunMiscUnsafeTheUnsafe = usf;
-                this.defineClass = meth;
+                // adapted to the exact type of the call site for invokeExact().
+                this.defineClass = meth.asType(MethodType.methodType(Class.class,
+                        Object.class, String.class, byte[].class, int.class, int.class,
+                        ClassLoader.class, ProtectionDomain.class));
             }
 
             Class<?> defineClass(String name, byte[] b, int off, int len,
@@ -75,7 +80,7 @@ public class DefineClassHelper {
                     throw new RuntimeException("cannot initialize", e);
                 }
                 try {
-                    return (Class<?>) defineClass.invokeWithArguments(
+                    return (Class<?>) defineClass.invokeExact(
                                 sunMiscUnsafeTheUnsafe.theUnsafe,
                                 name, b, off, len, loader, protectionDomain);
                 } catch (Throwable e) {
@@ -160,7 +165,7 @@ public class DefineClassHelper {
                         new Class[] {
                             String.class, byte[].class, int.class, int.class,
                             ProtectionDomain.class
-                        });
+                        }).asType(DEFINE_CLASS_TYPE);
                 } catch (NoSuchMethodException e) {
                     throw new RuntimeException("cannot initialize", e);
                 }
@@ -174,7 +179,7 @@ public class DefineClassHelper {
             if (stack.getCallerClass() != DefineClassHelper.class)
                 throw new IllegalAccessError("Access denied for caller.");
             try {
-                return (Class<?>) defineClass.invokeWithArguments(
+                return (Class<?>) defineClass.invokeExact(
                             loader, name, b, off, len, protectionDomain);
             } catch (Throwable e) {
                 if (e instanceof RuntimeException) throw (RuntimeException) e;
@@ -187,6 +192,7 @@ public class DefineClassHelper {
     private static class JavaOther extends Helper {
         private final Method defineClass = getDefineClassMethod();
         private final SecurityActions stack = SecurityActions.stack;
+        private volatile MethodHandle defineClassHandle = null;
 
         private final Method getDefineClassMethod() {
             if (privileged != null && stack.getCallerClass() != this.getClass())
@@ -201,6 +207,20 @@ public class DefineClassHelper {
             }
         }
 
+        /* Makes defineClass accessible only once and then calls it through
+         * a method handle, which avoids boxing the arguments on every call.
+         */
+        private MethodHandle getDefineClassHandle() throws IllegalAccessException {
+            MethodHandle handle = defineClassHandle;
+            if (handle == null) {
+                SecurityActions.setAccessible(defineClass, true);
+                handle = MethodHandles.lookup().unreflect(defineClass).asType(DEFINE_CLASS_TYPE);
+                defineClassHandle = handle;
+            }
+
+            return handle;
+        }
+
         @Override
         Class<?> defineClass(String name, byte[] b, int off, int len, Class<?> neighbor,
                              ClassLoader loader, ProtectionDomain protectionDomain)
@@ -210,10 +230,8 @@ public class DefineClassHelper {
             if (klass != DefineClassHelper.class && klass != this.getClass())
                 throw new IllegalAccessError("Access denied for caller.");
             try {
-                SecurityActions.setAccessible(defineClass, true);
-                return (Class<?>) defineClass.invoke(loader, new Object[] {
-                            name, b, off, len, protectionDomain
-                });
+                return (Class<?>) getDefineClassHandle().invokeExact(
+                            loader, name, b, off, len, protectionDomain);
             } catch (Throwable e) {
                 if (e instanceof ClassFormatError) throw (ClassFormatError) e;
                 if (e instanceof RuntimeException) throw (RuntimeException) e;
@@ -222,8 +240,15 @@ public class DefineClassHelper {
         }
     }
 
+    /* the type of ClassLoader#defineClass(String,byte[],int,int,ProtectionDomain)
+     * as a method handle taking the receiver as the first parameter.
+     */
+    private static final MethodType DEFINE_CLASS_TYPE
+        = MethodType.methodType(Class.class, ClassLoader.class, String.class, byte[].class,
+                                int.class, int.class, ProtectionDomain.class);
+
     // Java 11+ removed sun.misc.Unsafe.defineClass, so we fallback to invoking defineClass on
-    // ClassLoader until we have an implementation that uses MethodHandles.Lookup.defineClass
+    // ClassLoader unless a neighbor class is given for MethodHandles.Lookup.defineClass
     private static final Helper privileged = ClassFile.MAJOR_VERSION > ClassFile.JAVA_10
             ? new Java11()
             : ClassFile.MAJOR_VERSION >= ClassFile.JAVA_9
@@ -289,16 +314,39 @@ public class DefineClassHelper {
         throws CannotCompileException
     {
         try {
-            DefineClassHelper.class.getModule().addReads(neighbor.getModule());
-            Lookup lookup = MethodHandles.lookup();
-            Lookup prvlookup = MethodHandles.privateLookupIn(neighbor, lookup);
-            return prvlookup.defineClass(bcode);
+            return privateLookups.get(neighbor).defineClass(bcode);
         } catch (IllegalAccessException | IllegalArgumentException e) {
             throw new CannotCompileException(e.getMessage() + ": " + neighbor.getName()
                                              + " has no permission to define the class");
+        } catch (NoPrivateLookup e) {
+            throw new CannotCompileException(e.getCause().getMessage() + ": " + neighbor.getName()
+                                             + " has no permission to define the class");
         }
     }
 
+    /* thrown by privateLookups when privateLookupIn() fails.
+     */
+    private static class NoPrivateLookup extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NoPrivateLookup(IllegalAccessException e) { super(e); }
+    }
+
+    /* a private lookup in each neighbor class.  Obtaining it involves access
+     * checks and updates of the module graph, so it is done once per class.
+     */
+    private static final ClassValue<Lookup> privateLookups = new ClassValue<Lookup>() {
+        @Override
+        protected Lookup computeValue(Class<?> neighbor) {
+            try {
+                DefineClassHelper.class.getModule().addReads(neighbor.getModule());
+                return MethodHandles.privateLookupIn(neighbor, MethodHandles.lookup());
+            } catch (IllegalAccessException e) {
+                throw new NoPrivateLookup(e);
+            }
+        }
+    };
+
     /**
      * Loads a class file by {@code java.lang.invoke.MethodHandles.Lookup}.
      * It can be obtained by {@code MethodHandles.lookup()} called from
@@ -317,6 +365,60 @@ public class DefineClassHelper {
         }
     }
 
+    /**
+     * Loads a class file as a hidden class by
+     * {@code java.lang.invoke.MethodHandles.Lookup#defineHiddenClass}.
+     * The hidden class is not initialized, and it cannot be found by name
+     * through a class loader.  The class name given in the class file
+     * must belong to the package of the lookup class.
+     *
+     * <p>This method is available in Java 15 or later.
+     *
+     * @param lookup    the lookup that the hidden class is defined in.
+     *                  It needs the full privilege access.
+     * @param bcode     the bytecode.
+     * @since 3.31
+     */
+    public static Class<?> toHiddenClass(Lookup lookup, byte[] bcode)
+        throws CannotCompileException
+    {
+        if (defineHiddenClass == null)
+            throw new CannotCompileException("hidden classes are not supported by this JVM");
+
+        try {
+            Lookup hidden = (Lookup)defineHiddenClass.invokeExact(lookup, bcode, false);
+            return hidden.lookupClass();
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            throw new CannotCompileException(e.getMessage());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new CannotCompileException(t);
+        }
+    }
+
+    /* Lookup#defineHiddenClass(byte[],boolean,ClassOption...) without
+     * class options, or null if the JVM does not support hidden classes.
+     * It is obtained reflectively since it is not available before Java 15.
+     */
+    private static final MethodHandle defineHiddenClass = getDefineHiddenClass();
+
+    private static MethodHandle getDefineHiddenClass() {
+        try {
+            Class<?> optionClass
+                = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            Object noOptions = Array.newInstance(optionClass, 0);
+            MethodHandle meth = MethodHandles.publicLookup().findVirtual(Lookup.class,
+                    "defineHiddenClass", MethodType.methodType(Lookup.class, byte[].class,
+                                                               boolean.class, noOptions.getClass()));
+            return MethodHandles.insertArguments(meth, 3, noOptions);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
     /**
      * Loads a class file by {@code java.lang.invoke.MethodHandles.Lookup}.
      *
@@ -0,0 +1,58 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist.util.proxy;
+
+/**
+ * A method handler that receives a method invocation as
+ * an {@link Invocation} object.
+ *
+ * <p>If a proxy class is generated with
+ * {@link ProxyFactory#setUseInvocation(boolean)}, its instance calls
+ * <code>invoke(Invocation)</code> on this handler.  Since the arguments are
+ * not copied into an array and the overridden method is executed without
+ * reflection, a handler such as the following one does not box the arguments
+ * or reflectively call the method:
+ *
+ * <pre>
+ * public Object invoke(Invocation inv) throws Throwable {
+ *     if (inv.getMethodIndex() == ...)
+ *         ...
+ *     return inv.proceed();
+ * }
+ * </pre>
+ *
+ * <p>The instances of the other proxy classes call
+ * <code>invoke(Object, Method, Method, Object[])</code>
+ * declared in <code>MethodHandler</code>.
+ *
+ * @see Proxy#setHandler(MethodHandler)
+ * @since 3.31
+ */
+public interface DirectMethodHandler extends MethodHandler {
+    /**
+     * Is called when a method is invoked on a proxy instance associated
+     * with this handler.  This method must process that method invocation.
+     *
+     * @param inv           the method invocation.
+     * @return              the resulting value of the method invocation.
+     *                      If the return type is a primitive type,
+     *                      it must be a wrapper object.
+     *
+     * @throws Throwable    if the method invocation fails.
+     */
+    Object invoke(Invocation inv) throws Throwable;
+}
@@ -0,0 +1,372 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist.util.proxy;
+
+import java.lang.reflect.Method;
+
+/**
+ * A method invocation on a proxy instance.  It is passed to
+ * a {@link DirectMethodHandler} if the proxy class is generated with
+ * {@link ProxyFactory#setUseInvocation(boolean)}.
+ *
+ * <p>The arguments are not boxed.  They are obtained by the accessor
+ * for the parameter type, for example, <code>getIntArgument()</code>
+ * for an <code>int</code> parameter and <code>getObjectArgument()</code>
+ * for a parameter of a reference type.  <code>byte</code>, <code>char</code>,
+ * and <code>short</code> parameters are accessed by <code>getIntArgument()</code>
+ * and <code>setIntArgument()</code>.  If an accessor does not match the
+ * parameter type, the result is undefined.  <code>getArgument()</code>
+ * and <code>setArgument()</code> accept any parameter type but they box
+ * and unbox primitive values.
+ *
+ * <p><code>proceed()</code> executes the overridden method in the super class
+ * by a direct call compiled into the proxy class, not by
+ * <code>java.lang.reflect.Method</code>.
+ *
+ * @see DirectMethodHandler
+ * @since 3.31
+ */
+public final class Invocation {
+    /**
+     * The interface implemented by proxy classes generated with
+     * {@link ProxyFactory#setUseInvocation(boolean)}.
+     * It is not for application code.
+     */
+    public static interface Proceeder {
+        /**
+         * Executes the overridden method in the super class.
+         */
+        Object _proceed_(Invocation inv) throws Throwable;
+
+        /**
+         * Executes the overridden method in the super class if it returns
+         * a primitive value except a <code>boolean</code> value.
+         * The resulting value is converted into a <code>long</code> value
+         * as <code>Double.doubleToRawLongBits()</code> does.
+         */
+        long _proceedValue_(Invocation inv) throws Throwable;
+    }
+
+    private static final int SLOTS = 4;
+
+    private final Object self;
+    private final Method method;
+    private final int index;
+    private final int size;
+
+    // the first arguments are kept in these fields.
+    private long value0, value1, value2, value3;
+    private Object object0, object1, object2, object3;
+
+    // the other arguments.
+    private long[] values;
+    private Object[] objects;
+
+    /**
+     * Constructs an invocation.  It is called by proxy classes.
+     *
+     * @param self      the proxy instance.
+     * @param method    the overridden method.
+     * @param index     the index of the method in the proxy class.
+     * @param size      the number of the arguments.
+     */
+    public Invocation(Object self, Method method, int index, int size) {
+        this.self = self;
+        this.method = method;
+        this.index = index;
+        this.size = size;
+        if (size > SLOTS) {
+            values = new long[size - SLOTS];
+            objects = new Object[size - SLOTS];
+        }
+    }
+
+    /**
+     * Returns the proxy instance.
+     */
+    public Object getSelf() { return self; }
+
+    /**
+     * Returns the overridden method declared in the super class
+     * or interface.
+     */
+    public Method getMethod() { return method; }
+
+    /**
+     * Returns the index of the method in the proxy class.
+     * It identifies the method more quickly than <code>getMethod()</code>
+     * among the methods of the same proxy class.
+     */
+    public int getMethodIndex() { return index; }
+
+    /**
+     * Returns the number of the arguments.
+     */
+    public int getArgumentCount() { return size; }
+
+    /**
+     * Executes the overridden method in the super class with the
+     * current arguments.  If the return type is a primitive type,
+     * the resulting value is boxed.
+     *
+     * @throws AbstractMethodError  if the overridden method is abstract.
+     */
+    public Object proceed() throws Throwable {
+        return ((Proceeder)self)._proceed_(this);
+    }
+
+    /**
+     * Executes the overridden method returning an <code>int</code>,
+     * <code>short</code>, <code>char</code>, or <code>byte</code> value.
+     * The resulting value is not boxed.
+     *
+     * @throws ClassCastException   if the method returns another type.
+     *                              The method is not executed.
+     * @see PrimitiveMethodHandler#invokeInt(Invocation)
+     */
+    public int proceedInt() throws Throwable {
+        Class<?> type = method.getReturnType();
+        if (type != Integer.TYPE && type != Short.TYPE && type != Character.TYPE
+            && type != Byte.TYPE)
+            throw wrongReturnType("int");
+
+        return (int)((Proceeder)self)._proceedValue_(this);
+    }
+
+    /**
+     * Executes the overridden method returning a <code>long</code> value.
+     * The resulting value is not boxed.
+     *
+     * @throws ClassCastException   if the method returns another type.
+     *                              The method is not executed.
+     * @see PrimitiveMethodHandler#invokeLong(Invocation)
+     */
+    public long proceedLong() throws Throwable {
+        if (method.getReturnType() != Long.TYPE)
+            throw wrongReturnType("long");
+
+        return ((Proceeder)self)._proceedValue_(this);
+    }
+
+    /**
+     * Executes the overridden method returning a <code>float</code> value.
+     * The resulting value is not boxed.
+     *
+     * @throws ClassCastException   if the method returns another type.
+     *                              The method is not executed.
+     * @see PrimitiveMethodHandler#invokeFloat(Invocation)
+     */
+    public float proceedFloat() throws Throwable {
+        if (method.getReturnType() != Float.TYPE)
+            throw wrongReturnType("float");
+
+        return Float.intBitsToFloat((int)((Proceeder)self)._proceedValue_(this));
+    }
+
+    /**
+     * Executes the overridden method returning a <code>double</code> value.
+     * The resulting value is not boxed.
+     *
+     * @throws ClassCastException   if the method returns another type.
+     *                              The method is not executed.
+     * @see PrimitiveMethodHandler#invokeDouble(Invocation)
+     */
+    public double proceedDouble() throws Throwable {
+        if (method.getReturnType() != Double.TYPE)
+            throw wrongReturnType("double");
+
+        return Double.longBitsToDouble(((Proceeder)self)._proceedValue_(this));
+    }
+
+    private ClassCastException wrongReturnType(String type) {
+        return new ClassCastException("does not return " + type + ": " + method);
+    }
+
+    /**
+     * Returns the argument of a reference type.
+     *
+     * @param i         the position of the argument (0, 1, ...).
+     */
+    public Object getObjectArgument(int i) {
+        switch (i) {
+        case 0 : return object0;
+        case 1 : return object1;
+        case 2 : return object2;
+        case 3 : return object3;
+        default : return objects[check(i) - SLOTS];
+        }
+    }
+
+    /**
+     * Changes the argument of a reference type.
+     *
+     * @param i         the position of the argument (0, 1, ...).
+     */
+    public void setObjectArgument(int i, Object value) {
+        switch (i) {
+        case 0 : object0 = value; break;
+        case 1 : object1 = value; break;
+        case 2 : object2 = value; break;
+        case 3 : object3 = value; break;
+        default : objects[check(i) - SLOTS] = value;
+        }
+    }
+
+    private long getValue(int i) {
+        switch (i) {
+        case 0 : return value0;
+        case 1 : return value1;
+        case 2 : return value2;
+        case 3 : return value3;
+        default : return values[check(i) - SLOTS];
+        }
+    }
+
+    private void setValue(int i, long value) {
+        switch (i) {
+        case 0 : value0 = value; break;
+        case 1 : value1 = value; break;
+        case 2 : value2 = value; break;
+        case 3 : value3 = value; break;
+        default : values[check(i) - SLOTS] = value;
+        }
+    }
+
+    private int check(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("argument " + i);
+
+        return i;
+    }
+
+    /**
+     * Returns the <code>boolean</code> argument.
+     */
+    public boolean getBooleanArgument(int i) { return getValue(i) != 0; }
+
+    /**
+     * Changes the <code>boolean</code> argument.
+     */
+    public void setBooleanArgument(int i, boolean value) { setValue(i, value ? 1 : 0); }
+
+    /**
+     * Returns the <code>int</code>, <code>short</code>, <code>char</code>,
+     * or <code>byte</code> argument.
+     */
+    public int getIntArgument(int i) { return (int)getValue(i); }
+
+    /**
+     * Changes the <code>int</code>, <code>short</code>, <code>char</code>,
+     * or <code>byte</code> argument.
+     */
+    public void setIntArgument(int i, int value) { setValue(i, value); }
+
+    /**
+     * Returns the <code>long</code> argument.
+     */
+    public long getLongArgument(int i) { return getValue(i); }
+
+    /**
+     * Changes the <code>long</code> argument.
+     */
+    public void setLongArgument(int i, long value) { setValue(i, value); }
+
+    /**
+     * Returns the <code>float</code> argument.
+     */
+    public float getFloatArgument(int i) {
+        return Float.intBitsToFloat((int)getValue(i));
+    }
+
+    /**
+     * Changes the <code>float</code> argument.
+     */
+    public void setFloatArgument(int i, float value) {
+        setValue(i, Float.floatToRawIntBits(value));
+    }
+
+    /**
+     * Returns the <code>double</code> argument.
+     */
+    public double getDoubleArgument(int i) {
+        return Double.longBitsToDouble(getValue(i));
+    }
+
+    /**
+     * Changes the <code>double</code> argument.
+     */
+    public void setDoubleArgument(int i, double value) {
+        setValue(i, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Returns the argument.  If the parameter type is a primitive type,
+     * the value is boxed.
+     *
+     * @param i         the position of the argument (0, 1, ...).
+     */
+    public Object getArgument(int i) {
+        Class<?> type = method.getParameterTypes()[i];
+        if (!type.isPrimitive())
+            return getObjectArgument(i);
+        else if (type == Boolean.TYPE)
+            return Boolean.valueOf(getBooleanArgument(i));
+        else if (type == Byte.TYPE)
+            return Byte.valueOf((byte)getIntArgument(i));
+        else if (type == Character.TYPE)
+            return Character.valueOf((char)getIntArgument(i));
+        else if (type == Short.TYPE)
+            return Short.valueOf((short)getIntArgument(i));
+        else if (type == Integer.TYPE)
+            return Integer.valueOf(getIntArgument(i));
+        else if (type == Long.TYPE)
+            return Long.valueOf(getLongArgument(i));
+        else if (type == Float.TYPE)
+            return Float.valueOf(getFloatArgument(i));
+        else
+            return Double.valueOf(getDoubleArgument(i));
+    }
+
+    /**
+     * Changes the argument.  If the parameter type is a primitive type,
+     * the given value must be a wrapper object such as
+     * <code>java.lang.Integer</code>.
+     *
+     * @param i         the position of the argument (0, 1, ...).
+     */
+    public void setArgument(int i, Object value) {
+        Class<?> type = method.getParameterTypes()[i];
+        if (!type.isPrimitive())
+            setObjectArgument(i, type.cast(value));
+        else if (type == Boolean.TYPE)
+            setBooleanArgument(i, ((Boolean)value).booleanValue());
+        else if (type == Character.TYPE)
+            setIntArgument(i, ((Character)value).charValue());
+        else if (type == Long.TYPE)
+            setLongArgument(i, ((Number)value).longValue());
+        else if (type == Float.TYPE)
+            setFloatArgument(i, ((Number)value).floatValue());
+        else if (type == Double.TYPE)
+            setDoubleArgument(i, ((Number)value).doubleValue());
+        else if (type == Byte.TYPE)
+            setIntArgument(i, ((Number)value).byteValue());
+        else if (type == Short.TYPE)
+            setIntArgument(i, ((Number)value).shortValue());
+        else
+            setIntArgument(i, ((Number)value).intValue());
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist.util.proxy;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * The index of the proxy classes generated before runtime.
+ *
+ * <p>An index file lists a proxy class per line in the form of
+ * <code>&lt;key&gt; &lt;class name&gt; &lt;hash&gt;</code>.
+ * The key is the structural key of the proxy class and the hash is
+ * a hash code of the methods of the super class and interfaces.
+ * The hash is used for detecting that the super class has been
+ * changed since the proxy class was generated.
+ *
+ * @see ProxyFactory#writePrebuiltClass(String)
+ */
+final class PrebuiltProxies {
+    /**
+     * The path of index files.
+     */
+    static final String INDEX = "META-INF/javassist/proxies";
+
+    static final class Entry {
+        final String classname;
+        final int hash;
+
+        Entry(String classname, int hash) {
+            this.classname = classname;
+            this.hash = hash;
+        }
+    }
+
+    private static final Map<ClassLoader,Map<String,Entry>> indexes
+        = new WeakHashMap<ClassLoader,Map<String,Entry>>();
+
+    /**
+     * Returns the name of the proxy class for the given key
+     * or null if it is not found in the index files visible
+     * from the class loader.
+     */
+    static String find(ClassLoader cl, String key, int hash) {
+        Map<String,Entry> index;
+        synchronized (indexes) {
+            index = indexes.get(cl);
+            if (index == null) {
+                index = readIndexes(cl);
+                indexes.put(cl, index);
+            }
+        }
+
+        Entry e = index.get(key);
+        if (e == null || e.hash != hash)
+            return null;
+        else
+            return e.classname;
+    }
+
+    private static Map<String,Entry> readIndexes(ClassLoader cl) {
+        Map<String,Entry> index = new HashMap<String,Entry>();
+        try {
+            Enumeration<URL> urls = cl == null ? ClassLoader.getSystemResources(INDEX)
+                                               : cl.getResources(INDEX);
+            while (urls.hasMoreElements()) {
+                InputStream in = urls.nextElement().openStream();
+                try {
+                    read(in, index);
+                }
+                finally {
+                    in.close();
+                }
+            }
+        }
+        catch (IOException e) {
+            // an unreadable index is ignored.  the proxy classes are generated.
+        }
+
+        return index.isEmpty() ? Collections.<String,Entry>emptyMap() : index;
+    }
+
+    private static void read(InputStream in, Map<String,Entry> index) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] tokens = line.trim().split(" ");
+            if (tokens.length == 3)
+                try {
+                    index.put(tokens[0], new Entry(tokens[1], (int)Long.parseLong(tokens[2], 16)));
+                }
+                catch (NumberFormatException e) {}
+        }
+    }
+
+    /**
+     * Adds a proxy class to the index file under the given directory.
+     * The lines are sorted by the keys so that the file does not depend
+     * on the order of generation.
+     *
+     * @throws IOException      if the class name is already used for another key.
+     */
+    static void write(String directoryName, String key, String classname, int hash)
+        throws IOException
+    {
+        File file = new File(directoryName, INDEX.replace('/', File.separatorChar));
+        synchronized (PrebuiltProxies.class) {
+            Map<String,Entry> index = new TreeMap<String,Entry>();
+            if (file.exists()) {
+                InputStream in = new FileInputStream(file);
+                try {
+                    read(in, index);
+                }
+                finally {
+                    in.close();
+                }
+            }
+            else
+                file.getParentFile().mkdirs();
+
+            for (Map.Entry<String,Entry> e: index.entrySet())
+                if (e.getValue().classname.equals(classname) && !e.getKey().equals(key))
+                    throw new IOException("the proxy class name " + classname
+                                          + " is already used for " + e.getKey());
+
+            index.put(key, new Entry(classname, hash));
+            Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+            try {
+                for (Map.Entry<String,Entry> e: index.entrySet()) {
+                    Entry value = e.getValue();
+                    out.write(e.getKey() + ' ' + value.classname + ' '
+                              + Integer.toHexString(value.hash) + '\n');
+                }
+            }
+            finally {
+                out.close();
+            }
+        }
+    }
+}
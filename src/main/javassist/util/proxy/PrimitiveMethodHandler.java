@@ -0,0 +1,96 @@
+/*
+ * Javassist, a Java-bytecode translator toolkit.
+ * Copyright (C) 1999- Shigeru Chiba. All Rights Reserved.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License.  Alternatively, the contents of this file may be used under
+ * the terms of the GNU Lesser General Public License Version 2.1 or later,
+ * or the Apache License Version 2.0.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ */
+
+package javassist.util.proxy;
+
+/**
+ * A method handler that receives the invocations of the methods returning
+ * a primitive value without boxing the value.
+ *
+ * <p>If a proxy class is generated with
+ * {@link ProxyFactory#setUseInvocation(boolean)} and its instance is associated
+ * with this handler, a method returning an <code>int</code>, <code>short</code>,
+ * <code>char</code>, or <code>byte</code> value calls <code>invokeInt()</code>.
+ * A method returning a <code>long</code>, <code>float</code>, or <code>double</code>
+ * value calls <code>invokeLong()</code>, <code>invokeFloat()</code>, or
+ * <code>invokeDouble()</code>, respectively.  The other methods call
+ * <code>invoke(Invocation)</code>.
+ *
+ * <p>The default implementations of these methods call
+ * <code>invoke(Invocation)</code> and unbox the resulting value.
+ * A handler overrides the methods for the return types that it processes
+ * frequently, for example:
+ *
+ * <pre>
+ * public int invokeInt(Invocation inv) throws Throwable {
+ *     count++;
+ *     return inv.proceedInt();
+ * }
+ * </pre>
+ *
+ * @see Invocation#proceedInt()
+ * @since 3.31
+ */
+public interface PrimitiveMethodHandler extends DirectMethodHandler {
+    /**
+     * Is called when a method returning an <code>int</code>, <code>short</code>,
+     * <code>char</code>, or <code>byte</code> value is invoked.
+     *
+     * @param inv           the method invocation.
+     * @return              the resulting value of the method invocation.
+     * @throws Throwable    if the method invocation fails.
+     */
+    default int invokeInt(Invocation inv) throws Throwable {
+        Object result = invoke(inv);
+        if (result instanceof Character)
+            return ((Character)result).charValue();
+        else
+            return ((Number)result).intValue();
+    }
+
+    /**
+     * Is called when a method returning a <code>long</code> value is invoked.
+     *
+     * @param inv           the method invocation.
+     * @return              the resulting value of the method invocation.
+     * @throws Throwable    if the method invocation fails.
+     */
+    default long invokeLong(Invocation inv) throws Throwable {
+        return ((Number)invoke(inv)).longValue();
+    }
+
+    /**
+     * Is called when a method returning a <code>float</code> value is invoked.
+     *
+     * @param inv           the method invocation.
+     * @return              the resulting value of the method invocation.
+     * @throws Throwable    if the method invocation fails.
+     */
+    default float invokeFloat(Invocation inv) throws Throwable {
+        return ((Number)invoke(inv)).floatValue();
+    }
+
+    /**
+     * Is called when a method returning a <code>double</code> value is invoked.
+     *
+     * @param inv           the method invocation.
+     * @return              the resulting value of the method invocation.
+     * @throws Throwable    if the method invocation fails.
+     */
+    default double invokeDouble(Invocation inv) throws Throwable {
+        return ((Number)invoke(inv)).doubleValue();
+    }
+}
@@ -16,7 +16,9 @@
 
 package javassist.util.proxy;
 
+import java.io.IOException;
 import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -24,8 +26,12 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -35,6 +41,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.lang.invoke.MethodHandles.Lookup;
 
 import javassist.CannotCompileException;
@@ -182,6 +190,7 @@ public class ProxyFactory {
     private MethodHandler handler;  // retained for legacy usage
     private List<Map.Entry<String,Method>> signatureMethods;
     private boolean hasGetHandler;
+    private byte[] overridable;
     private byte[] signature;
     private String classname;
     private String basename;
@@ -197,6 +206,10 @@ public class ProxyFactory {
      * per factory setting initialised from current setting for useWriteReplace but able to be reset before each create call
      */
     private boolean factoryWriteReplace;
+    /**
+     * per factory setting for generating proxy classes that pass an {@link Invocation} to a handler
+     */
+    private boolean factoryUseInvocation;
 
     /**
      * <p>If true, only public/protected methods are forwarded to a proxy object.
@@ -288,6 +301,17 @@ public class ProxyFactory {
      */
     public static volatile boolean useWriteReplace = true;
 
+    /**
+     * If true, a proxy class written by {@link #writePrebuiltClass(String)} is
+     * loaded instead of generating a new proxy class when it is found
+     * by the class loader of the proxy class and its key matches.
+     * Proxy classes are looked up only if the factory uses the proxy cache.
+     * The default value is true.
+     *
+     * @since 3.31
+     */
+    public static volatile boolean usePrebuiltClasses = true;
+
     /*
      * methods allowing individual factory settings for factoryUseCache and factoryWriteReplace to be reset
      */
@@ -335,8 +359,39 @@ public class ProxyFactory {
         factoryWriteReplace = useWriteReplace;
     }
 
-    private static Map<ClassLoader,Map<String,ProxyDetails>> proxyCache =
-            new WeakHashMap<ClassLoader,Map<String,ProxyDetails>>();
+    /**
+     * test whether this factory creates classes that pass an {@link Invocation} to a handler
+     * @return true if this factory creates such classes otherwise false
+     * @since 3.31
+     */
+    public boolean isUseInvocation()
+    {
+        return factoryUseInvocation;
+    }
+
+    /**
+     * configure whether this factory should create classes that pass an {@link Invocation}
+     * to a handler.  if true, the instances of the created classes call
+     * {@link DirectMethodHandler#invoke(Invocation)} when the handler is a {@link DirectMethodHandler}.
+     * the arguments are neither boxed nor copied into an array and {@link Invocation#proceed()}
+     * directly calls the overridden method without reflection.  if the handler is not a
+     * {@link DirectMethodHandler}, {@link MethodHandler#invoke(Object, Method, Method, Object[])}
+     * is called as usual.  the default value is false.
+     * @param useInvocation true if this factory should create classes that pass an {@link Invocation}
+     * to a handler
+     * @since 3.31
+     */
+    public void setUseInvocation(boolean useInvocation)
+    {
+        factoryUseInvocation = useInvocation;
+    }
+
+    /* The lock on this map is held only while the second-tier map for
+     * a class loader is looked up.  The second-tier maps are concurrent
+     * so that proxy classes of different shapes are generated in parallel.
+     */
+    private static Map<ClassLoader,ConcurrentMap<ProxyKey,ProxyDetails>> proxyCache =
+            new WeakHashMap<ClassLoader,ConcurrentMap<ProxyKey,ProxyDetails>>();
 
     /**
      * determine if a class is a javassist proxy class
@@ -349,10 +404,64 @@ public class ProxyFactory {
         return (Proxy.class.isAssignableFrom(cl));
     }
 
+    /**
+     * the key of the second tier of the proxy cache.  it identifies the shape of a proxy class by the names
+     * of its super class and interfaces, the filter signature, and the writeReplace and invocation flags.  class names are
+     * used instead of classes so that the key does not keep the class loader in the first tier reachable.
+     */
+    static final class ProxyKey {
+        private final String superName;
+        private final String[] interfaceNames;
+        private final byte[] signature;
+        private final boolean useWriteReplace;
+        private final boolean useInvocation;
+        private final int hash;
+
+        ProxyKey(Class<?> superClass, Class<?>[] interfaces, byte[] signature, boolean useWriteReplace,
+                 boolean useInvocation)
+        {
+            superName = superClass == null ? null : superClass.getName();
+            int n = interfaces == null ? 0 : interfaces.length;
+            interfaceNames = new String[n];
+            for (int i = 0; i < n; i++)
+                interfaceNames[i] = interfaces[i].getName();
+
+            this.signature = signature;
+            this.useWriteReplace = useWriteReplace;
+            this.useInvocation = useInvocation;
+            int h = superName == null ? 0 : superName.hashCode();
+            h = h * 31 + Arrays.hashCode(interfaceNames);
+            h = h * 31 + Arrays.hashCode(signature);
+            if (useInvocation)
+                h = h * 31 + 1;
+
+            hash = useWriteReplace ? ~h : h;
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof ProxyKey))
+                return false;
+
+            ProxyKey key = (ProxyKey)obj;
+            return hash == key.hash && useWriteReplace == key.useWriteReplace
+                   && useInvocation == key.useInvocation
+                   && (superName == null ? key.superName == null : superName.equals(key.superName))
+                   && Arrays.equals(interfaceNames, key.interfaceNames)
+                   && Arrays.equals(signature, key.signature);
+        }
+    }
+
     /**
      * used to store details of a specific proxy class in the second tier of the proxy cache. this entry
-     * will be located in a hashmap keyed by the unique identifying name of the proxy class. the hashmap is
+     * will be located in a concurrent hashmap keyed by the shape of the proxy class. the hashmap is
      * located in a weak hashmap keyed by the classloader common to all proxy classes in the second tier map.
+     * an entry is put into the cache before its proxy class is generated so that other threads asking for
+     * the same proxy class wait for it instead of generating it again.
      */
     static class ProxyDetails {
         /**
@@ -362,8 +471,7 @@ public class ProxyFactory {
          */
         byte[] signature;
         /**
-         * a hexadecimal string representation of the signature bit sequence. this string also forms part
-         * of the proxy class name.
+         * a weak reference to the proxy class.  it is null while the class is being generated.
          */
         Reference<Class<?>> proxyClass;
         /**
@@ -371,12 +479,67 @@ public class ProxyFactory {
          * and false if serialization must employ of a ProxyObjectOutputStream and ProxyObjectInputStream
          */
         boolean isUseWriteReplace;
+        /**
+         * true if the generation of the proxy class failed.
+         */
+        private boolean failed;
+        /**
+         * the thread generating the proxy class.  it is null after the generation.
+         */
+        private Thread owner;
 
-        ProxyDetails(byte[] signature, Class<?> proxyClass, boolean isUseWriteReplace)
+        ProxyDetails(byte[] signature, boolean isUseWriteReplace)
         {
             this.signature = signature;
-            this.proxyClass = new WeakReference<Class<?>>(proxyClass);
+            this.proxyClass = null;
             this.isUseWriteReplace = isUseWriteReplace;
+            this.failed = false;
+            this.owner = Thread.currentThread();
+        }
+
+        synchronized void setProxyClass(Class<?> proxyClass)
+        {
+            this.proxyClass = new WeakReference<Class<?>>(proxyClass);
+            owner = null;
+            notifyAll();
+        }
+
+        synchronized void setFailed()
+        {
+            failed = true;
+            owner = null;
+            notifyAll();
+        }
+
+        /**
+         * returns true if the proxy class is being generated by the current thread.
+         * for example, the static initializer of the super class may request
+         * the same proxy class while the generated class is initialized.
+         */
+        synchronized boolean isGeneratedByCurrentThread()
+        {
+            return owner == Thread.currentThread();
+        }
+
+        /**
+         * waits until the proxy class is generated.  returns null if the generation failed or
+         * the proxy class has been garbage collected.
+         */
+        synchronized Class<?> getProxyClass()
+        {
+            boolean interrupted = false;
+            while (proxyClass == null && !failed)
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+
+            if (interrupted)
+                Thread.currentThread().interrupt();
+
+            return proxyClass == null ? null : proxyClass.get();
         }
     }
 
@@ -396,6 +559,7 @@ public class ProxyFactory {
         writeDirectory = null;
         factoryUseCache = useCache;
         factoryWriteReplace = useWriteReplace;
+        factoryUseInvocation = false;
     }
 
     /**
@@ -555,16 +719,14 @@ public class ProxyFactory {
         Class<?> result = thisClass;
         if (result == null) {
             ClassLoader cl = getClassLoader();
-            synchronized (proxyCache) {
-                if (factoryUseCache)
-                    createClass2(cl, lookup);
-                else
-                    createClass3(cl, lookup);
+            if (factoryUseCache)
+                createClass2(cl, lookup);
+            else
+                createClass3(cl, lookup);
 
-                result = thisClass;
-                // don't retain any unwanted references
-                thisClass = null;
-            }
+            result = thisClass;
+            // don't retain any unwanted references
+            thisClass = null;
         }
 
         return result;
@@ -600,31 +762,56 @@ public class ProxyFactory {
     }
 
     private void createClass2(ClassLoader cl, Lookup lookup) {
-        String key = getKey(superClass, interfaces, signature, factoryWriteReplace);
-        /*
-         * Excessive concurrency causes a large memory footprint and slows the
-         * execution speed down (with JDK 1.5).  Thus, we use a jumbo lock for
-         * reducing concrrency.
-         */
-        // synchronized (proxyCache) {
-            Map<String,ProxyDetails> cacheForTheLoader = proxyCache.get(cl);
-            ProxyDetails details;
+        ProxyKey key = new ProxyKey(superClass, interfaces, signature, factoryWriteReplace,
+                                    factoryUseInvocation);
+        ConcurrentMap<ProxyKey,ProxyDetails> cacheForTheLoader;
+        synchronized (proxyCache) {
+            cacheForTheLoader = proxyCache.get(cl);
             if (cacheForTheLoader == null) {
-                cacheForTheLoader = new HashMap<String,ProxyDetails>();
+                cacheForTheLoader = new ConcurrentHashMap<ProxyKey,ProxyDetails>();
                 proxyCache.put(cl, cacheForTheLoader);
             }
-            details = cacheForTheLoader.get(key);
+        }
+
+        while (true) {
+            ProxyDetails details = cacheForTheLoader.get(key);
             if (details != null) {
-                Reference<Class<?>> reference = details.proxyClass;
-                thisClass = reference.get();
-                if (thisClass != null) {
+                if (details.isGeneratedByCurrentThread()) {
+                    // waiting for the entry would never end.  the class is not cached.
+                    createClass3(cl, lookup);
                     return;
                 }
+
+                thisClass = details.getProxyClass();
+                if (thisClass != null)
+                    return;
+
+                // the class was garbage collected or its generation failed.
+                cacheForTheLoader.remove(key, details);
+                continue;
             }
-            createClass3(cl, lookup);
-            details = new  ProxyDetails(signature, thisClass, factoryWriteReplace);
-            cacheForTheLoader.put(key, details);
-        // }
+
+            details = new ProxyDetails(signature, factoryWriteReplace);
+            if (cacheForTheLoader.putIfAbsent(key, details) != null)
+                continue;       // another thread is generating the class.
+
+            boolean done = false;
+            try {
+                if (!loadPrebuiltClass(cl))
+                    createClass3(cl, lookup);
+
+                details.setProxyClass(thisClass);
+                done = true;
+            }
+            finally {
+                if (!done) {
+                    cacheForTheLoader.remove(key, details);
+                    details.setFailed();
+                }
+            }
+
+            return;
+        }
     }
 
     private void createClass3(ClassLoader cl, Lookup lookup) {
@@ -653,6 +840,136 @@ public class ProxyFactory {
 
     }
 
+    /**
+     * Generates a proxy class and writes its class file under the given
+     * directory so that the class is loaded at runtime instead of being
+     * generated again.  The proxy class is generated with the current
+     * settings of this factory such as the super class, the interfaces, and
+     * the filter.  It is also recorded in the index file
+     * <code>META-INF/javassist/proxies</code> under the directory.
+     *
+     * <p>The directory, including the index file, should be packaged
+     * into a jar file or put on the class path at runtime.  When
+     * {@link #createClass()} is called on a factory with the same settings,
+     * the class loader of the proxy class loads the written class
+     * if it finds the index file.
+     * If the methods of the super class or the interfaces have been changed
+     * since the proxy class was written, a new proxy class is generated.
+     *
+     * @param directoryName     the directory.
+     * @return                  the name of the proxy class.
+     * @throws RuntimeException if the factory does not use the proxy cache,
+     *                          that is, if <code>setUseCache(false)</code>
+     *                          has been called or a default interceptor
+     *                          has been set.
+     * @see #isUseCache()
+     * @see #usePrebuiltClasses
+     * @since 3.31
+     */
+    public String writePrebuiltClass(String directoryName) throws IOException {
+        if (!factoryUseCache)
+            throw new RuntimeException("a proxy class cannot be prebuilt if the factory does not use the proxy cache");
+
+        if (signature == null)
+            computeSignature(methodFilter);
+
+        String key = getPrebuiltKey();
+        String name = getPrebuiltName(key);
+        // the index is written first since it detects a name clash.
+        PrebuiltProxies.write(directoryName, key, name, getMethodsHash());
+        String oldName = classname;
+        classname = name;
+        try {
+            FactoryHelper.writeFile(make(), directoryName);
+        }
+        catch (CannotCompileException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        finally {
+            // the factory still generates proxy classes with the usual names.
+            classname = oldName;
+        }
+
+        return name;
+    }
+
+    // unlike the names from nameGenerator, a prebuilt class name contains 'p' after "jvst".
+    private static final String PREBUILT_SEPARATOR = "_$$_jvstp_";
+
+    private String getPrebuiltKey() {
+        String key = getKey(superClass, interfaces, signature, factoryWriteReplace);
+        return factoryUseInvocation ? key + ":i" : key;
+    }
+
+    /* The name of a prebuilt class includes the digest of the key
+     * so that two keys do not share a class file.
+     */
+    private String getPrebuiltName(String key) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+
+        StringBuilder sbuf = new StringBuilder(basename).append(PREBUILT_SEPARATOR);
+        for (byte b: digest)
+            sbuf.append(hexDigits[(b >> 4) & 0xf]).append(hexDigits[b & 0xf]);
+
+        return sbuf.toString();
+    }
+
+    /* Computes a hash code of the methods that the proxy class may override.
+     * It differs if the super class or the interfaces have been changed.
+     */
+    private int getMethodsHash() {
+        int h = 0;
+        for (Map.Entry<String,Method> e: signatureMethods)
+            h = h * 31 + e.getKey().hashCode();
+
+        return h;
+    }
+
+    /* Loads the proxy class written by writePrebuiltClass() if it is found.
+     */
+    private boolean loadPrebuiltClass(ClassLoader cl) {
+        if (!usePrebuiltClasses)
+            return false;
+
+        String key = getPrebuiltKey();
+        String name = PrebuiltProxies.find(cl, key, getMethodsHash());
+        // the class with another name was not written for this key.
+        if (name == null || !name.equals(getPrebuiltName(key)))
+            return false;
+
+        try {
+            Class<?> c = Class.forName(name, false, cl);
+            if (c.getSuperclass() != superClass || !isProxyClass(c))
+                return false;
+
+            for (Class<?> i: interfaces)
+                if (!i.isAssignableFrom(c))
+                    return false;
+
+            // the signature has been set if another factory has loaded the class.
+            byte[] sig = getFilterSignature(c);
+            if (sig != null && !Arrays.equals(sig, signature))
+                return false;
+
+            thisClass = c;
+        }
+        catch (ClassNotFoundException e) {
+            return false;
+        }
+        catch (LinkageError e) {
+            return false;
+        }
+
+        setField(FILTER_SIGNATURE_FIELD, signature);
+        return true;
+    }
+
     /**
      * Obtains a class belonging to the same package that the created
      * proxy class belongs to.  It is used to obtain an appropriate
@@ -893,6 +1210,9 @@ public class ProxyFactory {
         ClassFile cf = new ClassFile(false, classname, superName);
         cf.setAccessFlags(AccessFlag.PUBLIC);
         setInterfaces(cf, interfaces, hasGetHandler ? Proxy.class : ProxyObject.class);
+        if (factoryUseInvocation)
+            cf.addInterface(Invocation.Proceeder.class.getName());
+
         ConstPool pool = cf.getConstPool();
 
         // legacy: we only add the static field for the default interceptor if caching is disabled
@@ -929,6 +1249,11 @@ public class ProxyFactory {
         List<Find2MethodsArgs> forwarders = new ArrayList<Find2MethodsArgs>();
         int s = overrideMethods(cf, pool, classname, forwarders);
         addClassInitializer(cf, pool, classname, s, forwarders);
+        if (factoryUseInvocation) {
+            addProceeder(classname, cf, pool, s, forwarders, false);
+            addProceeder(classname, cf, pool, s, forwarders, true);
+        }
+
         addSetter(classname, cf, pool);
         if (!hasGetHandler)
             addGetter(classname, cf, pool);
@@ -984,28 +1309,124 @@ public class ProxyFactory {
             }
         };
 
+    /**
+     * the sorted methods of a super class and interfaces, which are shared among
+     * proxy factories with the same super class and interfaces.
+     */
+    static final class MethodTable {
+        final List<Map.Entry<String,Method>> methods;
+        final boolean hasGetHandler;
+        /**
+         * each bit is set if the corresponding method is neither final, static, nor invisible.
+         */
+        final byte[] overridable;
+
+        MethodTable(List<Map.Entry<String,Method>> methods, boolean hasGetHandler, byte[] overridable)
+        {
+            this.methods = methods;
+            this.hasGetHandler = hasGetHandler;
+            this.overridable = overridable;
+        }
+    }
+
+    /* The method tables are kept for the class loader that loads the super
+     * class and the interfaces (except the bootstrap loader).  Since the
+     * tables refer to the classes, they are softly reachable so that they
+     * do not keep the class loader reachable.  The keys of the second-tier
+     * maps are the names of the package, the super class, and the interfaces.
+     */
+    private static Map<ClassLoader,SoftReference<ConcurrentMap<String,MethodTable>>> methodTables
+        = new WeakHashMap<ClassLoader,SoftReference<ConcurrentMap<String,MethodTable>>>();
+
     private void makeSortedMethodList() {
         checkClassAndSuperName();
 
+        MethodTable table = getMethodTable();
+        hasGetHandler = table.hasGetHandler;
+        signatureMethods = table.methods;
+        overridable = table.overridable;
+    }
+
+    private MethodTable getMethodTable() {
+        ClassLoader loader = superClass.getClassLoader();
+        StringBuilder sbuf = new StringBuilder(basename);
+        sbuf.append(':').append(superName);
+        for (Class<?> i: interfaces) {
+            ClassLoader l = i.getClassLoader();
+            if (l != null && l != loader) {
+                if (loader != null)
+                    return makeMethodTable();   // not cached
+
+                loader = l;
+            }
+
+            sbuf.append(':').append(i.getName());
+        }
+
+        ConcurrentMap<String,MethodTable> tables = getMethodTables(loader);
+        String key = sbuf.toString();
+        MethodTable table = tables.get(key);
+        if (table == null) {
+            table = makeMethodTable();
+            MethodTable table2 = tables.putIfAbsent(key, table);
+            if (table2 != null)
+                table = table2;
+        }
+
+        return table;
+    }
+
+    private static ConcurrentMap<String,MethodTable> getMethodTables(ClassLoader loader) {
+        synchronized (methodTables) {
+            SoftReference<ConcurrentMap<String,MethodTable>> ref = methodTables.get(loader);
+            ConcurrentMap<String,MethodTable> tables = ref == null ? null : ref.get();
+            if (tables == null) {
+                tables = new ConcurrentHashMap<String,MethodTable>();
+                methodTables.put(loader, new SoftReference<ConcurrentMap<String,MethodTable>>(tables));
+            }
+
+            return tables;
+        }
+    }
+
+    private MethodTable makeMethodTable() {
         hasGetHandler = false;      // getMethods() may set this to true.
         Map<String,Method> allMethods = getMethods(superClass, interfaces);
-        signatureMethods = new ArrayList<Map.Entry<String,Method>>(allMethods.entrySet());
-        Collections.sort(signatureMethods, sorter);
+        List<Map.Entry<String,Method>> methods
+            = new ArrayList<Map.Entry<String,Method>>(allMethods.entrySet());
+        Collections.sort(methods, sorter);
+
+        int l = methods.size();
+        byte[] bits = new byte[(l + 7) >> 3];
+        for (int idx = 0; idx < l; idx++)
+        {
+            Method m = methods.get(idx).getValue();
+            int mod = m.getModifiers();
+            if (!Modifier.isFinal(mod) && !Modifier.isStatic(mod)
+                    && isVisible(mod, basename, m)) {
+                setBit(bits, idx);
+            }
+        }
+
+        return new MethodTable(Collections.unmodifiableList(methods), hasGetHandler, bits);
     }
 
     private void computeSignature(MethodFilter filter) // throws CannotCompileException
     {
         makeSortedMethodList();
 
+        if (filter == null) {
+            signature = overridable.clone();
+            return;
+        }
+
         int l = signatureMethods.size();
         int maxBytes = ((l + 7) >> 3);
         signature = new byte[maxBytes];
         for (int idx = 0; idx < l; idx++)
         {
-            Method m = signatureMethods.get(idx).getValue();
-            int mod = m.getModifiers();
-            if (!Modifier.isFinal(mod) && !Modifier.isStatic(mod)
-                    && isVisible(mod, basename, m) && (filter == null || filter.isHandled(m))) {
+            if (testBit(overridable, idx)
+                    && filter.isHandled(signatureMethods.get(idx).getValue())) {
                 setBit(signature, idx);
             }
         }
@@ -1024,7 +1445,7 @@ public class ProxyFactory {
         this.signature =  signature;
     }
 
-    private boolean testBit(byte[] signature, int idx) {
+    private static boolean testBit(byte[] signature, int idx) {
         int byteIdx = idx >> 3;
         if (byteIdx > signature.length)
             return false;
@@ -1034,7 +1455,7 @@ public class ProxyFactory {
         return ((sigByte & mask) != 0);
     }
 
-    private void setBit(byte[] signature, int idx) {
+    private static void setBit(byte[] signature, int idx) {
         int byteIdx = idx >> 3;
         if (byteIdx < signature.length) {
             int bitIdx = idx & 0x7;
@@ -1193,7 +1614,7 @@ public class ProxyFactory {
 
         MethodInfo forwarder
             = makeForwarder(thisClassname, meth, desc, cp, declClass,
-                            delegatorName, index, forwarders);
+                            delegatorName, index, forwarders, factoryUseInvocation);
         cf.addMethod(forwarder);
     }
 
@@ -1432,11 +1853,12 @@ public class ProxyFactory {
 
     /**
      * @param delegatorName     null if the original method is abstract.
+     * @param useInvocation     true if an {@link Invocation} is passed to a {@link DirectMethodHandler}.
      */
     private static MethodInfo makeForwarder(String thisClassName,
                     Method meth, String desc, ConstPool cp,
                     Class<?> declClass, String delegatorName, int index,
-                    List<Find2MethodsArgs> forwarders) {
+                    List<Find2MethodsArgs> forwarders, boolean useInvocation) {
         MethodInfo forwarder = new MethodInfo(cp, meth.getName(), desc);
         forwarder.setAccessFlags(Modifier.FINAL
                     | (meth.getModifiers() & ~(Modifier.ABSTRACT
@@ -1460,11 +1882,22 @@ public class ProxyFactory {
         int origIndex = index * 2;
         int delIndex = index * 2 + 1;
         int arrayVar = args + 1;
+        forwarders.add(new Find2MethodsArgs(meth, delegatorName, desc, origIndex));
+
+        Class<?> retType = meth.getReturnType();
+        int pc = -1, pc2 = -1;
+        if (useInvocation) {
+            if (isPrimitiveValue(retType))
+                pc = addInvocation(code, thisClassName, meth, index, PRIMITIVE_HANDLER,
+                                   "invoke" + argumentAccessor(retType), accessorDesc(retType));
+
+            pc2 = addInvocation(code, thisClassName, meth, index, DIRECT_HANDLER,
+                                "invoke", "Ljava/lang/Object;");
+        }
+
         code.addGetstatic(thisClassName, HOLDER, HOLDER_TYPE);
         code.addAstore(arrayVar);
 
-        forwarders.add(new Find2MethodsArgs(meth.getName(), delegatorName, desc, origIndex));
-
         code.addAload(0);
         code.addGetfield(thisClassName, HANDLER, HANDLER_TYPE);
         code.addAload(0);
@@ -1481,24 +1914,275 @@ public class ProxyFactory {
         code.addInvokeinterface(MethodHandler.class.getName(), "invoke",
             "(Ljava/lang/Object;Ljava/lang/reflect/Method;Ljava/lang/reflect/Method;[Ljava/lang/Object;)Ljava/lang/Object;",
             5);
-        Class<?> retType = meth.getReturnType();
         addUnwrapper(code, retType);
         addReturn(code, retType);
 
         CodeAttribute ca = code.toCodeAttribute();
         forwarder.setCodeAttribute(ca);
+        if (pc2 >= 0) {
+            StackMapTable.Writer writer = new StackMapTable.Writer(32);
+            if (pc >= 0) {
+                writer.sameFrame(pc);
+                writer.sameFrame(pc2 - pc - 1);
+            }
+            else
+                writer.sameFrame(pc2);
+
+            ca.setAttribute(writer.toStackMapTable(cp));
+        }
+
         return forwarder;
     }
 
+    private static final String INVOCATION = Invocation.class.getName();
+    private static final String DIRECT_HANDLER = DirectMethodHandler.class.getName();
+    private static final String PRIMITIVE_HANDLER = PrimitiveMethodHandler.class.getName();
+
+    /* Returns true if the given type is a primitive type handled
+     * by PrimitiveMethodHandler and Invocation.proceedInt() etc.
+     * boolean values are not included since boxing them does not allocate.
+     */
+    private static boolean isPrimitiveValue(Class<?> type) {
+        return type.isPrimitive() && type != Boolean.TYPE && type != Void.TYPE;
+    }
+
+    /* Adds the following code to a forwarder and returns the position
+     * of the code that follows it:
+     *
+     * if (handler instanceof <handlerType>) {
+     *   Invocation inv = new Invocation(this, methods[index * 2], index, <the number of $args>);
+     *   inv.setIntArgument(0, $1); ...
+     *   return ($r)((<handlerType>)handler).<invoke>(inv);
+     * }
+     *
+     * @param invokeDesc        the descriptor of the type returned by <invoke>.
+     */
+    private static int addInvocation(Bytecode code, String thisClassName, Method meth, int index,
+                                     String handlerType, String invoke, String invokeDesc) {
+        code.addAload(0);
+        code.addGetfield(thisClassName, HANDLER, HANDLER_TYPE);
+        code.addInstanceof(handlerType);
+        int branch = code.currentPc();
+        code.addOpcode(Opcode.IFEQ);
+        code.addIndex(0);
+
+        code.addAload(0);
+        code.addGetfield(thisClassName, HANDLER, HANDLER_TYPE);
+        code.addCheckcast(handlerType);
+        Class<?>[] params = meth.getParameterTypes();
+        code.addNew(INVOCATION);
+        code.addOpcode(Opcode.DUP);
+        code.addAload(0);
+        code.addGetstatic(thisClassName, HOLDER, HOLDER_TYPE);
+        code.addIconst(index * 2);
+        code.addOpcode(Opcode.AALOAD);
+        code.addIconst(index);
+        code.addIconst(params.length);
+        code.addInvokespecial(INVOCATION, "<init>", "(Ljava/lang/Object;Ljava/lang/reflect/Method;II)V");
+
+        int regno = 1;
+        for (int i = 0; i < params.length; i++) {
+            Class<?> type = params[i];
+            code.addOpcode(Opcode.DUP);
+            code.addIconst(i);
+            regno += addLoad(code, regno, type);
+            String setter = argumentAccessor(type);
+            code.addInvokevirtual(INVOCATION, "set" + setter + "Argument",
+                                  "(I" + accessorDesc(type) + ")V");
+        }
+
+        code.addInvokeinterface(handlerType, invoke,
+                                "(L" + INVOCATION.replace('.', '/') + ";)" + invokeDesc, 2);
+        Class<?> retType = meth.getReturnType();
+        if (handlerType.equals(DIRECT_HANDLER))
+            addUnwrapper(code, retType);
+        else
+            addNarrowing(code, retType);
+
+        addReturn(code, retType);
+
+        int pc = code.currentPc();
+        code.write16bit(branch + 1, pc - branch);
+        return pc;
+    }
+
+    /* Returns the middle of the accessor name in Invocation for the given type.
+     * byte, char, and short values are accessed as int values.
+     */
+    private static String argumentAccessor(Class<?> type) {
+        if (!type.isPrimitive())
+            return "Object";
+        else if (type == Boolean.TYPE)
+            return "Boolean";
+        else if (type == Long.TYPE)
+            return "Long";
+        else if (type == Float.TYPE)
+            return "Float";
+        else if (type == Double.TYPE)
+            return "Double";
+        else
+            return "Int";
+    }
+
+    private static String accessorDesc(Class<?> type) {
+        if (!type.isPrimitive())
+            return "Ljava/lang/Object;";
+        else if (type == Boolean.TYPE)
+            return "Z";
+        else if (type == Long.TYPE)
+            return "J";
+        else if (type == Float.TYPE)
+            return "F";
+        else if (type == Double.TYPE)
+            return "D";
+        else
+            return "I";
+    }
+
+    private static void addNarrowing(Bytecode code, Class<?> type) {
+        if (type == Byte.TYPE)
+            code.addOpcode(Opcode.I2B);
+        else if (type == Character.TYPE)
+            code.addOpcode(Opcode.I2C);
+        else if (type == Short.TYPE)
+            code.addOpcode(Opcode.I2S);
+    }
+
+    /* Adds the following method, which executes the overridden methods
+     * for Invocation.proceed():
+     *
+     * public Object _proceed_(Invocation inv) {
+     *   switch (inv.getMethodIndex()) {
+     *   case <index>:
+     *     return ($w)<delegator>(($1)inv.getObjectArgument(0), ...);
+     *   ...
+     *   default:
+     *     throw RuntimeSupport.cannotProceed(inv);
+     *   }
+     * }
+     *
+     * If value is true, it adds _proceedValue_() for Invocation.proceedInt() etc.
+     * It returns the resulting value as a long value and it executes only the
+     * methods returning a primitive value.
+     */
+    private static void addProceeder(String classname, ClassFile cf, ConstPool cp,
+                                     int size, List<Find2MethodsArgs> forwarders,
+                                     boolean value)
+        throws CannotCompileException
+    {
+        MethodInfo minfo = new MethodInfo(cp, value ? "_proceedValue_" : "_proceed_",
+                                          "(L" + INVOCATION.replace('.', '/') + ";)"
+                                          + (value ? "J" : "Ljava/lang/Object;"));
+        minfo.setAccessFlags(AccessFlag.PUBLIC);
+        setThrows(minfo, cp, new Class<?>[] { Throwable.class });
+        Bytecode code = new Bytecode(cp, 0, 2);
+        StackMapTable.Writer writer = new StackMapTable.Writer(32);
+        int[] targets = new int[size];
+        int defaultPc, prevPc;
+        if (size > 0) {
+            code.addAload(1);
+            code.addInvokevirtual(INVOCATION, "getMethodIndex", "()I");
+            int opcodePc = code.currentPc();
+            code.addOpcode(Opcode.TABLESWITCH);
+            int npads = 3 - (opcodePc & 3);
+            while (npads-- > 0)
+                code.add(0);
+
+            int tablePc = code.currentPc();
+            code.addGap(12 + size * 4);
+            code.write32bit(tablePc + 4, 0);
+            code.write32bit(tablePc + 8, size - 1);
+
+            prevPc = -1;
+            for (Find2MethodsArgs args: forwarders)
+                if (args.delegatorName != null
+                    && (!value || isPrimitiveValue(args.method.getReturnType()))) {
+                    int pc = code.currentPc();
+                    targets[args.origIndex / 2] = pc - opcodePc;
+                    writer.sameFrame(pc - prevPc - 1);
+                    prevPc = pc;
+                    addProceed(code, classname, args, value);
+                }
+
+            defaultPc = code.currentPc();
+            code.write32bit(tablePc, defaultPc - opcodePc);
+            for (int i = 0; i < size; i++)
+                code.write32bit(tablePc + 12 + i * 4,
+                                targets[i] == 0 ? defaultPc - opcodePc : targets[i]);
+
+            writer.sameFrame(defaultPc - prevPc - 1);
+        }
+
+        code.addAload(1);
+        code.addInvokestatic(NULL_INTERCEPTOR_HOLDER, "cannotProceed",
+                             "(L" + INVOCATION.replace('.', '/') + ";)Ljava/lang/Throwable;");
+        code.addOpcode(Opcode.ATHROW);
+        CodeAttribute ca = code.toCodeAttribute();
+        minfo.setCodeAttribute(ca);
+        if (size > 0)
+            ca.setAttribute(writer.toStackMapTable(cp));
+
+        cf.addMethod(minfo);
+    }
+
+    private static void addProceed(Bytecode code, String classname, Find2MethodsArgs args,
+                                   boolean value) {
+        code.addAload(0);
+        Class<?>[] params = args.method.getParameterTypes();
+        for (int i = 0; i < params.length; i++) {
+            Class<?> type = params[i];
+            code.addAload(1);
+            code.addIconst(i);
+            code.addInvokevirtual(INVOCATION, "get" + argumentAccessor(type) + "Argument",
+                                  "(I)" + accessorDesc(type));
+            if (!type.isPrimitive()) {
+                if (type != OBJECT_TYPE)
+                    code.addCheckcast(type.getName());
+            }
+            else
+                addNarrowing(code, type);
+        }
+
+        code.addInvokevirtual(classname, args.delegatorName, args.descriptor);
+        Class<?> retType = args.method.getReturnType();
+        if (value) {
+            if (retType == Float.TYPE)
+                code.addInvokestatic("java.lang.Float", "floatToRawIntBits", "(F)I");
+            else if (retType == Double.TYPE)
+                code.addInvokestatic("java.lang.Double", "doubleToRawLongBits", "(D)J");
+
+            if (retType != Long.TYPE && retType != Double.TYPE)
+                code.addOpcode(Opcode.I2L);
+
+            code.addOpcode(Opcode.LRETURN);
+            return;
+        }
+
+        if (retType == Void.TYPE)
+            code.addOpcode(Opcode.ACONST_NULL);
+        else if (retType.isPrimitive()) {
+            int index = FactoryHelper.typeIndex(retType);
+            String wrapper = FactoryHelper.wrapperTypes[index];
+            String desc = FactoryHelper.wrapperDesc[index];
+            code.addInvokestatic(wrapper, "valueOf",
+                                 desc.substring(0, desc.length() - 1)
+                                 + 'L' + wrapper.replace('.', '/') + ';');
+        }
+
+        code.addOpcode(Opcode.ARETURN);
+    }
+
     static class Find2MethodsArgs {
         String methodName, delegatorName, descriptor;
         int origIndex;
+        Method method;
 
-        Find2MethodsArgs(String mname, String dname, String desc, int index) {
-            methodName = mname;
+        Find2MethodsArgs(Method meth, String dname, String desc, int index) {
+            methodName = meth.getName();
             delegatorName = dname;
             descriptor = desc;
             origIndex = index;
+            method = meth;
         }
     }
 
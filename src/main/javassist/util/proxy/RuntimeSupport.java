@@ -18,6 +18,9 @@ package javassist.util.proxy;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Runtime support routines that the classes generated by ProxyFactory use.
@@ -30,7 +33,7 @@ public class RuntimeSupport {
      */
     public static MethodHandler default_interceptor = new DefaultMethodHandler();
 
-    static class DefaultMethodHandler implements MethodHandler, Serializable {
+    static class DefaultMethodHandler implements PrimitiveMethodHandler, Serializable {
         /** default serialVersionUID */
         private static final long serialVersionUID = 1L;
 
@@ -41,8 +44,48 @@ public class RuntimeSupport {
         {
             return proceed.invoke(self, args);
         }
+
+        @Override
+        public Object invoke(Invocation inv) throws Throwable {
+            return inv.proceed();
+        }
+
+        @Override
+        public int invokeInt(Invocation inv) throws Throwable {
+            return inv.proceedInt();
+        }
+
+        @Override
+        public long invokeLong(Invocation inv) throws Throwable {
+            return inv.proceedLong();
+        }
+
+        @Override
+        public float invokeFloat(Invocation inv) throws Throwable {
+            return inv.proceedFloat();
+        }
+
+        @Override
+        public double invokeDouble(Invocation inv) throws Throwable {
+            return inv.proceedDouble();
+        }
     };
 
+    /**
+     * Returns the exception thrown when the overridden method
+     * cannot be executed for the given invocation.
+     *
+     * @see Invocation#proceed()
+     * @since 3.31
+     */
+    public static Throwable cannotProceed(Invocation inv) {
+        Method m = inv.getMethod();
+        if (Modifier.isAbstract(m.getModifiers()))
+            return new AbstractMethodError(m.toString());
+        else
+            return new ClassCastException("does not return a primitive value: " + m);
+    }
+
     /**
      * Finds two methods specified by the parameters and stores them
      * into the given array.
@@ -172,15 +215,48 @@ public class RuntimeSupport {
         return m;
     }
 
+    /* The declared methods of every class, indexed by
+     * <method name>:<descriptor>.  The index is built once per class so that
+     * a proxy class does not compute the descriptors of all the methods
+     * whenever its class initializer finds a method.
+     */
+    private static final ClassValue<Map<String,Method>> declaredMethods
+        = new ClassValue<Map<String,Method>>() {
+            @Override
+            protected Map<String,Method> computeValue(Class<?> type) {
+                Method[] methods = SecurityActions.getDeclaredMethods(type);
+                Map<String,Method> map = new HashMap<String,Method>(methods.length * 2);
+                for (Method m: methods)
+                    map.put(m.getName() + ':' + makeDescriptor(m), m);
+
+                return map;
+            }
+        };
+
     private static Method findMethod2(Class<?> clazz, String name, String desc) {
-        Method[] methods = SecurityActions.getDeclaredMethods(clazz);
-        int n = methods.length;
-        for (int i = 0; i < n; i++)
-            if (methods[i].getName().equals(name)
-                && makeDescriptor(methods[i]).equals(desc))
-            return methods[i];
-
-        return null;
+        Method m = declaredMethods.get(clazz).get(name + ':' + desc);
+        return m == null ? null : copyMethod(clazz, m);
+    }
+
+    /* Returns a copy of the given method in the index so that
+     * setAccessible() on the returned method does not affect
+     * the other callers.
+     */
+    private static Method copyMethod(Class<?> clazz, Method m) {
+        try {
+            Method m2 = SecurityActions.getDeclaredMethod(clazz, m.getName(),
+                                                          m.getParameterTypes());
+            if (m2.equals(m))
+                return m2;
+        }
+        catch (NoSuchMethodException e) {}
+
+        // m is a bridge method or a method with the same parameter types.
+        for (Method m2: SecurityActions.getDeclaredMethods(clazz))
+            if (m2.equals(m))
+                return m2;
+
+        return m;
     }
 
     /**
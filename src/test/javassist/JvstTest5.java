@@ -6,19 +6,35 @@ import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.TypeVariable;
+import java.util.Set;
 
 import javassist.bytecode.AccessFlag;
+import javassist.bytecode.AnnotationIndex;
 import javassist.bytecode.AnnotationsAttribute;
 import javassist.bytecode.AttributeInfo;
 import javassist.bytecode.ClassFile;
 import javassist.bytecode.ConstPool;
+import javassist.bytecode.ByteArray;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.CodeIterator;
 import javassist.bytecode.InnerClassesAttribute;
+import javassist.bytecode.LazyClassFile;
+import javassist.bytecode.SignatureAttribute;
 import javassist.bytecode.MethodInfo;
 import javassist.bytecode.MethodParametersAttribute;
 import javassist.bytecode.NestHostAttribute;
 import javassist.bytecode.NestMembersAttribute;
+import javassist.bytecode.Opcode;
+import javassist.bytecode.StackMapTable;
+import javassist.bytecode.stackmap.MapMaker;
+import javassist.compiler.Javac;
+import javassist.compiler.SnippetCache;
+import javassist.expr.CompositeExprEditor;
 import javassist.expr.ExprEditor;
+import javassist.expr.FieldAccess;
 import javassist.expr.Handler;
+import javassist.expr.Instanceof;
 import javassist.expr.MethodCall;
 import javassist.expr.NewExpr;
 import junit.framework.Assert;
@@ -667,4 +683,776 @@ public class JvstTest5 extends JvstTestRoot {
         assertEquals("javassist.MultipleNestedClasses", nested2ICA.outerClass(0));
         assertEquals("javassist.MultipleNestedClasses$Nested2", nested2ICA.innerClass(0));
     }
+
+    public void testConcurrentLookupMode() throws Exception {
+        final ClassPool parent = new ClassPool(null, true);
+        parent.appendSystemPath();
+        final ClassPool pool = new ClassPool(parent, true);
+        pool.appendClassPath(PATH);
+        assertTrue(pool.isConcurrent());
+        assertFalse(sloader.isConcurrent());
+
+        final String[] names = { "java.lang.String", "java.util.ArrayList",
+                                 "test5.BoolTest", "java.lang.Object[]" };
+        final CtClass[][] found = new CtClass[8][];
+        Thread[] threads = new Thread[found.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int k = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    found[k] = pool.get(names);
+                }
+                catch (NotFoundException e) {}
+            });
+            threads[i].start();
+        }
+
+        for (Thread t: threads)
+            t.join();
+
+        for (int i = 1; i < found.length; i++)
+            for (int j = 0; j < names.length; j++)
+                assertSame(found[0][j], found[i][j]);
+
+        assertSame(parent.get("java.lang.String"), found[0][0]);
+        assertSame(CtClass.intType, pool.get("int"));
+        assertSame(parent, found[0][2].getClassPool());
+        assertNull(pool.getOrNull("test5.NoSuchClass"));
+    }
+
+    public void testJarClassPathReadsEntriesDirectly() throws Exception {
+        String jarPath = JAR_PATH + "javassist.jar";
+        boolean cache = ClassPool.cacheOpenedJarFile;
+        java.util.jar.JarFile jar = new java.util.jar.JarFile(jarPath);
+        try {
+            for (boolean keepOpen: new boolean[] { true, false }) {
+                ClassPool.cacheOpenedJarFile = keepOpen;
+                ClassPool pool = new ClassPool(null);
+                ClassPath cp = pool.appendClassPath(jarPath);
+                int n = 0;
+                for (java.util.jar.JarEntry e: java.util.Collections.list(jar.entries())) {
+                    String name = e.getName();
+                    if (!name.endsWith(".class"))
+                        continue;
+
+                    String classname = name.substring(0, name.length() - 6).replace('/', '.');
+                    assertNotNull(cp.find(classname));
+                    java.io.InputStream in = cp.openClassfile(classname);
+                    byte[] actual = ClassPoolTail.readStream(in);
+                    in.close();
+                    in = jar.getInputStream(e);
+                    byte[] expected = ClassPoolTail.readStream(in);
+                    in.close();
+                    assertTrue(classname, java.util.Arrays.equals(expected, actual));
+                    n++;
+                }
+
+                assertTrue(n > 100);
+                assertNull(cp.openClassfile("javassist.NoSuchClass"));
+                assertNull(cp.find("javassist.NoSuchClass"));
+                assertEquals("javassist.CtClass", pool.get("javassist.CtClass").getClassFile().getName());
+
+                // the jar file is opened again after it is closed.
+                ((JarClassPath)cp).close();
+                assertNotNull(cp.openClassfile("javassist.CtClass"));
+
+                // a class file can be read by an interrupted thread.
+                Thread.currentThread().interrupt();
+                try {
+                    assertNotNull(cp.openClassfile("javassist.CtMethod"));
+                    assertNotNull(pool.get("javassist.CtField"));
+                    assertTrue(Thread.currentThread().isInterrupted());
+                }
+                finally {
+                    Thread.interrupted();
+                }
+
+                assertNotNull(cp.openClassfile("javassist.CtMethod"));
+                pool.removeClassPath(cp);
+            }
+        }
+        finally {
+            ClassPool.cacheOpenedJarFile = cache;
+            jar.close();
+        }
+    }
+
+    public void testGetAll() throws Exception {
+        ClassPool pool = new ClassPool(true);
+        java.util.List<String> names = java.util.Arrays.asList(
+                "java.lang.String", "java.util.HashMap", "javassist.CtClass",
+                "test5.BoolTest", "java.lang.Object[]", "int");
+        java.util.concurrent.ExecutorService executor
+            = java.util.concurrent.Executors.newFixedThreadPool(4);
+        try {
+            CtClass[] classes = pool.getAll(names, executor);
+            assertEquals(names.size(), classes.length);
+            for (int i = 0; i < classes.length; i++)
+                assertSame(pool.get(names.get(i)), classes[i]);
+
+            assertEquals("java.util.AbstractMap", classes[1].getClassFile2().getSuperclass());
+            try {
+                pool.getAll(java.util.Arrays.asList("java.lang.String", "test5.NoSuchClass"),
+                            executor);
+                fail("not found");
+            }
+            catch (NotFoundException e) {}
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        assertSame(pool.get("java.util.List"), pool.getAll(java.util.Collections.singleton("java.util.List"))[0]);
+    }
+
+    public void testGetAllWaitsForAllTasks() throws Exception {
+        final java.util.concurrent.atomic.AtomicBoolean finished
+            = new java.util.concurrent.atomic.AtomicBoolean();
+        ClassPool pool = new ClassPool(null, true);
+        pool.appendClassPath(new ClassPath() {
+            public java.io.InputStream openClassfile(String name) { return null; }
+
+            public java.net.URL find(String name) {
+                if (name.equals("test5.Broken"))
+                    throw new IllegalStateException(name);
+
+                try {
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException e) {}
+
+                finished.set(true);
+                return null;
+            }
+        });
+
+        java.util.concurrent.ExecutorService executor
+            = java.util.concurrent.Executors.newFixedThreadPool(2);
+        try {
+            pool.getAll(java.util.Arrays.asList("test5.Broken", "test5.Slow"), executor);
+            fail();
+        }
+        catch (IllegalStateException e) {
+            assertTrue(finished.get());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testLazyClassFile() throws Exception {
+        ClassPool pool = new ClassPool(true);
+        byte[] bytes = pool.get("java.util.HashMap").toBytecode();
+        LazyClassFile lcf = new LazyClassFile(bytes);
+        ClassFile cf = lcf.toClassFile();
+        assertEquals(cf.getName(), lcf.getName());
+        assertEquals(cf.getSuperclass(), lcf.getSuperclass());
+        assertTrue(java.util.Arrays.equals(cf.getInterfaces(), lcf.getInterfaces()));
+        assertEquals(cf.getAccessFlags(), lcf.getAccessFlags());
+        assertEquals(cf.getMajorVersion(), lcf.getMajorVersion());
+        assertEquals(cf.getFields().size(), lcf.getFieldCount());
+        for (int i = 0; i < lcf.getFieldCount(); i++) {
+            assertEquals(cf.getFields().get(i).getName(), lcf.getFieldName(i));
+            assertEquals(cf.getFields().get(i).getDescriptor(), lcf.getFieldDescriptor(i));
+        }
+
+        assertEquals(cf.getMethods().size(), lcf.getMethodCount());
+        for (int i = 0; i < lcf.getMethodCount(); i++) {
+            assertEquals(cf.getMethods().get(i).getName(), lcf.getMethodName(i));
+            assertEquals(cf.getMethods().get(i).getDescriptor(), lcf.getMethodDescriptor(i));
+            assertEquals(cf.getMethods().get(i).getAccessFlags(), lcf.getMethodAccessFlags(i));
+        }
+
+        assertNotNull(lcf.getAttribute(SignatureAttribute.tag));
+        assertNull(lcf.getAttribute("NoSuchAttribute"));
+        assertEquals(cf.getMethods().get(0).getCodeAttribute().getCodeLength(),
+                     ByteArray.read32bit(lcf.getMethodAttribute(0, CodeAttribute.tag), 4));
+
+        CtClass inner = pool.get("java.util.HashMap$Node");
+        assertEquals(Modifier.STATIC, inner.getModifiers() & Modifier.STATIC);
+        assertEquals("java.lang.Object", inner.getSuperclass().getName());
+        assertTrue(inner.subtypeOf(pool.get("java.util.Map$Entry")));
+        assertFalse(inner.subtypeOf(pool.get("java.util.List")));
+        assertEquals(pool.get("java.util.Map$Entry"), inner.getInterfaces()[0]);
+        assertEquals(inner.getModifiers(), inner.getClassFile2().getAccessFlags() & ~AccessFlag.SUPER
+                     | Modifier.STATIC);
+
+        try {
+            new LazyClassFile(new byte[] { (byte)0xca, (byte)0xfe, (byte)0xba, (byte)0xbe, 0, 0 });
+            fail("broken class file");
+        }
+        catch (IOException e) {}
+    }
+
+    public void testToHiddenClass() throws Exception {
+        CtClass cc = sloader.makeClass("javassist.HiddenClassTest");
+        cc.addMethod(CtNewMethod.make("public int run() { return 3; }", cc));
+        Class<?> c = cc.toHiddenClass(java.lang.invoke.MethodHandles.lookup());
+        assertTrue(c.getName().startsWith("javassist.HiddenClassTest/"));
+        Object obj = c.getConstructor().newInstance();
+        assertEquals(3, c.getMethod("run").invoke(obj));
+        try {
+            Class.forName(c.getName());
+            fail("a hidden class was found by name");
+        }
+        catch (ClassNotFoundException e) {}
+    }
+
+    public void testIncrementalStackMap() throws Exception {
+        CtClass cc = sloader.get("test5.IncrementalStackMap");
+        CtMethod test = cc.getDeclaredMethod("test");
+        MethodInfo minfo = test.getMethodInfo();
+        CodeAttribute ca = minfo.getCodeAttribute();
+        StackMapTable smt = (StackMapTable)ca.getAttribute(StackMapTable.tag);
+        assertFalse(ca.isModified(0, ca.getCodeLength()));
+        assertTrue(java.util.Arrays.equals(smt.get(),
+                                           MapMaker.makeIncrementally(sloader, minfo).get()));
+
+        boolean incremental = MethodInfo.incrementalStackMap;
+        MethodInfo.incrementalStackMap = true;
+        try {
+            test.insertBefore("{ if ($1 < 0) throw new IllegalArgumentException(); }");
+            test.instrument(new ExprEditor() {
+                public void edit(MethodCall mc) throws CannotCompileException {
+                    if (mc.getMethodName().equals("length"))
+                        mc.replace("$_ = $proceed($$) * 2;");
+                }
+            });
+            assertFalse(ca.isModified(0, ca.getCodeLength()));
+            cc.getDeclaredMethod("list").insertAfter("$_.add(Integer.valueOf(100));");
+
+            // the frame of the loop head declares that the unused variable tmp is a String.
+            MethodInfo minfo2 = cc.getDeclaredMethod("dead").getMethodInfo();
+            CodeAttribute ca2 = minfo2.getCodeAttribute();
+            CodeIterator ci = ca2.iterator();
+            while (ci.hasNext())
+                if (ci.byteAt(ci.next()) == Opcode.ASTORE_2)
+                    break;
+
+            Bytecode code = new Bytecode(minfo2.getConstPool());
+            code.addIconst(0);
+            code.addInvokestatic("java.lang.Integer", "valueOf", "(I)Ljava/lang/Integer;");
+            code.addAstore(2);
+            ci.insert(code.get());
+            assertTrue(ca2.isModified(0, ca2.getCodeLength()));
+            minfo2.rebuildStackMap(sloader);
+        }
+        finally {
+            MethodInfo.incrementalStackMap = incremental;
+        }
+
+        cc.writeFile();
+        Object obj = make(cc.getName());
+        assertEquals(28 + 45 + 5 + 10, invoke(obj, "run"));
+    }
+
+    public void testCompositeExprEditor() throws Exception {
+        CtClass cc = sloader.get("test5.MultiEditor");
+        final java.util.List<String> log = new java.util.ArrayList<String>();
+        CompositeExprEditor editor = new CompositeExprEditor(new ExprEditor() {
+            public void edit(MethodCall m) throws CannotCompileException {
+                if (m.getMethodName().equals("twice")) {
+                    log.add("call1");
+                    m.replace("$_ = $proceed($$) + 100;");
+                }
+            }
+        }, new ExprEditor() {
+            public void edit(MethodCall m) throws CannotCompileException {
+                log.add("call2 " + m.getMethodName());
+            }
+
+            public void edit(FieldAccess f) throws CannotCompileException {
+                if (f.isReader()) {
+                    log.add("field");
+                    f.replace("$_ = $proceed() + 1;");
+                }
+            }
+        });
+        editor.add(new ExprEditor() {
+            public void edit(Instanceof i) throws CannotCompileException {
+                log.add("instanceof");
+            }
+
+            public void edit(Handler h) throws CannotCompileException {
+                log.add("handler");
+            }
+        });
+        editor.add(new ExprEditor() {
+            public void edit(Handler h) throws CannotCompileException {
+                h.insertBefore("value = 10;");
+            }
+        });
+
+        cc.getDeclaredMethod("run").instrument(editor);
+        assertEquals(java.util.Arrays.asList("field", "call1", "call2 append", "instanceof",
+                                             "field", "call1", "call2 length", "handler"),
+                     log);
+        cc.writeFile();
+        Object obj = make(cc.getName());
+        assertEquals((10 + 1) * 2 + 100 + 3, invoke(obj, "run"));
+    }
+
+    public void testSnippetCache() throws Exception {
+        SnippetCache cache = new SnippetCache();
+        sloader.snippetCache = cache;
+        try {
+            CtClass cc = sloader.get("test5.SnippetCacheTarget");
+            String src = "{ try { if ($1 > 15) count += Integer.parseInt(\"x\"); }"
+                         + "  catch (NumberFormatException e) { count += 100; }"
+                         + "  switch ($1 % 3) { case 0: count++; break; default: count += 2; } }";
+            for (String name: new String[] { "foo", "bar", "baz" }) {
+                CtMethod m = cc.getDeclaredMethod(name);
+                m.insertBefore(src);
+                m.insertAfter("count += $_;");
+            }
+
+            // the methods share the entries since they have the same signature.
+            assertEquals(2, cache.size());
+            cc.writeFile();
+            Object obj = make(cc.getName());
+            assertEquals(11 + 40 + 90 + (2 + 100 + 2 + 100 + 1) + (11 + 40 + 90), invoke(obj, "run"));
+        }
+        finally {
+            sloader.snippetCache = null;
+        }
+    }
+
+    public void testSnippetCacheVersion() throws Exception {
+        SnippetCache cache = new SnippetCache();
+        ClassPool pool = new ClassPool(null);
+        pool.appendSystemPath();
+        pool.snippetCache = cache;
+        ClassPool pool2 = new ClassPool(null);
+        pool2.appendSystemPath();
+        pool2.snippetCache = cache;
+        String src = "{ int k = 2; value += get(\"a\") * k; }";
+
+        CtClass cc = pool.getAndRename("test5.MemberLookup", "test5.MemberLookupSnippet");
+        CtMethod run = cc.getDeclaredMethod("run");
+        CtMethod run2 = CtNewMethod.copy(run, "run2", cc, null);
+        cc.addMethod(run2);
+        run.insertBefore(src);
+        cc.addMethod(CtNewMethod.make("public int get(String s) { return 10; }", cc));
+        // the compiled code is not reused since get(String) has been added.
+        run2.insertBefore(src);
+        cc.writeFile();
+
+        // the parsed statements are reused in another class.
+        CtClass cc2 = pool2.getAndRename("test5.MemberLookup", "test5.MemberLookupSnippet2");
+        cc2.getDeclaredMethod("run").insertBefore(src);
+        cc2.writeFile();
+
+        Object obj = make(cc.getName());
+        assertEquals(2, invoke(obj, "run"));
+        assertEquals(2 + 20, invoke(obj, "run2"));
+        assertEquals(2, invoke(make(cc2.getName()), "run"));
+    }
+
+    public void testJavacReuse() throws Exception {
+        CtClass cc = sloader.get("test5.JavacReuse");
+        Javac jv = Javac.obtain(cc);
+        jv.release();
+        Javac jv2 = Javac.obtain(cc);
+        assertSame(jv, jv2);
+        assertNotSame(jv2, Javac.obtain(cc));
+        jv2.release();
+
+        CtMethod abs = cc.getDeclaredMethod("abs");
+        abs.insertAfter("count += $_ * 10;", false, true);
+        cc.getDeclaredMethod("twice").insertBefore("{ long k = $1; count += (int)k; }");
+        cc.addMethod(CtNewMethod.make("public int seven() { return 7; }", cc));
+        cc.getDeclaredMethod("run").instrument(new ExprEditor() {
+            public void edit(MethodCall m) throws CannotCompileException {
+                if (m.getMethodName().equals("twice"))
+                    m.replace("$_ = $proceed($$) + seven();");
+            }
+        });
+
+        cc.writeFile();
+        Object obj = make(cc.getName());
+        assertEquals(3 + 4 + (10 + 7) + (30 + 40 + 5), invoke(obj, "run"));
+    }
+
+    public void testMemberLookupCache() throws Exception {
+        CtClass cc = sloader.get("test5.MemberLookup");
+        CtMethod run = cc.getDeclaredMethod("run");
+        run.insertBefore("value += get(\"a\");");
+        cc.addMethod(CtNewMethod.make("public int get(String s) { return 10; }", cc));
+        // the cached result of the method lookup must be discarded.
+        run.insertBefore("value += get(\"b\");");
+        cc.writeFile();
+        Object obj = make(cc.getName());
+        assertEquals(10 + 1, invoke(obj, "run"));
+    }
+
+    public void testMemberLookupCacheMiss() throws Exception {
+        ClassPool pool = new ClassPool(true);
+        CtClass p = pool.makeClass("test5.MemberLookupP");
+        ClassPool child = new ClassPool(pool);
+        CtClass c = child.makeClass("test5.MemberLookupC");
+        try {
+            c.addMethod(CtNewMethod.make("public int run() { return test5.MemberLookupP.bar(); }", c));
+            fail();
+        }
+        catch (CannotCompileException e) {}
+
+        p.addMethod(CtNewMethod.make("public static int bar() { return 3; }", p));
+        c.addMethod(CtNewMethod.make("public int run() { return test5.MemberLookupP.bar(); }", c));
+
+        try {
+            c.addMethod(CtNewMethod.make("public int run2() { return foo(); }", c));
+            fail();
+        }
+        catch (CannotCompileException e) {}
+
+        CtMethod foo = CtNewMethod.make("public int foo() { return 4; }", c);
+        c.getClassFile().addMethod(foo.getMethodInfo());
+        c.addMethod(CtNewMethod.make("public int run2() { return foo(); }", c));
+    }
+
+    public void testMembersVersion() throws Exception {
+        ClassPool pool = new ClassPool(true);
+        ClassPool child = new ClassPool(pool);
+        int version = pool.membersVersion();
+        // reading a class file does not change the version.
+        assertTrue(pool.get("java.util.HashMap").getClassFile2().getMethods().size() > 0);
+        child.get("javassist.CtClass").getDeclaredMethods();
+        assertEquals(version, pool.membersVersion());
+
+        CtClass c = child.makeClass("test5.MembersVersionC");
+        int childVersion = child.membersVersion();
+        c.getClassFile().addMethod(CtNewMethod.make("public int foo() { return 4; }", c).getMethodInfo());
+        assertTrue(childVersion != child.membersVersion());
+        assertEquals(version, pool.membersVersion());
+
+        childVersion = child.membersVersion();
+        CtClass p = pool.makeClass("test5.MembersVersionP");
+        version = pool.membersVersion();
+        p.addField(CtField.make("public int value;", p));
+        assertTrue(version != pool.membersVersion());
+        assertTrue(childVersion != child.membersVersion());
+    }
+
+    public void testAnnotationScan() throws Exception {
+        ClassPool pool = new ClassPool(true);
+        pool.annotationIndex = new AnnotationIndex();
+        CtClass cc = pool.get("test5.AnnotationScan");
+        assertTrue(cc.hasAnnotation("test5.AnnotationScan$Tag"));
+        assertTrue(cc.hasAnnotation("test5.AnnotationScan$Marker"));
+        assertFalse(cc.hasAnnotation("test5.AnnotationScan$Inner"));
+
+        Set<String> names = pool.annotationIndex.getAnnotatedClasses("test5.AnnotationScan$Marker");
+        assertEquals(1, names.size());
+        assertTrue(names.contains("test5.AnnotationScan"));
+        assertTrue(pool.annotationIndex.getAnnotatedClasses("test5.AnnotationScan$Inner").isEmpty());
+        names = pool.annotationIndex.getClassesWithAnnotatedMembers("test5.AnnotationScan$Inner");
+        assertTrue(names.contains("test5.AnnotationScan"));
+
+        CtMethod m = cc.getDeclaredMethod("method");
+        assertTrue(m.hasAnnotation("test5.AnnotationScan$Tag"));
+        assertFalse(m.hasAnnotation("test5.AnnotationScan$Inner"));
+        assertFalse(m.hasParameterAnnotation(0, "test5.AnnotationScan$Marker"));
+        assertTrue(m.hasParameterAnnotation(1, "test5.AnnotationScan$Marker"));
+        assertTrue(m.hasParameterAnnotation(2, "test5.AnnotationScan$Inner"));
+        assertFalse(m.hasParameterAnnotation(2, "test5.AnnotationScan$Marker"));
+        assertFalse(m.hasParameterAnnotation(3, "test5.AnnotationScan$Inner"));
+        assertTrue(cc.getDeclaredField("field").hasAnnotation("test5.AnnotationScan$Inner"));
+        assertTrue(cc.hasAnnotation("test5.AnnotationScan$Tag"));
+    }
+
+    public void testScanClassPaths() throws Exception {
+        ClassPool pool = new ClassPool(null);
+        pool.appendClassPath(JAR_PATH + "javassist.jar");
+        pool.appendClassPath(PATH);
+        pool.appendClassPath(JAR_PATH + "javassist.jar");   // hidden by the first one
+        pool.appendClassPath(new LoaderClassPath(getClass().getClassLoader()));
+        pool.annotationIndex = new AnnotationIndex();
+        final java.util.Map<String,LazyClassFile> found
+            = new java.util.concurrent.ConcurrentHashMap<String,LazyClassFile>();
+        final java.util.concurrent.atomic.AtomicInteger count
+            = new java.util.concurrent.atomic.AtomicInteger();
+        pool.scan(cf -> {
+            count.incrementAndGet();
+            found.put(cf.getName(), cf);
+        });
+
+        assertEquals(count.get(), found.size());
+        assertEquals("javassist.CtClass", found.get("javassist.CtClassType").getSuperclass());
+        assertTrue(found.containsKey("test5.SnippetCacheTarget"));
+        assertFalse(found.containsKey("java.lang.String"));
+        java.util.List<String> types = java.util.Arrays.asList(found.get("test5.AnnotationScan").getAnnotationTypes());
+        assertEquals(2, types.size());
+        assertTrue(types.contains("test5.AnnotationScan$Tag"));
+        assertTrue(types.contains("test5.AnnotationScan$Marker"));
+        assertTrue(pool.annotationIndex.getAnnotatedClasses("test5.AnnotationScan$Marker")
+                                       .contains("test5.AnnotationScan"));
+    }
+
+    public void testScanWaitsForAllTasks() throws Exception {
+        ClassPool pool = new ClassPool(null);
+        pool.appendClassPath(PATH);
+        pool.appendClassPath(JAR_PATH + "javassist.jar");
+        final java.util.concurrent.atomic.AtomicInteger count
+            = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.concurrent.ExecutorService executor
+            = java.util.concurrent.Executors.newFixedThreadPool(2);
+        try {
+            pool.scan(cf -> {
+                if (cf.getName().startsWith("test5."))
+                    throw new IllegalStateException(cf.getName());
+
+                count.incrementAndGet();
+            }, executor);
+            fail();
+        }
+        catch (IllegalStateException e) {}
+        finally {
+            executor.shutdown();
+        }
+
+        int n = count.get();
+        assertTrue(n > 0);
+        Thread.sleep(100);
+        assertEquals(n, count.get());
+    }
+
+    public void testSubtypeIndex() throws Exception {
+        ClassPool pool = new ClassPool(null);
+        pool.appendSystemPath();
+        pool.appendClassPath(PATH);
+        CtClass a = pool.get("test5.TypeHierarchy$A");
+        CtClass b = pool.get("test5.TypeHierarchy$B");
+        CtClass c = pool.get("test5.TypeHierarchy$C");
+        CtClass d = pool.get("test5.TypeHierarchy$D");
+        CtClass e = pool.get("test5.TypeHierarchy$E");
+        CtClass f = pool.get("test5.TypeHierarchy$F");
+        assertTrue(d.subtypeOf(a));
+        assertTrue(d.subtypeOf(pool.get("java.lang.Object")));
+        assertFalse(d.subtypeOf(f));
+        assertFalse(c.subtypeOf(d));
+        assertEquals("[test5.TypeHierarchy$B, test5.TypeHierarchy$C, test5.TypeHierarchy$D]",
+                     subtypeNames(pool, a));
+        assertEquals("[]", subtypeNames(pool, e));
+
+        c.addInterface(f);
+        assertTrue(d.subtypeOf(f));
+        assertEquals("[test5.TypeHierarchy$C, test5.TypeHierarchy$D]", subtypeNames(pool, f));
+
+        d.setSuperclass(e);
+        assertFalse(d.subtypeOf(a));
+        assertTrue(d.subtypeOf(e));
+        assertEquals("[test5.TypeHierarchy$B, test5.TypeHierarchy$C]", subtypeNames(pool, a));
+
+        CtClass g = pool.makeClass("test5.TypeHierarchy$G", d);
+        assertTrue(g.subtypeOf(e));
+        assertEquals("[test5.TypeHierarchy$D, test5.TypeHierarchy$G]", subtypeNames(pool, e));
+
+        ClassPool child = new ClassPool(pool);
+        CtClass h = child.makeClass("test5.TypeHierarchy$H", c);
+        assertTrue(h.subtypeOf(f));
+        assertEquals("[test5.TypeHierarchy$B, test5.TypeHierarchy$C, test5.TypeHierarchy$H]",
+                     subtypeNames(child, a));
+        assertEquals("[test5.TypeHierarchy$C]", subtypeNames(pool, f));
+    }
+
+    public void testSubtypeOfAfterClassFileEdit() throws Exception {
+        ClassPool pool = new ClassPool(null);
+        pool.appendSystemPath();
+        pool.appendClassPath(PATH);
+        CtClass a = pool.get("test5.TypeHierarchy$A");
+        CtClass d = pool.get("test5.TypeHierarchy$D");
+        CtClass e = pool.get("test5.TypeHierarchy$E");
+        CtClass f = pool.get("test5.TypeHierarchy$F");
+        assertTrue(d.subtypeOf(a));
+        assertFalse(d.subtypeOf(e));
+        assertFalse(d.subtypeOf(f));
+
+        d.getClassFile().setSuperclass("test5.TypeHierarchy$E");
+        assertFalse(d.subtypeOf(a));
+        assertTrue(d.subtypeOf(e));
+
+        d.getClassFile().addInterface("test5.TypeHierarchy$F");
+        assertTrue(d.subtypeOf(f));
+        assertEquals("[test5.TypeHierarchy$D]", subtypeNames(pool, f));
+    }
+
+    public void testHierarchyVersionPerPool() throws Exception {
+        ClassPool pool = new ClassPool(true);
+        ClassPool child = new ClassPool(pool);
+        ClassPool other = new ClassPool(true);
+        other.makeClass("test5.HierarchyVersionO");
+        CtClass p = pool.makeClass("test5.HierarchyVersionP");
+        CtClass c = child.makeClass("test5.HierarchyVersionC");
+        int version = pool.hierarchyVersion();
+        int childVersion = child.hierarchyVersion();
+        int otherVersion = other.hierarchyVersion();
+
+        c.getClassFile().setSuperclass("test5.HierarchyVersionP");
+        assertEquals(version, pool.hierarchyVersion());
+        assertTrue(childVersion != child.hierarchyVersion());
+
+        childVersion = child.hierarchyVersion();
+        p.getClassFile().addInterface("java.io.Serializable");
+        assertTrue(version != pool.hierarchyVersion());
+        assertTrue(childVersion != child.hierarchyVersion());
+        assertEquals(otherVersion, other.hierarchyVersion());
+    }
+
+    private static String subtypeNames(ClassPool pool, CtClass clazz) {
+        java.util.List<String> names = new java.util.ArrayList<String>();
+        for (CtClass c: pool.getSubtypes(clazz))
+            names.add(c.getName());
+
+        java.util.Collections.sort(names);
+        return names.toString();
+    }
+
+    public void testEvictionPolicy() throws Exception {
+        ClassPool pool = new ClassPool(null);
+        pool.appendSystemPath();
+        pool.appendClassPath(PATH);
+        LruEvictionPolicy policy = new LruEvictionPolicy(1000);
+        pool.evictionPolicy = policy;
+        CtClass c = pool.get("test5.TypeHierarchy$C");
+        c.getClassFile2();
+        CtClass modified = pool.get("test5.TypeHierarchy$D");
+        modified.addInterface(pool.get("test5.TypeHierarchy$F"));
+        String[] names = { "test5.TypeHierarchy$A", "test5.TypeHierarchy$B",
+                           "test5.TypeHierarchy$E", "test5.TypeHierarchy",
+                           "test5.MemberLookup", "test5.JavacReuse",
+                           "test5.SnippetCacheTarget" };
+        for (String name: names)
+            pool.get(name).getClassFile2();
+
+        assertTrue(policy.getSize() <= 1000);
+        assertSame(c, pool.get("test5.TypeHierarchy$C"));
+        assertSame(modified, pool.get("test5.TypeHierarchy$D"));
+        assertTrue(pool.get("test5.TypeHierarchy$D").subtypeOf(pool.get("test5.TypeHierarchy$F")));
+        assertEquals("test5.TypeHierarchy$B", pool.get("test5.TypeHierarchy$B").getName());
+    }
+
+    public void testEvictionPolicyIgnoresModifiedClasses() throws Exception {
+        ClassPool pool = new ClassPool(null);
+        pool.appendSystemPath();
+        pool.appendClassPath(PATH);
+        LruEvictionPolicy policy = new LruEvictionPolicy(1000000);
+        pool.evictionPolicy = policy;
+        CtClass d = pool.get("test5.TypeHierarchy$D");
+        d.getClassFile2();
+        assertTrue(policy.getSize() > 0);
+        d.addField(new CtField(CtClass.intType, "count", d));
+        assertSame(d, pool.get("test5.TypeHierarchy$D"));
+        assertEquals(0, policy.getSize());
+
+        CtClass e = pool.get("test5.TypeHierarchy$E");
+        e.getClassFile2();
+        assertTrue(policy.getSize() > 0);
+        e.toBytecode();
+        assertSame(e, pool.get("test5.TypeHierarchy$E"));
+        assertEquals(0, policy.getSize());
+    }
+
+    public void testCompactClass() throws Exception {
+        ClassPool pool = new ClassPool(null);
+        pool.appendSystemPath();
+        pool.appendClassPath(PATH);
+        CtClass cc = pool.get("test5.TypeHierarchy$D");
+        cc.addField(new CtField(CtClass.intType, "count", cc));
+        cc.addMethod(CtNewMethod.make("public int get() { return count; }", cc));
+        cc.toBytecode();
+        cc.compact();
+        assertNull(((CtClassType)cc).classfile);
+        assertEquals("test5.TypeHierarchy$C", cc.getSuperclass().getName());
+        assertTrue(cc.subtypeOf(pool.get("test5.TypeHierarchy$A")));
+        assertTrue(Modifier.isPublic(cc.getModifiers()));
+        try {
+            cc.getDeclaredMethod("run");
+            fail();
+        }
+        catch (NotFoundException e) {}
+        assertEquals(0, cc.getDeclaredMethods("run").length);
+        try {
+            cc.getField("value");
+            fail();
+        }
+        catch (NotFoundException e) {}
+        assertNull(((CtClassType)cc).classfile);
+
+        assertEquals("count", cc.getField("count").getName());
+        assertEquals("()I", cc.getDeclaredMethod("get").getSignature());
+        assertNotNull(((CtClassType)cc).classfile);
+
+        CtClass unmodified = pool.get("test5.TypeHierarchy$E");
+        unmodified.getClassFile2();
+        unmodified.compact();
+        assertNull(((CtClassType)unmodified).classfile);
+        assertEquals(1, unmodified.getDeclaredConstructors().length);
+    }
+
+    public void testClassFileFromBytes() throws Exception {
+        byte[] bytes = new ClassPool(true).get("javassist.CtClassType").toBytecode();
+        ClassFile cf = new ClassFile(new java.io.DataInputStream(new java.io.ByteArrayInputStream(bytes)));
+        byte[] expected = toBytes(cf);
+        assertTrue(java.util.Arrays.equals(expected, toBytes(new ClassFile(bytes))));
+
+        byte[] padded = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, padded, 3, bytes.length);
+        assertTrue(java.util.Arrays.equals(expected, toBytes(new ClassFile(padded, 3, bytes.length))));
+
+        java.nio.ByteBuffer direct = java.nio.ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertTrue(java.util.Arrays.equals(expected, toBytes(new ClassFile(direct))));
+        assertEquals(0, direct.position());
+
+        java.nio.ByteBuffer heap = java.nio.ByteBuffer.wrap(padded, 3, bytes.length).slice();
+        assertTrue(java.util.Arrays.equals(expected, toBytes(new ClassFile(heap))));
+
+        try {
+            new ClassFile(bytes, 0, bytes.length - 1);
+            fail();
+        }
+        catch (java.io.EOFException e) {}
+    }
+
+    private static byte[] toBytes(ClassFile cf) throws java.io.IOException {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        cf.write(new java.io.DataOutputStream(out));
+        return out.toByteArray();
+    }
+
+    public void testClassFileLength() throws Exception {
+        ClassPool pool = new ClassPool(true);
+        String[] names = { "javassist.CtClassType", "javassist.bytecode.ConstPool",
+                           "test5.TypeHierarchy$D", "java.lang.String", "java.lang.Character" };
+        for (String name: names) {
+            ClassFile cf = pool.get(name).getClassFile2();
+            java.io.ByteArrayOutputStream bout = new java.io.ByteArrayOutputStream();
+            cf.write(new java.io.DataOutputStream(bout));
+            byte[] expected = bout.toByteArray();
+            assertEquals(name, expected.length, cf.length());
+            byte[] bytes = cf.toBytecode();
+            assertTrue(name, java.util.Arrays.equals(expected, bytes));
+
+            java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocateDirect(bytes.length + 4);
+            buf.putInt(-1);
+            cf.write(buf);
+            assertEquals(bytes.length + 4, buf.position());
+            buf.position(4);
+            assertEquals(bytes.length, new ClassFile(buf).length());
+        }
+
+        CtClass cc = pool.get("test5.TypeHierarchy$E");
+        cc.addField(new CtField(pool.get("java.lang.String"), "name\u00e9\u4e2d", cc));
+        cc.addMethod(CtNewMethod.make("public int size() { return 0; }", cc));
+        int len = cc.getClassFile2().length();
+        byte[] bytes = cc.toBytecode();
+        assertEquals(len, bytes.length);
+        assertEquals(len, new ClassFile(bytes).length());
+
+        try {
+            new ClassFile(bytes).write(java.nio.ByteBuffer.allocate(len - 1));
+            fail();
+        }
+        catch (java.nio.BufferOverflowException e) {}
+    }
 }
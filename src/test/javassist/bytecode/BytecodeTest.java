@@ -64,23 +64,19 @@ public class BytecodeTest extends TestCase {
         assertEquals(2, code.read(101));
     }
 
-    public void testLongVector() throws Exception {
-        LongVector vec = new LongVector();
-        assertEquals(LongVector.ASIZE * LongVector.VSIZE, vec.capacity());
-        int size = LongVector.ASIZE * LongVector.VSIZE * 3;
-        for (int i = 0; i < size; i++) {
-            vec.addElement(new IntegerInfo(i, i));
-            assertEquals(i, ((IntegerInfo)vec.elementAt(i)).value);
-            assertEquals(i + 1, vec.size());
+    public void testConstPoolGrowth() throws Exception {
+        ConstPool cp = new ConstPool("test.Growth");
+        int size = 128 * 8 * 3;
+        int first = cp.addIntegerInfo(0);
+        for (int i = 1; i < size; i++) {
+            int n = cp.addIntegerInfo(i);
+            assertEquals(first + i, n);
+            assertEquals(n + 1, cp.getSize());
         }
 
-        size = LongVector.ASIZE * LongVector.VSIZE * 3;
-        vec = new LongVector(size - 5);
-        assertEquals(size, vec.capacity());
         for (int i = 0; i < size; i++) {
-            vec.addElement(new IntegerInfo(i, i));
-            assertEquals(i, ((IntegerInfo)vec.elementAt(i)).value);
-            assertEquals(i + 1, vec.size());
+            assertEquals(i, cp.getIntegerInfo(first + i));
+            assertEquals(first + i, cp.addIntegerInfo(i));
         }
     }
 
@@ -596,114 +592,84 @@ public class BytecodeTest extends TestCase {
     }
 
     public void testConstInfos() throws Exception {
-        int n = 1;
-        Utf8Info ui1 = new Utf8Info("test", n++);
-        Utf8Info ui2 = new Utf8Info("te" + "st", n++);
-        Utf8Info ui3 = new Utf8Info("test2", n++);
-        assertTrue(ui1.hashCode() == ui2.hashCode());
-        assertTrue(ui1.equals(ui1));
-        assertTrue(ui1.equals(ui2));
-        assertFalse(ui1.equals(ui3));
-        assertFalse(ui1.equals(null));
-
-        ClassInfo ci1 = new ClassInfo(ui1.index, n++);
-        ClassInfo ci2 = new ClassInfo(ui1.index, n++);
-        ClassInfo ci3 = new ClassInfo(ui2.index, n++);
-        ClassInfo ci4 = new ClassInfo(ui3.index, n++);
-        assertTrue(ci1.hashCode() == ci2.hashCode());
-        assertTrue(ci1.equals(ci1));
-        assertTrue(ci1.equals(ci2));
-        assertFalse(ci1.equals(ci3));
-        assertFalse(ci1.equals(ci4));
-        assertFalse(ci1.equals(ui1));
-        assertFalse(ci1.equals(null));
-
-        NameAndTypeInfo ni1 = new NameAndTypeInfo(ui1.index, ui3.index, n++);
-        NameAndTypeInfo ni2 = new NameAndTypeInfo(ui1.index, ui3.index, n++);
-        NameAndTypeInfo ni3 = new NameAndTypeInfo(ui1.index, ui1.index, n++);
-        NameAndTypeInfo ni4 = new NameAndTypeInfo(ui3.index, ui3.index, n++);
-        assertTrue(ni1.hashCode() == ni2.hashCode());
-        assertTrue(ni1.equals(ni1));
-        assertTrue(ni1.equals(ni2));
-        assertFalse(ni1.equals(ni3));
-        assertFalse(ni1.equals(ni4));
-        assertFalse(ni1.equals(ci1));
-        assertFalse(ni1.equals(null));
-
-        MethodrefInfo mi1 = new MethodrefInfo(ui1.index, ui3.index, n++);
-        MethodrefInfo mi2 = new MethodrefInfo(ui1.index, ui3.index, n++);
-        MethodrefInfo mi3 = new MethodrefInfo(ui1.index, ui1.index, n++);
-        MethodrefInfo mi4 = new MethodrefInfo(ui2.index, ui3.index, n++);
-        assertTrue(mi1.hashCode() == mi2.hashCode());
-        assertTrue(mi1.equals(mi1));
-        assertTrue(mi1.equals(mi2));
-        assertFalse(mi1.equals(mi3));
-        assertFalse(mi1.equals(mi4));
-        assertFalse(mi1.equals(ci1));
-        assertFalse(mi1.equals(null));
-
-        FieldrefInfo field1 = new FieldrefInfo(ui1.index, ui3.index, n++);
-        FieldrefInfo field2 = new FieldrefInfo(ui1.index, ui1.index, n++);
-        FieldrefInfo field3 = new FieldrefInfo(ui1.index, ui1.index, n++);
-        InterfaceMethodrefInfo intf1 = new InterfaceMethodrefInfo(ui1.index, ui3.index, n++);
-        InterfaceMethodrefInfo intf2 = new InterfaceMethodrefInfo(ui1.index, ui3.index, n++);
-        assertFalse(mi1.equals(field1));
-        assertFalse(field1.equals(mi1));
-        assertTrue(field2.equals(field3));
-        assertFalse(mi1.equals(field2));
-        assertFalse(mi1.equals(intf1));
-        assertFalse(intf1.equals(mi1));
-        assertTrue(intf1.equals(intf2));
-
-        StringInfo si1 = new StringInfo(ui1.index, n++);
-        StringInfo si2 = new StringInfo(ui1.index, n++);
-        StringInfo si3 = new StringInfo(ui2.index, n++);
-        assertTrue(si1.hashCode() == si2.hashCode());
-        assertTrue(si1.equals(si1));
-        assertTrue(si1.equals(si2));
-        assertFalse(si1.equals(si3));
-        assertFalse(si1.equals(ci1));
-        assertFalse(si1.equals(null));
-
-        IntegerInfo ii1 = new IntegerInfo(12345, n++);
-        IntegerInfo ii2 = new IntegerInfo(12345, n++);
-        IntegerInfo ii3 = new IntegerInfo(-12345, n++);
-        assertTrue(ii1.hashCode() == ii2.hashCode());
-        assertTrue(ii1.equals(ii1));
-        assertTrue(ii1.equals(ii2));
-        assertFalse(ii1.equals(ii3));
-        assertFalse(ii1.equals(ci1));
-        assertFalse(ii1.equals(null));
-
-        FloatInfo fi1 = new FloatInfo(12345.0F, n++);
-        FloatInfo fi2 = new FloatInfo(12345.0F, n++);
-        FloatInfo fi3 = new FloatInfo(-12345.0F, n++);
-        assertTrue(fi1.hashCode() == fi2.hashCode());
-        assertTrue(fi1.equals(fi1));
-        assertTrue(fi1.equals(fi2));
-        assertFalse(fi1.equals(fi3));
-        assertFalse(fi1.equals(ci1));
-        assertFalse(fi1.equals(null));
-
-        LongInfo li1 = new LongInfo(12345L, n++);
-        LongInfo li2 = new LongInfo(12345L, n++);
-        LongInfo li3 = new LongInfo(-12345L, n++);
-        assertTrue(li1.hashCode() == li2.hashCode());
-        assertTrue(li1.equals(li1));
-        assertTrue(li1.equals(li2));
-        assertFalse(li1.equals(li3));
-        assertFalse(li1.equals(ci1));
-        assertFalse(li1.equals(null));
-
-        DoubleInfo di1 = new DoubleInfo(12345.0, n++);
-        DoubleInfo di2 = new DoubleInfo(12345.0, n++);
-        DoubleInfo di3 = new DoubleInfo(-12345.0, n++);
-        assertTrue(di1.hashCode() == di2.hashCode());
-        assertTrue(di1.equals(di1));
-        assertTrue(di1.equals(di2));
-        assertFalse(di1.equals(di3));
-        assertFalse(di1.equals(ci1));
-        assertFalse(di1.equals(null));
+        ConstPool cp = new ConstPool("test.Tester");
+        int ui1 = cp.addUtf8Info("test");
+        assertEquals(ui1, cp.addUtf8Info("te" + "st"));
+        int ui3 = cp.addUtf8Info("test2");
+        assertTrue(ui1 != ui3);
+
+        int ci1 = cp.addClassInfo("test");
+        int ci2 = cp.addClassInfo("test2");
+        assertTrue(ci1 != ci2);
+
+        int ni1 = cp.addNameAndTypeInfo(ui1, ui3);
+        int ni3 = cp.addNameAndTypeInfo(ui1, ui1);
+        assertTrue(ni1 != ni3);
+
+        int mi1 = cp.addMethodrefInfo(ci1, ni1);
+        int field1 = cp.addFieldrefInfo(ci1, ni1);
+        int intf1 = cp.addInterfaceMethodrefInfo(ci1, ni1);
+        assertTrue(mi1 != field1);
+        assertTrue(mi1 != intf1);
+        assertTrue(field1 != intf1);
+        assertEquals(ConstPool.CONST_Methodref, cp.getTag(mi1));
+        assertEquals(ConstPool.CONST_Fieldref, cp.getTag(field1));
+        assertEquals(ConstPool.CONST_InterfaceMethodref, cp.getTag(intf1));
+
+        int si1 = cp.addStringInfo("test");
+        assertTrue(si1 != ui1 && si1 != ci1);
+        int ii1 = cp.addIntegerInfo(12345);
+        int fi1 = cp.addFloatInfo(12345.0F);
+        int fi2 = cp.addFloatInfo(-0.0F);
+        assertTrue(fi1 != fi2 && fi2 != cp.addFloatInfo(0.0F));
+        int li1 = cp.addLongInfo(0x123456789abcdefL);
+        int di1 = cp.addDoubleInfo(-12345.5);
+        int mh = cp.addMethodHandleInfo(ConstPool.REF_invokeStatic, mi1);
+        int mt = cp.addMethodTypeInfo(ui3);
+        int indy = cp.addInvokeDynamicInfo(3, ni1);
+        int dyn = cp.addDynamicInfo(3, ni1);
+        assertTrue(indy != dyn);
+        int mod = cp.addModuleInfo(ui1);
+        int pkg = cp.addPackageInfo(ui1);
+        assertTrue(mod != pkg);
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        cp.write(new DataOutputStream(bout));
+        ConstPool cp2 = new ConstPool(new DataInputStream(
+                                new ByteArrayInputStream(bout.toByteArray())));
+        assertEquals(cp.getSize(), cp2.getSize());
+        for (int i = 1; i < cp.getSize(); i++)
+            assertEquals(cp.getTag(i), cp2.getTag(i));
+
+        assertEquals("test", cp2.getStringInfo(si1));
+        assertEquals("test2", cp2.getClassInfo(ci2));
+        assertEquals(12345, cp2.getIntegerInfo(ii1));
+        assertEquals(12345.0F, cp2.getFloatInfo(fi1), 0.0F);
+        assertEquals(Float.floatToRawIntBits(-0.0F),
+                     Float.floatToRawIntBits(cp2.getFloatInfo(fi2)));
+        assertEquals(0x123456789abcdefL, cp2.getLongInfo(li1));
+        assertEquals(-12345.5, cp2.getDoubleInfo(di1), 0.0);
+        assertEquals(ConstPool.REF_invokeStatic, cp2.getMethodHandleKind(mh));
+        assertEquals(mi1, cp2.getMethodHandleIndex(mh));
+        assertEquals(ui3, cp2.getMethodTypeInfo(mt));
+        assertEquals(ni1, cp2.getDynamicNameAndType(dyn));
+        assertEquals("test2", cp2.getInvokeDynamicType(indy));
+        assertEquals("test", cp2.getModuleInfo(mod));
+        assertEquals("test", cp2.getPackageInfo(pkg));
+        assertEquals("test", cp2.getMethodrefName(mi1));
+        assertEquals(li1, cp2.addLongInfo(0x123456789abcdefL));
+        assertEquals(di1, cp2.addDoubleInfo(-12345.5));
+
+        try {
+            cp2.getClassInfo(ui1);
+            fail("a wrong tag must be rejected");
+        }
+        catch (ClassCastException e) {}
+
+        ConstPool dest = new ConstPool("test.Dest");
+        assertEquals("test", dest.getPackageInfo(cp2.copy(pkg, dest, null)));
+        assertEquals(ConstPool.REF_invokeStatic,
+                     dest.getMethodHandleKind(cp2.copy(mh, dest, null)));
     }
 
     public void testConstInfoAdd() {
@@ -857,6 +823,126 @@ public class BytecodeTest extends TestCase {
         assertEquals("hello", destObj.getClass().getMethod("getString").invoke(destObj));
     }
 
+    public void testBatchEdit() throws Exception {
+        ClassPool pool = new ClassPool();
+        pool.appendSystemPath();
+        CtClass cc = pool.get("test5.BatchEdit");
+        ClassFile cf = cc.getClassFile();
+        ConstPool cp = cf.getConstPool();
+        MethodInfo src = cf.getMethod("loop");
+        MethodInfo m1 = new MethodInfo(cp, "loop1", src, null);
+        MethodInfo m2 = new MethodInfo(cp, "loop2", src, null);
+        byte[] probe = { Opcode.ICONST_0, Opcode.POP };
+        byte[] probe2 = { Opcode.NOP, Opcode.ICONST_1, Opcode.POP };
+
+        CodeAttribute ca1 = m1.getCodeAttribute();
+        CodeIterator ci1 = ca1.iterator();
+        java.util.List<Integer> heads = new java.util.ArrayList<Integer>();
+        while (ci1.hasNext())
+            heads.add(ci1.next());
+
+        CodeIterator.Batch batch = ci1.batch();
+        for (int i = 0; i < heads.size(); i++) {
+            int pos = heads.get(i);
+            if (i % 2 == 0)
+                batch.insert(pos, probe);
+
+            if (i % 3 == 0)
+                batch.insertEx(pos, probe2);
+        }
+
+        batch.commit();
+
+        CodeAttribute ca2 = m2.getCodeAttribute();
+        CodeIterator ci2 = ca2.iterator();
+        for (int i = heads.size() - 1; i >= 0; i--) {
+            int pos = heads.get(i);
+            if (i % 2 == 0)
+                ci2.insertAt(pos, probe);
+
+            if (i % 3 == 0)
+                ci2.insertExAt(pos, probe2);
+        }
+
+        assertTrue(java.util.Arrays.equals(ca2.getCode(), ca1.getCode()));
+        ExceptionTable et1 = ca1.getExceptionTable();
+        ExceptionTable et2 = ca2.getExceptionTable();
+        assertEquals(et2.size(), et1.size());
+        for (int i = 0; i < et1.size(); i++) {
+            assertEquals(et2.startPc(i), et1.startPc(i));
+            assertEquals(et2.endPc(i), et1.endPc(i));
+            assertEquals(et2.handlerPc(i), et1.handlerPc(i));
+        }
+
+        assertTrue(java.util.Arrays.equals(ca2.getAttribute(LineNumberAttribute.tag).get(),
+                                           ca1.getAttribute(LineNumberAttribute.tag).get()));
+        assertTrue(java.util.Arrays.equals(ca2.getAttribute(StackMapTable.tag).get(),
+                                           ca1.getAttribute(StackMapTable.tag).get()));
+        assertTrue(ca1.isModified(0, 1));
+        // no byte sequence is inserted at heads.get(1).
+        int gap = probe.length + probe2.length;
+        assertFalse(ca1.isModified(heads.get(1) + gap, heads.get(2) - heads.get(1)));
+
+        ci1.begin();
+        ci1.next();
+        int cur = ci1.lookAhead();
+        int op = ci1.byteAt(cur);
+        batch.insertEx(0, probe);
+        batch.insert(cur, probe2);
+        batch.commit();
+        int pos = ci1.next();
+        assertEquals(cur + gap, pos);
+        assertEquals(op, ci1.byteAt(pos));
+    }
+
+    public void testBatchEdit2() throws Exception {
+        ClassPool pool = new ClassPool();
+        pool.appendSystemPath();
+        CtClass cc = pool.get("test5.BatchEdit");
+        ClassFile cf = cc.getClassFile();
+        byte[] probe = { Opcode.ICONST_0, Opcode.POP };
+        byte[] probe2 = { Opcode.NOP };
+
+        // the method includes switch statements.
+        CodeAttribute ca = cf.getMethod("select").getCodeAttribute();
+        ca.setMaxStack(ca.getMaxStack() + 1);
+        CodeIterator ci = ca.iterator();
+        CodeIterator.Batch batch = ci.batch();
+        int prev = Opcode.NOP;
+        for (int i = 0; ci.hasNext(); i++) {
+            int pos = ci.next();
+            if (i % 3 != 0)
+                batch.insert(pos, probe);
+
+            // an exclusive gap following goto etc. would need a stack map frame.
+            if (i % 2 == 0 && prev != Opcode.GOTO && prev != Opcode.TABLESWITCH
+                && prev != Opcode.LOOKUPSWITCH)
+                batch.insertEx(pos, probe2);
+
+            prev = ci.byteAt(pos);
+        }
+
+        batch.commit();
+
+        // the code length will exceed 32K.
+        byte[] nops = new byte[Short.MAX_VALUE / 2];
+        ca = cf.getMethod("loop").getCodeAttribute();
+        ca.setMaxStack(ca.getMaxStack() + 1);
+        ci = ca.iterator();
+        batch = ci.batch();
+        for (int i = 0; ci.hasNext(); i++) {
+            int pos = ci.next();
+            batch.insert(pos, i == 3 || i == 11 ? nops : probe);
+        }
+
+        batch.commit();
+        assertTrue(ca.getCodeLength() > Short.MAX_VALUE);
+
+        cc.writeFile();
+        Object obj = make(cc.getName());
+        assertEquals(new test5.BatchEdit().run(), invoke(obj, "run"));
+    }
+
     public static Test suite() {
         TestSuite suite = new TestSuite("Bytecode Tests");
         suite.addTestSuite(BytecodeTest.class);
@@ -163,4 +163,42 @@ public class ProxyFactoryTest extends TestCase {
                                                                              .getActualTypeArguments();
         assertEquals(Integer.class, x[0]);
     }
+
+    public void testConcurrentCreateClass() throws Exception {
+        final int n = 8;
+        final Class[] classes = new Class[n * 2];
+        final Throwable[] errors = new Throwable[1];
+        final java.util.concurrent.CyclicBarrier barrier = new java.util.concurrent.CyclicBarrier(n * 2);
+        Thread[] threads = new Thread[n * 2];
+        for (int i = 0; i < threads.length; i++) {
+            final int k = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        ProxyFactory fact = new ProxyFactory();
+                        fact.setSuperclass(MyCls.class);
+                        if (k % 2 == 1)
+                            fact.setInterfaces(new Class[] { Runnable.class });
+
+                        barrier.await();
+                        classes[k] = fact.createClass();
+                    }
+                    catch (Throwable t) {
+                        errors[0] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for (Thread t: threads)
+            t.join();
+
+        assertNull(errors[0]);
+        for (int i = 2; i < classes.length; i++)
+            assertSame(classes[i % 2], classes[i]);
+
+        assertNotSame(classes[0], classes[1]);
+        assertTrue(Runnable.class.isAssignableFrom(classes[1]));
+    }
 }
@@ -4,13 +4,23 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
+import javassist.util.proxy.DirectMethodHandler;
+import javassist.util.proxy.Invocation;
 import javassist.util.proxy.MethodFilter;
 import javassist.util.proxy.MethodHandler;
+import javassist.util.proxy.PrimitiveMethodHandler;
 import javassist.util.proxy.Proxy;
 import javassist.util.proxy.ProxyFactory;
+import javassist.util.proxy.RuntimeSupport;
 import junit.framework.TestCase;
 
 @SuppressWarnings({"rawtypes","unchecked"})
@@ -362,4 +372,322 @@ public class ProxySimpleTest extends TestCase {
     public static class Extended267b extends Base267b {
         public String base() { return "extended"; }
     }
+
+    public void testDirectMethodHandler() throws Exception {
+        ProxyFactory factory = new ProxyFactory();
+        factory.setSuperclass(Direct.class);
+        factory.setInterfaces(new Class[] { Named.class });
+        factory.setUseInvocation(true);
+        Class<?> c = factory.createClass();
+        factory.setUseInvocation(false);
+        assertNotSame(c, factory.createClass());
+
+        Direct d = (Direct)c.getConstructor().newInstance();
+        assertEquals(4, d.inc(3));
+        assertEquals("true1a2345.06.07.0x", d.mix(true, (byte)1, 'a', (short)2, 3, 4L, 5.0f, 6.0, 7.0, "x"));
+
+        ((Proxy)d).setHandler(new DirectMethodHandler() {
+            public Object invoke(Invocation inv) throws Throwable {
+                String name = inv.getMethod().getName();
+                if (name.equals("inc"))
+                    inv.setIntArgument(0, inv.getIntArgument(0) * 10);
+                else if (name.equals("mix")) {
+                    assertEquals(10, inv.getArgumentCount());
+                    assertEquals('a', (char)inv.getIntArgument(2));
+                    assertEquals(4L, inv.getLongArgument(5));
+                    assertEquals(Double.valueOf(7.0), inv.getArgument(8));
+                    inv.setDoubleArgument(8, 8.0);
+                    inv.setArgument(9, "y");
+                }
+                else if (name.equals("name")) {
+                    try {
+                        inv.proceed();
+                        fail();
+                    }
+                    catch (AbstractMethodError e) {}
+                    return "named";
+                }
+
+                return inv.proceed();
+            }
+
+            public Object invoke(Object self, Method m, Method proceed, Object[] args) {
+                throw new RuntimeException("not called");
+            }
+        });
+
+        assertEquals(31, d.inc(3));
+        assertEquals("true1a2345.06.08.0y", d.mix(true, (byte)1, 'a', (short)2, 3, 4L, 5.0f, 6.0, 7.0, "x"));
+        assertEquals("named", ((Named)d).name());
+        d.clear();
+
+        ((Proxy)d).setHandler(new MethodHandler() {
+            public Object invoke(Object self, Method m, Method proceed, Object[] args) throws Throwable {
+                return m.getName().equals("name") ? "legacy" : proceed.invoke(self, args);
+            }
+        });
+
+        assertEquals(4, d.inc(3));
+        assertEquals("legacy", ((Named)d).name());
+    }
+
+    public static interface Named {
+        String name();
+    }
+
+    public static class Direct {
+        public int inc(int i) { return i + 1; }
+        public void clear() {}
+        public String mix(boolean z, byte b, char c, short s, int i, long l, float f, double d,
+                          double d2, String str) {
+            return "" + z + b + c + s + i + l + f + d + d2 + str;
+        }
+    }
+
+    public void testPrimitiveMethodHandler() throws Exception {
+        ProxyFactory factory = new ProxyFactory();
+        factory.setSuperclass(Counter.class);
+        factory.setUseInvocation(true);
+        Counter c = (Counter)factory.create(null, null);
+        assertEquals(1, c.next());
+        assertEquals('b', c.letter('a'));
+        assertEquals(2.5, c.half(5), 0.0);
+
+        final StringBuilder calls = new StringBuilder();
+        ((Proxy)c).setHandler(new PrimitiveMethodHandler() {
+            public int invokeInt(Invocation inv) throws Throwable {
+                calls.append('i');
+                return inv.proceedInt();
+            }
+
+            public long invokeLong(Invocation inv) throws Throwable {
+                calls.append('l');
+                try {
+                    inv.proceedInt();
+                    fail();
+                }
+                catch (ClassCastException e) {}
+
+                return inv.proceedLong() * 10;
+            }
+
+            public Object invoke(Invocation inv) throws Throwable {
+                calls.append('o');
+                if (inv.getMethod().getName().equals("name"))
+                    try {
+                        inv.proceedInt();
+                        fail();
+                    }
+                    catch (ClassCastException e) {}
+                else
+                    try {
+                        inv.proceedFloat();
+                        fail();
+                    }
+                    catch (ClassCastException e) {}
+
+                return inv.proceed();
+            }
+
+            public Object invoke(Object self, Method m, Method proceed, Object[] args) {
+                throw new RuntimeException("not called");
+            }
+        });
+
+        assertEquals(2, c.next());
+        assertEquals('c', c.letter('b'));
+        assertEquals(70L, c.add(3, 4L));
+        assertEquals(1.5, c.half(3), 0.0);
+        assertEquals("counter", c.name());
+        assertEquals("iiloo", calls.toString());
+    }
+
+    public static class Counter {
+        private int count;
+        public int next() { return ++count; }
+        public char letter(char c) { return (char)(c + 1); }
+        public long add(int i, long j) { return i + j; }
+        public double half(int i) { return i / 2.0; }
+        public String name() { return "counter"; }
+    }
+
+    public void testPrebuiltClass() throws Exception {
+        MethodFilter filter = new MethodFilter() {
+            public boolean isHandled(Method m) {
+                return m.getName().startsWith("f");
+            }
+        };
+
+        ProxyFactory f = new ProxyFactory();
+        f.setSuperclass(Foo.class);
+        f.setFilter(filter);
+        String name = f.writePrebuiltClass("./prebuilt");
+        assertTrue(new File("./prebuilt/META-INF/javassist/proxies").exists());
+
+        final ClassLoader loader = new URLClassLoader(new URL[] { new File("./prebuilt").toURI().toURL() },
+                                                      Foo.class.getClassLoader());
+        ProxyFactory f2 = new ProxyFactory() {
+            protected ClassLoader getClassLoader() { return loader; }
+        };
+        f2.setSuperclass(Foo.class);
+        f2.setFilter(filter);
+        Class<?> c = f2.createClass();
+        assertEquals(name, c.getName());
+        assertSame(loader, c.getClassLoader());
+
+        Foo foo = (Foo)c.getConstructor().newInstance();
+        ((Proxy)foo).setHandler(new MethodHandler() {
+            public Object invoke(Object self, Method m, Method proceed, Object[] args) throws Throwable {
+                return ((Integer)proceed.invoke(self, args)).intValue() * 10;
+            }
+        });
+        assertEquals(20, foo.foo(1));
+        assertEquals(2, foo.bar(1));
+
+        // a different filter does not match the prebuilt class.
+        ProxyFactory f3 = new ProxyFactory() {
+            protected ClassLoader getClassLoader() { return loader; }
+        };
+        f3.setSuperclass(Foo.class);
+        Class<?> c3 = f3.createClass();
+        assertFalse(name.equals(c3.getName()));
+
+        // the factory writing the prebuilt class still generates a usual proxy class.
+        assertFalse(name.equals(f.createClass().getName()));
+
+        ProxyFactory f4 = new ProxyFactory();
+        f4.setSuperclass(Foo.class);
+        f4.setUseCache(false);
+        try {
+            f4.writePrebuiltClass("./prebuilt");
+            fail();
+        }
+        catch (RuntimeException e) {}
+    }
+
+    public void testPrebuiltClassNameClash() throws Exception {
+        File index = new File("./prebuilt2/META-INF/javassist/proxies");
+        index.delete();
+        MethodFilter filter = new MethodFilter() {
+            public boolean isHandled(Method m) {
+                return m.getName().startsWith("f");
+            }
+        };
+
+        ProxyFactory f = new ProxyFactory();
+        f.setSuperclass(Foo.class);
+        String name = f.writePrebuiltClass("./prebuilt2");
+        ProxyFactory f2 = new ProxyFactory();
+        f2.setSuperclass(Foo.class);
+        f2.setFilter(filter);
+        String name2 = f2.writePrebuiltClass("./prebuilt2");
+        assertFalse(name.equals(name2));
+
+        // the class written for another key is not loaded.
+        String text = new String(Files.readAllBytes(index.toPath()), StandardCharsets.UTF_8);
+        Files.write(index.toPath(), text.replace(name2, name).getBytes(StandardCharsets.UTF_8));
+        final ClassLoader loader = new URLClassLoader(new URL[] { new File("./prebuilt2").toURI().toURL() },
+                                                      Foo.class.getClassLoader());
+        ProxyFactory f3 = new ProxyFactory() {
+            protected ClassLoader getClassLoader() { return loader; }
+        };
+        f3.setSuperclass(Foo.class);
+        f3.setFilter(filter);
+        Class<?> c = f3.createClass();
+        assertFalse(name.equals(c.getName()));
+        assertFalse(name2.equals(c.getName()));
+
+        // a class name used for another key is rejected.
+        try {
+            f.writePrebuiltClass("./prebuilt2");
+            fail();
+        }
+        catch (IOException e) {}
+    }
+
+    public void testProxyInSuperclassInitializer() throws Exception {
+        ProxyFactory f = new ProxyFactory();
+        f.setSuperclass(SelfProxy.class);
+        Class<?> c = f.createClass();
+        assertNotNull(SelfProxy.proxyClass);
+        assertSame(c, f.createClass());
+    }
+
+    public static class SelfProxy {
+        public static Class<?> proxyClass;
+
+        static {
+            // the same proxy class is requested while it is being initialized.
+            ProxyFactory f = new ProxyFactory();
+            f.setSuperclass(SelfProxy.class);
+            proxyClass = f.createClass();
+        }
+
+        public int get() { return 1; }
+    }
+
+    public void testMethodTableCache() throws Exception {
+        ProxyFactory f = new ProxyFactory();
+        f.setSuperclass(Foo.class);
+        f.setFilter(new MethodFilter() {
+            public boolean isHandled(Method m) {
+                return m.getName().equals("foo");
+            }
+        });
+        Class<?> c1 = f.createClass();
+
+        // the second factory shares the methods with the first one but it has a different filter.
+        ProxyFactory f2 = new ProxyFactory();
+        f2.setSuperclass(Foo.class);
+        f2.setFilter(new MethodFilter() {
+            public boolean isHandled(Method m) {
+                return m.getName().equals("bar");
+            }
+        });
+        Class<?> c2 = f2.createClass();
+        assertNotSame(c1, c2);
+
+        ProxyFactory f3 = new ProxyFactory();
+        f3.setSuperclass(Foo.class);
+        f3.setInterfaces(new Class[] { Named.class });
+        Class<?> c3 = f3.createClass();
+        assertTrue(Named.class.isAssignableFrom(c3));
+
+        MethodHandler mh = new MethodHandler() {
+            public Object invoke(Object self, Method m, Method proceed, Object[] args) throws Throwable {
+                return m.getName().equals("name") ? "name" : Integer.valueOf(0);
+            }
+        };
+        Foo foo1 = (Foo)c1.getConstructor().newInstance();
+        ((Proxy)foo1).setHandler(mh);
+        Foo foo2 = (Foo)c2.getConstructor().newInstance();
+        ((Proxy)foo2).setHandler(mh);
+        Foo foo3 = (Foo)c3.getConstructor().newInstance();
+        ((Proxy)foo3).setHandler(mh);
+        assertEquals(0, foo1.foo(1));
+        assertEquals(2, foo1.bar(1));
+        assertEquals(2, foo2.foo(1));
+        assertEquals(0, foo2.bar(1));
+        assertEquals(0, foo3.foo2(1));
+        assertEquals("name", ((Named)foo3).name());
+    }
+
+    public void testFindMethods() throws Exception {
+        assertEquals(Foo.class.getDeclaredMethod("foo", int.class),
+                     RuntimeSupport.findMethod(Foo.class, "foo", "(I)I"));
+        assertEquals(Base267b.class.getDeclaredMethod("base"),
+                     RuntimeSupport.findSuperClassMethod(Extended267b.class, "base", "()Ljava/lang/Object;"));
+        assertEquals(Extended267b.class.getDeclaredMethod("base"),
+                     RuntimeSupport.findMethod(Extended267b.class, "base", "()Ljava/lang/String;"));
+        try {
+            RuntimeSupport.findMethod(Foo.class, "foo", "(J)I");
+            fail();
+        }
+        catch (RuntimeException e) {}
+
+        Method m = RuntimeSupport.findMethod(Foo.class, "foo", "(I)I");
+        m.setAccessible(true);
+        assertNotSame(m, RuntimeSupport.findMethod(Foo.class, "foo", "(I)I"));
+        assertFalse(RuntimeSupport.findMethod(Foo.class, "foo", "(I)I").isAccessible());
+    }
 }
@@ -0,0 +1,30 @@
+package test5;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+@AnnotationScan.Tag(value = "cls", inner = @AnnotationScan.Inner({ 1, 2 }), kind = ElementType.TYPE)
+@AnnotationScan.Marker
+public class AnnotationScan {
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Tag {
+        String value();
+        Inner inner();
+        ElementType kind();
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Inner {
+        int[] value();
+    }
+
+    // runtime invisible
+    public @interface Marker {}
+
+    @Inner({ 3 })
+    public int field;
+
+    @Tag(value = "m", inner = @Inner({}), kind = ElementType.METHOD)
+    public int method(int i, @Marker String s, @Inner(4) long j) { return i; }
+}
@@ -0,0 +1,55 @@
+package test5;
+
+public class BatchEdit {
+    public int loop(int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            try {
+                if (i % 3 == 0)
+                    throw new IllegalStateException();
+
+                sum += new StringBuilder("x").append(i).length();
+            }
+            catch (IllegalStateException e) {
+                sum += 10;
+            }
+        }
+
+        return sum;
+    }
+
+    public int select(int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            switch (i % 4) {
+            case 0:
+                sum += 1;
+                break;
+            case 1:
+                sum += 20;
+                break;
+            case 100:
+                sum += 300;
+                break;
+            default:
+                sum += 4000;
+            }
+
+            switch (i) {
+            case 1:
+            case 3:
+                sum += 50000;
+                break;
+            case 2:
+                sum += 100000;
+                break;
+            }
+        }
+
+        return sum;
+    }
+
+    public int run() {
+        return loop(20) + select(6);
+    }
+}
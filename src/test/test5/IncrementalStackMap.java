@@ -0,0 +1,50 @@
+package test5;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IncrementalStackMap {
+    public int run() {
+        return test(10) + list(4).size() + dead(5);
+    }
+
+    public int test(int n) {
+        int sum = 0;
+        long total = 0L;
+        CharSequence s = "a";
+        for (int i = 0; i < n; i++) {
+            try {
+                if (i % 3 == 0)
+                    s = new StringBuilder(s).append(i);
+                else
+                    s = String.valueOf(i);
+
+                sum += s.length();
+            }
+            catch (RuntimeException e) {
+                sum--;
+            }
+
+            total += i;
+        }
+
+        return sum + (int)total;
+    }
+
+    public List<Integer> list(int n) {
+        List<Integer> list = new ArrayList<Integer>(n > 2 ? n : 2);
+        for (int i = 0; i < n; i++)
+            list.add(Integer.valueOf(i));
+
+        return list;
+    }
+
+    public int dead(int n) {
+        String tmp = "x";
+        int k = 0;
+        for (int i = 0; i < n; i++)
+            k += i;
+
+        return k;
+    }
+}
@@ -0,0 +1,18 @@
+package test5;
+
+public class JavacReuse {
+    public int count;
+
+    public int abs(int i) {
+        if (i < 0)
+            return -i;
+
+        return i;
+    }
+
+    public long twice(long j) { return j * 2; }
+
+    public int run() {
+        return abs(-3) + abs(4) + (int)twice(5) + count;
+    }
+}
@@ -0,0 +1,11 @@
+package test5;
+
+public class MemberLookup {
+    public int value;
+
+    public int get(Object obj) { return 1; }
+
+    public int run() {
+        return value;
+    }
+}
@@ -0,0 +1,22 @@
+package test5;
+
+public class MultiEditor {
+    int value = 3;
+
+    public int twice(int i) { return i * 2; }
+
+    public int run() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(twice(value));
+        Object obj = sb;
+        try {
+            if (obj instanceof String)
+                value = -1;
+
+            throw new IllegalStateException();
+        }
+        catch (IllegalStateException e) {
+            return twice(value) + sb.length();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package test5;
+
+public class SnippetCacheTarget {
+    public int count;
+
+    public int foo(int i) { return i + 1; }
+    public int bar(int i) { return i * 2; }
+    public int baz(int i) {
+        int k = i * 3;
+        return k;
+    }
+
+    public int run() {
+        return foo(10) + bar(20) + baz(30) + count;
+    }
+}
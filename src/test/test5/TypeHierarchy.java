@@ -0,0 +1,10 @@
+package test5;
+
+public class TypeHierarchy {
+    public interface A {}
+    public interface B extends A {}
+    public interface F {}
+    public static class C implements B {}
+    public static class D extends C {}
+    public static class E {}
+}